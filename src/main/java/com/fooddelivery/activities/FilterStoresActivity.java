@@ -18,14 +18,19 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.fooddelivery.R;
 import com.fooddelivery.adapters.StoreAdapter;
+import com.fooddelivery.adapters.VisibleStoresListener;
+import com.fooddelivery.cache.CatalogPrefetcher;
+import com.fooddelivery.cache.StoreRepository;
+import com.fooddelivery.cache.StoreSync;
 import com.fooddelivery.models.MapReduceRequest;
-import com.fooddelivery.models.Store;
+import com.fooddelivery.models.StoreSummary;
+import com.fooddelivery.network.Cancellable;
 import com.fooddelivery.network.NetworkTask;
-import com.fooddelivery.network.SocketClient;
 import com.fooddelivery.utils.Constants;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Set;
 
 /**
  * Activity for filtering stores based on criteria
@@ -43,7 +48,31 @@ public class FilterStoresActivity extends AppCompatActivity {
     private TextView tvNoResults;
     private RecyclerView recyclerView;
     private StoreAdapter storeAdapter;
-    private ArrayList<Store> storeList = new ArrayList<>();
+    private ArrayList<StoreSummary> storeList = new ArrayList<>();
+    private Cancellable currentFilter;
+    private int filterGeneration;  // Incremented per search so stale stores are not shown
+    private MapReduceRequest lastRequest;  // Criteria of the results on screen, null before the first search
+    private CatalogPrefetcher catalogPrefetcher;
+    private VisibleStoresListener visibleStores;
+
+    // Patches the rows of stores changed by a sync or a push instead of reloading the list
+    private final StoreSync.ChangeListener changeListener = new StoreSync.ChangeListener() {
+        @Override
+        public void onStoresChanged(Set<String> storeNames) {
+            runOnUiThread(() -> {
+                if (lastRequest != null) {
+                    storeAdapter.applyChanges(
+                            StoreRepository.getInstance().lookupChanged(storeNames, lastRequest));
+                    watchShownStores();
+                }
+            });
+        }
+
+        @Override
+        public void onReset() {
+            runOnUiThread(() -> refilter());
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -76,9 +105,13 @@ public class FilterStoresActivity extends AppCompatActivity {
 
             @Override
             public void onStopTrackingTouch(SeekBar seekBar) {
+                refilter();
             }
         });
 
+        // Filter changes are answered from the cached area, so apply them right away
+        rgPriceCategory.setOnCheckedChangeListener((group, checkedId) -> refilter());
+
         // Set up RecyclerView
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
         storeAdapter = new StoreAdapter(storeList, store -> {
@@ -89,6 +122,11 @@ public class FilterStoresActivity extends AppCompatActivity {
         });
         recyclerView.setAdapter(storeAdapter);
 
+        // Load the menus of the stores on screen, so opening one of them is served from the cache
+        catalogPrefetcher = new CatalogPrefetcher(this);
+        visibleStores = new VisibleStoresListener(storeAdapter, catalogPrefetcher::setVisibleStores);
+        recyclerView.addOnScrollListener(visibleStores);
+
         // Set click listener for filter button
         btnFilter.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -98,6 +136,37 @@ public class FilterStoresActivity extends AppCompatActivity {
         });
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        StoreSync.getInstance(this).addListener(changeListener);
+        watchShownStores();
+        visibleStores.dispatch(recyclerView);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // Pick up changes made while this screen was in the background
+        StoreSync.getInstance(this).requestSync();
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        StoreSync.getInstance(this).removeListener(changeListener);
+        catalogPrefetcher.cancelAll();
+    }
+
+    /**
+     * Re-runs the last search with the current criteria once the user has searched
+     */
+    private void refilter() {
+        if (lastRequest != null) {
+            filterStores();
+        }
+    }
+
     /**
      * Filters stores based on user criteria
      */
@@ -138,8 +207,9 @@ public class FilterStoresActivity extends AppCompatActivity {
                     categories,
                     minStars,
                     priceCategory,
-                    5.0 // 5km radius
+                    Constants.NEARBY_RADIUS_KM
             );
+            lastRequest = request;
 
             // Show progress
             progressBar.setVisibility(View.VISIBLE);
@@ -147,31 +217,39 @@ public class FilterStoresActivity extends AppCompatActivity {
             tvNoResults.setVisibility(View.GONE);
             recyclerView.setVisibility(View.GONE);
 
+            // A newer filter replaces results that are still arriving
+            if (currentFilter != null) {
+                currentFilter.cancel();
+            }
+
+            final int generation = ++filterGeneration;
+
+            // Clear previous results before the new ones start streaming in
+            storeList.clear();
+            storeAdapter.notifyDataSetChanged();
+            catalogPrefetcher.reset();
+
             // Execute network task asynchronously
-            new NetworkTask<ArrayList<Store>>(
-                    () -> {
-                        // This runs in a background thread
-                        SocketClient socketClient = new SocketClient(Constants.SERVER_IP, Constants.SERVER_PORT);
-                        socketClient.connect();
-                        try {
-                            return socketClient.getFilteredStores(request);
-                        } finally {
-                            socketClient.disconnect();
-                        }
-                    },
-                    new NetworkTask.TaskCallback<ArrayList<Store>>() {
+            NetworkTask<Integer> task = new NetworkTask<>(
+                    // This runs in a background thread. Stores cached for the area are filtered
+                    // locally and only an uncovered area is fetched from the server.
+                    () -> StoreRepository.getInstance().findFilteredStores(request,
+                            store -> runOnUiThread(() -> {
+                                if (generation == filterGeneration) {
+                                    showStreamedStore(store);
+                                }
+                            })),
+                    new NetworkTask.TaskCallback<Integer>() {
                         @Override
-                        public void onSuccess(ArrayList<Store> result) {
+                        public void onSuccess(Integer storeCount) {
                             // Update UI on main thread
                             progressBar.setVisibility(View.GONE);
                             btnFilter.setEnabled(true);
+                            watchShownStores();
+                            // Posted so the streamed rows have been laid out
+                            recyclerView.post(() -> visibleStores.dispatch(recyclerView));
 
-                            storeList.clear();
-                            if (result != null && !result.isEmpty()) {
-                                storeList.addAll(result);
-                                storeAdapter.notifyDataSetChanged();
-                                recyclerView.setVisibility(View.VISIBLE);
-                            } else {
+                            if (storeList.isEmpty()) {
                                 tvNoResults.setVisibility(View.VISIBLE);
                             }
                         }
@@ -185,10 +263,29 @@ public class FilterStoresActivity extends AppCompatActivity {
                                     "Error: " + error.getMessage(), Toast.LENGTH_LONG).show();
                         }
                     }
-            ).execute();
+            );
+            currentFilter = task;
+            task.bindTo(this).execute();
 
         } catch (NumberFormatException e) {
             Toast.makeText(this, "Please enter valid numeric values", Toast.LENGTH_SHORT).show();
         }
     }
+
+    /**
+     * Subscribes to live changes of the listed stores, so their rows update without polling
+     */
+    private void watchShownStores() {
+        StoreSync.getInstance(this).watch(changeListener, storeAdapter.getStoreNames());
+    }
+
+    /**
+     * Appends a store received from the stream and reveals the list on the first one
+     * @param store The store that has just been read
+     */
+    private void showStreamedStore(StoreSummary store) {
+        storeList.add(store);
+        storeAdapter.notifyItemInserted(storeList.size() - 1);
+        recyclerView.setVisibility(View.VISIBLE);
+    }
 }
\ No newline at end of file
@@ -8,6 +8,8 @@ import android.widget.Button;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.fooddelivery.R;
+import com.fooddelivery.cache.PurchasePipeline;
+import com.fooddelivery.cache.RatingQueue;
 
 /**
  * Main entry point of the application
@@ -46,4 +48,12 @@ public class MainActivity extends AppCompatActivity {
             }
         });
     }
-}
\ No newline at end of file
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // Sends orders and ratings left by a previous run or a lost connection
+        PurchasePipeline.getInstance(this).flush();
+        RatingQueue.getInstance(this).flush();
+    }
+}
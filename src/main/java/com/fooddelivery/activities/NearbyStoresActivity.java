@@ -16,12 +16,18 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.fooddelivery.R;
 import com.fooddelivery.adapters.StoreAdapter;
-import com.fooddelivery.models.Store;
+import com.fooddelivery.adapters.VisibleStoresListener;
+import com.fooddelivery.cache.CatalogPrefetcher;
+import com.fooddelivery.cache.StoreRepository;
+import com.fooddelivery.cache.StoreSync;
+import com.fooddelivery.models.MapReduceRequest;
+import com.fooddelivery.models.StoreSummary;
+import com.fooddelivery.network.Cancellable;
 import com.fooddelivery.network.NetworkTask;
-import com.fooddelivery.network.SocketClient;
 import com.fooddelivery.utils.Constants;
 
 import java.util.ArrayList;
+import java.util.Set;
 
 /**
  * Activity for finding and displaying nearby stores
@@ -36,7 +42,35 @@ public class NearbyStoresActivity extends AppCompatActivity {
     private TextView tvNoResults;
     private RecyclerView recyclerView;
     private StoreAdapter storeAdapter;
-    private ArrayList<Store> storeList = new ArrayList<>();
+    private ArrayList<StoreSummary> storeList = new ArrayList<>();
+    private MapReduceRequest lastRequest;  // Criteria of the results on screen, for change updates
+    private CatalogPrefetcher catalogPrefetcher;
+    private VisibleStoresListener visibleStores;
+    private Cancellable currentSearch;
+    private int searchGeneration;  // Incremented per search so stale stores are not shown
+
+    // Patches the rows of stores changed by a sync or a push instead of reloading the list
+    private final StoreSync.ChangeListener changeListener = new StoreSync.ChangeListener() {
+        @Override
+        public void onStoresChanged(Set<String> storeNames) {
+            runOnUiThread(() -> {
+                if (lastRequest != null) {
+                    storeAdapter.applyChanges(
+                            StoreRepository.getInstance().lookupChanged(storeNames, lastRequest));
+                    watchShownStores();
+                }
+            });
+        }
+
+        @Override
+        public void onReset() {
+            runOnUiThread(() -> {
+                if (lastRequest != null) {
+                    searchNearbyStores();
+                }
+            });
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -61,6 +95,11 @@ public class NearbyStoresActivity extends AppCompatActivity {
         });
         recyclerView.setAdapter(storeAdapter);
 
+        // Load the menus of the stores on screen, so opening one of them is served from the cache
+        catalogPrefetcher = new CatalogPrefetcher(this);
+        visibleStores = new VisibleStoresListener(storeAdapter, catalogPrefetcher::setVisibleStores);
+        recyclerView.addOnScrollListener(visibleStores);
+
         // Set click listener for search button
         btnSearch.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -75,6 +114,28 @@ public class NearbyStoresActivity extends AppCompatActivity {
         tvNoResults.setVisibility(View.GONE);
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        StoreSync.getInstance(this).addListener(changeListener);
+        watchShownStores();
+        visibleStores.dispatch(recyclerView);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // Pick up changes made while this screen was in the background
+        StoreSync.getInstance(this).requestSync();
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        StoreSync.getInstance(this).removeListener(changeListener);
+        catalogPrefetcher.cancelAll();
+    }
+
     /**
      * Searches for nearby stores based on latitude and longitude input
      */
@@ -90,6 +151,9 @@ public class NearbyStoresActivity extends AppCompatActivity {
             double longitude = Double.parseDouble(etLongitude.getText().toString());
 
             Log.d(TAG, "Searching for stores at lat: " + latitude + ", lng: " + longitude);
+            MapReduceRequest request = new MapReduceRequest(latitude, longitude, new ArrayList<>(), 0, "",
+                    Constants.NEARBY_RADIUS_KM);
+            lastRequest = request;
 
             // Show progress bar
             progressBar.setVisibility(View.VISIBLE);
@@ -97,53 +161,41 @@ public class NearbyStoresActivity extends AppCompatActivity {
             tvNoResults.setVisibility(View.GONE);
             recyclerView.setVisibility(View.GONE);
 
+            // A newer search, e.g. after a sync reset, replaces results that are still arriving
+            if (currentSearch != null) {
+                currentSearch.cancel();
+            }
+
+            final int generation = ++searchGeneration;
+
+            // Clear previous results before the new ones start streaming in
+            storeList.clear();
+            storeAdapter.notifyDataSetChanged();
+            catalogPrefetcher.reset();
+
             // Execute network task asynchronously
-            new NetworkTask<ArrayList<Store>>(
-                    () -> {
-                        // This runs in a background thread
-                        SocketClient socketClient = new SocketClient(Constants.SERVER_IP, Constants.SERVER_PORT);
-                        socketClient.connect();
-                        try {
-                            return socketClient.getNearbyStores(latitude, longitude);
-                        } finally {
-                            socketClient.disconnect();
-                        }
-                    },
-                    new NetworkTask.TaskCallback<ArrayList<Store>>() {
+            NetworkTask<Integer> task = new NetworkTask<>(
+                    // This runs in a background thread. Cached stores are shown immediately and
+                    // only the part of the area not fetched recently goes to the server.
+                    () -> StoreRepository.getInstance().findFilteredStores(request,
+                            store -> runOnUiThread(() -> {
+                                if (generation == searchGeneration) {
+                                    showStreamedStore(store);
+                                }
+                            })),
+                    new NetworkTask.TaskCallback<Integer>() {
                         @Override
-                        public void onSuccess(ArrayList<Store> result) {
+                        public void onSuccess(Integer storeCount) {
                             // Update UI on main thread
                             progressBar.setVisibility(View.GONE);
                             btnSearch.setEnabled(true);
+                            watchShownStores();
+                            // Posted so the streamed rows have been laid out
+                            recyclerView.post(() -> visibleStores.dispatch(recyclerView));
 
-                            // Εκτενής καταγραφή της ανταπόκρισης
-                            Log.d(TAG, "Response received. Stores: " +
-                                    (result != null ? result.size() : "null"));
-
-                            storeList.clear();
-
-                            if (result != null && !result.isEmpty()) {
-                                for (Store store : result) {
-                                    Log.d(TAG, "Store received: " + store.getStoreName() +
-                                            ", Category: " + store.getCategory());
-                                }
+                            Log.d(TAG, "Response received. Stores: " + storeList.size());
 
-                                storeList.addAll(result);
-
-                                // Επαναφορά του adapter αντί για απλή ενημέρωση
-                                storeAdapter = new StoreAdapter(storeList, store -> {
-                                    Intent intent = new Intent(NearbyStoresActivity.this, StoreDetailsActivity.class);
-                                    intent.putExtra(Constants.EXTRA_STORE, store);
-                                    startActivity(intent);
-                                });
-                                recyclerView.setAdapter(storeAdapter);
-
-                                Log.d(TAG, "Updated adapter with " + storeList.size() + " stores");
-
-                                // Εξασφαλίστε ότι το RecyclerView είναι ορατό
-                                tvNoResults.setVisibility(View.GONE);
-                                recyclerView.setVisibility(View.VISIBLE);
-                            } else {
+                            if (storeList.isEmpty()) {
                                 Log.d(TAG, "No stores found or empty result");
                                 recyclerView.setVisibility(View.GONE);
                                 tvNoResults.setVisibility(View.VISIBLE);
@@ -163,11 +215,31 @@ public class NearbyStoresActivity extends AppCompatActivity {
                                     "Error: " + error.getMessage(), Toast.LENGTH_LONG).show();
                         }
                     }
-            ).execute();
+            );
+            currentSearch = task;
+            task.bindTo(this).execute();
 
         } catch (NumberFormatException e) {
             Toast.makeText(this, "Please enter valid numeric values", Toast.LENGTH_SHORT).show();
             Log.e(TAG, "Invalid latitude/longitude format", e);
         }
     }
+
+    /**
+     * Subscribes to live changes of the listed stores, so their rows update without polling
+     */
+    private void watchShownStores() {
+        StoreSync.getInstance(this).watch(changeListener, storeAdapter.getStoreNames());
+    }
+
+    /**
+     * Appends a store received from the stream and reveals the list on the first one
+     * @param store The store that has just been read
+     */
+    private void showStreamedStore(StoreSummary store) {
+        storeList.add(store);
+        storeAdapter.notifyItemInserted(storeList.size() - 1);
+        tvNoResults.setVisibility(View.GONE);
+        recyclerView.setVisibility(View.VISIBLE);
+    }
 }
\ No newline at end of file
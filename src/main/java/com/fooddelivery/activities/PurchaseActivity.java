@@ -15,21 +15,26 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.fooddelivery.R;
 import com.fooddelivery.adapters.ProductSelectionAdapter;
+import com.fooddelivery.cache.ProductRepository;
+import com.fooddelivery.cache.PurchasePipeline;
+import com.fooddelivery.cache.StoreSync;
 import com.fooddelivery.models.Product;
 import com.fooddelivery.models.Purchase;
-import com.fooddelivery.models.Store;
+import com.fooddelivery.models.PurchaseOrder;
+import com.fooddelivery.models.StoreSummary;
 import com.fooddelivery.network.NetworkTask;
-import com.fooddelivery.network.SocketClient;
 import com.fooddelivery.utils.Constants;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
 
 /**
  * Activity for purchasing products from a store
  */
 public class PurchaseActivity extends AppCompatActivity {
 
-    private Store store;
+    private StoreSummary store;
     private TextView tvStoreName;
     private EditText etCustomerName;
     private EditText etCustomerEmail;
@@ -37,8 +42,46 @@ public class PurchaseActivity extends AppCompatActivity {
     private ProgressBar progressBar;
     private RecyclerView recyclerView;
     private ProductSelectionAdapter productAdapter;
-    private ArrayList<Product> productList = new ArrayList<>();
     private ArrayList<Product> selectedProducts = new ArrayList<>();
+    private String pendingOrderId;  // Order submitted from this screen whose outcome is awaited
+
+    // Shows the outcome of the order submitted from this screen
+    private final PurchasePipeline.OrderListener orderListener = new PurchasePipeline.OrderListener() {
+        @Override
+        public void onOrderCompleted(PurchaseOrder order, String outcome) {
+            runOnUiThread(() -> {
+                if (order.getOrderId().equals(pendingOrderId)) {
+                    pendingOrderId = null;
+                    showPurchaseResult(outcome);
+                }
+            });
+        }
+
+        @Override
+        public void onOrderDelayed(PurchaseOrder order, Exception error) {
+            runOnUiThread(() -> {
+                if (order.getOrderId().equals(pendingOrderId)) {
+                    pendingOrderId = null;
+                    showOrderDelayed("The server could not be reached (" + error.getMessage() + "). ");
+                }
+            });
+        }
+    };
+
+    // Keeps "Available" current while the user is choosing, so stock-outs show up before submitting
+    private final StoreSync.ChangeListener changeListener = new StoreSync.ChangeListener() {
+        @Override
+        public void onStoresChanged(Set<String> storeNames) {
+            if (storeNames.contains(store.getStoreName())) {
+                runOnUiThread(() -> refreshProducts());
+            }
+        }
+
+        @Override
+        public void onReset() {
+            runOnUiThread(() -> refreshProducts());
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -46,7 +89,7 @@ public class PurchaseActivity extends AppCompatActivity {
         setContentView(R.layout.activity_purchase);
 
         // Get store from intent
-        store = (Store) getIntent().getSerializableExtra(Constants.EXTRA_STORE);
+        store = (StoreSummary) getIntent().getSerializableExtra(Constants.EXTRA_STORE);
         if (store == null) {
             Toast.makeText(this, "Error: Store details not found", Toast.LENGTH_SHORT).show();
             finish();
@@ -66,7 +109,7 @@ public class PurchaseActivity extends AppCompatActivity {
 
         // Set up RecyclerView for product selection
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
-        productAdapter = new ProductSelectionAdapter(productList);
+        productAdapter = new ProductSelectionAdapter(new ArrayList<>());
         recyclerView.setAdapter(productAdapter);
 
         // Set click listener for purchase button
@@ -91,14 +134,8 @@ public class PurchaseActivity extends AppCompatActivity {
 
         new NetworkTask<ArrayList<Product>>(
                 () -> {
-                    // This runs in a background thread
-                    SocketClient socketClient = new SocketClient(Constants.SERVER_IP, Constants.SERVER_PORT);
-                    socketClient.connect();
-                    try {
-                        return socketClient.getStoreProducts(store.getStoreName());
-                    } finally {
-                        socketClient.disconnect();
-                    }
+                    // This runs in a background thread; a catalog fetched by the previous screen is reused
+                    return ProductRepository.getInstance(this).getStoreProducts(store.getStoreName());
                 },
                 new NetworkTask.TaskCallback<ArrayList<Product>>() {
                     @Override
@@ -107,10 +144,8 @@ public class PurchaseActivity extends AppCompatActivity {
                         progressBar.setVisibility(View.GONE);
                         btnPurchase.setEnabled(true);
 
-                        productList.clear();
                         if (result != null && !result.isEmpty()) {
-                            productList.addAll(result);
-                            productAdapter.notifyDataSetChanged();
+                            productAdapter.setProducts(result);
                             recyclerView.setVisibility(View.VISIBLE);
                         } else {
                             Toast.makeText(PurchaseActivity.this,
@@ -128,7 +163,57 @@ public class PurchaseActivity extends AppCompatActivity {
                         finish();
                     }
                 }
-        ).execute();
+        ).bindTo(this).execute();
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        StoreSync.getInstance(this).addListener(changeListener);
+        PurchasePipeline.getInstance(this).addListener(orderListener);
+        restorePendingOrder();
+        // The Master pushes stock changes of this store while it is on screen
+        StoreSync.getInstance(this).watch(changeListener, Collections.singleton(store.getStoreName()));
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // Pick up changes made while this screen was in the background
+        StoreSync.getInstance(this).requestSync();
+        // Orders queued while offline need not wait for their backoff
+        PurchasePipeline.getInstance(this).flush();
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        StoreSync.getInstance(this).removeListener(changeListener);
+        PurchasePipeline.getInstance(this).removeListener(orderListener);
+    }
+
+    /**
+     * Updates the rows whose stock or price changed, keeping the user's selection.
+     * The catalog normally comes patched from the cache; an expired one is revalidated.
+     * Either way the lookup runs in the background, since the cache may have to read disk.
+     */
+    private void refreshProducts() {
+        new NetworkTask<ArrayList<Product>>(
+                () -> ProductRepository.getInstance(this).getStoreProducts(store.getStoreName()),
+                new NetworkTask.TaskCallback<ArrayList<Product>>() {
+                    @Override
+                    public void onSuccess(ArrayList<Product> result) {
+                        if (result != null) {
+                            productAdapter.updateProducts(result);
+                        }
+                    }
+
+                    @Override
+                    public void onError(Exception error) {
+                        // The rows on screen stay as they are; a failed purchase still reports stock-outs
+                    }
+                }
+        ).bindTo(this).execute();
     }
 
     /**
@@ -192,42 +277,32 @@ public class PurchaseActivity extends AppCompatActivity {
     }
 
     /**
-     * Submits the purchase to the server
+     * Queues the purchase for submission; the outcome arrives through the order listener
      * @param purchase The purchase to submit
      */
     private void submitPurchase(final Purchase purchase) {
         progressBar.setVisibility(View.VISIBLE);
         btnPurchase.setEnabled(false);
 
-        new NetworkTask<String>(
+        // Created here so its key is known before the outcome can arrive
+        PurchaseOrder order = PurchaseOrder.create(store.getStoreName(), purchase);
+        pendingOrderId = order.getOrderId();
+
+        new NetworkTask<Void>(
                 () -> {
-                    // This runs in a background thread
-                    SocketClient socketClient = new SocketClient(Constants.SERVER_IP, Constants.SERVER_PORT);
-                    socketClient.connect();
-                    try {
-                        return socketClient.submitPurchase(purchase, store.getStoreName());
-                    } finally {
-                        socketClient.disconnect();
-                    }
+                    // This runs in a background thread; the order is on disk before it is sent
+                    PurchasePipeline.getInstance(this).submit(order);
+                    return null;
                 },
-                new NetworkTask.TaskCallback<String>() {
+                new NetworkTask.TaskCallback<Void>() {
                     @Override
-                    public void onSuccess(String result) {
-                        // Update UI on main thread
-                        progressBar.setVisibility(View.GONE);
-
-                        // Show result
-                        new AlertDialog.Builder(PurchaseActivity.this)
-                                .setTitle("Purchase Result")
-                                .setMessage(result)
-                                .setPositiveButton("OK", (dialog, which) -> finish())
-                                .setCancelable(false)
-                                .show();
+                    public void onSuccess(Void result) {
                     }
 
                     @Override
                     public void onError(Exception error) {
-                        // Handle error on main thread
+                        // Handle error on main thread; the order was not stored, so it was not sent
+                        pendingOrderId = null;
                         progressBar.setVisibility(View.GONE);
                         btnPurchase.setEnabled(true);
                         Toast.makeText(PurchaseActivity.this,
@@ -236,4 +311,46 @@ public class PurchaseActivity extends AppCompatActivity {
                 }
         ).execute();
     }
+
+    /**
+     * Shows the outcome of the submitted order if it arrived while the listener was removed,
+     * so the screen does not keep waiting for a callback that already happened
+     */
+    private void restorePendingOrder() {
+        if (pendingOrderId == null) {
+            return;
+        }
+        PurchasePipeline pipeline = PurchasePipeline.getInstance(this);
+        String outcome = pipeline.getOutcome(pendingOrderId);
+        if (outcome != null) {
+            pendingOrderId = null;
+            showPurchaseResult(outcome);
+        } else if (pipeline.isDelayed(pendingOrderId)) {
+            pendingOrderId = null;
+            showOrderDelayed("The server could not be reached. ");
+        }
+    }
+
+    /**
+     * Tells the user that the submitted order is queued for resending and closes the screen
+     * @param reason Why the order was not answered yet
+     */
+    private void showOrderDelayed(String reason) {
+        showPurchaseResult(reason + "Your order has been saved and will be sent automatically; "
+                + "if the server recognises resent orders, it will not be charged twice.");
+    }
+
+    /**
+     * Shows the outcome of the submitted order and closes the screen
+     * @param message The Master's response, or why the order is still queued
+     */
+    private void showPurchaseResult(String message) {
+        progressBar.setVisibility(View.GONE);
+        new AlertDialog.Builder(PurchaseActivity.this)
+                .setTitle("Purchase Result")
+                .setMessage(message)
+                .setPositiveButton("OK", (dialog, which) -> finish())
+                .setCancelable(false)
+                .show();
+    }
 }
\ No newline at end of file
@@ -13,8 +13,9 @@ import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.fooddelivery.R;
+import com.fooddelivery.cache.RatingQueue;
+import com.fooddelivery.models.StoreRating;
 import com.fooddelivery.network.NetworkTask;
-import com.fooddelivery.network.SocketClient;
 import com.fooddelivery.utils.Constants;
 
 /**
@@ -91,7 +92,7 @@ public class RateStoreActivity extends AppCompatActivity {
     }
 
     /**
-     * Sends the rating to the server
+     * Queues the rating; it is sent in the background and kept until the server has it
      * @param storeName Name of the store to rate
      * @param rating Rating value (1-5)
      */
@@ -99,27 +100,20 @@ public class RateStoreActivity extends AppCompatActivity {
         progressBar.setVisibility(View.VISIBLE);
         btnSubmit.setEnabled(false);
 
-        new NetworkTask<String>(
-                () -> {
-                    // This runs in a background thread
-                    SocketClient socketClient = new SocketClient(Constants.SERVER_IP, Constants.SERVER_PORT);
-                    socketClient.connect();
-                    try {
-                        return socketClient.rateStore(storeName, rating);
-                    } finally {
-                        socketClient.disconnect();
-                    }
-                },
-                new NetworkTask.TaskCallback<String>() {
+        new NetworkTask<StoreRating>(
+                // Only written to disk here; a rating of the same store still waiting is replaced
+                () -> RatingQueue.getInstance(this).rate(storeName, rating),
+                new NetworkTask.TaskCallback<StoreRating>() {
                     @Override
-                    public void onSuccess(String result) {
+                    public void onSuccess(StoreRating result) {
                         // Update UI on main thread
                         progressBar.setVisibility(View.GONE);
 
                         // Show result and finish
                         new AlertDialog.Builder(RateStoreActivity.this)
                                 .setTitle("Rating Submitted")
-                                .setMessage(result)
+                                .setMessage("Thank you! Your rating of " + result.getRating() + " stars for \""
+                                        + storeName + "\" will be sent, even if you are offline right now.")
                                 .setPositiveButton("OK", (dialog, which) -> finish())
                                 .setCancelable(false)
                                 .show();
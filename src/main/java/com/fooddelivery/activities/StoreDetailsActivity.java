@@ -14,20 +14,24 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.fooddelivery.R;
 import com.fooddelivery.adapters.ProductAdapter;
+import com.fooddelivery.cache.ProductRepository;
+import com.fooddelivery.cache.StoreRepository;
+import com.fooddelivery.cache.StoreSync;
 import com.fooddelivery.models.Product;
-import com.fooddelivery.models.Store;
+import com.fooddelivery.models.StoreSummary;
 import com.fooddelivery.network.NetworkTask;
-import com.fooddelivery.network.SocketClient;
 import com.fooddelivery.utils.Constants;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
 
 /**
  * Activity for displaying store details and products
  */
 public class StoreDetailsActivity extends AppCompatActivity {
 
-    private Store store;
+    private StoreSummary store;
     private TextView tvStoreName;
     private TextView tvCategory;
     private TextView tvStars;
@@ -39,13 +43,28 @@ public class StoreDetailsActivity extends AppCompatActivity {
     private ProductAdapter productAdapter;
     private final ArrayList<Product> productList = new ArrayList<>();
 
+    // Refreshes this screen when a sync or a push reports a change to its store
+    private final StoreSync.ChangeListener changeListener = new StoreSync.ChangeListener() {
+        @Override
+        public void onStoresChanged(Set<String> storeNames) {
+            if (storeNames.contains(store.getStoreName())) {
+                runOnUiThread(() -> refreshStore());
+            }
+        }
+
+        @Override
+        public void onReset() {
+            runOnUiThread(() -> refreshStore());
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_store_details);
 
         // Get store from intent
-        store = (Store) getIntent().getSerializableExtra(Constants.EXTRA_STORE);
+        store = (StoreSummary) getIntent().getSerializableExtra(Constants.EXTRA_STORE);
         if (store == null) {
             Toast.makeText(this, "Error: Store details not found", Toast.LENGTH_SHORT).show();
             finish();
@@ -63,10 +82,7 @@ public class StoreDetailsActivity extends AppCompatActivity {
         recyclerView = findViewById(R.id.recycler_view);
 
         // Set store information
-        tvStoreName.setText(store.getStoreName());
-        tvCategory.setText(store.getCategory());
-        tvStars.setText(String.format("%.1f ★ (%d reviews)", store.getStars(), store.getNoOfReviews()));
-        tvPriceCategory.setText(store.calculatePriceCategory());
+        showStoreInfo();
 
         // Set up RecyclerView for products
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
@@ -101,6 +117,50 @@ public class StoreDetailsActivity extends AppCompatActivity {
         fetchStoreProducts();
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        StoreSync.getInstance(this).addListener(changeListener);
+        // Stock and rating changes of this store are pushed while it is on screen
+        StoreSync.getInstance(this).watch(changeListener, Collections.singleton(store.getStoreName()));
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // Pick up changes made while this screen was in the background
+        StoreSync.getInstance(this).requestSync();
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        StoreSync.getInstance(this).removeListener(changeListener);
+    }
+
+    /**
+     * Shows the header fields of the store
+     */
+    private void showStoreInfo() {
+        tvStoreName.setText(store.getStoreName());
+        tvCategory.setText(store.getCategory());
+        tvStars.setText(String.format("%.1f ★ (%d reviews)", store.getStars(), store.getNoOfReviews()));
+        tvPriceCategory.setText(store.getPriceCategory());
+    }
+
+    /**
+     * Re-reads the store and its catalog after a change. Both normally come from the patched
+     * caches, so only an expired catalog costs a round trip.
+     */
+    private void refreshStore() {
+        StoreSummary cached = StoreRepository.getInstance().getCached(store.getStoreName());
+        if (cached != null) {
+            store = cached;
+            showStoreInfo();
+        }
+        fetchStoreProducts();
+    }
+
     /**
      * Fetches products for the selected store
      */
@@ -110,14 +170,8 @@ public class StoreDetailsActivity extends AppCompatActivity {
 
         new NetworkTask<ArrayList<Product>>(
                 () -> {
-                    // This runs in a background thread
-                    SocketClient socketClient = new SocketClient(Constants.SERVER_IP, Constants.SERVER_PORT);
-                    socketClient.connect();
-                    try {
-                        return socketClient.getStoreProducts(store.getStoreName());
-                    } finally {
-                        socketClient.disconnect();
-                    }
+                    // This runs in a background thread; a catalog fetched by the previous screen is reused
+                    return ProductRepository.getInstance(this).getStoreProducts(store.getStoreName());
                 },
                 new NetworkTask.TaskCallback<ArrayList<Product>>() {
                     @Override
@@ -144,6 +198,6 @@ public class StoreDetailsActivity extends AppCompatActivity {
                                 "Error: " + error.getMessage(), Toast.LENGTH_LONG).show();
                     }
                 }
-        ).execute();
+        ).bindTo(this).execute();
     }
 }
\ No newline at end of file
@@ -15,7 +15,10 @@ import com.fooddelivery.R;
 import com.fooddelivery.models.Product;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * Adapter for selecting products to purchase
@@ -30,13 +33,80 @@ public class ProductSelectionAdapter extends RecyclerView.Adapter<ProductSelecti
      * @param productList List of available products
      */
     public ProductSelectionAdapter(List<Product> productList) {
-        this.productList = productList;
+        this.productList = new ArrayList<>(productList.size());
         this.quantities = new ArrayList<>(productList.size());
 
-        // Initialize quantities to 0
-        for (int i = 0; i < productList.size(); i++) {
+        // Rows are copies, so changes to the cached products can be detected by comparison
+        for (Product product : productList) {
+            this.productList.add(copyOf(product));
+            quantities.add(0);
+        }
+    }
+
+    /**
+     * Replaces all rows and clears the selection
+     * @param products List of available products
+     */
+    public void setProducts(List<Product> products) {
+        productList.clear();
+        quantities.clear();
+        for (Product product : products) {
+            productList.add(copyOf(product));
+            quantities.add(0);
+        }
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Brings the rows in line with a newer catalog, rebinding only the rows whose stock,
+     * price or status changed. Selected quantities are kept but capped at the new stock.
+     * @param products The latest list of available products
+     * @return Number of rows that changed, appeared or disappeared
+     */
+    public int updateProducts(List<Product> products) {
+        Map<String, Product> latest = new LinkedHashMap<>();
+        for (Product product : products) {
+            latest.put(product.getName(), product);
+        }
+
+        int updated = 0;
+        for (int i = productList.size() - 1; i >= 0; i--) {
+            Product row = productList.get(i);
+            Product current = latest.remove(row.getName());
+            if (current == null) {
+                productList.remove(i);
+                quantities.remove(i);
+                notifyItemRemoved(i);
+                updated++;
+            } else if (row.getQuantity() != current.getQuantity() || row.getPrice() != current.getPrice()
+                    || !Objects.equals(row.getStatus(), current.getStatus())) {
+                row.setQuantity(current.getQuantity());
+                row.setPrice(current.getPrice());
+                row.setStatus(current.getStatus());
+                quantities.set(i, Math.min(quantities.get(i), current.getQuantity()));
+                notifyItemChanged(i);
+                updated++;
+            }
+        }
+
+        // Whatever is left is new to the catalog
+        int start = productList.size();
+        for (Product added : latest.values()) {
+            productList.add(copyOf(added));
             quantities.add(0);
         }
+        if (productList.size() > start) {
+            notifyItemRangeInserted(start, productList.size() - start);
+            updated += productList.size() - start;
+        }
+        return updated;
+    }
+
+    private static Product copyOf(Product product) {
+        Product copy = new Product(product.getName(), product.getCategory(), product.getQuantity(),
+                product.getPrice());
+        copy.setStatus(product.getStatus());
+        return copy;
     }
 
     @NonNull
@@ -140,10 +210,10 @@ public class ProductSelectionAdapter extends RecyclerView.Adapter<ProductSelecti
                             etQuantity.setSelection(etQuantity.getText().length());
                         }
 
-                        quantities.set(position, newQuantity);
+                        setSelectedQuantity(newQuantity);
                     } catch (NumberFormatException e) {
                         etQuantity.setText("0");
-                        quantities.set(position, 0);
+                        setSelectedQuantity(0);
                     }
                 }
             };
@@ -151,5 +221,16 @@ public class ProductSelectionAdapter extends RecyclerView.Adapter<ProductSelecti
         }
 
         private TextWatcher textWatcher;
+
+        /**
+         * Records the quantity for the row this holder currently shows; rows can move
+         * when pushed catalog changes remove products
+         */
+        private void setSelectedQuantity(int quantity) {
+            int current = getAdapterPosition();
+            if (current != RecyclerView.NO_POSITION) {
+                quantities.set(current, quantity);
+            }
+        }
     }
 }
\ No newline at end of file
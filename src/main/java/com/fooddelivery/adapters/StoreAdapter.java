@@ -10,35 +10,91 @@ import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.fooddelivery.R;
-import com.fooddelivery.models.Store;
+import com.fooddelivery.models.StoreSummary;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Adapter for displaying Store items in a RecyclerView
+ * Adapter for displaying store summaries in a RecyclerView
  */
 public class StoreAdapter extends RecyclerView.Adapter<StoreAdapter.StoreViewHolder> {
 
-    private final List<Store> storeList;
+    private final List<StoreSummary> storeList;
     private final OnStoreClickListener listener;
 
     /**
      * Interface for store item click events
      */
     public interface OnStoreClickListener {
-        void onStoreClick(Store store);
+        void onStoreClick(StoreSummary store);
     }
 
     /**
      * Creates a new StoreAdapter
-     * @param storeList List of stores to display
+     * @param storeList List of store summaries to display
      * @param listener Click listener for store items
      */
-    public StoreAdapter(List<Store> storeList, OnStoreClickListener listener) {
+    public StoreAdapter(List<StoreSummary> storeList, OnStoreClickListener listener) {
         this.storeList = storeList;
         this.listener = listener;
     }
 
+    /**
+     * Updates the rows of changed stores, notifying only the affected positions
+     * @param changes Current summary of each changed store, or null if it should no longer be listed
+     */
+    public void applyChanges(Map<String, StoreSummary> changes) {
+        Map<String, StoreSummary> pending = new HashMap<>(changes);
+        for (int i = storeList.size() - 1; i >= 0; i--) {
+            String name = storeList.get(i).getStoreName();
+            if (!pending.containsKey(name)) {
+                continue;
+            }
+            StoreSummary current = pending.remove(name);
+            if (current == null) {
+                storeList.remove(i);
+                notifyItemRemoved(i);
+            } else {
+                storeList.set(i, current);
+                notifyItemChanged(i);
+            }
+        }
+        // Whatever is left was not listed yet
+        for (StoreSummary added : pending.values()) {
+            if (added != null) {
+                storeList.add(added);
+                notifyItemInserted(storeList.size() - 1);
+            }
+        }
+    }
+
+    /**
+     * @return Names of the listed stores, in list order
+     */
+    public List<String> getStoreNames() {
+        List<String> names = new ArrayList<>(storeList.size());
+        for (StoreSummary store : storeList) {
+            names.add(store.getStoreName());
+        }
+        return names;
+    }
+
+    /**
+     * @param first Position of the first row, inclusive
+     * @param last Position of the last row, inclusive
+     * @return Names of the stores listed in the range, in list order
+     */
+    public List<String> getStoreNames(int first, int last) {
+        List<String> names = new ArrayList<>();
+        for (int i = Math.max(first, 0); i <= last && i < storeList.size(); i++) {
+            names.add(storeList.get(i).getStoreName());
+        }
+        return names;
+    }
+
     @NonNull
     @Override
     public StoreViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -48,7 +104,7 @@ public class StoreAdapter extends RecyclerView.Adapter<StoreAdapter.StoreViewHol
 
     @Override
     public void onBindViewHolder(@NonNull StoreViewHolder holder, int position) {
-        Store store = storeList.get(position);
+        StoreSummary store = storeList.get(position);
         holder.bind(store, listener);
     }
 
@@ -80,11 +136,11 @@ public class StoreAdapter extends RecyclerView.Adapter<StoreAdapter.StoreViewHol
          * @param listener Click listener for the store item
          */
         @SuppressLint("DefaultLocale")
-        public void bind(final Store store, final OnStoreClickListener listener) {
+        public void bind(final StoreSummary store, final OnStoreClickListener listener) {
             tvStoreName.setText(store.getStoreName());
             tvCategory.setText(store.getCategory());
             tvStars.setText(String.format("%.1f ★ (%d reviews)", store.getStars(), store.getNoOfReviews()));
-            tvPriceCategory.setText(store.calculatePriceCategory());
+            tvPriceCategory.setText(store.getPriceCategory());
 
             // Set click listener for the entire view
             itemView.setOnClickListener(v -> listener.onStoreClick(store));
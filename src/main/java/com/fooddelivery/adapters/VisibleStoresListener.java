@@ -0,0 +1,78 @@
+package com.fooddelivery.adapters;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.List;
+
+/**
+ * Reports which stores of a StoreAdapter are on screen as a list scrolls
+ */
+public class VisibleStoresListener extends RecyclerView.OnScrollListener {
+
+    /**
+     * Receives the visible stores on the main thread
+     */
+    public interface Callback {
+        /**
+         * @param storeNames Names of the visible stores, in list order
+         * @param settled true once scrolling has stopped
+         */
+        void onVisibleStoresChanged(List<String> storeNames, boolean settled);
+    }
+
+    private final StoreAdapter adapter;
+    private final Callback callback;
+    private int first = RecyclerView.NO_POSITION;
+    private int last = RecyclerView.NO_POSITION;
+
+    /**
+     * Creates a new VisibleStoresListener
+     * @param adapter Adapter of the list, which must use a LinearLayoutManager
+     * @param callback Receives the visible stores
+     */
+    public VisibleStoresListener(StoreAdapter adapter, Callback callback) {
+        this.adapter = adapter;
+        this.callback = callback;
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        // Only range changes are reported while moving, so work for rows scrolled away can be dropped early
+        report(recyclerView, false, recyclerView.getScrollState() == RecyclerView.SCROLL_STATE_IDLE);
+    }
+
+    @Override
+    public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+        if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+            report(recyclerView, true, true);
+        }
+    }
+
+    /**
+     * Reports the current range, e.g. after new results have been laid out
+     * @param recyclerView The list
+     */
+    public void dispatch(RecyclerView recyclerView) {
+        report(recyclerView, true, recyclerView.getScrollState() == RecyclerView.SCROLL_STATE_IDLE);
+    }
+
+    private void report(RecyclerView recyclerView, boolean always, boolean settled) {
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        if (layoutManager == null) {
+            return;
+        }
+        int newFirst = layoutManager.findFirstVisibleItemPosition();
+        int newLast = layoutManager.findLastVisibleItemPosition();
+        if (!always && newFirst == first && newLast == last) {
+            return;
+        }
+        first = newFirst;
+        last = newLast;
+        if (first == RecyclerView.NO_POSITION) {
+            return;
+        }
+        callback.onVisibleStoresChanged(adapter.getStoreNames(first, last), settled);
+    }
+}
@@ -0,0 +1,172 @@
+package com.fooddelivery.cache;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.fooddelivery.network.BinaryCodec;
+import com.fooddelivery.network.Cancellable;
+import com.fooddelivery.network.NetworkExecutor;
+import com.fooddelivery.network.NetworkTask;
+import com.fooddelivery.utils.Constants;
+import com.fooddelivery.utils.DeviceState;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Speculatively loads the catalogs of the stores a list is showing, so opening one of them
+ * is served from the cache. Only the stores on screen are fetched, in small batches at
+ * PREFETCH priority, with a limit on batches in flight and on bytes per result list.
+ * Batches whose stores have all been scrolled away are cancelled, and nothing is started
+ * in battery saver mode or on a low battery.
+ * One instance per screen; every method must be called on the main thread.
+ */
+public class CatalogPrefetcher {
+    private static final String TAG = "CatalogPrefetcher";
+
+    private final Context context;
+    private final List<Batch> inFlight = new ArrayList<>();
+    // Stores fetched, being fetched or failed for the current results; none of them is sent again
+    private final Set<String> attempted = new HashSet<>();
+    private List<String> visible = new ArrayList<>();
+    private long bytesUsed;
+
+    /**
+     * A batched fetch in flight
+     */
+    private static class Batch {
+        final List<String> storeNames;
+        Cancellable task;
+
+        Batch(List<String> storeNames) {
+            this.storeNames = storeNames;
+        }
+    }
+
+    /**
+     * Creates a new CatalogPrefetcher
+     * @param context The screen showing the stores
+     */
+    public CatalogPrefetcher(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Updates the stores on screen. Batches none of whose stores are visible any more are
+     * cancelled; once scrolling has settled, new batches are started for visible stores.
+     * @param storeNames Names of the visible stores, in display order
+     * @param settled false while the list is still moving, so nothing new is started
+     */
+    public void setVisibleStores(List<String> storeNames, boolean settled) {
+        visible = new ArrayList<>(storeNames);
+        cancelOffScreen();
+        if (settled) {
+            startBatches();
+        }
+    }
+
+    /**
+     * Starts over for a new result list: cancels everything and resets the byte budget
+     */
+    public void reset() {
+        cancelAll();
+        attempted.clear();
+        visible = new ArrayList<>();
+        bytesUsed = 0;
+    }
+
+    /**
+     * Cancels every batch in flight, e.g. when the screen stops. Their stores may be
+     * fetched again later.
+     */
+    public void cancelAll() {
+        for (Batch batch : inFlight) {
+            batch.task.cancel();
+            attempted.removeAll(batch.storeNames);
+        }
+        inFlight.clear();
+    }
+
+    /**
+     * @return Encoded size of the catalogs prefetched for the current results
+     */
+    public long getBytesUsed() {
+        return bytesUsed;
+    }
+
+    private void cancelOffScreen() {
+        Set<String> shown = new HashSet<>(visible);
+        Iterator<Batch> it = inFlight.iterator();
+        while (it.hasNext()) {
+            Batch batch = it.next();
+            boolean stillShown = false;
+            for (String name : batch.storeNames) {
+                if (shown.contains(name)) {
+                    stillShown = true;
+                    break;
+                }
+            }
+            if (!stillShown) {
+                Log.d(TAG, "Cancelling prefetch of " + batch.storeNames.size() + " stores scrolled away");
+                batch.task.cancel();
+                attempted.removeAll(batch.storeNames);
+                it.remove();
+            }
+        }
+    }
+
+    private void startBatches() {
+        if (inFlight.size() >= Constants.PREFETCH_MAX_CONCURRENT || bytesUsed >= Constants.PREFETCH_BYTE_BUDGET) {
+            return;
+        }
+        List<String> candidates = new ArrayList<>();
+        for (String name : visible) {
+            if (candidates.size() == Constants.PREFETCH_MAX_STORES) {
+                break;
+            }
+            if (!attempted.contains(name)) {
+                candidates.add(name);
+            }
+        }
+        if (candidates.isEmpty() || !DeviceState.isPrefetchAllowed(context)) {
+            return;
+        }
+        // The budget is checked before each batch, so the last one may exceed it by its own size
+        for (int start = 0; start < candidates.size(); start += Constants.PREFETCH_BATCH_SIZE) {
+            if (inFlight.size() >= Constants.PREFETCH_MAX_CONCURRENT) {
+                break;
+            }
+            int end = Math.min(start + Constants.PREFETCH_BATCH_SIZE, candidates.size());
+            start(new ArrayList<>(candidates.subList(start, end)));
+        }
+    }
+
+    private void start(List<String> storeNames) {
+        Batch batch = new Batch(storeNames);
+        attempted.addAll(storeNames);
+        inFlight.add(batch);
+        batch.task = new NetworkTask<Integer>(
+                // Stores with a fresh cached catalog are skipped by the repository
+                () -> BinaryCodec.encodedSize(ProductRepository.getInstance(context).prefetch(storeNames)),
+                new NetworkTask.TaskCallback<Integer>() {
+                    @Override
+                    public void onSuccess(Integer bytes) {
+                        inFlight.remove(batch);
+                        bytesUsed += bytes;
+                        startBatches();
+                    }
+
+                    @Override
+                    public void onError(Exception error) {
+                        // Only an optimization; the details screen fetches the catalog itself
+                        Log.w(TAG, "Catalog prefetch failed: " + error.getMessage());
+                        inFlight.remove(batch);
+                    }
+                },
+                NetworkExecutor.Priority.PREFETCH
+        ).execute();
+    }
+}
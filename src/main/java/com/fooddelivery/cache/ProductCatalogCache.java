@@ -0,0 +1,320 @@
+package com.fooddelivery.cache;
+
+import com.fooddelivery.models.Product;
+import com.fooddelivery.models.StoreChange;
+import com.fooddelivery.network.BinaryCodec;
+import com.fooddelivery.utils.Constants;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Two-tier cache of store product catalogs keyed by store name.
+ * Recently used catalogs are kept in an in-memory LRU map and every catalog is also
+ * written to a directory on disk, so it survives the process. Each entry expires after its TTL,
+ * but is kept with its ETag so it can be revalidated instead of downloaded again; the disk
+ * tier is capped at a number of files and drops the least recently used beyond it.
+ * Callers always receive their own copies of the products, so the cached ones are only ever
+ * changed under the cache's lock.
+ */
+public class ProductCatalogCache {
+
+    private static final String FILE_SUFFIX = ".catalog";
+
+    private final int maxMemoryEntries;
+    private final int maxDiskEntries;
+    private final long defaultTtlMs;
+    private final File directory;
+    private final Map<String, CachedCatalog> memory;
+
+    /**
+     * Cached catalog, its ETag and the time after which it must be revalidated
+     */
+    private static class CachedCatalog {
+        final ArrayList<Product> products;
+        final String etag;
+        final long expiresAt;
+
+        CachedCatalog(ArrayList<Product> products, String etag, long expiresAt) {
+            this.products = products;
+            this.etag = etag;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+
+    /**
+     * Creates a new ProductCatalogCache that keeps Constants.CATALOG_CACHE_DISK_ENTRIES files on disk
+     * @param maxMemoryEntries Number of catalogs kept in memory
+     * @param defaultTtlMs How long a catalog is served before it must be fetched again
+     * @param directory Directory for the disk tier, or null to keep catalogs in memory only
+     */
+    public ProductCatalogCache(int maxMemoryEntries, long defaultTtlMs, File directory) {
+        this(maxMemoryEntries, Constants.CATALOG_CACHE_DISK_ENTRIES, defaultTtlMs, directory);
+    }
+
+    /**
+     * Creates a new ProductCatalogCache
+     * @param maxMemoryEntries Number of catalogs kept in memory
+     * @param maxDiskEntries Number of catalog files kept on disk
+     * @param defaultTtlMs How long a catalog is served before it must be fetched again
+     * @param directory Directory for the disk tier, or null to keep catalogs in memory only
+     */
+    public ProductCatalogCache(int maxMemoryEntries, int maxDiskEntries, long defaultTtlMs, File directory) {
+        this.maxMemoryEntries = maxMemoryEntries;
+        this.maxDiskEntries = maxDiskEntries;
+        this.defaultTtlMs = defaultTtlMs;
+        this.directory = directory;
+        // get() moves a catalog to the end, so the catalog dropped first is the one unread the longest
+        this.memory = new LinkedHashMap<String, CachedCatalog>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedCatalog> eldest) {
+                return size() > ProductCatalogCache.this.maxMemoryEntries;
+            }
+        };
+        if (directory != null) {
+            directory.mkdirs();
+            // Files left by earlier runs count against the cap too
+            trimDisk();
+        }
+    }
+
+    /**
+     * Gets a cached catalog, promoting a disk hit to memory
+     * @param storeName Name of the store
+     * @return A copy of the catalog, or null if it is not cached or has expired
+     */
+    public synchronized ArrayList<Product> get(String storeName) {
+        CachedCatalog entry = lookup(storeName);
+        if (entry == null || entry.isExpired()) {
+            return null;
+        }
+        return copyOf(entry.products);
+    }
+
+    /**
+     * Gets the ETag of a cached catalog, including an expired one
+     * @param storeName Name of the store
+     * @return The ETag, or null if the store's catalog is not cached
+     */
+    public synchronized String getEtag(String storeName) {
+        CachedCatalog entry = lookup(storeName);
+        return entry != null ? entry.etag : null;
+    }
+
+    /**
+     * Serves a cached catalog for another TTL after the Master confirmed it is not modified
+     * @param storeName Name of the store
+     * @return A copy of the catalog, or null if it was invalidated in the meantime
+     */
+    public synchronized ArrayList<Product> renew(String storeName) {
+        CachedCatalog entry = lookup(storeName);
+        if (entry == null) {
+            return null;
+        }
+        put(storeName, entry.products, entry.etag, defaultTtlMs);
+        return copyOf(entry.products);
+    }
+
+    /**
+     * Caches a catalog with the default TTL
+     * @param storeName Name of the store
+     * @param products The catalog
+     * @param etag The catalog's ETag, or null if the Master did not send one
+     */
+    public void put(String storeName, List<Product> products, String etag) {
+        put(storeName, products, etag, defaultTtlMs);
+    }
+
+    /**
+     * Caches a catalog
+     * @param storeName Name of the store
+     * @param products The catalog
+     * @param etag The catalog's ETag, or null if the Master did not send one
+     * @param ttlMs How long this catalog is served before it must be revalidated
+     */
+    public synchronized void put(String storeName, List<Product> products, String etag, long ttlMs) {
+        CachedCatalog entry = new CachedCatalog(copyOf(products), etag, System.currentTimeMillis() + ttlMs);
+        memory.put(storeName, entry);
+        writeToDisk(storeName, entry);
+    }
+
+    /**
+     * Drops a catalog from both tiers, e.g. after a purchase changed its stock
+     * @param storeName Name of the store
+     */
+    public synchronized void invalidate(String storeName) {
+        memory.remove(storeName);
+        if (directory != null) {
+            fileFor(storeName).delete();
+        }
+    }
+
+    /**
+     * Applies a change from the Master's change log to a cached catalog.
+     * Screens hold copies, so they see the change the next time they read the catalog.
+     * @param change The change
+     * @return true if a cached catalog was affected
+     */
+    public synchronized boolean apply(StoreChange change) {
+        if (change.getType() == StoreChange.Type.STORE_REMOVED) {
+            boolean cached = lookup(change.getStoreName()) != null;
+            invalidate(change.getStoreName());
+            return cached;
+        }
+        if (!change.isProductChange()) {
+            return false;
+        }
+        CachedCatalog entry = lookup(change.getStoreName());
+        if (entry == null || !change.applyTo(entry.products)) {
+            return false;
+        }
+        // The patched catalog is current but no longer matches the ETag it was fetched with
+        CachedCatalog patched = new CachedCatalog(entry.products, null, entry.expiresAt);
+        memory.put(change.getStoreName(), patched);
+        writeToDisk(change.getStoreName(), patched);
+        return true;
+    }
+
+    /**
+     * Drops every cached catalog
+     */
+    public synchronized void clear() {
+        memory.clear();
+        if (directory != null) {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Number of catalogs held in memory
+     */
+    public synchronized int getMemorySize() {
+        return memory.size();
+    }
+
+    /**
+     * Finds an entry in memory or on disk, promoting a disk hit to memory
+     */
+    private CachedCatalog lookup(String storeName) {
+        CachedCatalog entry = memory.get(storeName);
+        if (entry == null) {
+            entry = readFromDisk(storeName);
+            if (entry != null) {
+                memory.put(storeName, entry);
+            }
+        }
+        return entry;
+    }
+
+    private File fileFor(String storeName) {
+        // Hashed so any store name gives a valid file name; the name inside the file resolves collisions
+        return new File(directory, Integer.toHexString(storeName.hashCode()) + FILE_SUFFIX);
+    }
+
+    /**
+     * Copies a catalog down to its products, so the copy can be changed without affecting the original
+     */
+    static ArrayList<Product> copyOf(List<Product> products) {
+        ArrayList<Product> copy = new ArrayList<>(products.size());
+        for (Product product : products) {
+            copy.add(product.copy());
+        }
+        return copy;
+    }
+
+    /**
+     * Deletes the least recently used catalog files beyond the disk cap. A file's modification
+     * time is its last use: it is set when the file is written and when it is read back.
+     * Catalogs held in memory are in use, so their files are kept.
+     */
+    private void trimDisk() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_SUFFIX));
+        if (files == null || files.length <= maxDiskEntries) {
+            return;
+        }
+        Set<String> inMemory = new HashSet<>();
+        for (String storeName : memory.keySet()) {
+            inMemory.add(fileFor(storeName).getName());
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        int excess = files.length - maxDiskEntries;
+        for (int i = 0; i < files.length && excess > 0; i++) {
+            if (!inMemory.contains(files[i].getName()) && files[i].delete()) {
+                excess--;
+            }
+        }
+    }
+
+    /**
+     * File layout: store name, expiry time, ETag, then the product list, all in the binary codec format
+     */
+    private void writeToDisk(String storeName, CachedCatalog entry) {
+        if (directory == null) {
+            return;
+        }
+        File target = fileFor(storeName);
+        File temp = new File(directory, target.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            BinaryCodec.writeValue(out, storeName);
+            out.writeLong(entry.expiresAt);
+            BinaryCodec.writeValue(out, entry.etag);
+            BinaryCodec.writeValue(out, entry.products);
+        } catch (IOException e) {
+            // The disk tier is best effort; the memory tier still has the catalog
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            return;
+        }
+        trimDisk();
+    }
+
+    @SuppressWarnings("unchecked")
+    private CachedCatalog readFromDisk(String storeName) {
+        if (directory == null) {
+            return null;
+        }
+        File file = fileFor(storeName);
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = BinaryCodec.openFile(file)) {
+            if (!storeName.equals(BinaryCodec.readValue(in))) {
+                return null;
+            }
+            long expiresAt = in.readLong();
+            String etag = (String) BinaryCodec.readValue(in);
+            CachedCatalog entry = new CachedCatalog((ArrayList<Product>) BinaryCodec.readValue(in), etag, expiresAt);
+            // Marks the file as recently used for trimDisk()
+            file.setLastModified(System.currentTimeMillis());
+            return entry;
+        } catch (IOException | ClassCastException e) {
+            // Corrupt or from an older format, treat as a miss
+            file.delete();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.fooddelivery.cache;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.fooddelivery.models.ConditionalResponse;
+import com.fooddelivery.models.Product;
+import com.fooddelivery.models.ProductBatch;
+import com.fooddelivery.network.ConnectionManager;
+import com.fooddelivery.utils.Constants;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * App-wide read-through access to store product catalogs.
+ * Catalogs come from a ProductCatalogCache when possible and from the Master otherwise,
+ * and the PurchasePipeline invalidates the catalog whose stock an order changes.
+ */
+public class ProductRepository {
+    private static final String TAG = "ProductRepository";
+
+    private static volatile ProductRepository instance;
+
+    private final ProductCatalogCache cache;
+
+    /**
+     * Creates a new ProductRepository
+     * @param cache The catalog cache to read through
+     */
+    public ProductRepository(ProductCatalogCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Gets the repository shared by all screens
+     * @param context Any context; only its application cache directory is used
+     * @return The shared ProductRepository
+     */
+    public static ProductRepository getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ProductRepository.class) {
+                if (instance == null) {
+                    File directory = new File(context.getApplicationContext().getCacheDir(), "catalogs");
+                    instance = new ProductRepository(new ProductCatalogCache(
+                            Constants.CATALOG_CACHE_MEMORY_ENTRIES, Constants.CATALOG_CACHE_TTL_MS, directory));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Gets the products of a store. A fresh cached catalog is returned as is; an expired one
+     * is revalidated with its ETag so an unchanged catalog is not downloaded again.
+     * @param storeName Name of the store
+     * @return The store's products
+     * @throws Exception if the catalog is not cached and could not be fetched
+     */
+    public ArrayList<Product> getStoreProducts(String storeName) throws Exception {
+        ArrayList<Product> cached = cache.get(storeName);
+        if (cached != null) {
+            Log.d(TAG, "Catalog of " + storeName + " served from cache");
+            return cached;
+        }
+        String etag = cache.getEtag(storeName);
+        ConditionalResponse<Product> response =
+                ConnectionManager.getInstance().getStoreProductsIfModified(storeName, etag);
+        if (response.isNotModified()) {
+            ArrayList<Product> renewed = cache.renew(storeName);
+            if (renewed != null) {
+                return renewed;
+            }
+            // Invalidated by a purchase while the request was in flight
+            response = ConnectionManager.getInstance().getStoreProductsIfModified(storeName, null);
+        }
+        ArrayList<Product> products = response.getItems();
+        if (products == null) {
+            return null;
+        }
+        cache.put(storeName, products, response.getEtag());
+        // The response may be shared with a coalesced caller, so each caller gets its own products
+        return ProductCatalogCache.copyOf(products);
+    }
+
+    /**
+     * Loads the catalogs of several stores into the cache with one batched request,
+     * e.g. for the stores a list is showing. Stores with a fresh cached catalog are skipped.
+     * @param storeNames Names of the stores
+     * @return What was fetched; stores that failed are left for a regular fetch
+     * @throws Exception if the batch could not be fetched at all
+     */
+    public ProductBatch prefetch(List<String> storeNames) throws Exception {
+        List<String> missing = new ArrayList<>();
+        for (String storeName : storeNames) {
+            if (cache.get(storeName) == null) {
+                missing.add(storeName);
+            }
+        }
+        if (missing.isEmpty()) {
+            return new ProductBatch();
+        }
+        ProductBatch batch = ConnectionManager.getInstance().fetchProductsBatch(missing);
+        for (Map.Entry<String, ArrayList<Product>> catalog : batch.getCatalogs().entrySet()) {
+            if (catalog.getValue() != null) {
+                cache.put(catalog.getKey(), catalog.getValue(), batch.getEtag(catalog.getKey()));
+            }
+        }
+        Log.d(TAG, "Prefetched " + batch.getCatalogs().size() + " of " + missing.size() + " catalogs");
+        return batch;
+    }
+
+    /**
+     * Drops the cached catalog of a store
+     * @param storeName Name of the store
+     */
+    public void invalidate(String storeName) {
+        cache.invalidate(storeName);
+    }
+
+    /**
+     * Gets a cached catalog without going to the Master
+     * @param storeName Name of the store
+     * @return The catalog, or null if it is not cached or has expired
+     */
+    public ArrayList<Product> getCachedProducts(String storeName) {
+        return cache.get(storeName);
+    }
+
+    ProductCatalogCache getCache() {
+        return cache;
+    }
+}
@@ -0,0 +1,145 @@
+package com.fooddelivery.cache;
+
+import com.fooddelivery.models.PurchaseOrder;
+import com.fooddelivery.network.BinaryCodec;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Durable queue of purchase orders that have not been confirmed by the Master.
+ * Every order is written to its own file before it is sent and deleted only once the Master
+ * has answered it, so orders survive a crash or a killed process and are sent again with
+ * the same idempotency key.
+ */
+public class PurchaseOutbox {
+
+    private final File directory;
+    private final Map<String, PurchaseOrder> orders = new LinkedHashMap<>();
+
+    /**
+     * Creates a PurchaseOutbox and loads the orders left by a previous run
+     * @param directory Directory holding one file per order, or null to keep orders in memory only
+     */
+    public PurchaseOutbox(File directory) {
+        this.directory = directory;
+        if (directory != null) {
+            directory.mkdirs();
+            load();
+        }
+    }
+
+    /**
+     * Adds an order; it is on disk when this method returns
+     * @param order The order
+     * @throws IOException if the order could not be stored, in which case it must not be sent
+     */
+    public synchronized void add(PurchaseOrder order) throws IOException {
+        write(order);
+        orders.put(order.getOrderId(), order);
+    }
+
+    /**
+     * Stores the retry state of an order after a failed attempt
+     * @param order The order
+     */
+    public synchronized void update(PurchaseOrder order) {
+        if (!orders.containsKey(order.getOrderId())) {
+            return;
+        }
+        try {
+            write(order);
+        } catch (IOException e) {
+            // Only the attempt count is lost; the order itself is still on disk
+        }
+    }
+
+    /**
+     * Removes an order the Master has answered
+     * @param orderId Key of the order
+     */
+    public synchronized void remove(String orderId) {
+        orders.remove(orderId);
+        if (directory != null) {
+            fileFor(orderId).delete();
+        }
+    }
+
+    /**
+     * @return The queued orders, oldest first
+     */
+    public synchronized List<PurchaseOrder> getOrders() {
+        return new ArrayList<>(orders.values());
+    }
+
+    /**
+     * @return Number of queued orders
+     */
+    public synchronized int size() {
+        return orders.size();
+    }
+
+    private File fileFor(String orderId) {
+        // Order ids are generated UUIDs, so they are valid file names
+        return new File(directory, orderId + ".order");
+    }
+
+    /**
+     * File layout: the order in the binary codec format, then the number of failed attempts
+     */
+    private void write(PurchaseOrder order) throws IOException {
+        if (directory == null) {
+            return;
+        }
+        File target = fileFor(order.getOrderId());
+        File temp = new File(directory, target.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            BinaryCodec.writeValue(out, order);
+            out.writeInt(order.getAttempts());
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException("Could not store order " + order.getOrderId());
+        }
+    }
+
+    private void load() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        List<PurchaseOrder> loaded = new ArrayList<>();
+        for (File file : files) {
+            if (!file.getName().endsWith(".order")) {
+                // Left over from a write that did not finish; that order was never sent
+                file.delete();
+                continue;
+            }
+            try (DataInputStream in = BinaryCodec.openFile(file)) {
+                PurchaseOrder order = (PurchaseOrder) BinaryCodec.readValue(in);
+                order.setAttempts(in.readInt());
+                loaded.add(order);
+            } catch (IOException | ClassCastException e) {
+                // Unreadable, so it cannot be sent; keep it out of the queue
+                file.delete();
+            }
+        }
+        Collections.sort(loaded, (a, b) -> Long.compare(a.getCreatedAt(), b.getCreatedAt()));
+        for (PurchaseOrder order : loaded) {
+            orders.put(order.getOrderId(), order);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.fooddelivery.cache;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.fooddelivery.models.PurchaseOrder;
+import com.fooddelivery.network.ConnectionManager;
+import com.fooddelivery.network.NetworkExecutor;
+import com.fooddelivery.utils.Backoff;
+import com.fooddelivery.utils.Constants;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Submits purchases without charging the user twice.
+ * Every purchase becomes a PurchaseOrder with an idempotency key and is written to a
+ * PurchaseOutbox before it is sent. Orders whose submission fails stay in the outbox and are
+ * resent with the same key after an exponential backoff with jitter; the Master answers an
+ * order it has already committed with the recorded outcome. Whenever a send succeeds, every
+ * order still waiting goes out with it, several per round trip.
+ */
+public class PurchasePipeline {
+    private static final String TAG = "PurchasePipeline";
+
+    private static volatile PurchasePipeline instance;
+
+    /**
+     * Receives the progress of orders on a network thread
+     */
+    public interface OrderListener {
+        /**
+         * Called once the Master has answered an order; it has left the outbox
+         * @param order The order
+         * @param outcome The Master's response
+         */
+        void onOrderCompleted(PurchaseOrder order, String outcome);
+
+        /**
+         * Called when an attempt to send an order failed; it stays in the outbox and is resent
+         * @param order The order
+         * @param error Why the attempt failed
+         */
+        void onOrderDelayed(PurchaseOrder order, Exception error);
+    }
+
+    /**
+     * Sends a batch of orders and returns the outcome of each, in order; may answer only a prefix
+     */
+    interface Sender {
+        List<String> send(List<PurchaseOrder> orders) throws Exception;
+    }
+
+    private final PurchaseOutbox outbox;
+    private final ProductCatalogCache catalogs;
+    private final Sender sender;
+    private final Random random;
+    private final List<OrderListener> listeners = new CopyOnWriteArrayList<>();
+    // Outcomes of the latest answered orders by key, for listeners that were removed when they arrived
+    private final Map<String, String> recentOutcomes = Collections.synchronizedMap(
+            new LinkedHashMap<String, String>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                    return size() > Constants.PURCHASE_RECENT_OUTCOMES;
+                }
+            });
+    // Only one thread sends at a time, so an order is never in two batches at once
+    private final Object sendLock = new Object();
+    private final RetryScheduler scheduler = new RetryScheduler(() -> {
+        sendDue();
+        scheduleNext();
+    }, NetworkExecutor.Priority.FOREGROUND, Constants.PURCHASE_RETRY_MIN_MS);
+
+    /**
+     * Creates a new PurchasePipeline
+     * @param outbox Where orders are kept until they are answered
+     * @param catalogs Catalog cache, whose entries are dropped for stores an order changes
+     * @param sender Sends orders to the Master
+     * @param random Source of the backoff jitter
+     */
+    PurchasePipeline(PurchaseOutbox outbox, ProductCatalogCache catalogs, Sender sender, Random random) {
+        this.outbox = outbox;
+        this.catalogs = catalogs;
+        this.sender = sender;
+        this.random = random;
+    }
+
+    /**
+     * Gets the pipeline shared by all screens. Orders left by a previous run are sent right away.
+     * @param context Any context; only its application files directory is used
+     * @return The shared PurchasePipeline
+     */
+    public static PurchasePipeline getInstance(Context context) {
+        if (instance == null) {
+            synchronized (PurchasePipeline.class) {
+                if (instance == null) {
+                    // Not the cache directory: the system may clear that, and these are unpaid orders
+                    File directory = new File(context.getApplicationContext().getFilesDir(), "outbox");
+                    instance = new PurchasePipeline(new PurchaseOutbox(directory),
+                            ProductRepository.getInstance(context).getCache(),
+                            orders -> ConnectionManager.getInstance().submitPurchases(orders), new Random());
+                    instance.flush();
+                }
+            }
+        }
+        return instance;
+    }
+
+    public void addListener(OrderListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(OrderListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Queues an order and starts sending it. Performs disk I/O, so call it off the main thread.
+     * Its outcome is reported to the listeners.
+     * @param order A new order, see PurchaseOrder.create()
+     * @throws IOException if the order could not be stored, in which case it was not sent
+     */
+    public void submit(PurchaseOrder order) throws IOException {
+        outbox.add(order);
+        Log.d(TAG, "Queued order " + order.getOrderId() + " for " + order.getStoreName());
+        scheduler.schedule(0);
+    }
+
+    /**
+     * Sends every queued order now instead of waiting for its backoff, e.g. when connectivity
+     * is back or the user returns to the app
+     */
+    public void flush() {
+        List<PurchaseOrder> orders = outbox.getOrders();
+        if (orders.isEmpty()) {
+            return;
+        }
+        synchronized (sendLock) {
+            for (PurchaseOrder order : orders) {
+                order.setNextAttemptAt(0);
+            }
+        }
+        scheduler.schedule(0);
+    }
+
+    /**
+     * Gets the outcome of an order answered while nobody was listening, e.g. while the screen
+     * that submitted it was stopped. Only the latest answers are kept.
+     * @param orderId Key of the order
+     * @return The Master's response, or null if the order has not been answered lately
+     */
+    public String getOutcome(String orderId) {
+        return recentOutcomes.get(orderId);
+    }
+
+    /**
+     * @param orderId Key of the order
+     * @return Whether the order is still queued after at least one failed attempt
+     */
+    public boolean isDelayed(String orderId) {
+        for (PurchaseOrder order : outbox.getOrders()) {
+            if (order.getOrderId().equals(orderId)) {
+                return order.getAttempts() > 0;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Number of orders waiting for an answer from the Master
+     */
+    public int getPendingCount() {
+        return outbox.size();
+    }
+
+    /**
+     * Sends the orders that are due, in batches, until none is left or a send fails
+     * @return Number of orders answered by the Master
+     */
+    int sendDue() {
+        synchronized (sendLock) {
+            int completed = 0;
+            while (true) {
+                List<PurchaseOrder> due = dueOrders(System.currentTimeMillis());
+                if (due.isEmpty()) {
+                    return completed;
+                }
+                List<PurchaseOrder> batch = new ArrayList<>(
+                        due.subList(0, Math.min(due.size(), Constants.PURCHASE_BATCH_SIZE)));
+                List<String> outcomes;
+                try {
+                    outcomes = sender.send(batch);
+                    if (outcomes.isEmpty()) {
+                        throw new IOException("No outcome returned for " + batch.size() + " orders");
+                    }
+                } catch (Exception e) {
+                    // The Master is unreachable for now; everything due waits for its next attempt
+                    Log.w(TAG, "Could not send " + batch.size() + " orders: " + e.getMessage());
+                    for (PurchaseOrder order : due) {
+                        delay(order, e);
+                    }
+                    return completed;
+                }
+                for (int i = 0; i < outcomes.size(); i++) {
+                    complete(batch.get(i), outcomes.get(i));
+                    completed++;
+                }
+                // The Master is reachable again, so orders backing off need not wait any longer
+                for (PurchaseOrder order : outbox.getOrders()) {
+                    order.setNextAttemptAt(0);
+                }
+            }
+        }
+    }
+
+    private List<PurchaseOrder> dueOrders(long now) {
+        List<PurchaseOrder> due = new ArrayList<>();
+        for (PurchaseOrder order : outbox.getOrders()) {
+            if (order.getNextAttemptAt() <= now) {
+                due.add(order);
+            }
+        }
+        return due;
+    }
+
+    private void complete(PurchaseOrder order, String outcome) {
+        outbox.remove(order.getOrderId());
+        recentOutcomes.put(order.getOrderId(), outcome);
+        catalogs.invalidate(order.getStoreName());
+        Log.d(TAG, "Order " + order.getOrderId() + " answered: " + outcome);
+        for (OrderListener listener : listeners) {
+            listener.onOrderCompleted(order, outcome);
+        }
+    }
+
+    private void delay(PurchaseOrder order, Exception error) {
+        int attempts = order.getAttempts() + 1;
+        order.setAttempts(attempts);
+        if (attempts < Constants.PURCHASE_MAX_AUTO_RETRIES) {
+            order.setNextAttemptAt(System.currentTimeMillis() + backoffMs(attempts, random));
+        } else {
+            // Kept in the outbox, but only sent again by flush() or alongside a successful send
+            order.setNextAttemptAt(Long.MAX_VALUE);
+        }
+        outbox.update(order);
+        // The Master may have committed it before the connection failed
+        catalogs.invalidate(order.getStoreName());
+        for (OrderListener listener : listeners) {
+            listener.onOrderDelayed(order, error);
+        }
+    }
+
+    /**
+     * Backoff before the next attempt of an order
+     * @see Backoff#jittered(int, long, long, Random)
+     */
+    static long backoffMs(int attempts, Random random) {
+        return Backoff.jittered(attempts, Constants.PURCHASE_RETRY_MIN_MS, Constants.PURCHASE_RETRY_MAX_MS, random);
+    }
+
+    /**
+     * Wakes up again when the next waiting order is due
+     */
+    private void scheduleNext() {
+        long next = Long.MAX_VALUE;
+        synchronized (sendLock) {
+            for (PurchaseOrder order : outbox.getOrders()) {
+                next = Math.min(next, order.getNextAttemptAt());
+            }
+        }
+        if (next != Long.MAX_VALUE) {
+            scheduler.schedule(Math.max(0, next - System.currentTimeMillis()));
+        }
+    }
+}
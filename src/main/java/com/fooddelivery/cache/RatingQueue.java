@@ -0,0 +1,270 @@
+package com.fooddelivery.cache;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.fooddelivery.models.StoreRating;
+import com.fooddelivery.network.BinaryCodec;
+import com.fooddelivery.network.ConnectionManager;
+import com.fooddelivery.network.NetworkExecutor;
+import com.fooddelivery.utils.Backoff;
+import com.fooddelivery.utils.Constants;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Persistent queue of store ratings that have not reached the Master yet.
+ * Only the latest rating of each store is kept. It keeps the key of the rating it replaces
+ * while that one has not been sent, so rating a store twice in quick succession counts once;
+ * a rating made after the earlier one was sent is queued under a key of its own.
+ * Ratings are written to disk when they are made and sent shortly after, several per command
+ * on one pooled connection; when the Master cannot be reached they are resent after a backoff.
+ */
+public class RatingQueue {
+    private static final String TAG = "RatingQueue";
+
+    private static volatile RatingQueue instance;
+
+    /**
+     * Receives the Master's answer to each rating on a network thread
+     */
+    public interface RatingListener {
+        void onRatingSent(StoreRating rating, String outcome);
+    }
+
+    /**
+     * Sends a batch of ratings and returns the outcome of each, in order; may answer only a prefix
+     */
+    interface Sender {
+        List<String> send(List<StoreRating> ratings) throws Exception;
+    }
+
+    private final File file;
+    private final Sender sender;
+    private final Random random;
+    // Latest unsent rating per store, oldest store first
+    private final Map<String, StoreRating> pending = new LinkedHashMap<>();
+    // Keys of queued ratings that were handed to the sender, so the Master may have counted them
+    private final Set<String> sentIds = new HashSet<>();
+    private final List<RatingListener> listeners = new CopyOnWriteArrayList<>();
+    private final Object sendLock = new Object();
+    private int failures;
+    private final RetryScheduler scheduler = new RetryScheduler(() -> {
+        sendPending();
+        int failed = getFailures();
+        if (failed > 0 && getPendingCount() > 0) {
+            scheduleRetry(failed);
+        }
+    }, NetworkExecutor.Priority.PREFETCH, Constants.RATING_RETRY_MIN_MS);
+
+    /**
+     * Creates a RatingQueue and loads the ratings left by a previous run
+     * @param file File holding the unsent ratings, or null to keep them in memory only
+     * @param sender Sends ratings to the Master
+     * @param random Source of the backoff jitter
+     */
+    RatingQueue(File file, Sender sender, Random random) {
+        this.file = file;
+        this.sender = sender;
+        this.random = random;
+        load();
+    }
+
+    /**
+     * Gets the queue shared by all screens. Ratings left by a previous run are sent right away.
+     * @param context Any context; only its application files directory is used
+     * @return The shared RatingQueue
+     */
+    public static RatingQueue getInstance(Context context) {
+        if (instance == null) {
+            synchronized (RatingQueue.class) {
+                if (instance == null) {
+                    File file = new File(context.getApplicationContext().getFilesDir(), "ratings.queue");
+                    instance = new RatingQueue(file, ratings -> ConnectionManager.getInstance().rateStores(ratings),
+                            new Random());
+                    instance.flush();
+                }
+            }
+        }
+        return instance;
+    }
+
+    public void addListener(RatingListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(RatingListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Queues a rating, replacing the queued rating of the same store. It is sent after a short
+     * delay so ratings made in quick succession share one command. Performs disk I/O, so call
+     * it off the main thread.
+     * <p>
+     * The new rating takes over the key of a replaced rating that was never sent. A replaced
+     * rating that was sent may have been counted, e.g. when it is in flight or its response was
+     * lost; the Master would answer its key with that outcome and drop the new value, so the new
+     * rating gets a fresh key and is sent on its own.
+     * @param storeName Name of the store
+     * @param rating Rating value (1-5)
+     * @return The queued rating
+     */
+    public StoreRating rate(String storeName, int rating) {
+        StoreRating entry;
+        synchronized (pending) {
+            // Removed first so the store moves to the end of the queue
+            StoreRating replaced = pending.remove(storeName);
+            if (replaced != null && !sentIds.remove(replaced.getRatingId())) {
+                entry = new StoreRating(replaced.getRatingId(), storeName, rating, System.currentTimeMillis());
+            } else {
+                entry = StoreRating.create(storeName, rating);
+            }
+            pending.put(storeName, entry);
+            save();
+        }
+        scheduler.schedule(Constants.RATING_FLUSH_DELAY_MS);
+        return entry;
+    }
+
+    /**
+     * Sends the queued ratings now instead of waiting for the backoff, e.g. when the user
+     * returns to the app
+     */
+    public void flush() {
+        if (getPendingCount() > 0) {
+            scheduler.schedule(0);
+        }
+    }
+
+    /**
+     * @return Number of stores with a rating waiting to be sent
+     */
+    public int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Sends the queued ratings in batches until none is left or a send fails
+     * @return Number of ratings answered by the Master
+     */
+    int sendPending() {
+        synchronized (sendLock) {
+            int sent = 0;
+            while (true) {
+                List<StoreRating> batch = new ArrayList<>();
+                synchronized (pending) {
+                    for (StoreRating rating : pending.values()) {
+                        if (batch.size() == Constants.RATING_BATCH_SIZE) {
+                            break;
+                        }
+                        batch.add(rating);
+                        sentIds.add(rating.getRatingId());
+                    }
+                }
+                if (batch.isEmpty()) {
+                    return sent;
+                }
+                List<String> outcomes;
+                try {
+                    outcomes = sender.send(batch);
+                    if (outcomes.isEmpty()) {
+                        throw new IOException("No outcome returned for " + batch.size() + " ratings");
+                    }
+                } catch (Exception e) {
+                    failures++;
+                    Log.w(TAG, "Could not send " + batch.size() + " ratings: " + e.getMessage());
+                    return sent;
+                }
+                failures = 0;
+                synchronized (pending) {
+                    for (int i = 0; i < outcomes.size(); i++) {
+                        StoreRating rating = batch.get(i);
+                        // A newer rating made while this one was in flight has a key of its own
+                        // and stays queued for the next batch
+                        StoreRating queued = pending.get(rating.getStoreName());
+                        if (queued != null && queued.getRatingId().equals(rating.getRatingId())) {
+                            pending.remove(rating.getStoreName());
+                            sentIds.remove(rating.getRatingId());
+                        }
+                    }
+                    save();
+                }
+                for (int i = 0; i < outcomes.size(); i++) {
+                    for (RatingListener listener : listeners) {
+                        listener.onRatingSent(batch.get(i), outcomes.get(i));
+                    }
+                }
+                sent += outcomes.size();
+            }
+        }
+    }
+
+    /**
+     * @return Number of failed sends since the last successful one
+     */
+    int getFailures() {
+        synchronized (sendLock) {
+            return failures;
+        }
+    }
+
+    private void scheduleRetry(int failed) {
+        scheduler.schedule(Backoff.jittered(failed, Constants.RATING_RETRY_MIN_MS,
+                Constants.RATING_RETRY_MAX_MS, random));
+    }
+
+    /**
+     * Writes the queue to a temporary file and renames it, so a crash leaves the previous copy
+     */
+    private void save() {
+        if (file == null) {
+            return;
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            BinaryCodec.writeValue(out, new ArrayList<>(pending.values()));
+        } catch (IOException e) {
+            // The ratings are still queued in memory and are sent during this run
+            Log.w(TAG, "Could not save ratings: " + e.getMessage());
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void load() {
+        if (file == null || !file.exists()) {
+            return;
+        }
+        try (DataInputStream in = BinaryCodec.openFile(file)) {
+            for (StoreRating rating : (List<StoreRating>) BinaryCodec.readValue(in)) {
+                pending.put(rating.getStoreName(), rating);
+                // A previous run may have sent it without getting the answer
+                sentIds.add(rating.getRatingId());
+            }
+        } catch (IOException | ClassCastException e) {
+            Log.w(TAG, "Discarding unreadable rating queue: " + e.getMessage());
+            file.delete();
+        }
+    }
+}
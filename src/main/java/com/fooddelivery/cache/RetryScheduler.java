@@ -0,0 +1,85 @@
+package com.fooddelivery.cache;
+
+import com.fooddelivery.network.NetworkExecutor;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the sending work of a queue on the network executor after a delay, e.g. the backoff
+ * after a failed send. At most one run is waiting at a time: asking for a run sooner than the
+ * waiting one replaces it, asking for a later one is ignored. The work reschedules itself if
+ * anything is left to send.
+ */
+final class RetryScheduler {
+
+    // One timer thread for every queue; it only hands the work over to the network executor
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "RetryScheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Runnable work;
+    private final NetworkExecutor.Priority priority;
+    private final long rejectedDelayMs;
+    private final NetworkExecutor executor;  // null for the shared one, looked up on first use
+    private ScheduledFuture<?> wakeUp;
+
+    /**
+     * Creates a RetryScheduler that runs the work on the shared network executor
+     * @param work Sends whatever is due
+     * @param priority Priority of the work on the network executor
+     * @param rejectedDelayMs Delay before trying again when the network executor is full
+     *                        or drops the work for a foreground task
+     */
+    RetryScheduler(Runnable work, NetworkExecutor.Priority priority, long rejectedDelayMs) {
+        this(work, priority, rejectedDelayMs, null);
+    }
+
+    /**
+     * Creates a new RetryScheduler
+     * @param work Sends whatever is due
+     * @param priority Priority of the work on the network executor
+     * @param rejectedDelayMs Delay before trying again when the network executor is full
+     *                        or drops the work for a foreground task
+     * @param executor Executor to run the work on, or null for the shared one
+     */
+    RetryScheduler(Runnable work, NetworkExecutor.Priority priority, long rejectedDelayMs,
+                   NetworkExecutor executor) {
+        this.work = work;
+        this.priority = priority;
+        this.rejectedDelayMs = rejectedDelayMs;
+        this.executor = executor;
+    }
+
+    /**
+     * Runs the work after a delay, unless a run is already due sooner
+     * @param delayMs Milliseconds to wait, 0 to run as soon as possible
+     */
+    synchronized void schedule(long delayMs) {
+        if (wakeUp != null && !wakeUp.isDone()) {
+            if (wakeUp.getDelay(TimeUnit.MILLISECONDS) <= delayMs) {
+                return;
+            }
+            wakeUp.cancel(false);
+        }
+        wakeUp = timer.schedule(this::start, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void start() {
+        synchronized (this) {
+            // This run is under way, so it must not count as the one due when a retry is asked for
+            wakeUp = null;
+        }
+        NetworkExecutor target = executor != null ? executor : NetworkExecutor.getShared();
+        try {
+            target.submit(work, priority, reason -> schedule(rejectedDelayMs));
+        } catch (RejectedExecutionException e) {
+            schedule(rejectedDelayMs);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.fooddelivery.cache;
+
+import com.fooddelivery.models.MapReduceRequest;
+import com.fooddelivery.models.StoreSummary;
+import com.fooddelivery.utils.GeoUtils;
+
+import java.util.List;
+
+/**
+ * The predicates of a MapReduceRequest, evaluated on the client against cached stores
+ */
+public final class StoreFilter {
+
+    private StoreFilter() {
+    }
+
+    /**
+     * Checks whether a store satisfies every criterion of a request
+     * @param request Category, minimum stars, price tier and radius to check
+     * @param store The store to check
+     * @return true if the Master would return the store for the request
+     */
+    public static boolean matches(MapReduceRequest request, StoreSummary store) {
+        return matchesCategory(request, store)
+                && store.getStars() >= request.getMinStars()
+                && matchesPriceCategory(request, store)
+                && GeoUtils.distanceKm(request.getClientLatitude(), request.getClientLongitude(),
+                store.getLatitude(), store.getLongitude()) <= request.getRadius();
+    }
+
+    /**
+     * @return true if the request names at least one category
+     */
+    static boolean hasCategoryFilter(MapReduceRequest request) {
+        List<String> categories = request.getFoodCategories();
+        return categories != null && !categories.isEmpty();
+    }
+
+    /**
+     * @return true if the request asks for a specific price tier
+     */
+    static boolean hasPriceFilter(MapReduceRequest request) {
+        String priceCategory = request.getPriceCategory();
+        return priceCategory != null && !priceCategory.isEmpty();
+    }
+
+    private static boolean matchesCategory(MapReduceRequest request, StoreSummary store) {
+        return !hasCategoryFilter(request) || request.getFoodCategories().contains(store.getCategory());
+    }
+
+    private static boolean matchesPriceCategory(MapReduceRequest request, StoreSummary store) {
+        return !hasPriceFilter(request) || request.getPriceCategory().equals(store.getPriceCategory());
+    }
+}
@@ -0,0 +1,257 @@
+package com.fooddelivery.cache;
+
+import android.util.Log;
+
+import com.fooddelivery.models.ConditionalResponse;
+import com.fooddelivery.models.MapReduceRequest;
+import com.fooddelivery.models.RequestKey;
+import com.fooddelivery.models.StoreSummary;
+import com.fooddelivery.network.ConnectionManager;
+import com.fooddelivery.network.SingleFlight;
+import com.fooddelivery.network.SocketClient;
+import com.fooddelivery.utils.Constants;
+import com.fooddelivery.utils.GeoUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * App-wide source of store search results.
+ * Answers location and filter searches from a StoreSpatialIndex and only asks the Master
+ * for the part of the search area that has not been fetched recently.
+ */
+public class StoreRepository {
+    private static final String TAG = "StoreRepository";
+
+    private static volatile StoreRepository instance;
+
+    private final StoreSpatialIndex index;
+    // Fetches of the same area, e.g. from a repeated tap or a rotated screen, share one stream
+    private final SingleFlight<List<Double>> areaFetches = new SingleFlight<>();
+    // Index results per canonical request key, so a user standing still skips the index walk
+    private final Map<RequestKey, CachedResult> results;
+
+    /**
+     * Stores matching the widened request of a key, valid while the index is unchanged
+     */
+    private static class CachedResult {
+        final int modCount;
+        final List<StoreSummary> stores;
+
+        CachedResult(int modCount, List<StoreSummary> stores) {
+            this.modCount = modCount;
+            this.stores = stores;
+        }
+    }
+
+    /**
+     * Creates a new StoreRepository
+     * @param coverageTtlMs How long a fetched area is served from the index
+     */
+    public StoreRepository(long coverageTtlMs) {
+        this.index = new StoreSpatialIndex(coverageTtlMs);
+        // Iterates in lookup order: results of searches the user has not repeated lately go first
+        this.results = new LinkedHashMap<RequestKey, CachedResult>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<RequestKey, CachedResult> eldest) {
+                return size() > Constants.QUERY_RESULT_CACHE_ENTRIES;
+            }
+        };
+    }
+
+    /**
+     * Gets the repository shared by all screens
+     * @return The shared StoreRepository
+     */
+    public static StoreRepository getInstance() {
+        if (instance == null) {
+            synchronized (StoreRepository.class) {
+                if (instance == null) {
+                    instance = new StoreRepository(Constants.STORE_COVERAGE_TTL_MS);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Finds the stores around a location. Stores already in the index are delivered first,
+     * nearest first; stores from the uncovered part of the area follow as they are read.
+     * @param latitude Search latitude
+     * @param longitude Search longitude
+     * @param radiusKm Search radius in kilometers
+     * @param listener Receives each store once
+     * @return Number of stores delivered
+     * @throws Exception if the uncovered area could not be fetched
+     */
+    public int findNearbyStores(double latitude, double longitude, double radiusKm,
+                                SocketClient.StoreStreamListener listener) throws Exception {
+        return findFilteredStores(new MapReduceRequest(latitude, longitude, new ArrayList<>(), 0, "", radiusKm),
+                listener);
+    }
+
+    /**
+     * Finds the stores matching a request. The filters are applied locally to the stores
+     * cached for the area; the Master is only asked for the unfiltered stores of the part
+     * of the area that has not been fetched recently. If some of those stores are already
+     * known, only their versions are sent and only changes come back.
+     * @param request Location, radius and filter criteria
+     * @param listener Receives each matching store once
+     * @return Number of stores delivered
+     * @throws Exception if the uncovered area could not be fetched
+     */
+    public int findFilteredStores(MapReduceRequest request,
+                                  SocketClient.StoreStreamListener listener) throws Exception {
+        StoreSpatialIndex.Region region = index.findUncovered(request.getClientLatitude(),
+                request.getClientLongitude(), request.getRadius());
+        if (region != null) {
+            List<StoreSummary> known = index.query(region.latitude, region.longitude, region.radiusKm);
+            if (!known.isEmpty()) {
+                // Stores seen before only need a version check, which is small compared to a refetch
+                revalidate(region, known);
+                region = null;
+            }
+        }
+
+        Set<String> delivered = new HashSet<>();
+        for (StoreSummary store : filterLocally(request)) {
+            delivered.add(store.getStoreName());
+            listener.onStore(store);
+        }
+        if (region == null) {
+            Log.d(TAG, "Served " + delivered.size() + " stores from the index");
+            return delivered.size();
+        }
+
+        StoreSpatialIndex.Region area = region;
+        List<StoreSummary> fetched = areaFetches.execute(
+                Arrays.asList(area.latitude, area.longitude, area.radiusKm), () -> {
+                    Log.d(TAG, "Fetching uncovered area of " + String.format("%.2f", area.radiusKm) + "km");
+                    // Fetch everything in the region so later filter changes can be answered locally
+                    List<StoreSummary> stores = new ArrayList<>();
+                    ConnectionManager.getInstance().streamFilteredStores(areaRequest(area), store -> {
+                        stores.add(store);
+                        if (StoreFilter.matches(request, store) && delivered.add(store.getStoreName())) {
+                            listener.onStore(store);
+                        }
+                    });
+                    index.markFetched(area, stores);
+                    return stores;
+                });
+        // Callers that joined a fetch already in flight get its stores once it has finished
+        for (StoreSummary store : fetched) {
+            if (StoreFilter.matches(request, store) && delivered.add(store.getStoreName())) {
+                listener.onStore(store);
+            }
+        }
+        return delivered.size();
+    }
+
+    /**
+     * Answers a request from the index, nearest first. The index is queried with the widened
+     * request of the canonical key and the result is kept until the index changes, so repeated
+     * searches from about the same spot only filter a short list.
+     */
+    List<StoreSummary> filterLocally(MapReduceRequest request) {
+        RequestKey key = request.getCanonicalKey();
+        int modCount = index.getModCount();
+        CachedResult cached;
+        synchronized (results) {
+            cached = results.get(key);
+        }
+        if (cached == null || cached.modCount != modCount) {
+            cached = new CachedResult(modCount, index.filter(key.toRequest()));
+            synchronized (results) {
+                results.put(key, cached);
+            }
+        }
+
+        List<StoreSummary> matches = new ArrayList<>();
+        for (StoreSummary store : cached.stores) {
+            if (StoreFilter.matches(request, store)) {
+                matches.add(store);
+            }
+        }
+        double latitude = request.getClientLatitude();
+        double longitude = request.getClientLongitude();
+        // Sorted around the cell center by the index; re-sort around the actual location
+        Collections.sort(matches, (a, b) -> Double.compare(
+                GeoUtils.distanceKm(latitude, longitude, a.getLatitude(), a.getLongitude()),
+                GeoUtils.distanceKm(latitude, longitude, b.getLatitude(), b.getLongitude())));
+        return matches;
+    }
+
+    /**
+     * Sends the versions of the stores held for an expired area to the Master
+     * and applies only what changed
+     */
+    private void revalidate(StoreSpatialIndex.Region region, List<StoreSummary> known) throws Exception {
+        Map<String, Integer> versions = new HashMap<>();
+        for (StoreSummary store : known) {
+            versions.put(store.getStoreName(), store.getVersion());
+        }
+        ConditionalResponse<StoreSummary> response = ConnectionManager.getInstance()
+                .getFilteredStoresIfModified(areaRequest(region), ConditionalResponse.etagOf(known), versions);
+        index.applyChanges(region, response.getItems(), response.getRemoved());
+    }
+
+    /**
+     * Unfiltered request for every store in a region
+     */
+    private static MapReduceRequest areaRequest(StoreSpatialIndex.Region region) {
+        return new MapReduceRequest(region.latitude, region.longitude, new ArrayList<>(), 0, "", region.radiusKm);
+    }
+
+    /**
+     * Updates the cached copy of a store, e.g. after it has been rated
+     * @param store The updated store
+     */
+    public void update(StoreSummary store) {
+        index.put(store);
+    }
+
+    /**
+     * Gets the cached summary of a store
+     * @param storeName Name of the store
+     * @return The summary, or null if the store is not cached
+     */
+    public StoreSummary getCached(String storeName) {
+        return index.get(storeName);
+    }
+
+    /**
+     * Looks up the current state of changed stores for a screen showing the results of a request
+     * @param storeNames Names of the stores that changed
+     * @param request The request whose results are shown
+     * @return For each name, the current summary, or null if the store no longer matches
+     */
+    public Map<String, StoreSummary> lookupChanged(Set<String> storeNames, MapReduceRequest request) {
+        Map<String, StoreSummary> result = new HashMap<>();
+        for (String name : storeNames) {
+            StoreSummary store = index.get(name);
+            result.put(name, store != null && StoreFilter.matches(request, store) ? store : null);
+        }
+        return result;
+    }
+
+    StoreSpatialIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Drops every cached store so the next search goes to the Master
+     */
+    public void invalidate() {
+        index.clear();
+        synchronized (results) {
+            results.clear();
+        }
+    }
+}
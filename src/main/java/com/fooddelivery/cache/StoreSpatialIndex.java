@@ -0,0 +1,456 @@
+package com.fooddelivery.cache;
+
+import com.fooddelivery.models.MapReduceRequest;
+import com.fooddelivery.models.StoreChange;
+import com.fooddelivery.models.StoreSummary;
+import com.fooddelivery.utils.GeoUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory grid index over the stores received from the Master.
+ * Stores are bucketed into fixed-size latitude/longitude cells, and the index also remembers
+ * which circles have been fetched from the server and when, so radius queries can be
+ * answered locally and only the uncovered part of an area has to be fetched.
+ * Secondary indexes by category and price tier let filter queries start from
+ * the smallest matching set instead of scanning the area.
+ */
+public class StoreSpatialIndex {
+
+    // Cell edge in degrees, roughly 1.1km of latitude
+    static final double CELL_DEGREES = 0.01;
+    // Points sampled along the edge of a query circle when checking coverage
+    private static final int EDGE_SAMPLES = 32;
+    // Oldest fetched areas are forgotten beyond this many
+    private static final int MAX_FETCHED_AREAS = 64;
+
+    private final long coverageTtlMs;
+    private final Map<String, StoreSummary> storesByName = new HashMap<>();
+    private final Map<Long, Set<String>> storesByCell = new HashMap<>();
+    private final Map<String, Set<String>> storesByCategory = new HashMap<>();
+    private final Map<String, Set<String>> storesByPriceCategory = new HashMap<>();
+    private final List<FetchedArea> fetchedAreas = new ArrayList<>();
+    private int modCount;  // Bumped by every change that can alter a filter result
+
+    /**
+     * Circular area that still has to be fetched from the Master
+     */
+    public static class Region {
+        public final double latitude;
+        public final double longitude;
+        public final double radiusKm;
+
+        Region(double latitude, double longitude, double radiusKm) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.radiusKm = radiusKm;
+        }
+    }
+
+    /**
+     * A circle fetched from the server and the time it was fetched
+     */
+    private static class FetchedArea {
+        final Region region;
+        final long fetchedAt;
+
+        FetchedArea(Region region, long fetchedAt) {
+            this.region = region;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    /**
+     * Creates a new StoreSpatialIndex
+     * @param coverageTtlMs How long a fetched area is trusted before it must be fetched again
+     */
+    public StoreSpatialIndex(long coverageTtlMs) {
+        this.coverageTtlMs = coverageTtlMs;
+    }
+
+    /**
+     * Adds a store or replaces the previous entry with the same name
+     * @param store The store to index
+     */
+    public synchronized void put(StoreSummary store) {
+        remove(store.getStoreName());
+        modCount++;
+        storesByName.put(store.getStoreName(), store);
+        addTo(storesByCell, cellOf(store.getLatitude(), store.getLongitude()), store.getStoreName());
+        addTo(storesByCategory, store.getCategory(), store.getStoreName());
+        addTo(storesByPriceCategory, store.getPriceCategory(), store.getStoreName());
+    }
+
+    /**
+     * Removes a store from the index
+     * @param storeName Name of the store
+     */
+    public synchronized void remove(String storeName) {
+        StoreSummary previous = storesByName.remove(storeName);
+        if (previous != null) {
+            modCount++;
+            removeFrom(storesByCell, cellOf(previous.getLatitude(), previous.getLongitude()), storeName);
+            removeFrom(storesByCategory, previous.getCategory(), storeName);
+            removeFrom(storesByPriceCategory, previous.getPriceCategory(), storeName);
+        }
+    }
+
+    /**
+     * Gets an indexed store by name
+     * @param storeName Name of the store
+     * @return The store, or null if it is not indexed
+     */
+    public synchronized StoreSummary get(String storeName) {
+        return storesByName.get(storeName);
+    }
+
+    /**
+     * Finds indexed stores within a radius, nearest first
+     * @param latitude Center latitude
+     * @param longitude Center longitude
+     * @param radiusKm Radius in kilometers
+     * @return Matching stores
+     */
+    public synchronized List<StoreSummary> query(double latitude, double longitude, double radiusKm) {
+        final Map<StoreSummary, Double> distances = new HashMap<>();
+        for (String name : namesAround(latitude, longitude, radiusKm)) {
+            StoreSummary store = storesByName.get(name);
+            double distance = GeoUtils.distanceKm(latitude, longitude,
+                    store.getLatitude(), store.getLongitude());
+            if (distance <= radiusKm) {
+                distances.put(store, distance);
+            }
+        }
+        return sortByDistance(distances);
+    }
+
+    /**
+     * Finds indexed stores matching every criterion of a request, nearest first.
+     * Candidates come from the category or price tier index when the request filters on them,
+     * and from the grid cells of the search area otherwise.
+     * @param request The filter criteria
+     * @return Matching stores
+     */
+    public synchronized List<StoreSummary> filter(MapReduceRequest request) {
+        Set<String> candidates = null;
+        if (StoreFilter.hasCategoryFilter(request)) {
+            candidates = new HashSet<>();
+            for (String category : request.getFoodCategories()) {
+                Set<String> names = storesByCategory.get(category);
+                if (names != null) {
+                    candidates.addAll(names);
+                }
+            }
+        }
+        if (StoreFilter.hasPriceFilter(request)) {
+            Set<String> names = storesByPriceCategory.get(request.getPriceCategory());
+            if (names == null) {
+                names = Collections.emptySet();
+            }
+            candidates = candidates == null ? names : intersect(candidates, names);
+        }
+        if (candidates == null) {
+            candidates = namesAround(request.getClientLatitude(), request.getClientLongitude(),
+                    request.getRadius());
+        }
+
+        final Map<StoreSummary, Double> distances = new HashMap<>();
+        for (String name : candidates) {
+            StoreSummary store = storesByName.get(name);
+            if (StoreFilter.matches(request, store)) {
+                distances.put(store, GeoUtils.distanceKm(request.getClientLatitude(),
+                        request.getClientLongitude(), store.getLatitude(), store.getLongitude()));
+            }
+        }
+        return sortByDistance(distances);
+    }
+
+    /**
+     * Works out which part of a query area has not been fetched recently.
+     * The area is sampled at every grid corner and cell center inside it and along its edge;
+     * a sample is covered when it lies in a circle fetched within the coverage TTL.
+     * @param latitude Center latitude
+     * @param longitude Center longitude
+     * @param radiusKm Radius in kilometers
+     * @return The smallest circle around all uncovered samples, or null if the area is fully covered
+     */
+    public synchronized Region findUncovered(double latitude, double longitude, double radiusKm) {
+        pruneExpiredAreas();
+        List<double[]> uncovered = new ArrayList<>();
+        for (double[] point : samplePoints(latitude, longitude, radiusKm)) {
+            if (!isCovered(point[0], point[1])) {
+                uncovered.add(point);
+            }
+        }
+        if (uncovered.isEmpty()) {
+            return null;
+        }
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+        double minLng = Double.MAX_VALUE, maxLng = -Double.MAX_VALUE;
+        for (double[] point : uncovered) {
+            minLat = Math.min(minLat, point[0]);
+            maxLat = Math.max(maxLat, point[0]);
+            minLng = Math.min(minLng, point[1]);
+            maxLng = Math.max(maxLng, point[1]);
+        }
+        double centerLat = (minLat + maxLat) / 2;
+        double centerLng = (minLng + maxLng) / 2;
+        // Pad by half a cell so stores between the uncovered samples are included
+        double radius = GeoUtils.distanceKm(centerLat, centerLng, maxLat, maxLng)
+                + GeoUtils.distanceKm(0, 0, CELL_DEGREES / 2, CELL_DEGREES / 2);
+        if (radius >= radiusKm) {
+            // The query circle itself is the cheaper fetch
+            return new Region(latitude, longitude, radiusKm);
+        }
+        return new Region(centerLat, centerLng, radius);
+    }
+
+    /**
+     * Records the result of a server query: the fetched circle becomes covered,
+     * and indexed stores inside it that the server no longer returned are dropped.
+     * @param region The circle that was fetched
+     * @param fetched Every store the server returned for it
+     */
+    public synchronized void markFetched(Region region, List<StoreSummary> fetched) {
+        Set<String> returned = new HashSet<>();
+        for (StoreSummary store : fetched) {
+            put(store);
+            returned.add(store.getStoreName());
+        }
+        List<String> gone = new ArrayList<>();
+        for (StoreSummary store : storesByName.values()) {
+            if (!returned.contains(store.getStoreName())
+                    && GeoUtils.distanceKm(region.latitude, region.longitude,
+                    store.getLatitude(), store.getLongitude()) <= region.radiusKm) {
+                gone.add(store.getStoreName());
+            }
+        }
+        for (String name : gone) {
+            remove(name);
+        }
+        recordFetch(region);
+    }
+
+    /**
+     * Records the result of a conditional fetch: the circle becomes covered again,
+     * changed stores are replaced and removed ones dropped, and the rest is kept as is.
+     * @param region The circle that was revalidated
+     * @param changed Stores that are new or changed
+     * @param removed Names of stores that are no longer in the circle
+     */
+    public synchronized void applyChanges(Region region, List<StoreSummary> changed, List<String> removed) {
+        for (StoreSummary store : changed) {
+            put(store);
+        }
+        for (String name : removed) {
+            remove(name);
+        }
+        recordFetch(region);
+    }
+
+    /**
+     * Applies a change from the Master's change log to the indexed summaries.
+     * Ratings are patched into the existing summary object, so lists showing it see the update.
+     * @param change The change
+     * @return true if an indexed store was affected
+     */
+    public synchronized boolean apply(StoreChange change) {
+        StoreSummary existing = storesByName.get(change.getStoreName());
+        switch (change.getType()) {
+            case STORE_ADDED:
+            case STORE_UPDATED:
+                put(change.getSummary());
+                return true;
+            case STORE_REMOVED:
+                remove(change.getStoreName());
+                return existing != null;
+            case RATING:
+                if (existing == null) {
+                    return false;
+                }
+                existing.setStars(change.getNumber());
+                existing.setNoOfReviews(change.getCount());
+                existing.setVersion(change.getStoreVersion());
+                modCount++;
+                return true;
+            default:
+                // Product changes that move the price tier arrive as STORE_UPDATED
+                if (existing != null) {
+                    existing.setVersion(change.getStoreVersion());
+                }
+                return false;
+        }
+    }
+
+    /**
+     * Forgets all stores and coverage
+     */
+    public synchronized void clear() {
+        storesByName.clear();
+        storesByCell.clear();
+        storesByCategory.clear();
+        storesByPriceCategory.clear();
+        fetchedAreas.clear();
+        modCount++;
+    }
+
+    /**
+     * @return Number of indexed stores
+     */
+    public synchronized int size() {
+        return storesByName.size();
+    }
+
+    /**
+     * @return A counter that changes whenever a store is added, removed or re-rated,
+     *         so results derived from the index can tell when they are stale
+     */
+    public synchronized int getModCount() {
+        return modCount;
+    }
+
+    private static List<Long> cellsAround(double latitude, double longitude, double radiusKm) {
+        double latSpan = GeoUtils.kmToLatitudeDegrees(radiusKm);
+        double lngSpan = GeoUtils.kmToLongitudeDegrees(radiusKm, latitude);
+        int minRow = (int) Math.floor((latitude - latSpan) / CELL_DEGREES);
+        int maxRow = (int) Math.floor((latitude + latSpan) / CELL_DEGREES);
+        int minColumn = (int) Math.floor((longitude - lngSpan) / CELL_DEGREES);
+        int maxColumn = (int) Math.floor((longitude + lngSpan) / CELL_DEGREES);
+        List<Long> cells = new ArrayList<>();
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+                cells.add(cellKey(row, column));
+            }
+        }
+        return cells;
+    }
+
+    private Set<String> namesAround(double latitude, double longitude, double radiusKm) {
+        Set<String> names = new HashSet<>();
+        for (long cell : cellsAround(latitude, longitude, radiusKm)) {
+            Set<String> inCell = storesByCell.get(cell);
+            if (inCell != null) {
+                names.addAll(inCell);
+            }
+        }
+        return names;
+    }
+
+    private static Set<String> intersect(Set<String> a, Set<String> b) {
+        Set<String> smaller = a.size() <= b.size() ? a : b;
+        Set<String> larger = smaller == a ? b : a;
+        Set<String> result = new HashSet<>();
+        for (String name : smaller) {
+            if (larger.contains(name)) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+    private static List<StoreSummary> sortByDistance(final Map<StoreSummary, Double> distances) {
+        List<StoreSummary> result = new ArrayList<>(distances.keySet());
+        Collections.sort(result, (a, b) -> Double.compare(distances.get(a), distances.get(b)));
+        return result;
+    }
+
+    private static <K> void addTo(Map<K, Set<String>> index, K key, String storeName) {
+        Set<String> names = index.get(key);
+        if (names == null) {
+            names = new HashSet<>();
+            index.put(key, names);
+        }
+        names.add(storeName);
+    }
+
+    private static <K> void removeFrom(Map<K, Set<String>> index, K key, String storeName) {
+        Set<String> names = index.get(key);
+        if (names != null) {
+            names.remove(storeName);
+            if (names.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    private void recordFetch(Region region) {
+        fetchedAreas.add(new FetchedArea(region, System.currentTimeMillis()));
+        if (fetchedAreas.size() > MAX_FETCHED_AREAS) {
+            fetchedAreas.remove(0);
+        }
+    }
+
+    private boolean isCovered(double latitude, double longitude) {
+        for (FetchedArea area : fetchedAreas) {
+            Region region = area.region;
+            if (GeoUtils.distanceKm(region.latitude, region.longitude, latitude, longitude)
+                    <= region.radiusKm + 1e-6) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void pruneExpiredAreas() {
+        long now = System.currentTimeMillis();
+        Iterator<FetchedArea> it = fetchedAreas.iterator();
+        while (it.hasNext()) {
+            if (now - it.next().fetchedAt >= coverageTtlMs) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Grid corners and cell centers inside the circle, plus evenly spaced points on its edge
+     */
+    private static List<double[]> samplePoints(double latitude, double longitude, double radiusKm) {
+        List<double[]> points = new ArrayList<>();
+        double half = CELL_DEGREES / 2;
+        for (long cell : cellsAround(latitude, longitude, radiusKm)) {
+            double cellLat = cellRow(cell) * CELL_DEGREES;
+            double cellLng = cellColumn(cell) * CELL_DEGREES;
+            addIfInside(points, cellLat, cellLng, latitude, longitude, radiusKm);
+            addIfInside(points, cellLat + half, cellLng + half, latitude, longitude, radiusKm);
+        }
+        double latSpan = GeoUtils.kmToLatitudeDegrees(radiusKm);
+        double lngSpan = GeoUtils.kmToLongitudeDegrees(radiusKm, latitude);
+        for (int i = 0; i < EDGE_SAMPLES; i++) {
+            double angle = 2 * Math.PI * i / EDGE_SAMPLES;
+            // Slightly inside the edge so rounding never puts the sample outside the circle
+            points.add(new double[]{latitude + 0.999 * latSpan * Math.sin(angle),
+                    longitude + 0.999 * lngSpan * Math.cos(angle)});
+        }
+        return points;
+    }
+
+    private static void addIfInside(List<double[]> points, double pointLat, double pointLng,
+                                    double latitude, double longitude, double radiusKm) {
+        if (GeoUtils.distanceKm(latitude, longitude, pointLat, pointLng) <= radiusKm) {
+            points.add(new double[]{pointLat, pointLng});
+        }
+    }
+
+    private static long cellOf(double latitude, double longitude) {
+        return cellKey((int) Math.floor(latitude / CELL_DEGREES), (int) Math.floor(longitude / CELL_DEGREES));
+    }
+
+    private static long cellKey(int row, int column) {
+        return ((long) row << 32) | (column & 0xffffffffL);
+    }
+
+    private static int cellRow(long cell) {
+        return (int) (cell >> 32);
+    }
+
+    private static int cellColumn(long cell) {
+        return (int) cell;
+    }
+}
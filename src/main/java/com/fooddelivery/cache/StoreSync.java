@@ -0,0 +1,279 @@
+package com.fooddelivery.cache;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.fooddelivery.models.ChangeLog;
+import com.fooddelivery.models.StoreChange;
+import com.fooddelivery.network.Cancellable;
+import com.fooddelivery.network.ConnectionManager;
+import com.fooddelivery.network.NetworkExecutor;
+import com.fooddelivery.network.NetworkTask;
+import com.fooddelivery.network.StoreSubscription;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps the cached stores and catalogs current by applying the Master's change log.
+ * Each sync asks only for the changes after the last applied sequence number and patches the
+ * caches in place, so its cost follows the number of changes rather than the size of the data.
+ * Stores that are on screen are also watched through a StoreSubscription, so their changes
+ * are pushed as they happen instead of waiting for the next sync.
+ */
+public class StoreSync {
+    private static final String TAG = "StoreSync";
+
+    private static volatile StoreSync instance;
+
+    /**
+     * Receives the outcome of a sync or push on the thread that applied it
+     */
+    public interface ChangeListener {
+        /**
+         * Called when cached stores or their catalogs changed
+         * @param storeNames Names of the changed stores
+         */
+        void onStoresChanged(Set<String> storeNames);
+
+        /**
+         * Called when the caches had to be dropped and every screen should reload
+         */
+        void onReset();
+    }
+
+    private final StoreSpatialIndex index;
+    private final ProductCatalogCache catalogs;
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<ChangeListener, Set<String>> watched = new HashMap<>();
+    // Pushed changes beyond lastSequence; pushes only cover watched stores, so they cannot
+    // advance the sync position, but the sync that later returns them must not reapply them
+    private final TreeSet<Integer> pushedAhead = new TreeSet<>();
+    private int lastSequence = -1;
+    private StoreSubscription subscription;
+
+    /**
+     * Creates a new StoreSync
+     * @param index The store index to patch
+     * @param catalogs The catalog cache to patch
+     */
+    public StoreSync(StoreSpatialIndex index, ProductCatalogCache catalogs) {
+        this.index = index;
+        this.catalogs = catalogs;
+    }
+
+    /**
+     * Gets the sync shared by all screens
+     * @param context Any context, used to reach the catalog cache
+     * @return The shared StoreSync
+     */
+    public static StoreSync getInstance(Context context) {
+        if (instance == null) {
+            synchronized (StoreSync.class) {
+                if (instance == null) {
+                    instance = new StoreSync(StoreRepository.getInstance().getIndex(),
+                            ProductRepository.getInstance(context).getCache());
+                }
+            }
+        }
+        return instance;
+    }
+
+    public void addListener(ChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener and stops watching the stores it asked for
+     */
+    public void removeListener(ChangeListener listener) {
+        listeners.remove(listener);
+        watch(listener, Collections.<String>emptySet());
+    }
+
+    /**
+     * Asks for live changes of the stores a screen shows. The Master pushes their changes
+     * on a subscription that stays open while any screen watches a store.
+     * @param listener The screen's listener, which owns the set
+     * @param storeNames Names of the stores shown, replacing the previous set
+     */
+    public void watch(ChangeListener listener, Collection<String> storeNames) {
+        Set<String> all = new LinkedHashSet<>();
+        synchronized (watched) {
+            if (storeNames.isEmpty()) {
+                if (watched.remove(listener) == null) {
+                    return;
+                }
+            } else {
+                watched.put(listener, new LinkedHashSet<>(storeNames));
+            }
+            for (Set<String> names : watched.values()) {
+                all.addAll(names);
+            }
+            if (subscription == null) {
+                if (all.isEmpty()) {
+                    return;
+                }
+                subscription = ConnectionManager.getInstance().subscribe(new StoreSubscription.PushListener() {
+                    @Override
+                    public void onSubscribed() {
+                        // Catch up on changes made before or while the subscription was down
+                        requestSync();
+                    }
+
+                    @Override
+                    public void onChanges(ChangeLog log) {
+                        applyPushed(log);
+                    }
+                });
+            }
+            subscription.setStoreNames(all);
+        }
+    }
+
+    /**
+     * Runs sync() on the network executor at prefetch priority; listeners report the outcome
+     * @return A handle that can be used to cancel the sync
+     */
+    public Cancellable requestSync() {
+        return new NetworkTask<Integer>(this::sync, new NetworkTask.TaskCallback<Integer>() {
+            @Override
+            public void onSuccess(Integer applied) {
+            }
+
+            @Override
+            public void onError(Exception error) {
+                Log.w(TAG, "Sync failed: " + error.getMessage());
+            }
+        }, NetworkExecutor.Priority.PREFETCH).execute();
+    }
+
+    /**
+     * Fetches and applies the changes recorded since the last sync. The lock is not held
+     * while the Master answers, so pushes and reads of the sync position are not held up.
+     * @return Number of changes applied
+     * @throws Exception if the change log could not be fetched
+     */
+    public int sync() throws Exception {
+        return apply(ConnectionManager.getInstance().syncChanges(getLastSequence()));
+    }
+
+    /**
+     * Applies a change log returned by a sync and notifies the listeners once the caches
+     * are consistent again, outside the lock
+     * @param log The change log
+     * @return Number of changes applied
+     */
+    public int apply(ChangeLog log) {
+        Set<String> changed = new LinkedHashSet<>();
+        boolean dropped = false;
+        int applied = 0;
+        synchronized (this) {
+            if (log.isResetRequired()) {
+                dropped = reset(log);
+            } else {
+                for (StoreChange change : log.getChanges()) {
+                    if (change.getSequence() <= lastSequence) {
+                        // Already applied by an earlier or concurrent sync
+                        continue;
+                    }
+                    lastSequence = change.getSequence();
+                    if (pushedAhead.remove(change.getSequence())) {
+                        continue;
+                    }
+                    applyChange(change, changed);
+                    applied++;
+                }
+                lastSequence = Math.max(lastSequence, log.getLatestSequence());
+                pushedAhead.headSet(lastSequence, true).clear();
+            }
+        }
+
+        if (dropped) {
+            for (ChangeListener listener : listeners) {
+                listener.onReset();
+            }
+        } else {
+            notifyChanged(changed);
+        }
+        return applied;
+    }
+
+    /**
+     * Handles a change log that no longer reaches back to the sync position
+     * @return Whether the caches were dropped and the listeners must reload
+     */
+    private boolean reset(ChangeLog log) {
+        Log.d(TAG, "Change log reset at sequence " + log.getLatestSequence());
+        if (lastSequence < 0) {
+            // First sync of the process: cached data is still bounded by its TTL and
+            // revalidated by ETag, so it is kept and only the starting point is taken
+            lastSequence = log.getLatestSequence();
+            return false;
+        }
+        if (lastSequence >= log.getLatestSequence()) {
+            // A concurrent sync already caught up
+            return false;
+        }
+        index.clear();
+        catalogs.clear();
+        pushedAhead.clear();
+        lastSequence = log.getLatestSequence();
+        return true;
+    }
+
+    /**
+     * Applies changes pushed by the Master on the subscription. They are applied at once,
+     * but the sync position only moves when a sync returns them.
+     * @param log The pushed changes
+     * @return Number of changes applied
+     */
+    public int applyPushed(ChangeLog log) {
+        Set<String> changed = new LinkedHashSet<>();
+        int applied = 0;
+        synchronized (this) {
+            for (StoreChange change : log.getChanges()) {
+                if (change.getSequence() <= lastSequence || !pushedAhead.add(change.getSequence())) {
+                    // Already applied by a sync or an earlier push
+                    continue;
+                }
+                applyChange(change, changed);
+                applied++;
+            }
+        }
+        notifyChanged(changed);
+        return applied;
+    }
+
+    private void applyChange(StoreChange change, Set<String> changed) {
+        boolean affected = index.apply(change);
+        affected |= catalogs.apply(change);
+        if (affected) {
+            changed.add(change.getStoreName());
+        }
+    }
+
+    private void notifyChanged(Set<String> changed) {
+        if (changed.isEmpty()) {
+            return;
+        }
+        Set<String> names = Collections.unmodifiableSet(changed);
+        for (ChangeListener listener : listeners) {
+            listener.onStoresChanged(names);
+        }
+    }
+
+    /**
+     * @return Sequence number of the last applied change, or -1 before the first sync
+     */
+    public synchronized int getLastSequence() {
+        return lastSequence;
+    }
+}
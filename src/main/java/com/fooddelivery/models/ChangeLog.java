@@ -0,0 +1,47 @@
+package com.fooddelivery.models;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/**
+ * Changes recorded by the Master after a given sequence number, oldest first
+ */
+public class ChangeLog implements Serializable {
+    private int latestSequence;
+    private boolean resetRequired;
+    private ArrayList<StoreChange> changes;
+
+    public ChangeLog(int latestSequence, boolean resetRequired, ArrayList<StoreChange> changes) {
+        this.latestSequence = latestSequence;
+        this.resetRequired = resetRequired;
+        this.changes = changes;
+    }
+
+    /**
+     * Creates the answer for a client whose sequence number is unknown or older than the
+     * retained log: it has to reload everything and continue from the latest sequence
+     * @param latestSequence Sequence number of the newest change
+     * @return The change log
+     */
+    public static ChangeLog reset(int latestSequence) {
+        return new ChangeLog(latestSequence, true, new ArrayList<StoreChange>());
+    }
+
+    /**
+     * @return Sequence number to pass to the next sync
+     */
+    public int getLatestSequence() {
+        return latestSequence;
+    }
+
+    /**
+     * @return true if the changes could not be given and cached data must be reloaded
+     */
+    public boolean isResetRequired() {
+        return resetRequired;
+    }
+
+    public ArrayList<StoreChange> getChanges() {
+        return changes;
+    }
+}
@@ -0,0 +1,153 @@
+package com.fooddelivery.models;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Answer to a conditional fetch: either "not modified" for the client's ETag,
+ * or the new ETag together with what changed.
+ * For a product catalog the items are the whole catalog; for a store list they are only
+ * the stores that are new or whose version differs from the one the client holds,
+ * and removed names the stores the client holds that are no longer part of the result.
+ * @param <T> Product or StoreSummary
+ */
+public class ConditionalResponse<T> implements Serializable {
+    private String etag;
+    private boolean notModified;
+    private ArrayList<T> items;
+    private ArrayList<String> removed;
+
+    public ConditionalResponse(String etag, boolean notModified, ArrayList<T> items, ArrayList<String> removed) {
+        this.etag = etag;
+        this.notModified = notModified;
+        this.items = items;
+        this.removed = removed;
+    }
+
+    /**
+     * Creates a "not modified" answer
+     * @param etag The ETag the client already holds
+     * @return The response
+     */
+    public static <T> ConditionalResponse<T> notModified(String etag) {
+        return new ConditionalResponse<>(etag, true, new ArrayList<T>(), new ArrayList<String>());
+    }
+
+    /**
+     * Creates the answer for a product catalog
+     * @param etag ETag of the current catalog
+     * @param clientEtag ETag the client sent, or null
+     * @param products The current catalog
+     * @return "not modified" if the ETags match, otherwise the whole catalog
+     */
+    public static ConditionalResponse<Product> forCatalog(String etag, String clientEtag,
+                                                          ArrayList<Product> products) {
+        if (etag.equals(clientEtag)) {
+            return notModified(etag);
+        }
+        return new ConditionalResponse<>(etag, false, products, new ArrayList<String>());
+    }
+
+    /**
+     * Creates the answer for a store list by comparing it with the versions the client holds
+     * @param current The current result of the query
+     * @param clientEtag ETag the client sent, or null
+     * @param knownNames Names of the stores the client holds
+     * @param knownVersions Versions of those stores, in the same order
+     * @return "not modified" if nothing differs, otherwise the changed stores and removed names
+     */
+    public static ConditionalResponse<StoreSummary> forStores(List<StoreSummary> current, String clientEtag,
+                                                              List<String> knownNames,
+                                                              List<Integer> knownVersions) {
+        String etag = etagOf(current);
+        if (etag.equals(clientEtag)) {
+            return notModified(etag);
+        }
+        Map<String, Integer> known = new HashMap<>();
+        for (int i = 0; i < knownNames.size(); i++) {
+            known.put(knownNames.get(i), knownVersions.get(i));
+        }
+        ArrayList<StoreSummary> changed = new ArrayList<>();
+        Set<String> present = new HashSet<>();
+        for (StoreSummary store : current) {
+            present.add(store.getStoreName());
+            Integer version = known.get(store.getStoreName());
+            if (version == null || version != store.getVersion()) {
+                changed.add(store);
+            }
+        }
+        ArrayList<String> removed = new ArrayList<>();
+        for (String name : knownNames) {
+            if (!present.contains(name)) {
+                removed.add(name);
+            }
+        }
+        return new ConditionalResponse<>(etag, false, changed, removed);
+    }
+
+    /**
+     * Computes the ETag of a set of stores from their names and versions.
+     * The result does not depend on the order of the stores.
+     * @param stores The stores
+     * @return The ETag
+     */
+    public static String etagOf(Collection<StoreSummary> stores) {
+        long hash = stores.size();
+        for (StoreSummary store : stores) {
+            hash += mix(store.getStoreName().hashCode() * 31L + store.getVersion());
+        }
+        return Long.toHexString(hash);
+    }
+
+    /**
+     * Computes the ETag of a product catalog from its contents
+     * @param products The catalog
+     * @return The ETag
+     */
+    public static String etagOfProducts(List<Product> products) {
+        long hash = 17;
+        if (products != null) {
+            for (Product product : products) {
+                hash = 31 * hash + (product.getName() == null ? 0 : product.getName().hashCode());
+                hash = 31 * hash + Double.hashCode(product.getPrice());
+                hash = 31 * hash + product.getQuantity();
+                hash = 31 * hash + (product.getStatus() == null ? 0 : product.getStatus().hashCode());
+            }
+        }
+        return Long.toHexString(mix(hash));
+    }
+
+    /**
+     * Spreads the bits of a value so that sums of hashes rarely collide
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public boolean isNotModified() {
+        return notModified;
+    }
+
+    public ArrayList<T> getItems() {
+        return items;
+    }
+
+    public ArrayList<String> getRemoved() {
+        return removed;
+    }
+}
@@ -1,75 +1,143 @@
 // MapReduceRequest.java
 package com.fooddelivery.models;
 
+import com.fooddelivery.utils.Constants;
+
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+/**
+ * Criteria of a store search. Requests are immutable, since equal requests share cached
+ * and in-flight results; the with* methods return changed copies.
+ */
 public class MapReduceRequest implements Serializable {
-    private double clientLatitude;
-    private double clientLongitude;
-    private ArrayList<String> foodCategories;
-    private double minStars;
-    private String priceCategory;
-    private double radius;
+    // Pinned to the original form of the class, so Masters that only speak Java serialization
+    // still accept it; the paging fields are read as 0 and false from streams without them
+    private static final long serialVersionUID = -4407765889347415941L;
+
+    private final double clientLatitude;
+    private final double clientLongitude;
+    private final ArrayList<String> foodCategories;
+    private final double minStars;
+    private final String priceCategory;
+    private final double radius;
+    private final int cursor;    // Index of the first result to return
+    private final int pageSize;  // Maximum number of results, 0 for all
+    private final boolean summaryOnly;  // Return StoreSummary objects instead of full stores
 
     public MapReduceRequest(double clientLatitude, double clientLongitude, 
                             ArrayList<String> foodCategories, double minStars, 
                             String priceCategory, double radius) {
+        this(clientLatitude, clientLongitude, foodCategories, minStars, priceCategory, radius, 0, 0, false);
+    }
+
+    /**
+     * Creates a request for one page of results
+     * @param cursor Index of the first result to return
+     * @param pageSize Maximum number of results, 0 for all
+     * @param summaryOnly Whether StoreSummary objects should be returned
+     */
+    public MapReduceRequest(double clientLatitude, double clientLongitude,
+                            List<String> foodCategories, double minStars,
+                            String priceCategory, double radius,
+                            int cursor, int pageSize, boolean summaryOnly) {
         this.clientLatitude = clientLatitude;
         this.clientLongitude = clientLongitude;
-        this.foodCategories = foodCategories;
+        // Copied so the caller's list cannot change the request afterwards
+        this.foodCategories = foodCategories != null ? new ArrayList<>(foodCategories) : null;
         this.minStars = minStars;
         this.priceCategory = priceCategory;
         this.radius = radius;
+        this.cursor = cursor;
+        this.pageSize = pageSize;
+        this.summaryOnly = summaryOnly;
     }
 
     public double getClientLatitude() {
         return clientLatitude;
     }
 
-    public void setClientLatitude(double clientLatitude) {
-        this.clientLatitude = clientLatitude;
-    }
-
     public double getClientLongitude() {
         return clientLongitude;
     }
 
-    public void setClientLongitude(double clientLongitude) {
-        this.clientLongitude = clientLongitude;
+    public List<String> getFoodCategories() {
+        return foodCategories != null ? Collections.unmodifiableList(foodCategories) : null;
     }
 
-    public List<String> getFoodCategories() {
-        return foodCategories;
+    public double getMinStars() {
+        return minStars;
     }
 
-    public void setFoodCategories(ArrayList<String> foodCategories) {
-        this.foodCategories = foodCategories;
+    public String getPriceCategory() {
+        return priceCategory;
     }
 
-    public double getMinStars() {
-        return minStars;
+    public double getRadius() {
+        return radius;
     }
 
-    public void setMinStars(double minStars) {
-        this.minStars = minStars;
+    public int getCursor() {
+        return cursor;
     }
 
-    public String getPriceCategory() {
-        return priceCategory;
+    public int getPageSize() {
+        return pageSize;
     }
 
-    public void setPriceCategory(String priceCategory) {
-        this.priceCategory = priceCategory;
+    public boolean isSummaryOnly() {
+        return summaryOnly;
     }
 
-    public double getRadius() {
-        return radius;
+    /**
+     * Copies this request for another page of results, leaving this one unchanged
+     * @param cursor Index of the first result to return
+     * @param pageSize Maximum number of results, 0 for all
+     * @return The copy
+     */
+    public MapReduceRequest withPage(int cursor, int pageSize) {
+        return new MapReduceRequest(clientLatitude, clientLongitude, foodCategories, minStars,
+                priceCategory, radius, cursor, pageSize, summaryOnly);
     }
 
-    public void setRadius(double radius) {
-        this.radius = radius;
+    /**
+     * Copies this request with a different summary flag, leaving this one unchanged
+     * @param summaryOnly Whether StoreSummary objects should be returned
+     * @return The copy
+     */
+    public MapReduceRequest withSummaryOnly(boolean summaryOnly) {
+        return new MapReduceRequest(clientLatitude, clientLongitude, foodCategories, minStars,
+                priceCategory, radius, cursor, pageSize, summaryOnly);
+    }
+
+    /**
+     * Gets the quantized key of this request, shared by nearby requests of the same criteria.
+     * Results cached under it must be filtered with this request before they are used.
+     * @return The key on the grid configured in Constants
+     */
+    public RequestKey getCanonicalKey() {
+        return RequestKey.quantized(this, Constants.REQUEST_KEY_GRID_DEGREES,
+                Constants.REQUEST_KEY_STARS_STEP, Constants.REQUEST_KEY_RADIUS_STEP_KM);
+    }
+
+    /**
+     * Two requests are equal when the Master would answer them identically,
+     * regardless of the order of their categories
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        return other instanceof MapReduceRequest
+                && RequestKey.exact(this).equals(RequestKey.exact((MapReduceRequest) other));
+    }
+
+    @Override
+    public int hashCode() {
+        return RequestKey.exact(this).hashCode();
     }
 
     @Override
@@ -81,6 +149,9 @@ public class MapReduceRequest implements Serializable {
                 ", minStars=" + minStars +
                 ", priceCategory='" + priceCategory + '\'' +
                 ", radius=" + radius +
+                ", cursor=" + cursor +
+                ", pageSize=" + pageSize +
+                ", summaryOnly=" + summaryOnly +
                 '}';
     }
 }
\ No newline at end of file
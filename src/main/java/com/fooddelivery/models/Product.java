@@ -4,6 +4,10 @@ package com.fooddelivery.models;
 import java.io.Serializable;
 
 public class Product implements Serializable {
+    // Pinned to the original form of the class, so Masters that only speak Java serialization
+    // still accept it
+    private static final long serialVersionUID = -591698299462503136L;
+
     private String name;
     private String category;
     private double price;
@@ -59,6 +63,15 @@ public class Product implements Serializable {
         this.status = status;
     }
 
+    /**
+     * @return A new product with the same fields, which can be changed independently
+     */
+    public Product copy() {
+        Product copy = new Product(name, category, quantity, price);
+        copy.status = status;
+        return copy;
+    }
+
     @Override
     public String toString() {
         return "Product Name: " + name +
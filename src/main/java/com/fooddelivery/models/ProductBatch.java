@@ -0,0 +1,88 @@
+package com.fooddelivery.models;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Answer to a batched product fetch: the catalog of every store that could be read and the
+ * reason for every store that could not, so one bad store does not fail the whole batch
+ */
+public class ProductBatch implements Serializable {
+    private final LinkedHashMap<String, ArrayList<Product>> catalogs = new LinkedHashMap<>();
+    private final HashMap<String, String> etags = new HashMap<>();
+    private final LinkedHashMap<String, String> failures = new LinkedHashMap<>();
+
+    /**
+     * Adds the catalog of a store
+     * @param storeName Name of the store
+     * @param products The store's products
+     * @param etag ETag of the catalog, or null if unknown
+     */
+    public void addCatalog(String storeName, ArrayList<Product> products, String etag) {
+        catalogs.put(storeName, products);
+        etags.put(storeName, etag);
+    }
+
+    /**
+     * Records a store whose catalog could not be read
+     * @param storeName Name of the store
+     * @param error Why the catalog is missing
+     */
+    public void addFailure(String storeName, String error) {
+        failures.put(storeName, error);
+    }
+
+    /**
+     * @param storeName Name of the store
+     * @return The store's products, or null if the store failed or was not requested
+     */
+    public ArrayList<Product> getProducts(String storeName) {
+        return catalogs.get(storeName);
+    }
+
+    /**
+     * @param storeName Name of the store
+     * @return ETag of the store's catalog, or null
+     */
+    public String getEtag(String storeName) {
+        return etags.get(storeName);
+    }
+
+    /**
+     * @param storeName Name of the store
+     * @return Why the store's catalog is missing, or null if it was read
+     */
+    public String getError(String storeName) {
+        return failures.get(storeName);
+    }
+
+    /**
+     * @return Catalogs by store name, in request order
+     */
+    public Map<String, ArrayList<Product>> getCatalogs() {
+        return Collections.unmodifiableMap(catalogs);
+    }
+
+    /**
+     * @return Errors by store name, in request order
+     */
+    public Map<String, String> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * @return true if every requested catalog was read
+     */
+    public boolean isComplete() {
+        return failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ProductBatch{catalogs=" + catalogs.keySet() + ", failures=" + failures + '}';
+    }
+}
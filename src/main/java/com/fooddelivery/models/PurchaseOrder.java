@@ -0,0 +1,86 @@
+package com.fooddelivery.models;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * A purchase queued for submission, identified by a key generated on the device.
+ * The Master records the key with the outcome of the purchase, so an order that is sent again
+ * after a lost response is answered with the recorded outcome instead of being charged twice.
+ */
+public class PurchaseOrder implements Serializable {
+    private final String orderId;
+    private final String storeName;
+    private final Purchase purchase;
+    private final long createdAt;
+    // Client-side bookkeeping, never sent to the Master
+    private transient int attempts;
+    private transient long nextAttemptAt;
+
+    /**
+     * Creates a PurchaseOrder with a known key, e.g. when reading it back from the outbox
+     * @param orderId Idempotency key of the order
+     * @param storeName Name of the store to purchase from
+     * @param purchase Customer and products
+     * @param createdAt When the user placed the order, in milliseconds since the epoch
+     */
+    public PurchaseOrder(String orderId, String storeName, Purchase purchase, long createdAt) {
+        this.orderId = orderId;
+        this.storeName = storeName;
+        this.purchase = purchase;
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * Creates a new order with a fresh random key
+     * @param storeName Name of the store to purchase from
+     * @param purchase Customer and products
+     * @return The order
+     */
+    public static PurchaseOrder create(String storeName, Purchase purchase) {
+        return new PurchaseOrder(UUID.randomUUID().toString(), storeName, purchase, System.currentTimeMillis());
+    }
+
+    public String getOrderId() {
+        return orderId;
+    }
+
+    public String getStoreName() {
+        return storeName;
+    }
+
+    public Purchase getPurchase() {
+        return purchase;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * @return Number of failed submission attempts
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    /**
+     * @return Earliest time the order is sent again, in milliseconds since the epoch
+     */
+    public long getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(long nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    @Override
+    public String toString() {
+        return "PurchaseOrder{" + orderId + ", " + storeName + "}";
+    }
+}
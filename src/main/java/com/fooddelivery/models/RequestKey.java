@@ -0,0 +1,207 @@
+package com.fooddelivery.models;
+
+import com.fooddelivery.utils.GeoUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Canonical, immutable form of a MapReduceRequest, usable as a map key.
+ * Categories are deduplicated and sorted and an empty price tier equals a missing one.
+ * A quantized key also snaps the location to a grid cell, rounds the minimum stars down and
+ * the radius up to a step, so a user standing still keeps producing the same key. A quantized
+ * key therefore stands for a slightly larger query, see toRequest(), whose results have to be
+ * filtered with the exact request before they are shown.
+ */
+public final class RequestKey {
+
+    // Parameters of the 64-bit FNV-1a hash
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final double gridDegrees;
+    private final double starsStep;
+    private final double radiusStepKm;
+    private final long latitudeCell;
+    private final long longitudeCell;
+    private final List<String> categories;
+    private final long starsBucket;
+    private final String priceCategory;
+    private final long radiusBucket;
+    private final int cursor;
+    private final int pageSize;
+    private final boolean summaryOnly;
+    private final long hash;
+
+    private RequestKey(MapReduceRequest request, double gridDegrees, double starsStep, double radiusStepKm) {
+        this.gridDegrees = gridDegrees;
+        this.starsStep = starsStep;
+        this.radiusStepKm = radiusStepKm;
+        this.latitudeCell = bucket(request.getClientLatitude(), gridDegrees, false);
+        this.longitudeCell = bucket(request.getClientLongitude(), gridDegrees, false);
+        this.categories = normalize(request.getFoodCategories());
+        this.starsBucket = bucket(Math.max(request.getMinStars(), 0), starsStep, false);
+        this.priceCategory = request.getPriceCategory() != null ? request.getPriceCategory() : "";
+        this.radiusBucket = bucket(request.getRadius(), radiusStepKm, true);
+        this.cursor = request.getCursor();
+        this.pageSize = request.getPageSize();
+        this.summaryOnly = request.isSummaryOnly();
+        this.hash = computeHash();
+    }
+
+    /**
+     * Builds the key of a request without quantization; two requests have the same exact key
+     * only if the Master would answer them identically
+     * @param request The request
+     * @return The exact key
+     */
+    public static RequestKey exact(MapReduceRequest request) {
+        return new RequestKey(request, 0, 0, 0);
+    }
+
+    /**
+     * Builds a quantized key of a request
+     * @param request The request
+     * @param gridDegrees Size of a location grid cell in degrees
+     * @param starsStep Step to which the minimum stars are rounded down
+     * @param radiusStepKm Step to which the radius is rounded up
+     * @return The quantized key
+     */
+    public static RequestKey quantized(MapReduceRequest request, double gridDegrees,
+                                       double starsStep, double radiusStepKm) {
+        return new RequestKey(request, gridDegrees, starsStep, radiusStepKm);
+    }
+
+    /**
+     * Builds the widest request this key stands for: the cell center, the rounded criteria and a
+     * radius grown by half a cell diagonal. Its results include the results of every request
+     * with this key.
+     * @return A new request
+     */
+    public MapReduceRequest toRequest() {
+        double latitude = center(latitudeCell, gridDegrees);
+        double longitude = center(longitudeCell, gridDegrees);
+        double radius = radiusStepKm > 0 ? radiusBucket * radiusStepKm : Double.longBitsToDouble(radiusBucket);
+        if (gridDegrees > 0) {
+            radius += GeoUtils.distanceKm(latitude, longitude,
+                    latitude + gridDegrees / 2, longitude + gridDegrees / 2);
+        }
+        double minStars = starsStep > 0 ? starsBucket * starsStep : Double.longBitsToDouble(starsBucket);
+        return new MapReduceRequest(latitude, longitude, categories, minStars, priceCategory, radius,
+                cursor, pageSize, summaryOnly);
+    }
+
+    /**
+     * @return Stable 64-bit hash of the key, the same on every run and device
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof RequestKey)) {
+            return false;
+        }
+        RequestKey key = (RequestKey) other;
+        return hash == key.hash
+                && latitudeCell == key.latitudeCell
+                && longitudeCell == key.longitudeCell
+                && starsBucket == key.starsBucket
+                && radiusBucket == key.radiusBucket
+                && cursor == key.cursor
+                && pageSize == key.pageSize
+                && summaryOnly == key.summaryOnly
+                && Double.compare(gridDegrees, key.gridDegrees) == 0
+                && Double.compare(starsStep, key.starsStep) == 0
+                && Double.compare(radiusStepKm, key.radiusStepKm) == 0
+                && categories.equals(key.categories)
+                && priceCategory.equals(key.priceCategory);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return "RequestKey{" + Long.toHexString(hash) + "}";
+    }
+
+    /**
+     * Index of the step a value falls in, or the raw bits of the value when the step is 0
+     */
+    private static long bucket(double value, double step, boolean roundUp) {
+        if (step <= 0) {
+            // +0.0 and -0.0 are the same query
+            return Double.doubleToLongBits(value + 0.0);
+        }
+        double steps = value / step;
+        return (long) (roundUp ? Math.ceil(steps) : Math.floor(steps));
+    }
+
+    private static double center(long cell, double gridDegrees) {
+        return gridDegrees > 0 ? (cell + 0.5) * gridDegrees : Double.longBitsToDouble(cell);
+    }
+
+    private static List<String> normalize(List<String> categories) {
+        if (categories == null || categories.isEmpty()) {
+            return Collections.emptyList();
+        }
+        TreeSet<String> sorted = new TreeSet<>();
+        for (String category : categories) {
+            if (category != null && !category.isEmpty()) {
+                sorted.add(category);
+            }
+        }
+        return Collections.unmodifiableList(new ArrayList<>(sorted));
+    }
+
+    /**
+     * FNV-1a over a fixed encoding of the fields, so the hash does not depend on the JVM
+     * and is wide enough to identify a cached result on its own
+     */
+    private long computeHash() {
+        long h = FNV_OFFSET;
+        h = mix(h, Double.doubleToLongBits(gridDegrees));
+        h = mix(h, Double.doubleToLongBits(starsStep));
+        h = mix(h, Double.doubleToLongBits(radiusStepKm));
+        h = mix(h, latitudeCell);
+        h = mix(h, longitudeCell);
+        h = mix(h, categories.size());
+        for (String category : categories) {
+            h = mix(h, category);
+        }
+        h = mix(h, starsBucket);
+        h = mix(h, priceCategory);
+        h = mix(h, radiusBucket);
+        h = mix(h, cursor);
+        h = mix(h, pageSize);
+        return mix(h, summaryOnly ? 1 : 0);
+    }
+
+    private static long mix(long h, long value) {
+        for (int i = 0; i < 8; i++) {
+            h ^= (value >>> (i * 8)) & 0xff;
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+
+    private static long mix(long h, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        h = mix(h, bytes.length);
+        for (byte b : bytes) {
+            h ^= b & 0xff;
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+}
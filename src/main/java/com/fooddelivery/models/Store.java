@@ -1,9 +1,15 @@
 package com.fooddelivery.models;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 
 public class Store implements Serializable {
+    // Pinned to the original form of the class, so Masters that only speak Java serialization
+    // still accept it; the version reads as 0 from streams without it
+    private static final long serialVersionUID = 4798852717811932219L;
+
     private String storeName;
     private double latitude;
     private double longitude;
@@ -13,6 +19,12 @@ public class Store implements Serializable {
     private ArrayList<Product> products;
     private ArrayList<Purchase> purchases;
     private String storeLogoPath;
+    // Running sum of product prices and the tier derived from it, kept in step with products;
+    // not serialized, recomputed from the products on deserialization
+    private transient double totalProductPrice;
+    private transient String priceCategory;
+    // Incremented on every change to the rating or the products, used as the store's ETag
+    private int version;
 
     public Store(String storeName, double latitude, double longitude, String category, double stars,
                  int noOfReviews, String storeLogoPath, ArrayList<Product> products) {
@@ -25,6 +37,7 @@ public class Store implements Serializable {
         this.products = products;
         this.purchases = new ArrayList<>();
         this.storeLogoPath = storeLogoPath;
+        refreshPriceCategory();
     }
 
     public String getStoreName() {
@@ -53,16 +66,115 @@ public class Store implements Serializable {
 
     public void setStars(double stars) {
         this.stars = stars;
+        version++;
     }
 
     public void setNoOfReviews(int noOfReviews) {
         this.noOfReviews = noOfReviews;
+        version++;
+    }
+
+    /**
+     * Records a new rating: both its fields change but the store changes only once
+     * @param stars The new average stars
+     * @param noOfReviews The new number of reviews
+     */
+    public void setRating(double stars, int noOfReviews) {
+        this.stars = stars;
+        this.noOfReviews = noOfReviews;
+        markModified();
+    }
+
+    /**
+     * Gets the version of the store, which changes whenever its rating or products change
+     * @return The version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Bumps the version once, e.g. after the products returned by getProducts() were changed directly
+     */
+    public void markModified() {
+        version++;
+    }
+
+    /**
+     * Restores the version of a store received over the wire
+     * @param version The version
+     */
+    public void setVersion(int version) {
+        this.version = version;
     }
 
     public ArrayList<Product> getProducts() {
         return products;
     }
 
+    public void setProducts(ArrayList<Product> products) {
+        this.products = products;
+        recalculatePriceCategory();
+    }
+
+    /**
+     * Adds a product and updates the cached price category
+     * @param product The product to add
+     */
+    public void addProduct(Product product) {
+        if (products == null) {
+            products = new ArrayList<>();
+        }
+        products.add(product);
+        totalProductPrice += product.getPrice();
+        priceCategory = priceCategoryFor(totalProductPrice, products.size());
+        version++;
+    }
+
+    /**
+     * Removes a product by name and updates the cached price category
+     * @param productName Name of the product to remove
+     * @return true if a product was removed
+     */
+    public boolean removeProduct(String productName) {
+        if (products == null) {
+            return false;
+        }
+        for (int i = 0; i < products.size(); i++) {
+            Product product = products.get(i);
+            if (product.getName().equals(productName)) {
+                products.remove(i);
+                totalProductPrice -= product.getPrice();
+                priceCategory = priceCategoryFor(totalProductPrice, products.size());
+                version++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Changes the price of a product and updates the cached price category
+     * @param productName Name of the product
+     * @param price The new price
+     * @return true if the product was found
+     */
+    public boolean updateProductPrice(String productName, double price) {
+        if (products == null) {
+            return false;
+        }
+        for (Product product : products) {
+            if (product.getName().equals(productName)) {
+                totalProductPrice += price - product.getPrice();
+                product.setPrice(price);
+                priceCategory = priceCategoryFor(totalProductPrice, products.size());
+                version++;
+                return true;
+            }
+        }
+        return false;
+    }
+
     public ArrayList<Purchase> getPurchases() {
         return purchases;
     }
@@ -79,12 +191,47 @@ public class Store implements Serializable {
         this.storeLogoPath = storeLogoPath;
     }
 
+    /**
+     * Gets the price tier of the store. The tier is cached and kept up to date by the
+     * product mutators above, so this is constant time regardless of catalog size.
+     * @return "$", "$$" or "$$$"
+     */
     public String calculatePriceCategory() {
-        double totalPrice = 0;
-        for (Product product : products) {
-            totalPrice += product.getPrice();
+        return priceCategory;
+    }
+
+    /**
+     * Recomputes the cached price category from scratch and bumps the version once.
+     * Needed only after the list returned by getProducts() has been modified directly,
+     * e.g. when a purchase lowers product quantities.
+     */
+    public void recalculatePriceCategory() {
+        refreshPriceCategory();
+        markModified();
+    }
+
+    /**
+     * Recomputes the cached price category without touching the version
+     */
+    private void refreshPriceCategory() {
+        totalProductPrice = 0;
+        if (products != null) {
+            for (Product product : products) {
+                totalProductPrice += product.getPrice();
+            }
         }
-        double avgPrice = totalPrice / products.size();
+        priceCategory = priceCategoryFor(totalProductPrice, products == null ? 0 : products.size());
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        // Computing the cached tier is not a change to the store, so the version stays
+        refreshPriceCategory();
+    }
+
+    private static String priceCategoryFor(double totalPrice, int productCount) {
+        // A store without products has an average price of 0, the cheapest tier
+        double avgPrice = productCount == 0 ? 0 : totalPrice / productCount;
         if (avgPrice <= 5) return "$";
         if (avgPrice <= 15) return "$$";
         return "$$$";
@@ -0,0 +1,223 @@
+package com.fooddelivery.models;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/**
+ * One entry of the Master's change log.
+ * Only the fields relevant to the type are set; the rest keep their defaults.
+ */
+public class StoreChange implements Serializable {
+
+    /**
+     * Kind of change
+     */
+    public enum Type {
+        /** A store was added; summary is set */
+        STORE_ADDED,
+        /** A store's summary changed, e.g. its price tier; summary is set */
+        STORE_UPDATED,
+        /** A store was removed */
+        STORE_REMOVED,
+        /** A store was rated; stars and reviews are set */
+        RATING,
+        /** A product was added; product is set */
+        PRODUCT_ADDED,
+        /** A product was removed; productName is set */
+        PRODUCT_REMOVED,
+        /** Stock changed; productName and quantity are set */
+        PRODUCT_QUANTITY,
+        /** Price changed; productName and price are set */
+        PRODUCT_PRICE,
+        /** Visibility changed; productName and status are set */
+        PRODUCT_STATUS
+    }
+
+    private Type type;
+    private int sequence;
+    private String storeName;
+    private int storeVersion;  // Version of the store after the change
+    private String productName;
+    private double number;     // Price or stars
+    private int count;         // Quantity or number of reviews
+    private String status;
+    private StoreSummary summary;
+    private Product product;
+
+    public StoreChange(Type type, int sequence, String storeName, int storeVersion, String productName,
+                       double number, int count, String status, StoreSummary summary, Product product) {
+        this.type = type;
+        this.sequence = sequence;
+        this.storeName = storeName;
+        this.storeVersion = storeVersion;
+        this.productName = productName;
+        this.number = number;
+        this.count = count;
+        this.status = status;
+        this.summary = summary;
+        this.product = product;
+    }
+
+    public static StoreChange storeAdded(int sequence, StoreSummary summary) {
+        return new StoreChange(Type.STORE_ADDED, sequence, summary.getStoreName(), summary.getVersion(),
+                null, 0, 0, null, summary, null);
+    }
+
+    public static StoreChange storeUpdated(int sequence, StoreSummary summary) {
+        return new StoreChange(Type.STORE_UPDATED, sequence, summary.getStoreName(), summary.getVersion(),
+                null, 0, 0, null, summary, null);
+    }
+
+    public static StoreChange storeRemoved(int sequence, String storeName) {
+        return new StoreChange(Type.STORE_REMOVED, sequence, storeName, 0, null, 0, 0, null, null, null);
+    }
+
+    public static StoreChange rating(int sequence, String storeName, int storeVersion, double stars, int reviews) {
+        return new StoreChange(Type.RATING, sequence, storeName, storeVersion, null, stars, reviews,
+                null, null, null);
+    }
+
+    public static StoreChange productAdded(int sequence, String storeName, int storeVersion, Product product) {
+        return new StoreChange(Type.PRODUCT_ADDED, sequence, storeName, storeVersion, product.getName(),
+                0, 0, null, null, product);
+    }
+
+    public static StoreChange productRemoved(int sequence, String storeName, int storeVersion, String productName) {
+        return new StoreChange(Type.PRODUCT_REMOVED, sequence, storeName, storeVersion, productName,
+                0, 0, null, null, null);
+    }
+
+    public static StoreChange quantity(int sequence, String storeName, int storeVersion, String productName,
+                                       int quantity) {
+        return new StoreChange(Type.PRODUCT_QUANTITY, sequence, storeName, storeVersion, productName,
+                0, quantity, null, null, null);
+    }
+
+    public static StoreChange price(int sequence, String storeName, int storeVersion, String productName,
+                                    double price) {
+        return new StoreChange(Type.PRODUCT_PRICE, sequence, storeName, storeVersion, productName,
+                price, 0, null, null, null);
+    }
+
+    public static StoreChange status(int sequence, String storeName, int storeVersion, String productName,
+                                     String status) {
+        return new StoreChange(Type.PRODUCT_STATUS, sequence, storeName, storeVersion, productName,
+                0, 0, status, null, null);
+    }
+
+    /**
+     * @return true if the change affects a product rather than the store itself
+     */
+    public boolean isProductChange() {
+        return type.compareTo(Type.PRODUCT_ADDED) >= 0;
+    }
+
+    /**
+     * Patches a product list in place
+     * @param products The catalog of the changed store
+     * @return true if the list was changed
+     */
+    public boolean applyTo(ArrayList<Product> products) {
+        if (type == Type.PRODUCT_ADDED) {
+            products.add(product);
+            return true;
+        }
+        for (int i = 0; i < products.size(); i++) {
+            Product existing = products.get(i);
+            if (!existing.getName().equals(productName)) {
+                continue;
+            }
+            switch (type) {
+                case PRODUCT_REMOVED:
+                    products.remove(i);
+                    return true;
+                case PRODUCT_QUANTITY:
+                    existing.setQuantity(count);
+                    return true;
+                case PRODUCT_PRICE:
+                    existing.setPrice(number);
+                    return true;
+                case PRODUCT_STATUS:
+                    existing.setStatus(status);
+                    return true;
+                default:
+                    return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Patches a full store in place, keeping its cached price category in step
+     * @param store The changed store
+     * @return true if the store was changed
+     */
+    public boolean applyTo(Store store) {
+        boolean changed;
+        switch (type) {
+            case RATING:
+                store.setRating(number, count);
+                changed = true;
+                break;
+            case STORE_UPDATED:
+                store.setRating(summary.getStars(), summary.getNoOfReviews());
+                changed = true;
+                break;
+            default:
+                changed = isProductChange() && store.getProducts() != null && applyTo(store.getProducts());
+                if (changed) {
+                    store.recalculatePriceCategory();
+                }
+                break;
+        }
+        if (changed) {
+            store.setVersion(storeVersion);
+        }
+        return changed;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public String getStoreName() {
+        return storeName;
+    }
+
+    public int getStoreVersion() {
+        return storeVersion;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public double getNumber() {
+        return number;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public StoreSummary getSummary() {
+        return summary;
+    }
+
+    public Product getProduct() {
+        return product;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + sequence + " " + type + " " + storeName + (productName != null ? "/" + productName : "");
+    }
+}
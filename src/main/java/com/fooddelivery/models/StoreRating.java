@@ -0,0 +1,60 @@
+package com.fooddelivery.models;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * A rating waiting to be sent to the Master, identified by a key generated on the device
+ * so that a rating resent after a lost response is counted once
+ */
+public class StoreRating implements Serializable {
+    private final String ratingId;
+    private final String storeName;
+    private final int rating;
+    private final long ratedAt;
+
+    /**
+     * Creates a StoreRating with a known key, e.g. when reading it back from disk
+     * @param ratingId Idempotency key of the rating
+     * @param storeName Name of the rated store
+     * @param rating Rating value (1-5)
+     * @param ratedAt When the user rated the store, in milliseconds since the epoch
+     */
+    public StoreRating(String ratingId, String storeName, int rating, long ratedAt) {
+        this.ratingId = ratingId;
+        this.storeName = storeName;
+        this.rating = rating;
+        this.ratedAt = ratedAt;
+    }
+
+    /**
+     * Creates a new rating with a fresh random key
+     * @param storeName Name of the rated store
+     * @param rating Rating value (1-5)
+     * @return The rating
+     */
+    public static StoreRating create(String storeName, int rating) {
+        return new StoreRating(UUID.randomUUID().toString(), storeName, rating, System.currentTimeMillis());
+    }
+
+    public String getRatingId() {
+        return ratingId;
+    }
+
+    public String getStoreName() {
+        return storeName;
+    }
+
+    public int getRating() {
+        return rating;
+    }
+
+    public long getRatedAt() {
+        return ratedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "StoreRating{" + storeName + ": " + rating + "}";
+    }
+}
@@ -0,0 +1,100 @@
+package com.fooddelivery.models;
+
+import java.io.Serializable;
+
+/**
+ * Lightweight projection of a Store used by list screens.
+ * Carries only what a store row needs, without the product catalog or purchase history.
+ */
+public class StoreSummary implements Serializable {
+    private String storeName;
+    private String category;
+    private double stars;
+    private int noOfReviews;
+    private String priceCategory;
+    private double latitude;
+    private double longitude;
+    private int version;
+
+    public StoreSummary(String storeName, String category, double stars, int noOfReviews,
+                        String priceCategory, double latitude, double longitude) {
+        this(storeName, category, stars, noOfReviews, priceCategory, latitude, longitude, 0);
+    }
+
+    public StoreSummary(String storeName, String category, double stars, int noOfReviews,
+                        String priceCategory, double latitude, double longitude, int version) {
+        this.storeName = storeName;
+        this.category = category;
+        this.stars = stars;
+        this.noOfReviews = noOfReviews;
+        this.priceCategory = priceCategory;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.version = version;
+    }
+
+    /**
+     * Creates the summary of a full store
+     * @param store The store to summarize
+     * @return The summary
+     */
+    public static StoreSummary from(Store store) {
+        return new StoreSummary(store.getStoreName(), store.getCategory(), store.getStars(),
+                store.getNoOfReviews(), store.calculatePriceCategory(),
+                store.getLatitude(), store.getLongitude(), store.getVersion());
+    }
+
+    public String getStoreName() {
+        return storeName;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public double getStars() {
+        return stars;
+    }
+
+    public void setStars(double stars) {
+        this.stars = stars;
+    }
+
+    public int getNoOfReviews() {
+        return noOfReviews;
+    }
+
+    public void setNoOfReviews(int noOfReviews) {
+        this.noOfReviews = noOfReviews;
+    }
+
+    public String getPriceCategory() {
+        return priceCategory;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * @return Version of the store this summary was taken from
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    @Override
+    public String toString() {
+        return "Store Name: " + storeName + "\nCategory: " + category +
+                "\nStars: " + String.format("%.2f", stars) + "\nReviews: " + noOfReviews +
+                "\nPrice: " + priceCategory;
+    }
+}
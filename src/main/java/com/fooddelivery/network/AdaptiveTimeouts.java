@@ -0,0 +1,67 @@
+package com.fooddelivery.network;
+
+import com.fooddelivery.utils.Constants;
+
+/**
+ * Connect and read timeouts and hedging delays derived from the latency NetworkMetrics has
+ * observed. A timeout is a multiple of the observed p99, within fixed bounds, so it adapts to
+ * a slow network without letting a stalled Master hold a thread for long; until enough
+ * commands have been timed the defaults apply. Every timeout is also cut to the time left
+ * before the call's Deadline.
+ */
+final class AdaptiveTimeouts {
+
+    private final NetworkMetrics metrics;
+
+    AdaptiveTimeouts(NetworkMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param deadline Deadline of the call, or null
+     * @return Timeout for opening a connection, at least 1 ms
+     */
+    int connectTimeoutMs(Deadline deadline) {
+        long p99 = metrics.getConnectPercentileMicros(99, Constants.TIMEOUT_MIN_SAMPLES);
+        long timeout = p99 < 0 ? Constants.CONNECT_TIMEOUT_DEFAULT_MS
+                : clamp(p99 / 1000 * Constants.TIMEOUT_P99_MULTIPLIER,
+                        Constants.CONNECT_TIMEOUT_MIN_MS, Constants.CONNECT_TIMEOUT_MAX_MS);
+        return boundedBy(timeout, deadline);
+    }
+
+    /**
+     * @param command Command whose response is about to be read
+     * @param deadline Deadline of the call, or null
+     * @return Longest wait for the next bytes of the response, at least 1 ms
+     */
+    int readTimeoutMs(String command, Deadline deadline) {
+        long p99 = metrics.getLatencyPercentileMicros(command, 99, Constants.TIMEOUT_MIN_SAMPLES);
+        long timeout = p99 < 0 ? Constants.READ_TIMEOUT_DEFAULT_MS
+                : clamp(p99 / 1000 * Constants.TIMEOUT_P99_MULTIPLIER,
+                        Constants.READ_TIMEOUT_MIN_MS, Constants.READ_TIMEOUT_MAX_MS);
+        return boundedBy(timeout, deadline);
+    }
+
+    /**
+     * @param command An idempotent read
+     * @return How long to wait for the first attempt before sending a second one, or -1 if
+     *         the command has not been timed often enough to know its tail latency
+     */
+    long hedgeDelayMs(String command) {
+        long percentile = metrics.getLatencyPercentileMicros(command, Constants.HEDGE_PERCENTILE,
+                Constants.TIMEOUT_MIN_SAMPLES);
+        return percentile < 0 ? -1 : Math.max(Constants.HEDGE_MIN_DELAY_MS, percentile / 1000);
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static int boundedBy(long timeoutMs, Deadline deadline) {
+        if (deadline != null) {
+            timeoutMs = Math.min(timeoutMs, deadline.remainingMs());
+        }
+        // 0 would mean no timeout at all
+        return (int) Math.max(1, timeoutMs);
+    }
+}
@@ -0,0 +1,593 @@
+package com.fooddelivery.network;
+
+import com.fooddelivery.models.ChangeLog;
+import com.fooddelivery.models.ConditionalResponse;
+import com.fooddelivery.models.MapReduceRequest;
+import com.fooddelivery.models.Product;
+import com.fooddelivery.models.ProductBatch;
+import com.fooddelivery.models.Purchase;
+import com.fooddelivery.models.PurchaseOrder;
+import com.fooddelivery.models.Store;
+import com.fooddelivery.models.StoreChange;
+import com.fooddelivery.models.StoreRating;
+import com.fooddelivery.models.StoreSummary;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hand-written encoders and decoders for the binary wire protocol.
+ * Every value is written as a one-byte type tag followed by its fields in a fixed order,
+ * so no class descriptors or reflection are involved.
+ * Counts and lengths read back are checked against the bytes left in the input before
+ * anything is allocated for them, so corrupt data fails with an IOException rather than
+ * an OutOfMemoryError. The check relies on available() being exact, as it is for frames
+ * and for files opened with openFile(), which are both decoded from memory.
+ */
+public final class BinaryCodec {
+
+    // Value type tags
+    static final byte TAG_NULL = 0;
+    static final byte TAG_STRING = 1;
+    static final byte TAG_INT = 2;
+    static final byte TAG_DOUBLE = 3;
+    static final byte TAG_LIST = 4;
+    static final byte TAG_PRODUCT = 5;
+    static final byte TAG_PURCHASE = 6;
+    static final byte TAG_STORE = 7;
+    static final byte TAG_REQUEST = 8;
+    static final byte TAG_SUMMARY = 9;
+    static final byte TAG_CONDITIONAL = 10;
+    static final byte TAG_CHANGE = 11;
+    static final byte TAG_CHANGE_LOG = 12;
+    static final byte TAG_PRODUCT_BATCH = 13;
+    static final byte TAG_ORDER = 14;
+    static final byte TAG_RATING = 15;
+
+    // Command verbs, indexed by their wire code
+    private static final String[] VERBS = {"client", "filter", "fetchProducts", "purchase", "rate",
+            "clientStream", "filterStream", "fetchProductsIfModified", "filterIfModified",
+            "sync", "subscribe", "fetchProductsBatch", "purchaseOrders",
+            "rateBatch"};
+
+    private BinaryCodec() {
+    }
+
+    /**
+     * Maps a command name to its one-byte wire code
+     * @param command Command name understood by the Master
+     * @return The wire code
+     * @throws IOException if the command has no binary encoding
+     */
+    public static byte encodeVerb(String command) throws IOException {
+        for (int i = 0; i < VERBS.length; i++) {
+            if (VERBS[i].equals(command)) {
+                return (byte) (i + 1);
+            }
+        }
+        throw new IOException("Unknown command: " + command);
+    }
+
+    /**
+     * Maps a wire code back to its command name
+     * @param code The wire code
+     * @return The command name
+     * @throws IOException if the code is not a known command
+     */
+    public static String decodeVerb(byte code) throws IOException {
+        if (code < 1 || code > VERBS.length) {
+            throw new IOException("Unknown command code: " + code);
+        }
+        return VERBS[code - 1];
+    }
+
+    /**
+     * Writes any supported value preceded by its type tag
+     * @param out Destination
+     * @param value null, String, Integer, Double, List, Product, Purchase, Store, StoreSummary,
+     *              MapReduceRequest, ConditionalResponse, StoreChange, ChangeLog, ProductBatch
+     *              PurchaseOrder or StoreRating
+     * @throws IOException if the value type is not supported or writing fails
+     */
+    public static void writeValue(DataOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(TAG_STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(TAG_INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Double) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof List) {
+            out.writeByte(TAG_LIST);
+            List<?> list = (List<?>) value;
+            out.writeInt(list.size());
+            for (Object element : list) {
+                writeValue(out, element);
+            }
+        } else if (value instanceof Product) {
+            out.writeByte(TAG_PRODUCT);
+            writeProduct(out, (Product) value);
+        } else if (value instanceof Purchase) {
+            out.writeByte(TAG_PURCHASE);
+            writePurchase(out, (Purchase) value);
+        } else if (value instanceof Store) {
+            out.writeByte(TAG_STORE);
+            writeStore(out, (Store) value);
+        } else if (value instanceof MapReduceRequest) {
+            out.writeByte(TAG_REQUEST);
+            writeRequest(out, (MapReduceRequest) value);
+        } else if (value instanceof StoreSummary) {
+            out.writeByte(TAG_SUMMARY);
+            writeSummary(out, (StoreSummary) value);
+        } else if (value instanceof ConditionalResponse) {
+            out.writeByte(TAG_CONDITIONAL);
+            writeConditional(out, (ConditionalResponse<?>) value);
+        } else if (value instanceof StoreChange) {
+            out.writeByte(TAG_CHANGE);
+            writeChange(out, (StoreChange) value);
+        } else if (value instanceof ChangeLog) {
+            out.writeByte(TAG_CHANGE_LOG);
+            writeChangeLog(out, (ChangeLog) value);
+        } else if (value instanceof ProductBatch) {
+            out.writeByte(TAG_PRODUCT_BATCH);
+            writeProductBatch(out, (ProductBatch) value);
+        } else if (value instanceof PurchaseOrder) {
+            out.writeByte(TAG_ORDER);
+            writeOrder(out, (PurchaseOrder) value);
+        } else if (value instanceof StoreRating) {
+            out.writeByte(TAG_RATING);
+            writeRating(out, (StoreRating) value);
+        } else {
+            throw new IOException("Unsupported type: " + value.getClass().getName());
+        }
+    }
+
+    /**
+     * Measures how many bytes writeValue() produces for a value, without keeping them
+     * @param value Any value supported by writeValue()
+     * @return Encoded size in bytes
+     * @throws IOException if the value type is not supported
+     */
+    public static int encodedSize(Object value) throws IOException {
+        DataOutputStream counter = new DataOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+        writeValue(counter, value);
+        return counter.size();
+    }
+
+    /**
+     * Reads a value written by writeValue()
+     * @param in Source
+     * @return The decoded value; lists are decoded as ArrayList
+     * @throws IOException if the data is malformed
+     */
+    public static Object readValue(DataInput in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_STRING:
+                return readString(in);
+            case TAG_INT:
+                return in.readInt();
+            case TAG_DOUBLE:
+                return in.readDouble();
+            case TAG_LIST:
+                int size = readCount(in);
+                ArrayList<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            case TAG_PRODUCT:
+                return readProduct(in);
+            case TAG_PURCHASE:
+                return readPurchase(in);
+            case TAG_STORE:
+                return readStore(in);
+            case TAG_REQUEST:
+                return readRequest(in);
+            case TAG_SUMMARY:
+                return readSummary(in);
+            case TAG_CONDITIONAL:
+                return readConditional(in);
+            case TAG_CHANGE:
+                return readChange(in);
+            case TAG_CHANGE_LOG:
+                return readChangeLog(in);
+            case TAG_PRODUCT_BATCH:
+                return readProductBatch(in);
+            case TAG_ORDER:
+                return readOrder(in);
+            case TAG_RATING:
+                return readRating(in);
+            default:
+                throw new IOException("Unknown type tag: " + tag);
+        }
+    }
+
+    public static void writeProduct(DataOutput out, Product product) throws IOException {
+        writeString(out, product.getName());
+        writeString(out, product.getCategory());
+        out.writeDouble(product.getPrice());
+        out.writeInt(product.getQuantity());
+        writeString(out, product.getStatus());
+    }
+
+    public static Product readProduct(DataInput in) throws IOException {
+        String name = readString(in);
+        String category = readString(in);
+        double price = in.readDouble();
+        int quantity = in.readInt();
+        Product product = new Product(name, category, quantity, price);
+        product.setStatus(readString(in));
+        return product;
+    }
+
+    public static void writePurchase(DataOutput out, Purchase purchase) throws IOException {
+        writeString(out, purchase.getCustomerName());
+        writeString(out, purchase.getCustomerEmail());
+        writeProducts(out, purchase.getPurchasedProducts());
+    }
+
+    public static Purchase readPurchase(DataInput in) throws IOException {
+        String customerName = readString(in);
+        String customerEmail = readString(in);
+        // The total price is derived from the products by the constructor
+        return new Purchase(customerName, customerEmail, readProducts(in));
+    }
+
+    public static void writeOrder(DataOutput out, PurchaseOrder order) throws IOException {
+        writeString(out, order.getOrderId());
+        writeString(out, order.getStoreName());
+        out.writeLong(order.getCreatedAt());
+        writePurchase(out, order.getPurchase());
+    }
+
+    public static PurchaseOrder readOrder(DataInput in) throws IOException {
+        String orderId = readString(in);
+        String storeName = readString(in);
+        long createdAt = in.readLong();
+        return new PurchaseOrder(orderId, storeName, readPurchase(in), createdAt);
+    }
+
+    public static void writeRating(DataOutput out, StoreRating rating) throws IOException {
+        writeString(out, rating.getRatingId());
+        writeString(out, rating.getStoreName());
+        out.writeInt(rating.getRating());
+        out.writeLong(rating.getRatedAt());
+    }
+
+    public static StoreRating readRating(DataInput in) throws IOException {
+        String ratingId = readString(in);
+        String storeName = readString(in);
+        int rating = in.readInt();
+        return new StoreRating(ratingId, storeName, rating, in.readLong());
+    }
+
+    public static void writeStore(DataOutput out, Store store) throws IOException {
+        writeString(out, store.getStoreName());
+        out.writeDouble(store.getLatitude());
+        out.writeDouble(store.getLongitude());
+        writeString(out, store.getCategory());
+        out.writeDouble(store.getStars());
+        out.writeInt(store.getNoOfReviews());
+        writeString(out, store.getStoreLogoPath());
+        writeProducts(out, store.getProducts());
+        List<Purchase> purchases = store.getPurchases();
+        out.writeInt(purchases == null ? -1 : purchases.size());
+        if (purchases != null) {
+            for (Purchase purchase : purchases) {
+                writePurchase(out, purchase);
+            }
+        }
+        out.writeInt(store.getVersion());
+    }
+
+    public static Store readStore(DataInput in) throws IOException {
+        String storeName = readString(in);
+        double latitude = in.readDouble();
+        double longitude = in.readDouble();
+        String category = readString(in);
+        double stars = in.readDouble();
+        int noOfReviews = in.readInt();
+        String storeLogoPath = readString(in);
+        ArrayList<Product> products = readProducts(in);
+        Store store = new Store(storeName, latitude, longitude, category, stars,
+                noOfReviews, storeLogoPath, products);
+        int purchaseCount = readOptionalCount(in);
+        if (purchaseCount < 0) {
+            store.setPurchases(null);
+        } else {
+            ArrayList<Purchase> purchases = new ArrayList<>(purchaseCount);
+            for (int i = 0; i < purchaseCount; i++) {
+                purchases.add(readPurchase(in));
+            }
+            store.setPurchases(purchases);
+        }
+        store.setVersion(in.readInt());
+        return store;
+    }
+
+    public static void writeRequest(DataOutput out, MapReduceRequest request) throws IOException {
+        out.writeDouble(request.getClientLatitude());
+        out.writeDouble(request.getClientLongitude());
+        List<String> categories = request.getFoodCategories();
+        out.writeInt(categories == null ? -1 : categories.size());
+        if (categories != null) {
+            for (String category : categories) {
+                writeString(out, category);
+            }
+        }
+        out.writeDouble(request.getMinStars());
+        writeString(out, request.getPriceCategory());
+        out.writeDouble(request.getRadius());
+        out.writeInt(request.getCursor());
+        out.writeInt(request.getPageSize());
+        out.writeBoolean(request.isSummaryOnly());
+    }
+
+    public static MapReduceRequest readRequest(DataInput in) throws IOException {
+        double latitude = in.readDouble();
+        double longitude = in.readDouble();
+        int categoryCount = readOptionalCount(in);
+        ArrayList<String> categories = null;
+        if (categoryCount >= 0) {
+            categories = new ArrayList<>(categoryCount);
+            for (int i = 0; i < categoryCount; i++) {
+                categories.add(readString(in));
+            }
+        }
+        double minStars = in.readDouble();
+        String priceCategory = readString(in);
+        double radius = in.readDouble();
+        int cursor = in.readInt();
+        int pageSize = in.readInt();
+        boolean summaryOnly = in.readBoolean();
+        return new MapReduceRequest(latitude, longitude, categories, minStars, priceCategory, radius,
+                cursor, pageSize, summaryOnly);
+    }
+
+    public static void writeSummary(DataOutput out, StoreSummary summary) throws IOException {
+        writeString(out, summary.getStoreName());
+        writeString(out, summary.getCategory());
+        out.writeDouble(summary.getStars());
+        out.writeInt(summary.getNoOfReviews());
+        writeString(out, summary.getPriceCategory());
+        out.writeDouble(summary.getLatitude());
+        out.writeDouble(summary.getLongitude());
+        out.writeInt(summary.getVersion());
+    }
+
+    public static StoreSummary readSummary(DataInput in) throws IOException {
+        String storeName = readString(in);
+        String category = readString(in);
+        double stars = in.readDouble();
+        int noOfReviews = in.readInt();
+        String priceCategory = readString(in);
+        double latitude = in.readDouble();
+        double longitude = in.readDouble();
+        int version = in.readInt();
+        return new StoreSummary(storeName, category, stars, noOfReviews, priceCategory,
+                latitude, longitude, version);
+    }
+
+    public static void writeConditional(DataOutput out, ConditionalResponse<?> response) throws IOException {
+        writeString(out, response.getEtag());
+        out.writeBoolean(response.isNotModified());
+        writeValue(out, response.getItems());
+        writeValue(out, response.getRemoved());
+    }
+
+    @SuppressWarnings("unchecked")
+    public static ConditionalResponse<Object> readConditional(DataInput in) throws IOException {
+        String etag = readString(in);
+        boolean notModified = in.readBoolean();
+        ArrayList<Object> items = (ArrayList<Object>) readValue(in);
+        ArrayList<String> removed = (ArrayList<String>) readValue(in);
+        return new ConditionalResponse<>(etag, notModified, items, removed);
+    }
+
+    public static void writeChange(DataOutput out, StoreChange change) throws IOException {
+        out.writeByte(change.getType().ordinal());
+        out.writeInt(change.getSequence());
+        writeString(out, change.getStoreName());
+        out.writeInt(change.getStoreVersion());
+        writeString(out, change.getProductName());
+        out.writeDouble(change.getNumber());
+        out.writeInt(change.getCount());
+        writeString(out, change.getStatus());
+        writeValue(out, change.getSummary());
+        writeValue(out, change.getProduct());
+    }
+
+    public static StoreChange readChange(DataInput in) throws IOException {
+        int typeCode = in.readByte();
+        StoreChange.Type[] types = StoreChange.Type.values();
+        if (typeCode < 0 || typeCode >= types.length) {
+            throw new IOException("Unknown change type: " + typeCode);
+        }
+        int sequence = in.readInt();
+        String storeName = readString(in);
+        int storeVersion = in.readInt();
+        String productName = readString(in);
+        double number = in.readDouble();
+        int count = in.readInt();
+        String status = readString(in);
+        StoreSummary summary = (StoreSummary) readValue(in);
+        Product product = (Product) readValue(in);
+        return new StoreChange(types[typeCode], sequence, storeName, storeVersion, productName,
+                number, count, status, summary, product);
+    }
+
+    public static void writeChangeLog(DataOutput out, ChangeLog log) throws IOException {
+        out.writeInt(log.getLatestSequence());
+        out.writeBoolean(log.isResetRequired());
+        out.writeInt(log.getChanges().size());
+        for (StoreChange change : log.getChanges()) {
+            writeChange(out, change);
+        }
+    }
+
+    public static ChangeLog readChangeLog(DataInput in) throws IOException {
+        int latestSequence = in.readInt();
+        boolean resetRequired = in.readBoolean();
+        int count = readCount(in);
+        ArrayList<StoreChange> changes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            changes.add(readChange(in));
+        }
+        return new ChangeLog(latestSequence, resetRequired, changes);
+    }
+
+    public static void writeProductBatch(DataOutput out, ProductBatch batch) throws IOException {
+        out.writeInt(batch.getCatalogs().size());
+        for (Map.Entry<String, ArrayList<Product>> catalog : batch.getCatalogs().entrySet()) {
+            writeString(out, catalog.getKey());
+            writeString(out, batch.getEtag(catalog.getKey()));
+            writeProducts(out, catalog.getValue());
+        }
+        out.writeInt(batch.getFailures().size());
+        for (Map.Entry<String, String> failure : batch.getFailures().entrySet()) {
+            writeString(out, failure.getKey());
+            writeString(out, failure.getValue());
+        }
+    }
+
+    public static ProductBatch readProductBatch(DataInput in) throws IOException {
+        ProductBatch batch = new ProductBatch();
+        int catalogCount = readCount(in);
+        for (int i = 0; i < catalogCount; i++) {
+            String storeName = readString(in);
+            String etag = readString(in);
+            batch.addCatalog(storeName, readProducts(in), etag);
+        }
+        int failureCount = readCount(in);
+        for (int i = 0; i < failureCount; i++) {
+            batch.addFailure(readString(in), readString(in));
+        }
+        return batch;
+    }
+
+    private static void writeProducts(DataOutput out, List<Product> products) throws IOException {
+        out.writeInt(products == null ? -1 : products.size());
+        if (products != null) {
+            for (Product product : products) {
+                writeProduct(out, product);
+            }
+        }
+    }
+
+    private static ArrayList<Product> readProducts(DataInput in) throws IOException {
+        int count = readOptionalCount(in);
+        if (count < 0) {
+            return null;
+        }
+        ArrayList<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            products.add(readProduct(in));
+        }
+        return products;
+    }
+
+    /**
+     * Strings are a length in bytes (-1 for null) followed by UTF-8, with no 64KB limit
+     */
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        checkAvailable(in, length);
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int readCount(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Negative element count: " + count);
+        }
+        checkAvailable(in, count);
+        return count;
+    }
+
+    /**
+     * Reads the count of a list that may be null
+     * @return The count, or -1 for null
+     */
+    private static int readOptionalCount(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            return -1;
+        }
+        checkAvailable(in, count);
+        return count;
+    }
+
+    /**
+     * Rejects a count or length that the rest of the input cannot hold; every element takes
+     * at least one byte
+     */
+    private static void checkAvailable(DataInput in, int needed) throws IOException {
+        if (in instanceof DataInputStream) {
+            int available = ((DataInputStream) in).available();
+            if (needed > available) {
+                throw new IOException("Corrupt data: " + needed + " elements or bytes announced, "
+                        + available + " bytes left");
+            }
+        }
+    }
+
+    /**
+     * Opens a file written with the codec for decoding. The whole file is read into memory
+     * first, so the counts and lengths in it can be checked against what it really holds.
+     * @param file File to read
+     * @return Input positioned at the start of the file
+     * @throws IOException if the file cannot be read
+     */
+    public static DataInputStream openFile(File file) throws IOException {
+        long length = file.length();
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("File too large: " + file);
+        }
+        byte[] bytes = new byte[(int) length];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            in.readFully(bytes);
+        }
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+}
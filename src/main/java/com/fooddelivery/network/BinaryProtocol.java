@@ -0,0 +1,202 @@
+package com.fooddelivery.network;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+/**
+ * Versioned, length-prefixed binary protocol.
+ * Each request is one frame holding a verb code and the encoded arguments; each response is
+ * one frame holding an encoded value. Values are written by BinaryCodec.
+ *
+ * Negotiation: right after connecting the client sends MAGIC followed by its highest version.
+ * A Master that supports the protocol answers with MAGIC and the version it picked.
+ * A legacy Master answers with a Java serialization stream header or closes the socket,
+ * and the client falls back to JavaSerializationProtocol on a new connection. Only the
+ * header, or a refusal of every version, is a definite answer; a Master that stays silent
+ * or drops the connection may just be slow.
+ */
+public class BinaryProtocol implements WireProtocol {
+
+    static final byte[] MAGIC = {'F', 'D', 'B', 'P'};
+    public static final int VERSION = 2;
+    // Oldest version this client still speaks; version 1 had no store versions
+    static final int MIN_VERSION = 2;
+
+    // Upper bound on a single frame, guards against allocating for a corrupt length
+    static final int MAX_FRAME_BYTES = 64 * 1024 * 1024;
+
+    // Results of negotiate() other than an agreed version
+    public static final int DECLINED = -1;
+    public static final int NO_ANSWER = 0;
+
+    // First bytes of every Java serialization stream
+    private static final int JAVA_STREAM_MAGIC_0 = 0xAC;
+    private static final int JAVA_STREAM_MAGIC_1 = 0xED;
+
+    private final DataOutputStream out;
+    private final DataInputStream in;
+    private final int version;
+    private final ByteArrayOutputStream frameBuffer = new ByteArrayOutputStream(256);
+
+    /**
+     * Wraps the streams of a socket on which the binary protocol has been agreed
+     * @param input Socket input stream
+     * @param output Socket output stream
+     * @param version Negotiated protocol version
+     */
+    public BinaryProtocol(InputStream input, OutputStream output, int version) {
+        this.in = new DataInputStream(new BufferedInputStream(input));
+        this.out = new DataOutputStream(new BufferedOutputStream(output));
+        this.version = version;
+    }
+
+    /**
+     * Offers the binary protocol to the Master
+     * @param socket Freshly connected socket on which nothing has been sent yet
+     * @param timeoutMs How long to wait for the Master's answer
+     * @return The agreed version; DECLINED if the Master answered with a Java serialization
+     *         header or refused every version; NO_ANSWER if it closed the socket or did not
+     *         answer within the timeout
+     * @throws IOException if the offer cannot be written
+     */
+    public static int negotiate(Socket socket, int timeoutMs) throws IOException {
+        OutputStream output = socket.getOutputStream();
+        output.write(MAGIC);
+        output.write(VERSION);
+        output.flush();
+
+        int previousTimeout = socket.getSoTimeout();
+        socket.setSoTimeout(timeoutMs);
+        try {
+            byte[] reply = new byte[MAGIC.length + 1];
+            DataInputStream input = new DataInputStream(socket.getInputStream());
+            input.readFully(reply, 0, 2);
+            if ((reply[0] & 0xFF) == JAVA_STREAM_MAGIC_0 && (reply[1] & 0xFF) == JAVA_STREAM_MAGIC_1) {
+                return DECLINED;
+            }
+            input.readFully(reply, 2, reply.length - 2);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (reply[i] != MAGIC[i]) {
+                    // Neither protocol; whatever this is, it cannot be talked to in binary
+                    return DECLINED;
+                }
+            }
+            int agreed = reply[MAGIC.length];
+            return agreed >= MIN_VERSION && agreed <= VERSION ? agreed : DECLINED;
+        } catch (SocketTimeoutException | EOFException e) {
+            return NO_ANSWER;
+        } finally {
+            if (!socket.isClosed()) {
+                socket.setSoTimeout(previousTimeout);
+            }
+        }
+    }
+
+    /**
+     * Server side of negotiate(): reads the client's offer and accepts it
+     * @param input Socket input stream
+     * @param output Socket output stream
+     * @return The agreed version, or -1 if the peer did not offer the binary protocol
+     * @throws IOException if reading or writing fails
+     */
+    public static int accept(InputStream input, OutputStream output) throws IOException {
+        byte[] offer = new byte[MAGIC.length + 1];
+        new DataInputStream(input).readFully(offer);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (offer[i] != MAGIC[i]) {
+                return -1;
+            }
+        }
+        int agreed = Math.min(offer[MAGIC.length], VERSION);
+        if (agreed < MIN_VERSION) {
+            // Version 0 is refused by every client, which then falls back to Java serialization
+            agreed = -1;
+        }
+        output.write(MAGIC);
+        output.write(Math.max(agreed, 0));
+        output.flush();
+        return agreed;
+    }
+
+    @Override
+    public void writeCommand(String command, Object... args) throws IOException {
+        frameBuffer.reset();
+        DataOutputStream frame = new DataOutputStream(frameBuffer);
+        frame.writeByte(BinaryCodec.encodeVerb(command));
+        frame.writeByte(args.length);
+        for (Object arg : args) {
+            BinaryCodec.writeValue(frame, arg);
+        }
+        writeFrame();
+    }
+
+    @Override
+    public Object readResponse() throws IOException {
+        return BinaryCodec.readValue(readFrame());
+    }
+
+    /**
+     * Reads a request frame written by writeCommand(). Used by server-side implementations.
+     * @return The command name followed by its arguments
+     * @throws IOException if the frame is malformed
+     */
+    public Object[] readCommand() throws IOException {
+        DataInputStream frame = readFrame();
+        String command = BinaryCodec.decodeVerb(frame.readByte());
+        int argCount = frame.readUnsignedByte();
+        Object[] parts = new Object[argCount + 1];
+        parts[0] = command;
+        for (int i = 1; i <= argCount; i++) {
+            parts[i] = BinaryCodec.readValue(frame);
+        }
+        return parts;
+    }
+
+    /**
+     * Writes a response frame. Used by server-side implementations.
+     * @param response The value to send back
+     * @throws IOException if writing fails
+     */
+    public void writeResponse(Object response) throws IOException {
+        frameBuffer.reset();
+        BinaryCodec.writeValue(new DataOutputStream(frameBuffer), response);
+        writeFrame();
+    }
+
+    @Override
+    public String getName() {
+        return "binary-v" + version;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+        out.close();
+    }
+
+    private void writeFrame() throws IOException {
+        out.writeInt(frameBuffer.size());
+        frameBuffer.writeTo(out);
+        out.flush();
+    }
+
+    private DataInputStream readFrame() throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_FRAME_BYTES) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return new DataInputStream(new ByteArrayInputStream(payload));
+    }
+}
@@ -0,0 +1,17 @@
+package com.fooddelivery.network;
+
+/**
+ * Handle to asynchronous work that can be abandoned before it completes
+ */
+public interface Cancellable {
+
+    /**
+     * Stops the work and guarantees that no result is delivered afterwards
+     */
+    void cancel();
+
+    /**
+     * @return true if cancel() has been called
+     */
+    boolean isCancelled();
+}
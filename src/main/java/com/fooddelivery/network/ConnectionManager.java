@@ -0,0 +1,533 @@
+package com.fooddelivery.network;
+
+import com.fooddelivery.models.ChangeLog;
+import com.fooddelivery.models.ConditionalResponse;
+import com.fooddelivery.models.MapReduceRequest;
+import com.fooddelivery.models.Product;
+import com.fooddelivery.models.ProductBatch;
+import com.fooddelivery.models.Purchase;
+import com.fooddelivery.models.PurchaseOrder;
+import com.fooddelivery.models.RequestKey;
+import com.fooddelivery.models.Store;
+import com.fooddelivery.models.StoreRating;
+import com.fooddelivery.models.StoreSummary;
+import com.fooddelivery.utils.Constants;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * App-scoped owner of the connections to the Master server.
+ * Every command runs on a client borrowed from a bounded SocketClientPool, so screens no longer
+ * pay a TCP handshake and stream header exchange for every command.
+ * Identical read commands issued while one is already in flight share its response, and
+ * every call must complete before its Deadline.
+ */
+public class ConnectionManager {
+    private static final String TAG = "ConnectionManager";
+
+    private static volatile ConnectionManager instance;
+
+    // Reads that may be sent on a second connection when the first one is slow to answer
+    private static final Set<String> HEDGED_COMMANDS =
+            new HashSet<>(Arrays.asList("client", "filter", "fetchProducts"));
+
+    // Sends the second attempt of hedged reads once the first has been slow for the hedge delay;
+    // the first attempt runs on the caller's thread
+    private static final ScheduledExecutorService hedgeExecutor =
+            Executors.newScheduledThreadPool(Constants.HEDGE_THREAD_COUNT, new HedgeThreadFactory());
+
+    private final SocketClientPool pool;
+    private final SingleFlight<List<Object>> singleFlight = new SingleFlight<>();
+    private final AdaptiveTimeouts timeouts = new AdaptiveTimeouts(NetworkMetrics.getShared());
+
+    /**
+     * Operation executed against a pooled connection
+     * @param <T> The type of response data
+     */
+    public interface ClientOperation<T> {
+        T execute(SocketClient client) throws Exception;
+    }
+
+    ConnectionManager(SocketClientPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Gets the application-wide connection manager
+     * @return The shared ConnectionManager
+     */
+    public static ConnectionManager getInstance() {
+        if (instance == null) {
+            synchronized (ConnectionManager.class) {
+                if (instance == null) {
+                    instance = new ConnectionManager(new SocketClientPool(
+                            Constants.SERVER_IP, Constants.SERVER_PORT, Constants.POOL_MAX_SIZE,
+                            Constants.POOL_BORROW_TIMEOUT_MS, Constants.POOL_IDLE_TIMEOUT_MS));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Gets nearby stores within 5km based on user's location
+     * @see SocketClient#getNearbyStores(double, double)
+     */
+    public ArrayList<Store> getNearbyStores(double latitude, double longitude) throws Exception {
+        return coalesce(key("client", latitude, longitude),
+                client -> client.getNearbyStores(latitude, longitude));
+    }
+
+    /**
+     * Gets filtered stores based on user criteria
+     * @see SocketClient#getFilteredStores(MapReduceRequest)
+     */
+    public ArrayList<Store> getFilteredStores(MapReduceRequest request) throws Exception {
+        return coalesce(key("filter", request), client -> client.getFilteredStores(request));
+    }
+
+    /**
+     * Streams nearby stores to the listener as they arrive.
+     * Not retried: a second attempt would deliver the stores already received again.
+     * @see SocketClient#streamNearbyStores(double, double, int, int, SocketClient.StoreStreamListener)
+     */
+    public int streamNearbyStores(double latitude, double longitude, int cursor, int pageSize,
+                                  SocketClient.StoreStreamListener listener) throws Exception {
+        return execute(false, client -> client.streamNearbyStores(latitude, longitude, cursor, pageSize, listener));
+    }
+
+    /**
+     * Streams filtered stores to the listener as they arrive
+     * @see SocketClient#streamFilteredStores(MapReduceRequest, SocketClient.StoreStreamListener)
+     */
+    public int streamFilteredStores(MapReduceRequest request,
+                                    SocketClient.StoreStreamListener listener) throws Exception {
+        return execute(false, client -> client.streamFilteredStores(request, listener));
+    }
+
+    /**
+     * Fetches products from a specific store
+     * @see SocketClient#getStoreProducts(String)
+     */
+    public ArrayList<Product> getStoreProducts(String storeName) throws Exception {
+        return coalesce(key("fetchProducts", storeName), client -> client.getStoreProducts(storeName));
+    }
+
+    /**
+     * Fetches the products of several stores in one round trip
+     * @see SocketClient#fetchProductsBatch(List)
+     */
+    public ProductBatch fetchProductsBatch(List<String> storeNames) throws Exception {
+        return coalesce(key("fetchProductsBatch", storeNames), client -> client.fetchProductsBatch(storeNames));
+    }
+
+    /**
+     * Fetches a store's products only if they changed since the cached copy
+     * @see SocketClient#getStoreProductsIfModified(String, String)
+     */
+    public ConditionalResponse<Product> getStoreProductsIfModified(String storeName, String etag) throws Exception {
+        return coalesce(key("fetchProductsIfModified", storeName, etag),
+                client -> client.getStoreProductsIfModified(storeName, etag));
+    }
+
+    /**
+     * Gets the nearby stores that changed since the cached copy
+     * @see SocketClient#getNearbyStoresIfModified(double, double, String, Map)
+     */
+    public ConditionalResponse<StoreSummary> getNearbyStoresIfModified(double latitude, double longitude,
+                                                                       String etag,
+                                                                       Map<String, Integer> knownVersions)
+            throws Exception {
+        return coalesce(key("clientIfModified", latitude, longitude, etag, knownVersions),
+                client -> client.getNearbyStoresIfModified(latitude, longitude, etag, knownVersions));
+    }
+
+    /**
+     * Gets the filtered stores that changed since the cached copy
+     * @see SocketClient#getFilteredStoresIfModified(MapReduceRequest, String, Map)
+     */
+    public ConditionalResponse<StoreSummary> getFilteredStoresIfModified(MapReduceRequest request, String etag,
+                                                                         Map<String, Integer> knownVersions)
+            throws Exception {
+        return coalesce(key("filterIfModified", request, etag, knownVersions),
+                client -> client.getFilteredStoresIfModified(request, etag, knownVersions));
+    }
+
+    /**
+     * Gets the changes recorded after a sequence number
+     * @see SocketClient#syncChanges(int)
+     */
+    public ChangeLog syncChanges(int sinceSequence) throws Exception {
+        return coalesce(key("sync", sinceSequence), client -> client.syncChanges(sinceSequence));
+    }
+
+    /**
+     * Creates a subscription to store changes on its own connection to the Master.
+     * It stays idle until it is given store names and is closed by cancelling it.
+     * @param listener Receives the pushed changes
+     * @return The subscription
+     */
+    public StoreSubscription subscribe(StoreSubscription.PushListener listener) {
+        return new StoreSubscription(Constants.SERVER_IP, Constants.SERVER_PORT, listener);
+    }
+
+    /**
+     * Submits a purchase request
+     * @see SocketClient#submitPurchase(Purchase, String)
+     */
+    public String submitPurchase(Purchase purchase, String storeName) throws Exception {
+        return execute(false, client -> client.submitPurchase(purchase, storeName));
+    }
+
+    /**
+     * Submits queued purchase orders. Not retried here: the caller owns the orders and
+     * resends them later with the same keys.
+     * @see SocketClient#submitPurchases(List)
+     */
+    public List<String> submitPurchases(List<PurchaseOrder> orders) throws Exception {
+        return execute(false, client -> client.submitPurchases(orders));
+    }
+
+    /**
+     * Submits a store rating
+     * @see SocketClient#rateStore(String, int)
+     */
+    public String rateStore(String storeName, int rating) throws Exception {
+        return execute(false, client -> client.rateStore(storeName, rating));
+    }
+
+    /**
+     * Submits several store ratings in one command. Not retried here: the caller owns the
+     * ratings and resends them later with the same keys.
+     * @see SocketClient#rateStores(List)
+     */
+    public List<String> rateStores(List<StoreRating> ratings) throws Exception {
+        return execute(false, client -> client.rateStores(ratings));
+    }
+
+    /**
+     * Runs an operation on a pooled connection, within Constants.REQUEST_DEADLINE_MS or the
+     * Deadline of the caller if that one is sooner.
+     * Idempotent operations are retried once on a fresh connection when the reused one fails;
+     * purchases and ratings are never resent because the Master may already have applied them.
+     * @param idempotent Whether the operation may safely be sent twice
+     * @param operation The operation to run
+     * @return The operation result
+     * @throws Exception if there's an error communicating with the server
+     */
+    public <T> T execute(boolean idempotent, ClientOperation<T> operation) throws Exception {
+        return Deadline.within(Constants.REQUEST_DEADLINE_MS, () -> {
+            try {
+                return executeOnce(operation);
+            } catch (IOException e) {
+                if (!idempotent || Deadline.current().isExpired()) {
+                    throw e;
+                }
+                NetLog.info(TAG, "retrying on a new connection", "attempt", 2, "error", e);
+                NetworkMetrics.getShared().recordRetry();
+                return executeOnce(operation);
+            }
+        });
+    }
+
+    /**
+     * Runs an idempotent read, sharing the response of an identical one already in flight.
+     * The shared response must not be modified by the caller.
+     * @param key The command and its arguments, see key()
+     * @param operation The operation to run if no identical one is in flight
+     * @return The operation result
+     * @throws Exception if there's an error communicating with the server
+     */
+    public <T> T coalesce(List<Object> key, ClientOperation<T> operation) throws Exception {
+        Object command = key.get(0);
+        if (Constants.HEDGE_IDEMPOTENT_READS && HEDGED_COMMANDS.contains(command)) {
+            return singleFlight.execute(key, () -> executeHedged((String) command, operation));
+        }
+        return singleFlight.execute(key, () -> execute(true, operation));
+    }
+
+    /**
+     * Runs an idempotent read that is sent a second time, on another connection, if the first
+     * attempt has not answered by the command's usual tail latency. The first answer wins and
+     * the other attempt's socket is closed. A second attempt already sent also serves as the
+     * retry when the first one fails, so a read is never sent more than twice.
+     * Until the command has been timed often enough it runs like execute().
+     */
+    private <T> T executeHedged(String command, ClientOperation<T> operation) throws Exception {
+        long delayMs = timeouts.hedgeDelayMs(command);
+        if (delayMs < 0) {
+            return execute(true, operation);
+        }
+        return Deadline.within(Constants.REQUEST_DEADLINE_MS, () -> hedge(delayMs, operation));
+    }
+
+    private <T> T hedge(long delayMs, ClientOperation<T> operation) throws Exception {
+        HedgedRead<T> read = new HedgedRead<>(operation, Deadline.current(), NetworkTask.current());
+        read.timer = hedgeExecutor.schedule(read::sendHedge, delayMs, TimeUnit.MILLISECONDS);
+        return read.run();
+    }
+
+    /**
+     * Builds a single-flight key from a command and its arguments. Requests are keyed by their
+     * exact canonical key: coalesced callers share one response, so it must answer each of them.
+     */
+    static List<Object> key(String command, Object... args) {
+        Object[] parts = new Object[args.length + 1];
+        parts[0] = command;
+        for (int i = 0; i < args.length; i++) {
+            parts[i + 1] = args[i] instanceof MapReduceRequest
+                    ? RequestKey.exact((MapReduceRequest) args[i]) : args[i];
+        }
+        return Arrays.asList(parts);
+    }
+
+    /**
+     * @return Counters of executed and coalesced reads
+     */
+    public SingleFlight<List<Object>> getSingleFlight() {
+        return singleFlight;
+    }
+
+    /**
+     * Closes all pooled connections. Used when the app no longer needs the Master.
+     */
+    public void shutdown() {
+        pool.close();
+    }
+
+    private <T> T executeOnce(ClientOperation<T> operation) throws Exception {
+        NetworkTask<?> task = NetworkTask.current();
+        SocketClient client = pool.borrow();
+        try {
+            // Lets a cancelled NetworkTask close this socket to unblock its read
+            NetworkTask.attachConnection(task, client);
+        } catch (CancellationException e) {
+            pool.release(client);
+            throw e;
+        }
+        T result;
+        try {
+            result = operation.execute(client);
+        } catch (Exception e) {
+            NetworkTask.detachConnection(task, client);
+            // The stream state is unknown after a failure, so never hand this socket out again
+            pool.invalidate(client);
+            throw e;
+        }
+        // Detached before the socket goes back, so a late cancel() cannot close it under its next borrower
+        NetworkTask.detachConnection(task, client);
+        pool.release(client);
+        return result;
+    }
+
+    /**
+     * A read sent on a second connection when the first is slow to answer. The first attempt
+     * runs on the calling thread and the second on a hedge thread; both sockets are attached
+     * to the caller's NetworkTask, so cancelling it closes both. The first answer wins and the
+     * other attempt's socket is closed.
+     */
+    private class HedgedRead<T> {
+        final ClientOperation<T> operation;
+        final Deadline deadline;
+        final Attempt<T> first;
+        final Attempt<T> second;
+        ScheduledFuture<?> timer;
+        // Guarded by this
+        private boolean finished;
+        private boolean hedgeSent;
+        private boolean hedgeDone;
+        private T hedgeResult;
+        private Exception hedgeError;
+
+        HedgedRead(ClientOperation<T> operation, Deadline deadline, NetworkTask<?> task) {
+            this.operation = operation;
+            this.deadline = deadline;
+            this.first = new Attempt<>(operation, task);
+            this.second = new Attempt<>(operation, task);
+        }
+
+        /**
+         * Runs on a hedge thread once the first attempt has been waiting for the hedge delay
+         */
+        void sendHedge() {
+            synchronized (this) {
+                // A hedge must not queue behind other callers for a connection
+                if (finished || !pool.hasCapacity()) {
+                    return;
+                }
+                hedgeSent = true;
+            }
+            NetLog.debug(TAG, "hedging slow read");
+            T result = null;
+            Exception error = null;
+            try {
+                result = deadline.run(second::run);
+            } catch (Exception e) {
+                error = e;
+            }
+            synchronized (this) {
+                hedgeDone = true;
+                hedgeResult = result;
+                hedgeError = error;
+                notifyAll();
+            }
+            if (error == null) {
+                // The caller is still waiting on the slower socket; closing it hands over this result
+                first.abort();
+            }
+        }
+
+        /**
+         * Runs the first attempt on the calling thread and settles the read
+         */
+        T run() throws Exception {
+            try {
+                T result;
+                try {
+                    result = first.run();
+                } catch (Exception e) {
+                    return afterFirstFailed(e);
+                }
+                synchronized (this) {
+                    if (hedgeSent) {
+                        NetworkMetrics.getShared().recordHedge(false);
+                    }
+                }
+                return result;
+            } finally {
+                synchronized (this) {
+                    finished = true;
+                }
+                timer.cancel(false);
+                // Closes the socket of a hedge still running, so it stops holding a connection
+                second.abort();
+            }
+        }
+
+        private T afterFirstFailed(Exception failure) throws Exception {
+            boolean waitForHedge;
+            synchronized (this) {
+                if (hedgeDone && hedgeError == null) {
+                    // The hedge answered first and closed this attempt's socket
+                    NetworkMetrics.getShared().recordHedge(true);
+                    return hedgeResult;
+                }
+                waitForHedge = hedgeSent;
+                // A hedge not sent yet is not sent any more; the retry below takes its place
+                finished = true;
+            }
+            if (failure instanceof CancellationException || NetworkTask.isCurrentTaskCancelled()) {
+                throw failure;
+            }
+            if (!waitForHedge) {
+                if (!(failure instanceof IOException) || deadline.isExpired()) {
+                    throw failure;
+                }
+                // Retried like execute() does, so a read is never sent more than twice
+                NetLog.info(TAG, "retrying on a new connection", "attempt", 2, "error", failure);
+                NetworkMetrics.getShared().recordRetry();
+                return executeOnce(operation);
+            }
+            // The hedge already serves as the retry
+            synchronized (this) {
+                while (!hedgeDone) {
+                    long waitMs = deadline.remainingMs();
+                    if (waitMs <= 0) {
+                        throw new SocketTimeoutException("Deadline expired waiting for the server");
+                    }
+                    wait(waitMs);
+                }
+                if (hedgeError != null) {
+                    throw hedgeError;
+                }
+                NetworkMetrics.getShared().recordHedge(true);
+                return hedgeResult;
+            }
+        }
+    }
+
+    /**
+     * One attempt of a hedged read. Its connection can be closed from another thread once the
+     * read is no longer needed.
+     */
+    private class Attempt<T> {
+        final ClientOperation<T> operation;
+        final NetworkTask<?> task;
+        private SocketClient client;
+        private boolean aborted;
+
+        Attempt(ClientOperation<T> operation, NetworkTask<?> task) {
+            this.operation = operation;
+            this.task = task;
+        }
+
+        T run() throws Exception {
+            SocketClient borrowed = pool.borrow();
+            try {
+                NetworkTask.attachConnection(task, borrowed);
+            } catch (CancellationException e) {
+                pool.release(borrowed);
+                throw e;
+            }
+            synchronized (this) {
+                if (aborted) {
+                    NetworkTask.detachConnection(task, borrowed);
+                    pool.release(borrowed);
+                    throw new CancellationException("Hedged read no longer needed");
+                }
+                client = borrowed;
+            }
+            T result;
+            try {
+                result = operation.execute(borrowed);
+            } catch (Exception e) {
+                detach();
+                NetworkTask.detachConnection(task, borrowed);
+                pool.invalidate(borrowed);
+                throw e;
+            }
+            // Detached before the socket goes back, so a late abort() or cancel() cannot close it
+            // under its next borrower
+            detach();
+            NetworkTask.detachConnection(task, borrowed);
+            pool.release(borrowed);
+            return result;
+        }
+
+        private synchronized void detach() {
+            client = null;
+        }
+
+        synchronized void abort() {
+            aborted = true;
+            if (client != null) {
+                client.abort();
+            }
+        }
+    }
+
+    private static class HedgeThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "network-hedge-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
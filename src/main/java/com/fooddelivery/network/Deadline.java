@@ -0,0 +1,83 @@
+package com.fooddelivery.network;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Point in time by which a call to the Master must have been answered.
+ * The deadline of the running call is kept per thread, so it reaches every SocketClient
+ * command, connection attempt and retry made on its behalf without changing their signatures.
+ * A nested deadline never extends the one already in force.
+ */
+public final class Deadline {
+
+    private static final ThreadLocal<Deadline> current = new ThreadLocal<>();
+
+    private final long expiresAtNanos;
+
+    private Deadline(long expiresAtNanos) {
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    /**
+     * @param timeoutMs Time from now
+     * @return A deadline that expires after the timeout
+     */
+    public static Deadline after(long timeoutMs) {
+        return new Deadline(System.nanoTime() + timeoutMs * 1_000_000);
+    }
+
+    /**
+     * @return The deadline in force on this thread, or null outside of a call
+     */
+    public static Deadline current() {
+        return current.get();
+    }
+
+    /**
+     * Runs an action under a deadline of at most the given timeout, or under the deadline
+     * already in force if that one expires sooner
+     * @param timeoutMs Time the action may take
+     * @param action The action
+     * @return The action's result
+     * @throws Exception whatever the action throws
+     */
+    public static <T> T within(long timeoutMs, Callable<T> action) throws Exception {
+        Deadline enclosing = current.get();
+        Deadline requested = after(timeoutMs);
+        if (enclosing != null && enclosing.expiresAtNanos - requested.expiresAtNanos <= 0) {
+            return action.call();
+        }
+        return requested.run(action);
+    }
+
+    /**
+     * Runs an action under this deadline, e.g. on another thread working for the same call
+     * @param action The action
+     * @return The action's result
+     * @throws Exception whatever the action throws
+     */
+    public <T> T run(Callable<T> action) throws Exception {
+        Deadline previous = current.get();
+        current.set(this);
+        try {
+            return action.call();
+        } finally {
+            if (previous != null) {
+                current.set(previous);
+            } else {
+                current.remove();
+            }
+        }
+    }
+
+    /**
+     * @return Milliseconds left, 0 or less once expired
+     */
+    public long remainingMs() {
+        return (expiresAtNanos - System.nanoTime()) / 1_000_000;
+    }
+
+    public boolean isExpired() {
+        return expiresAtNanos - System.nanoTime() <= 0;
+    }
+}
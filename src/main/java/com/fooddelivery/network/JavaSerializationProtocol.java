@@ -0,0 +1,66 @@
+package com.fooddelivery.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+/**
+ * Original protocol: the command and each argument are written as separate serialized objects.
+ * Kept as the fallback for Masters that do not speak the binary protocol.
+ */
+public class JavaSerializationProtocol implements WireProtocol {
+
+    private final ObjectOutputStream out;
+    private final ObjectInputStream in;
+
+    /**
+     * Creates the object streams on a connected socket, exchanging stream headers with the peer
+     * @param socket Connected socket
+     * @throws IOException if the header exchange fails
+     */
+    public JavaSerializationProtocol(Socket socket) throws IOException {
+        this(socket.getInputStream(), socket.getOutputStream());
+    }
+
+    /**
+     * Creates the object streams on the streams of a connected socket
+     * @param input Socket input stream
+     * @param output Socket output stream
+     * @throws IOException if the header exchange fails
+     */
+    public JavaSerializationProtocol(InputStream input, OutputStream output) throws IOException {
+        this.out = new ObjectOutputStream(output);
+        this.in = new ObjectInputStream(input);
+    }
+
+    @Override
+    public void writeCommand(String command, Object... args) throws IOException {
+        out.writeObject(command);
+        for (Object arg : args) {
+            out.writeObject(arg);
+        }
+        out.flush();
+        // Forget the objects already written so a long-lived stream
+        // neither grows its handle table nor sends stale back-references
+        out.reset();
+    }
+
+    @Override
+    public Object readResponse() throws Exception {
+        return in.readObject();
+    }
+
+    @Override
+    public String getName() {
+        return "java-serialization";
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+        out.close();
+    }
+}
@@ -0,0 +1,60 @@
+package com.fooddelivery.network;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Socket input stream that counts the bytes received and notes when the first byte of a
+ * response arrived. Used by one reader at a time, under the client's read lock.
+ */
+class MeteredInputStream extends FilterInputStream {
+
+    private final NetworkMetrics metrics;
+    private long firstByteNanos;
+
+    MeteredInputStream(InputStream in, NetworkMetrics metrics) {
+        super(in);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Forgets the arrival time of the previous response before the next one is read
+     */
+    void startResponse() {
+        firstByteNanos = 0;
+    }
+
+    /**
+     * @return System.nanoTime() at which bytes first arrived since startResponse(), or 0 if the
+     *         response was read entirely from bytes buffered with an earlier one
+     */
+    long getFirstByteNanos() {
+        return firstByteNanos;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            received(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int n = super.read(buffer, offset, length);
+        if (n > 0) {
+            received(n);
+        }
+        return n;
+    }
+
+    private void received(int bytes) {
+        if (firstByteNanos == 0) {
+            firstByteNanos = System.nanoTime();
+        }
+        metrics.addBytesIn(bytes);
+    }
+}
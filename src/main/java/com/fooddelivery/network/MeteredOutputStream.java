@@ -0,0 +1,31 @@
+package com.fooddelivery.network;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Socket output stream that counts the bytes sent
+ */
+class MeteredOutputStream extends FilterOutputStream {
+
+    private final NetworkMetrics metrics;
+
+    MeteredOutputStream(OutputStream out, NetworkMetrics metrics) {
+        super(out);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        metrics.addBytesOut(1);
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        // FilterOutputStream would write the array one byte at a time
+        out.write(buffer, offset, length);
+        metrics.addBytesOut(length);
+    }
+}
@@ -0,0 +1,235 @@
+package com.fooddelivery.network;
+
+import android.util.Log;
+
+import com.fooddelivery.utils.Constants;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logging facade for the network layer.
+ * Events are a name plus key=value fields and are formatted only once they pass the level
+ * check, so a disabled event costs a comparison and no string building. Debug events and
+ * command spans are additionally sampled, one in Constants.NETWORK_LOG_SAMPLE_RATE, so that
+ * turning debug logging on does not flood logcat from the response path. Collections are
+ * logged by size, never by content.
+ */
+public final class NetLog {
+
+    /**
+     * Destination of formatted events; logcat unless replaced in tests
+     */
+    interface Sink {
+        void write(int priority, String tag, String message);
+    }
+
+    private static final Sink LOGCAT = (priority, tag, message) -> {
+        switch (priority) {
+            case Log.ERROR:
+                Log.e(tag, message);
+                break;
+            case Log.WARN:
+                Log.w(tag, message);
+                break;
+            case Log.INFO:
+                Log.i(tag, message);
+                break;
+            default:
+                Log.d(tag, message);
+                break;
+        }
+    };
+
+    private static volatile int level = Constants.NETWORK_LOG_LEVEL;
+    private static volatile int sampleRate = Constants.NETWORK_LOG_SAMPLE_RATE;
+    private static volatile Sink sink = LOGCAT;
+    private static final AtomicLong sampleCounter = new AtomicLong();
+
+    private NetLog() {
+    }
+
+    /**
+     * Changes the lowest priority that is logged, e.g. to Log.DEBUG while investigating an issue
+     * @param priority An android.util.Log priority
+     */
+    public static void setLevel(int priority) {
+        level = priority;
+    }
+
+    /**
+     * Changes the share of debug events and spans that are logged
+     * @param oneIn Log one in this many; 1 logs all of them
+     */
+    public static void setSampleRate(int oneIn) {
+        sampleRate = Math.max(1, oneIn);
+    }
+
+    static void setSink(Sink replacement) {
+        sink = replacement != null ? replacement : LOGCAT;
+    }
+
+    /**
+     * @param priority An android.util.Log priority
+     * @return true if events of this priority are logged at all
+     */
+    public static boolean isEnabled(int priority) {
+        return priority >= level;
+    }
+
+    /**
+     * @return true if this debug event should be logged: debug is enabled and it is sampled
+     */
+    static boolean sampleDebug() {
+        if (level > Log.DEBUG) {
+            return false;
+        }
+        int rate = sampleRate;
+        return rate <= 1 || sampleCounter.getAndIncrement() % rate == 0;
+    }
+
+    public static void debug(String tag, String event) {
+        if (sampleDebug()) {
+            emit(Log.DEBUG, tag, event, null, null, null, null, null, null);
+        }
+    }
+
+    public static void debug(String tag, String event, String key, Object value) {
+        if (sampleDebug()) {
+            emit(Log.DEBUG, tag, event, key, value, null, null, null, null);
+        }
+    }
+
+    public static void debug(String tag, String event, String key1, Object value1, String key2, Object value2) {
+        if (sampleDebug()) {
+            emit(Log.DEBUG, tag, event, key1, value1, key2, value2, null, null);
+        }
+    }
+
+    public static void debug(String tag, String event, String key1, Object value1, String key2, Object value2,
+                             String key3, Object value3) {
+        if (sampleDebug()) {
+            emit(Log.DEBUG, tag, event, key1, value1, key2, value2, key3, value3);
+        }
+    }
+
+    public static void info(String tag, String event, String key, Object value) {
+        if (isEnabled(Log.INFO)) {
+            emit(Log.INFO, tag, event, key, value, null, null, null, null);
+        }
+    }
+
+    public static void info(String tag, String event, String key1, Object value1, String key2, Object value2) {
+        if (isEnabled(Log.INFO)) {
+            emit(Log.INFO, tag, event, key1, value1, key2, value2, null, null);
+        }
+    }
+
+    public static void warn(String tag, String event, String key, Object value) {
+        if (isEnabled(Log.WARN)) {
+            emit(Log.WARN, tag, event, key, value, null, null, null, null);
+        }
+    }
+
+    public static void warn(String tag, String event, String key1, Object value1, String key2, Object value2) {
+        if (isEnabled(Log.WARN)) {
+            emit(Log.WARN, tag, event, key1, value1, key2, value2, null, null);
+        }
+    }
+
+    public static void error(String tag, String event, String key, Object value) {
+        if (isEnabled(Log.ERROR)) {
+            emit(Log.ERROR, tag, event, key, value, null, null, null, null);
+        }
+    }
+
+    /**
+     * Starts timing a command. Only sampled commands are timed; the others get a span that
+     * does nothing, so untraced commands allocate nothing.
+     * @param tag Log tag
+     * @param command Command name
+     * @param correlationId Identifies the command on its connection
+     * @return The span, to be ended when the response has been read
+     */
+    static Span startSpan(String tag, String command, long correlationId) {
+        if (!sampleDebug()) {
+            return Span.NONE;
+        }
+        return new Span(tag, command, correlationId, System.nanoTime());
+    }
+
+    /**
+     * Timing of one command, logged as a single line when it ends
+     */
+    static final class Span {
+        static final Span NONE = new Span(null, null, 0, 0);
+
+        private final String tag;
+        private final String command;
+        private final long correlationId;
+        private final long startNanos;
+
+        private Span(String tag, String command, long correlationId, long startNanos) {
+            this.tag = tag;
+            this.command = command;
+            this.correlationId = correlationId;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * Ends the span with the command's response or failure
+         * @param response The response, summarized by type and size
+         * @param error The failure, or null
+         */
+        void end(Object response, Exception error) {
+            if (this == NONE) {
+                return;
+            }
+            long micros = (System.nanoTime() - startNanos) / 1000;
+            StringBuilder line = new StringBuilder(96).append("span command=").append(command)
+                    .append(" id=").append(correlationId)
+                    .append(" ms=").append(micros / 1000).append('.').append(micros % 1000 / 100);
+            if (error != null) {
+                line.append(" outcome=error error=").append(error.getClass().getSimpleName());
+            } else {
+                line.append(" outcome=ok result=");
+                appendValue(line, response);
+            }
+            sink.write(Log.DEBUG, tag, line.toString());
+        }
+    }
+
+    private static void emit(int priority, String tag, String event, String key1, Object value1,
+                             String key2, Object value2, String key3, Object value3) {
+        StringBuilder line = new StringBuilder(64).append(event);
+        appendField(line, key1, value1);
+        appendField(line, key2, value2);
+        appendField(line, key3, value3);
+        sink.write(priority, tag, line.toString());
+    }
+
+    private static void appendField(StringBuilder line, String key, Object value) {
+        if (key != null) {
+            line.append(' ').append(key).append('=');
+            appendValue(line, value);
+        }
+    }
+
+    /**
+     * Appends a value, reducing payloads to their type and size
+     */
+    private static void appendValue(StringBuilder line, Object value) {
+        if (value instanceof Collection) {
+            line.append("list[").append(((Collection<?>) value).size()).append(']');
+        } else if (value instanceof Map) {
+            line.append("map[").append(((Map<?, ?>) value).size()).append(']');
+        } else if (value instanceof Throwable) {
+            line.append('"').append(((Throwable) value).getMessage()).append('"');
+        } else if (value instanceof String || value instanceof Number || value instanceof Boolean || value == null) {
+            line.append(value);
+        } else {
+            line.append(value.getClass().getSimpleName());
+        }
+    }
+}
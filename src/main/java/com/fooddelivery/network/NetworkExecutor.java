@@ -0,0 +1,266 @@
+package com.fooddelivery.network;
+
+import com.fooddelivery.utils.Constants;
+
+import java.util.Iterator;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared, bounded executor for network work.
+ * A fixed number of named worker threads drain a bounded priority queue in which
+ * foreground requests always run ahead of prefetches.
+ */
+public class NetworkExecutor {
+    private static final String TAG = "NetworkExecutor";
+
+    private static volatile NetworkExecutor shared;
+
+    /**
+     * Scheduling priority of a network task
+     */
+    public enum Priority {
+        /** Work the user is waiting for */
+        FOREGROUND,
+        /** Speculative work that may be dropped when the queue is full */
+        PREFETCH
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final BoundedPriorityQueue queue;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong rejectedTasks = new AtomicLong();
+
+    /**
+     * Creates a new NetworkExecutor
+     * @param threadCount Number of worker threads
+     * @param queueCapacity Maximum number of tasks waiting for a thread
+     */
+    public NetworkExecutor(int threadCount, int queueCapacity) {
+        this.queue = new BoundedPriorityQueue(queueCapacity);
+        this.executor = new ThreadPoolExecutor(threadCount, threadCount, 30, TimeUnit.SECONDS,
+                queue, new NetworkThreadFactory(), this::onRejected);
+        // Let idle workers exit so the app holds no threads between bursts
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Gets the executor shared by all NetworkTasks
+     * @return The shared NetworkExecutor
+     */
+    public static NetworkExecutor getShared() {
+        if (shared == null) {
+            synchronized (NetworkExecutor.class) {
+                if (shared == null) {
+                    shared = new NetworkExecutor(Constants.NETWORK_THREAD_COUNT,
+                            Constants.NETWORK_QUEUE_CAPACITY);
+                }
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Replaces the shared executor configuration. Must be called before the first network task runs.
+     * @param threadCount Number of worker threads
+     * @param queueCapacity Maximum number of tasks waiting for a thread
+     */
+    public static synchronized void configure(int threadCount, int queueCapacity) {
+        if (shared != null) {
+            throw new IllegalStateException("Shared NetworkExecutor is already in use");
+        }
+        shared = new NetworkExecutor(threadCount, queueCapacity);
+    }
+
+    /**
+     * Queues a task for execution
+     * @param task The work to run
+     * @param priority The scheduling priority
+     * @return A future that can be used to cancel the task
+     * @throws RejectedExecutionException if the queue is full and nothing could be displaced
+     */
+    public FutureTask<Void> submit(Runnable task, Priority priority) {
+        return submit(task, priority, null);
+    }
+
+    /**
+     * Queues a task that must learn when it is dropped from the queue without running
+     * @param task The work to run
+     * @param priority The scheduling priority
+     * @param onDisplaced Told why, on the thread that displaced the task, if a foreground
+     *                    task takes its place in the queue; may be null
+     * @return A future that can be used to cancel the task
+     * @throws RejectedExecutionException if the queue is full and nothing could be displaced
+     */
+    public FutureTask<Void> submit(Runnable task, Priority priority, DisplacedListener onDisplaced) {
+        PrioritizedTask prioritized = new PrioritizedTask(task, priority, sequence.getAndIncrement(), onDisplaced);
+        executor.execute(prioritized);
+        return prioritized;
+    }
+
+    /**
+     * Receives the reason a queued task was dropped to make room for a foreground task
+     */
+    public interface DisplacedListener {
+        void onDisplaced(CancellationException reason);
+    }
+
+    /**
+     * Gets a snapshot of the executor state
+     * @return Current queue depth, active threads and task counters
+     */
+    public Stats getStats() {
+        return new Stats(queue.size(), executor.getActiveCount(), executor.getPoolSize(),
+                executor.getCompletedTaskCount(), rejectedTasks.get());
+    }
+
+    /**
+     * Rejection policy: a foreground task displaces the newest queued prefetch,
+     * anything else is rejected so callers can report the error instead of blocking.
+     */
+    private void onRejected(Runnable runnable, ThreadPoolExecutor executor) {
+        PrioritizedTask task = (PrioritizedTask) runnable;
+        if (!executor.isShutdown() && task.priority == Priority.FOREGROUND) {
+            PrioritizedTask victim = queue.removeLowestPriority();
+            if (victim != null) {
+                victim.cancel(false);
+                rejectedTasks.incrementAndGet();
+                NetLog.debug(TAG, "dropped queued prefetch", "reason", "foreground request");
+                if (victim.onDisplaced != null) {
+                    // Owners such as CatalogPrefetcher release their bookkeeping in this callback
+                    victim.onDisplaced.onDisplaced(
+                            new CancellationException("Dropped from the network queue for a foreground request"));
+                }
+                if (queue.offer(task)) {
+                    return;
+                }
+            }
+        }
+        rejectedTasks.incrementAndGet();
+        throw new RejectedExecutionException("Network queue is full");
+    }
+
+    /**
+     * Point-in-time view of the executor
+     */
+    public static class Stats {
+        private final int queueDepth;
+        private final int activeThreads;
+        private final int poolSize;
+        private final long completedTasks;
+        private final long rejectedTasks;
+
+        Stats(int queueDepth, int activeThreads, int poolSize, long completedTasks, long rejectedTasks) {
+            this.queueDepth = queueDepth;
+            this.activeThreads = activeThreads;
+            this.poolSize = poolSize;
+            this.completedTasks = completedTasks;
+            this.rejectedTasks = rejectedTasks;
+        }
+
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public int getActiveThreads() {
+            return activeThreads;
+        }
+
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        public long getCompletedTasks() {
+            return completedTasks;
+        }
+
+        public long getRejectedTasks() {
+            return rejectedTasks;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "queueDepth=" + queueDepth +
+                    ", activeThreads=" + activeThreads +
+                    ", poolSize=" + poolSize +
+                    ", completedTasks=" + completedTasks +
+                    ", rejectedTasks=" + rejectedTasks +
+                    '}';
+        }
+    }
+
+    /**
+     * Task ordered by priority first and submission order second
+     */
+    private static class PrioritizedTask extends FutureTask<Void> implements Comparable<PrioritizedTask> {
+        final Priority priority;
+        final long sequence;
+        final DisplacedListener onDisplaced;
+
+        PrioritizedTask(Runnable runnable, Priority priority, long sequence, DisplacedListener onDisplaced) {
+            super(runnable, null);
+            this.priority = priority;
+            this.sequence = sequence;
+            this.onDisplaced = onDisplaced;
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Priority queue that refuses new elements once it reaches its capacity
+     */
+    private static class BoundedPriorityQueue extends PriorityBlockingQueue<Runnable> {
+        private final int capacity;
+
+        BoundedPriorityQueue(int capacity) {
+            this.capacity = capacity;
+        }
+
+        @Override
+        public synchronized boolean offer(Runnable runnable) {
+            return size() < capacity && super.offer(runnable);
+        }
+
+        /**
+         * Removes the queued prefetch that would run last, if any
+         */
+        synchronized PrioritizedTask removeLowestPriority() {
+            PrioritizedTask lowest = null;
+            Iterator<Runnable> it = iterator();
+            while (it.hasNext()) {
+                PrioritizedTask task = (PrioritizedTask) it.next();
+                if (task.priority == Priority.PREFETCH && (lowest == null || task.compareTo(lowest) > 0)) {
+                    lowest = task;
+                }
+            }
+            return lowest != null && remove(lowest) ? lowest : null;
+        }
+    }
+
+    /**
+     * Creates named daemon threads so network workers are easy to spot in traces
+     */
+    private static class NetworkThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "network-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
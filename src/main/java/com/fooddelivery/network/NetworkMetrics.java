@@ -0,0 +1,402 @@
+package com.fooddelivery.network;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency and throughput of the network layer, per command.
+ * SocketClient records connect time, bytes on the wire and, for every command, the time to
+ * the first byte of its response, the time spent reading and decoding it and the total
+ * latency seen by the caller. NetworkTask records how long tasks waited for a worker and how
+ * long they ran. Recording is lock-free and allocates nothing once a command has been seen,
+ * so it stays on in release builds; snapshot() copies everything for export.
+ */
+public final class NetworkMetrics {
+
+    private static final NetworkMetrics shared = new NetworkMetrics();
+
+    private final LatencyHistogram connectTime = new LatencyHistogram();
+    private final AtomicLong connectFailures = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final ConcurrentHashMap<String, CommandMetrics> commands = new ConcurrentHashMap<>();
+    private final LatencyHistogram taskQueueTime = new LatencyHistogram();
+    private final LatencyHistogram taskRunTime = new LatencyHistogram();
+    private final AtomicLong taskFailures = new AtomicLong();
+    private final AtomicLong taskCancellations = new AtomicLong();
+
+    /**
+     * Measurements of one command
+     */
+    private static class CommandMetrics {
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final LatencyHistogram firstByte = new LatencyHistogram();
+        final LatencyHistogram read = new LatencyHistogram();
+        final LatencyHistogram total = new LatencyHistogram();
+    }
+
+    NetworkMetrics() {
+    }
+
+    /**
+     * Gets the metrics recorded by every connection of the app
+     * @return The shared NetworkMetrics
+     */
+    public static NetworkMetrics getShared() {
+        return shared;
+    }
+
+    void recordConnect(long nanos) {
+        connectTime.recordNanos(nanos);
+    }
+
+    void recordConnectFailure() {
+        connectFailures.incrementAndGet();
+    }
+
+    void addBytesIn(long bytes) {
+        bytesIn.addAndGet(bytes);
+    }
+
+    void addBytesOut(long bytes) {
+        bytesOut.addAndGet(bytes);
+    }
+
+    void recordRetry() {
+        retries.incrementAndGet();
+    }
+
+    /**
+     * Records a hedged read whose second attempt was sent
+     * @param won Whether the second attempt answered first
+     */
+    void recordHedge(boolean won) {
+        hedges.incrementAndGet();
+        if (won) {
+            hedgeWins.incrementAndGet();
+        }
+    }
+
+    /**
+     * @see LatencyHistogram#getPercentileMicros(double, long)
+     */
+    long getConnectPercentileMicros(double percentile, long minCount) {
+        return connectTime.getPercentileMicros(percentile, minCount);
+    }
+
+    /**
+     * Percentile of a command's total latency, for the timeouts of its next calls
+     * @see LatencyHistogram#getPercentileMicros(double, long)
+     */
+    long getLatencyPercentileMicros(String command, double percentile, long minCount) {
+        CommandMetrics metrics = commands.get(command);
+        return metrics != null ? metrics.total.getPercentileMicros(percentile, minCount) : -1;
+    }
+
+    /**
+     * Records a command whose response has been read
+     * @param command Command name
+     * @param sentNanos When the command was written
+     * @param firstByteNanos When the first byte of its response arrived
+     * @param endNanos When its response had been read and decoded
+     * @param failed Whether reading the response failed
+     */
+    void recordCommand(String command, long sentNanos, long firstByteNanos, long endNanos, boolean failed) {
+        CommandMetrics metrics = commandMetrics(command);
+        metrics.calls.incrementAndGet();
+        if (failed) {
+            metrics.errors.incrementAndGet();
+        }
+        metrics.firstByte.recordNanos(firstByteNanos - sentNanos);
+        metrics.read.recordNanos(endNanos - firstByteNanos);
+        metrics.total.recordNanos(endNanos - sentNanos);
+    }
+
+    /**
+     * Records a command that failed before its response could be read, e.g. because the
+     * connection broke under an earlier command
+     * @param command Command name
+     */
+    void recordCommandFailure(String command) {
+        CommandMetrics metrics = commandMetrics(command);
+        metrics.calls.incrementAndGet();
+        metrics.errors.incrementAndGet();
+    }
+
+    /**
+     * Records a NetworkTask that ran to completion
+     * @param queuedNanos Time between execute() and the start of the operation
+     * @param runNanos Time the operation took
+     * @param failed Whether the operation threw
+     */
+    void recordTask(long queuedNanos, long runNanos, boolean failed) {
+        taskQueueTime.recordNanos(queuedNanos);
+        taskRunTime.recordNanos(runNanos);
+        if (failed) {
+            taskFailures.incrementAndGet();
+        }
+    }
+
+    void recordTaskCancelled() {
+        taskCancellations.incrementAndGet();
+    }
+
+    private CommandMetrics commandMetrics(String command) {
+        CommandMetrics metrics = commands.get(command);
+        if (metrics == null) {
+            CommandMetrics created = new CommandMetrics();
+            CommandMetrics raced = commands.putIfAbsent(command, created);
+            metrics = raced != null ? raced : created;
+        }
+        return metrics;
+    }
+
+    /**
+     * Copies every measurement. Values recorded while the copy is made may be missing from it.
+     * @return An immutable copy
+     */
+    public Snapshot snapshot() {
+        Map<String, CommandSnapshot> commandSnapshots = new TreeMap<>();
+        for (Map.Entry<String, CommandMetrics> entry : commands.entrySet()) {
+            CommandMetrics metrics = entry.getValue();
+            commandSnapshots.put(entry.getKey(), new CommandSnapshot(metrics.calls.get(), metrics.errors.get(),
+                    metrics.firstByte.snapshot(), metrics.read.snapshot(), metrics.total.snapshot()));
+        }
+        return new Snapshot(this, Collections.unmodifiableMap(commandSnapshots));
+    }
+
+    /**
+     * Starts over, e.g. after a snapshot has been uploaded. Values recorded concurrently may
+     * be kept or dropped.
+     */
+    public void reset() {
+        connectTime.reset();
+        connectFailures.set(0);
+        bytesIn.set(0);
+        bytesOut.set(0);
+        retries.set(0);
+        hedges.set(0);
+        hedgeWins.set(0);
+        commands.clear();
+        taskQueueTime.reset();
+        taskRunTime.reset();
+        taskFailures.set(0);
+        taskCancellations.set(0);
+    }
+
+    /**
+     * Measurements of one command at one point in time
+     */
+    public static final class CommandSnapshot {
+        private final long calls;
+        private final long errors;
+        private final LatencyHistogram.Snapshot timeToFirstByte;
+        private final LatencyHistogram.Snapshot readTime;
+        private final LatencyHistogram.Snapshot totalTime;
+
+        private CommandSnapshot(long calls, long errors, LatencyHistogram.Snapshot timeToFirstByte,
+                                LatencyHistogram.Snapshot readTime, LatencyHistogram.Snapshot totalTime) {
+            this.calls = calls;
+            this.errors = errors;
+            this.timeToFirstByte = timeToFirstByte;
+            this.readTime = readTime;
+            this.totalTime = totalTime;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * @return Time from writing the command to the first byte of its response
+         */
+        public LatencyHistogram.Snapshot getTimeToFirstByte() {
+            return timeToFirstByte;
+        }
+
+        /**
+         * @return Time from the first byte of the response to the decoded response, i.e. the
+         *         transfer of the rest of the response and its deserialization
+         */
+        public LatencyHistogram.Snapshot getReadTime() {
+            return readTime;
+        }
+
+        /**
+         * @return Time from writing the command to the decoded response
+         */
+        public LatencyHistogram.Snapshot getTotalTime() {
+            return totalTime;
+        }
+    }
+
+    /**
+     * All measurements at one point in time
+     */
+    public static final class Snapshot {
+        private final LatencyHistogram.Snapshot connectTime;
+        private final long connectFailures;
+        private final long bytesIn;
+        private final long bytesOut;
+        private final long retries;
+        private final long hedges;
+        private final long hedgeWins;
+        private final Map<String, CommandSnapshot> commands;
+        private final LatencyHistogram.Snapshot taskQueueTime;
+        private final LatencyHistogram.Snapshot taskRunTime;
+        private final long taskFailures;
+        private final long taskCancellations;
+
+        private Snapshot(NetworkMetrics metrics, Map<String, CommandSnapshot> commands) {
+            this.connectTime = metrics.connectTime.snapshot();
+            this.connectFailures = metrics.connectFailures.get();
+            this.bytesIn = metrics.bytesIn.get();
+            this.bytesOut = metrics.bytesOut.get();
+            this.retries = metrics.retries.get();
+            this.hedges = metrics.hedges.get();
+            this.hedgeWins = metrics.hedgeWins.get();
+            this.commands = commands;
+            this.taskQueueTime = metrics.taskQueueTime.snapshot();
+            this.taskRunTime = metrics.taskRunTime.snapshot();
+            this.taskFailures = metrics.taskFailures.get();
+            this.taskCancellations = metrics.taskCancellations.get();
+        }
+
+        /**
+         * @return Time to open a connection and agree on a wire protocol
+         */
+        public LatencyHistogram.Snapshot getConnectTime() {
+            return connectTime;
+        }
+
+        public long getConnectFailures() {
+            return connectFailures;
+        }
+
+        public long getBytesIn() {
+            return bytesIn;
+        }
+
+        public long getBytesOut() {
+            return bytesOut;
+        }
+
+        /**
+         * @return Idempotent operations resent on a new connection after an I/O error
+         */
+        public long getRetries() {
+            return retries;
+        }
+
+        /**
+         * @return Idempotent reads for which a second attempt was sent after the first was slow
+         */
+        public long getHedges() {
+            return hedges;
+        }
+
+        /**
+         * @return Hedged reads answered first by the second attempt
+         */
+        public long getHedgeWins() {
+            return hedgeWins;
+        }
+
+        /**
+         * @return Measurements per command name, sorted by name
+         */
+        public Map<String, CommandSnapshot> getCommands() {
+            return commands;
+        }
+
+        /**
+         * @param command Command name, e.g. "filter"
+         * @return Its measurements, or null if it has not been sent
+         */
+        public CommandSnapshot getCommand(String command) {
+            return commands.get(command);
+        }
+
+        /**
+         * @return Time NetworkTasks waited for a worker thread
+         */
+        public LatencyHistogram.Snapshot getTaskQueueTime() {
+            return taskQueueTime;
+        }
+
+        /**
+         * @return Time NetworkTask operations ran
+         */
+        public LatencyHistogram.Snapshot getTaskRunTime() {
+            return taskRunTime;
+        }
+
+        public long getTaskFailures() {
+            return taskFailures;
+        }
+
+        public long getTaskCancellations() {
+            return taskCancellations;
+        }
+
+        /**
+         * Flattens the snapshot for an analytics event or a log line. Durations are in
+         * microseconds and summarized by count, p50, p90, p99 and max, e.g.
+         * "command.filter.total.p99_us".
+         * @return Metric name to value, sorted by name
+         */
+        public Map<String, Long> export() {
+            Map<String, Long> values = new TreeMap<>();
+            exportHistogram(values, "connect", connectTime);
+            values.put("connect.failures", connectFailures);
+            values.put("bytes.in", bytesIn);
+            values.put("bytes.out", bytesOut);
+            values.put("retries", retries);
+            values.put("hedges.sent", hedges);
+            values.put("hedges.won", hedgeWins);
+            for (Map.Entry<String, CommandSnapshot> entry : commands.entrySet()) {
+                String prefix = "command." + entry.getKey();
+                CommandSnapshot command = entry.getValue();
+                values.put(prefix + ".calls", command.calls);
+                values.put(prefix + ".errors", command.errors);
+                exportHistogram(values, prefix + ".first_byte", command.timeToFirstByte);
+                exportHistogram(values, prefix + ".read", command.readTime);
+                exportHistogram(values, prefix + ".total", command.totalTime);
+            }
+            exportHistogram(values, "task.queue", taskQueueTime);
+            exportHistogram(values, "task.run", taskRunTime);
+            values.put("task.failures", taskFailures);
+            values.put("task.cancellations", taskCancellations);
+            return values;
+        }
+
+        private static void exportHistogram(Map<String, Long> values, String prefix,
+                                            LatencyHistogram.Snapshot histogram) {
+            values.put(prefix + ".count", histogram.getCount());
+            values.put(prefix + ".p50_us", histogram.getPercentileMicros(50));
+            values.put(prefix + ".p90_us", histogram.getPercentileMicros(90));
+            values.put(prefix + ".p99_us", histogram.getPercentileMicros(99));
+            values.put(prefix + ".max_us", histogram.getMaxMicros());
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            for (Map.Entry<String, Long> entry : export().entrySet()) {
+                text.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+            }
+            return text.toString();
+        }
+    }
+}
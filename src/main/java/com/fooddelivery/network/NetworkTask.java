@@ -2,23 +2,45 @@ package com.fooddelivery.network;
 
 import android.os.Handler;
 import android.os.Looper;
-import android.util.Log;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
- * Generic network task class that executes operations in a background thread
+ * Generic network task class that executes operations on the shared NetworkExecutor
  * @param <T> The type of response data
  */
-public class NetworkTask<T> {
+public class NetworkTask<T> implements Cancellable {
     private static final String TAG = "NetworkTask";
-    
+
+    // Task currently running on this worker thread, used to tie borrowed sockets to it
+    private static final ThreadLocal<NetworkTask<?>> currentTask = new ThreadLocal<>();
+
     public interface TaskCallback<T> {
         void onSuccess(T result);
         void onError(Exception error);
     }
 
-    private final NetworkOperation<T> operation;
-    private final TaskCallback<T> callback;
+    // Cleared on cancel so an abandoned screen is no longer referenced
+    private volatile NetworkOperation<T> operation;
+    private volatile TaskCallback<T> callback;
     private final Handler mainHandler;
+    private final NetworkExecutor.Priority priority;
+
+    private volatile boolean cancelled;
+    private long queuedNanos;
+    private Future<?> future;
+    // Sockets the running task is waiting on; a hedged read uses two
+    private final List<SocketClient> connections = new ArrayList<>(2);
+    private Lifecycle lifecycle;
+    private LifecycleEventObserver lifecycleObserver;
 
     /**
      * Functional interface for defining network operations
@@ -28,35 +50,214 @@ public class NetworkTask<T> {
         T execute() throws Exception;
     }
 
+    /**
+     * Invocation of one of the callback methods, run on the main thread
+     */
+    private interface Delivery<T> {
+        void deliverTo(TaskCallback<T> callback);
+    }
+
     /**
      * Creates a new NetworkTask
      * @param operation The network operation to execute
      * @param callback The callback to receive results or errors
      */
     public NetworkTask(NetworkOperation<T> operation, TaskCallback<T> callback) {
+        this(operation, callback, NetworkExecutor.Priority.FOREGROUND);
+    }
+
+    /**
+     * Creates a new NetworkTask with an explicit scheduling priority
+     * @param operation The network operation to execute
+     * @param callback The callback to receive results or errors
+     * @param priority FOREGROUND for work the user waits on, PREFETCH for speculative work
+     */
+    public NetworkTask(NetworkOperation<T> operation, TaskCallback<T> callback,
+                       NetworkExecutor.Priority priority) {
         this.operation = operation;
         this.callback = callback;
+        this.priority = priority;
         // Handler attached to the main thread for UI updates
         this.mainHandler = new Handler(Looper.getMainLooper());
     }
 
     /**
-     * Executes the network operation in a background thread
+     * Cancels the task automatically when the given lifecycle is destroyed.
+     * Must be called on the main thread before execute().
+     * @param owner The activity (or other lifecycle owner) that displays the result
+     * @return This task, for chaining
      */
-    public void execute() {
-        new Thread(() -> {
-            try {
-                // Execute the operation in the background thread
-                final T result = operation.execute();
-                
-                // Deliver the result on the main thread
-                mainHandler.post(() -> callback.onSuccess(result));
-            } catch (final Exception e) {
-                Log.e(TAG, "Error executing network task: " + e.getMessage(), e);
-                
-                // Deliver the error on the main thread
-                mainHandler.post(() -> callback.onError(e));
+    public NetworkTask<T> bindTo(LifecycleOwner owner) {
+        lifecycle = owner.getLifecycle();
+        lifecycleObserver = (source, event) -> {
+            if (event == Lifecycle.Event.ON_DESTROY) {
+                cancel();
             }
-        }).start();
+        };
+        lifecycle.addObserver(lifecycleObserver);
+        return this;
+    }
+
+    /**
+     * Queues the network operation on the shared executor
+     * @return A handle that can be used to cancel the task
+     */
+    public Cancellable execute() {
+        queuedNanos = System.nanoTime();
+        try {
+            Future<?> submitted = NetworkExecutor.getShared().submit(this::run, priority, this::onDisplaced);
+            synchronized (this) {
+                future = submitted;
+            }
+        } catch (final RejectedExecutionException e) {
+            NetLog.warn(TAG, "task rejected", "error", e);
+            deliver(cb -> cb.onError(e));
+        }
+        return this;
+    }
+
+    /**
+     * Reports a task dropped from the queue before it ran, so its owner can release whatever
+     * it set aside for it
+     */
+    private void onDisplaced(CancellationException reason) {
+        NetLog.debug(TAG, "task displaced", "priority", priority);
+        deliver(cb -> cb.onError(reason));
+    }
+
+    /**
+     * Cancels the task: a queued task never runs, a running one has its socket closed,
+     * and no callback is delivered afterwards
+     */
+    @Override
+    public void cancel() {
+        Future<?> pending;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            pending = future;
+            operation = null;
+            callback = null;
+            // Under the lock, so a connection detached and handed back to the pool is never closed
+            for (SocketClient client : connections) {
+                // Unblocks the thread waiting on the socket
+                client.abort();
+            }
+        }
+        if (pending != null) {
+            pending.cancel(true);
+        }
+        mainHandler.post(this::unbindLifecycle);
+        NetworkMetrics.getShared().recordTaskCancelled();
+        NetLog.debug(TAG, "task cancelled");
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return The task running on this thread, or null, e.g. to attach connections borrowed
+     *         on its behalf by another thread
+     */
+    static NetworkTask<?> current() {
+        return currentTask.get();
+    }
+
+    /**
+     * Records a connection used on behalf of a task so cancel() can close it
+     * @param task The task, or null if the work does not belong to one
+     * @param client The connection that was just borrowed
+     * @throws CancellationException if the task was cancelled in the meantime
+     */
+    static void attachConnection(NetworkTask<?> task, SocketClient client) {
+        if (task != null) {
+            synchronized (task) {
+                if (task.cancelled) {
+                    throw new CancellationException("Network task cancelled");
+                }
+                task.connections.add(client);
+            }
+        }
+    }
+
+    /**
+     * @return true if the task running on this thread has been cancelled
+     */
+    static boolean isCurrentTaskCancelled() {
+        NetworkTask<?> task = currentTask.get();
+        return task != null && task.cancelled;
+    }
+
+    /**
+     * Forgets a connection recorded by attachConnection() once it is handed back
+     * @param task The task it was attached to, or null
+     * @param client The connection
+     */
+    static void detachConnection(NetworkTask<?> task, SocketClient client) {
+        if (task != null) {
+            synchronized (task) {
+                task.connections.remove(client);
+            }
+        }
+    }
+
+    /**
+     * Runs the operation on a worker thread and posts the outcome to the main thread
+     */
+    private void run() {
+        NetworkOperation<T> op = operation;
+        if (op == null) {
+            return;
+        }
+        long startNanos = System.nanoTime();
+        boolean failed = false;
+        currentTask.set(this);
+        try {
+            // Execute the operation in the background thread
+            final T result = op.execute();
+
+            // Deliver the result on the main thread
+            deliver(cb -> cb.onSuccess(result));
+        } catch (final Exception e) {
+            if (cancelled) {
+                NetLog.debug(TAG, "error of cancelled task ignored", "error", e);
+                return;
+            }
+            failed = true;
+            NetLog.warn(TAG, "task failed", "type", e.getClass().getSimpleName(), "error", e);
+
+            // Deliver the error on the main thread
+            deliver(cb -> cb.onError(e));
+        } finally {
+            currentTask.remove();
+            if (!cancelled) {
+                NetworkMetrics.getShared().recordTask(startNanos - queuedNanos, System.nanoTime() - startNanos, failed);
+            }
+        }
+    }
+
+    /**
+     * Posts a callback invocation to the main thread unless the task has been cancelled by then
+     */
+    private void deliver(Delivery<T> delivery) {
+        mainHandler.post(() -> {
+            unbindLifecycle();
+            TaskCallback<T> target = callback;
+            if (!cancelled && target != null) {
+                delivery.deliverTo(target);
+            }
+        });
+    }
+
+    private void unbindLifecycle() {
+        if (lifecycle != null) {
+            lifecycle.removeObserver(lifecycleObserver);
+            lifecycle = null;
+            lifecycleObserver = null;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,122 @@
+package com.fooddelivery.network;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces identical concurrent calls. The first caller for a key runs the call; every caller
+ * that asks for the same key while it is in flight waits for it and receives the same result
+ * or exception, so the Master sees one request instead of one per tap or screen rotation.
+ * Results are shared, so callers must treat them as read-only.
+ * @param <K> Key type; keys must implement equals and hashCode
+ */
+public class SingleFlight<K> {
+    private static final String TAG = "SingleFlight";
+
+    private final Map<K, Flight> inFlight = new HashMap<>();
+    private final AtomicLong executedCalls = new AtomicLong();
+    private final AtomicLong coalescedCalls = new AtomicLong();
+
+    /**
+     * A call in flight and, once it has finished, its outcome
+     */
+    private static class Flight {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private Object result;
+        // Whatever the call threw, including Errors, so no waiter mistakes a failure for a null result
+        private Throwable error;
+        // Set when the caller running the call was cancelled; its error is not the waiters' error
+        private boolean abandoned;
+
+        void complete(Object result, Throwable error, boolean abandoned) {
+            this.result = result;
+            this.error = error;
+            this.abandoned = abandoned;
+            done.countDown();
+        }
+    }
+
+    /**
+     * Runs a call, or joins the identical call already in flight
+     * @param key Identifies the call, e.g. the command and its canonical arguments
+     * @param call The work to run if no identical call is in flight
+     * @return The result of the call
+     * @throws Exception the exception thrown by the call, or InterruptedException if this
+     *         caller was interrupted while waiting; an Error thrown by the call is rethrown
+     *         to every caller
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(K key, Callable<T> call) throws Exception {
+        while (true) {
+            Flight flight;
+            boolean leader = false;
+            synchronized (inFlight) {
+                flight = inFlight.get(key);
+                if (flight == null) {
+                    flight = new Flight();
+                    inFlight.put(key, flight);
+                    leader = true;
+                }
+            }
+
+            if (leader) {
+                executedCalls.incrementAndGet();
+                return lead(key, flight, call);
+            }
+
+            coalescedCalls.incrementAndGet();
+            flight.done.await();
+            if (flight.abandoned) {
+                // The screen that started the call went away; one of the waiters starts it again
+                NetLog.debug(TAG, "restarting abandoned call", "key", key);
+                continue;
+            }
+            if (flight.error instanceof Exception) {
+                throw (Exception) flight.error;
+            }
+            if (flight.error instanceof Error) {
+                throw (Error) flight.error;
+            }
+            if (flight.error != null) {
+                throw new ExecutionException(flight.error);
+            }
+            return (T) flight.result;
+        }
+    }
+
+    private <T> T lead(K key, Flight flight, Callable<T> call) throws Exception {
+        T result = null;
+        Throwable error = null;
+        try {
+            result = call.call();
+            return result;
+        } catch (Throwable t) {
+            error = t;
+            throw t;
+        } finally {
+            synchronized (inFlight) {
+                // Removed before completing, so a caller arriving afterwards starts a fresh call
+                inFlight.remove(key);
+            }
+            flight.complete(result, error, error != null && NetworkTask.isCurrentTaskCancelled());
+        }
+    }
+
+    /**
+     * @return Number of calls that were actually run
+     */
+    public long getExecutedCalls() {
+        return executedCalls.get();
+    }
+
+    /**
+     * @return Number of calls that joined one already in flight
+     */
+    public long getCoalescedCalls() {
+        return coalescedCalls.get();
+    }
+}
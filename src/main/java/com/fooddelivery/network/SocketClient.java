@@ -1,29 +1,67 @@
 package com.fooddelivery.network;
 
-import android.util.Log;
 
+import com.fooddelivery.models.ChangeLog;
+import com.fooddelivery.models.ConditionalResponse;
 import com.fooddelivery.models.MapReduceRequest;
 import com.fooddelivery.models.Product;
+import com.fooddelivery.models.ProductBatch;
 import com.fooddelivery.models.Purchase;
+import com.fooddelivery.models.PurchaseOrder;
 import com.fooddelivery.models.Store;
+import com.fooddelivery.models.StoreRating;
+import com.fooddelivery.models.StoreSummary;
+
+import com.fooddelivery.utils.Constants;
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Class for handling TCP socket connections to the Master server
+ * Class for handling TCP socket connections to the Master server.
+ * A connected client runs one command at a time: SocketClientPool lends each connection to a
+ * single caller, so concurrent commands use separate sockets and a cancelled caller can close
+ * its socket without failing anyone else's command.
  */
 public class SocketClient {
     private static final String TAG = "SocketClient";
 
+    // Masters that did not take the binary offer, with the time until which later connections
+    // skip it: for good when the Master answered as a legacy server, for a while when it did not answer
+    private static final Map<String, Long> legacyServers = new ConcurrentHashMap<>();
+
     private final String serverIp;
     private final int serverPort;
     private Socket socket;
-    private ObjectOutputStream out;
-    private ObjectInputStream in;
+    private WireProtocol protocol;
+    private MeteredInputStream input;
+    private final NetworkMetrics metrics = NetworkMetrics.getShared();
+    private final AdaptiveTimeouts timeouts = new AdaptiveTimeouts(metrics);
+
+    // Held while a command is written and its response read
+    private final Object commandLock = new Object();
+    // Numbers the commands sent on this connection, for the log
+    private final AtomicLong nextCorrelationId = new AtomicLong();
+    private volatile boolean broken;
+    // Set once the connection carries a subscription; it then only receives pushed change logs
+    private volatile boolean subscribed;
+
+    /**
+     * Receives store summaries one at a time while a streamed result is still being read.
+     * Called on the network thread.
+     */
+    public interface StoreStreamListener {
+        void onStore(StoreSummary store);
+    }
 
     public SocketClient(String serverIp, int serverPort) {
         this.serverIp = serverIp;
@@ -31,14 +69,130 @@ public class SocketClient {
     }
 
     /**
-     * Connects to the Master server
+     * Connects to the Master server, within the connect timeout and the Deadline of the
+     * calling thread
      * @throws IOException if there's an error connecting
      */
     public void connect() throws IOException {
-        socket = new Socket(serverIp, serverPort);
-        out = new ObjectOutputStream(socket.getOutputStream());
-        in = new ObjectInputStream(socket.getInputStream());
-        Log.d(TAG, "Connected to server: " + serverIp + ":" + serverPort);
+        long start = System.nanoTime();
+        try {
+            socket = openSocket();
+            protocol = negotiateProtocol();
+        } catch (IOException e) {
+            metrics.recordConnectFailure();
+            throw e;
+        }
+        metrics.recordConnect(System.nanoTime() - start);
+        broken = false;
+        NetLog.debug(TAG, "connected", "host", serverIp, "port", serverPort, "protocol", protocol.getName());
+    }
+
+    /**
+     * Offers the binary protocol and falls back to Java serialization on a new socket
+     * when the Master does not accept it
+     */
+    private WireProtocol negotiateProtocol() throws IOException {
+        String endpoint = serverIp + ":" + serverPort;
+        if (Constants.USE_BINARY_PROTOCOL && !isKnownLegacy(endpoint)) {
+            int version = BinaryProtocol.negotiate(socket, Constants.PROTOCOL_NEGOTIATION_TIMEOUT_MS);
+            if (version > 0) {
+                legacyServers.remove(endpoint);
+                return new BinaryProtocol(meterInput(), meterOutput(), version);
+            }
+            boolean declined = version == BinaryProtocol.DECLINED;
+            NetLog.info(TAG, declined ? "binary protocol declined" : "binary protocol not answered",
+                    "endpoint", endpoint, "fallback", "java-serialization");
+            legacyServers.put(endpoint, declined ? Long.MAX_VALUE
+                    : System.currentTimeMillis() + Constants.PROTOCOL_RENEGOTIATE_AFTER_MS);
+            socket.close();
+            socket = openSocket();
+        }
+        return new JavaSerializationProtocol(meterInput(), meterOutput());
+    }
+
+    private Socket openSocket() throws IOException {
+        Deadline deadline = Deadline.current();
+        if (deadline != null && deadline.isExpired()) {
+            throw new SocketTimeoutException("Deadline expired before connecting");
+        }
+        Socket opened = new Socket();
+        try {
+            opened.connect(new InetSocketAddress(serverIp, serverPort), timeouts.connectTimeoutMs(deadline));
+        } catch (IOException e) {
+            opened.close();
+            throw e;
+        }
+        return opened;
+    }
+
+    private static boolean isKnownLegacy(String endpoint) {
+        Long until = legacyServers.get(endpoint);
+        if (until == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() < until) {
+            return true;
+        }
+        // Time to offer the binary protocol again
+        legacyServers.remove(endpoint, until);
+        return false;
+    }
+
+    private MeteredInputStream meterInput() throws IOException {
+        input = new MeteredInputStream(socket.getInputStream(), metrics);
+        return input;
+    }
+
+    private MeteredOutputStream meterOutput() throws IOException {
+        return new MeteredOutputStream(socket.getOutputStream(), metrics);
+    }
+
+    /**
+     * @return Name of the wire protocol agreed with the Master, or null before connect()
+     */
+    public String getProtocolName() {
+        return protocol != null ? protocol.getName() : null;
+    }
+
+    /**
+     * Checks whether the client can still be used for new commands
+     * @return true if the socket is open and no previous command broke the stream
+     */
+    public boolean isConnected() {
+        return socket != null && socket.isConnected() && !socket.isClosed() && !broken;
+    }
+
+    /**
+     * Cheap liveness probe used before reusing an idle connection.
+     * Waits at most one millisecond for the peer: a timeout means the socket is still open,
+     * end-of-stream means the Master has closed it.
+     * @return true if the connection can be reused
+     */
+    public boolean isAlive() {
+        if (!isConnected()) {
+            return false;
+        }
+        synchronized (commandLock) {
+            try {
+                int previousTimeout = socket.getSoTimeout();
+                socket.setSoTimeout(1);
+                try {
+                    int next = socket.getInputStream().read();
+                    // Either the peer closed the socket or it sent bytes nobody asked for
+                    markBroken(new IOException(next < 0 ? "Closed by server" : "Unexpected data from server"));
+                    return false;
+                } catch (SocketTimeoutException e) {
+                    return true;
+                } finally {
+                    if (!socket.isClosed()) {
+                        socket.setSoTimeout(previousTimeout);
+                    }
+                }
+            } catch (IOException e) {
+                markBroken(e);
+                return false;
+            }
+        }
     }
 
     /**
@@ -46,12 +200,118 @@ public class SocketClient {
      */
     public void disconnect() {
         try {
-            if (in != null) in.close();
-            if (out != null) out.close();
+            if (protocol != null) protocol.close();
             if (socket != null) socket.close();
-            Log.d(TAG, "Disconnected from server");
+            NetLog.debug(TAG, "disconnected");
         } catch (IOException e) {
-            Log.e(TAG, "Error disconnecting: " + e.getMessage());
+            NetLog.warn(TAG, "disconnect failed", "error", e);
+        }
+    }
+
+    /**
+     * Closes the socket immediately from any thread, failing the command waiting on it.
+     * Used to cancel a blocked read; the client cannot be reused afterwards.
+     */
+    public void abort() {
+        markBroken(new IOException("Connection aborted"));
+    }
+
+    /**
+     * Sends a command with its arguments and waits for its response
+     * @param command Command name understood by the Master
+     * @param args Objects that follow the command on the stream
+     * @return The response object read for this command
+     * @throws Exception if there's an error communicating with the server
+     */
+    private Object call(String command, Object... args) throws Exception {
+        return call(null, command, args);
+    }
+
+    /**
+     * Sends a command whose response is either a single object or, when a stream listener is
+     * given, a sequence of stores terminated by the next page cursor.
+     * The response must arrive before the Deadline of the calling thread, if there is one.
+     */
+    private Object call(StoreStreamListener streamListener, String command, Object... args) throws Exception {
+        Deadline deadline = Deadline.current();
+        if (deadline != null && deadline.isExpired()) {
+            throw new SocketTimeoutException("Deadline expired before sending '" + command + "'");
+        }
+        synchronized (commandLock) {
+            if (!isConnected()) {
+                throw new IOException("Not connected to server");
+            }
+            if (subscribed) {
+                throw new IOException("Connection is reserved for a subscription");
+            }
+            NetLog.Span span = NetLog.startSpan(TAG, command, nextCorrelationId.incrementAndGet());
+            long sentNanos = System.nanoTime();
+            long readStart = 0;
+            Object response = null;
+            Exception error = null;
+            try {
+                protocol.writeCommand(command, args);
+                readStart = System.nanoTime();
+                input.startResponse();
+                // A Master that stalls past the timeout breaks the connection
+                socket.setSoTimeout(timeouts.readTimeoutMs(command, deadline));
+                response = streamListener != null ? readStream(streamListener) : protocol.readResponse();
+                recordResponse(command, sentNanos, readStart, false);
+                return response;
+            } catch (Exception e) {
+                error = e;
+                if (readStart != 0) {
+                    recordResponse(command, sentNanos, readStart, true);
+                } else {
+                    metrics.recordCommandFailure(command);
+                }
+                markBroken(e);
+                throw e;
+            } finally {
+                span.end(response, error);
+            }
+        }
+    }
+
+    private void recordResponse(String command, long sentNanos, long readStart, boolean failed) {
+        long firstByte = input.getFirstByteNanos();
+        // Zero when no byte of the response arrived
+        metrics.recordCommand(command, sentNanos, firstByte != 0 ? firstByte : readStart,
+                System.nanoTime(), failed);
+    }
+
+    /**
+     * Reads stream items until the terminating cursor, handing each store to the listener.
+     * Full stores from a Master that ignores the summary flag are summarized here.
+     * @return The cursor of the next page, or -1 when there are no more results
+     */
+    private Object readStream(StoreStreamListener listener) throws Exception {
+        while (true) {
+            Object item = protocol.readResponse();
+            if (item instanceof StoreSummary) {
+                listener.onStore((StoreSummary) item);
+            } else if (item instanceof Store) {
+                listener.onStore(StoreSummary.from((Store) item));
+            } else if (item instanceof Integer) {
+                return item;
+            } else if (item instanceof String) {
+                throw new IOException((String) item);
+            } else {
+                throw new IOException("Unexpected item in store stream: " + item);
+            }
+        }
+    }
+
+    /**
+     * Marks the stream as unusable and closes the socket, failing the command waiting on it
+     */
+    private void markBroken(Exception cause) {
+        broken = true;
+        NetLog.warn(TAG, "connection broken", "error", cause);
+        try {
+            if (socket != null) socket.close();
+        } catch (IOException ignored) {
+            // Socket is being discarded anyway
         }
     }
 
@@ -63,45 +323,75 @@ public class SocketClient {
      * @throws Exception if there's an error communicating with the server
      */
     public ArrayList<Store> getNearbyStores(double latitude, double longitude) throws Exception {
-        // Λεπτομερές logging για αποσφαλμάτωση
-        Log.d(TAG, "Sending nearby stores request for lat:" + latitude + ", lng:" + longitude);
+        MapReduceRequest request = createNearbyRequest(latitude, longitude);
 
-        // Create default request with 5km radius
-        MapReduceRequest request = new MapReduceRequest(
-                latitude,
-                longitude,
-                new ArrayList<>(), // No category filter
-                0,                  // No minimum stars
-                "",                 // No price filter
-                5.0                 // 5km radius
-        );
+        // Send request to server and wait for the response
+        // The command's span records the timing and the size of the result
+        @SuppressWarnings("unchecked")
+        ArrayList<Store> stores = (ArrayList<Store>) call("client", request);
+        return stores;
+    }
 
-        // Send request to server
-        out.writeObject("client");
-        out.flush();
-        Log.d(TAG, "Sent 'client' command to server");
+    /**
+     * Streams summaries of nearby stores within 5km, delivering each one as soon as it has been read
+     * @param latitude User's latitude
+     * @param longitude User's longitude
+     * @param cursor Index of the first store to return, 0 for the first page
+     * @param pageSize Maximum number of stores to return, 0 for all
+     * @param listener Receives the stores on the network thread
+     * @return The cursor of the next page, or -1 when there are no more stores
+     * @throws Exception if there's an error communicating with the server
+     */
+    public int streamNearbyStores(double latitude, double longitude, int cursor, int pageSize,
+                                  StoreStreamListener listener) throws Exception {
+        MapReduceRequest request = createNearbyRequest(latitude, longitude).withPage(cursor, pageSize);
+        return stream("client", request, listener);
+    }
 
-        out.writeObject(request);
-        out.flush();
-        Log.d(TAG, "Sent MapReduceRequest to server");
+    /**
+     * Streams summaries of filtered stores, delivering each one as soon as it has been read.
+     * Paging is controlled by the cursor and page size of the request.
+     * @param request The MapReduceRequest containing filter criteria
+     * @param listener Receives the stores on the network thread
+     * @return The cursor of the next page, or -1 when there are no more stores
+     * @throws Exception if there's an error communicating with the server
+     */
+    public int streamFilteredStores(MapReduceRequest request, StoreStreamListener listener) throws Exception {
+        return stream("filter", request, listener);
+    }
 
-        // Receive response from server
-        Log.d(TAG, "Waiting for server response...");
-        @SuppressWarnings("unchecked")
-        ArrayList<Store> stores = (ArrayList<Store>) in.readObject();
-
-        // Έλεγχος και καταγραφή απάντησης
-        if (stores == null) {
-            Log.d(TAG, "Received null store list from server");
-        } else {
-            Log.d(TAG, "Received " + stores.size() + " stores from server");
-            for (Store store : stores) {
-                Log.d(TAG, "Store: " + store.getStoreName() + ", Category: " +
-                        store.getCategory() + ", Stars: " + store.getStars());
+    /**
+     * Runs the streaming, summary-only variant of a store query. Masters that only speak
+     * Java serialization predate both, so for them the full list is fetched, summarized
+     * and replayed to the listener.
+     */
+    private int stream(String command, MapReduceRequest request, StoreStreamListener listener) throws Exception {
+        if (!(protocol instanceof BinaryProtocol)) {
+            @SuppressWarnings("unchecked")
+            ArrayList<Store> stores = (ArrayList<Store>) call(command, request);
+            if (stores != null) {
+                for (Store store : stores) {
+                    listener.onStore(StoreSummary.from(store));
+                }
             }
+            return -1;
         }
+        // The caller's request may already be a cache or single-flight key, so it is left as it is
+        return (Integer) call(listener, command + "Stream", request.withSummaryOnly(true));
+    }
 
-        return stores;
+    /**
+     * Creates the default nearby request: no filters and the nearby search radius
+     */
+    private static MapReduceRequest createNearbyRequest(double latitude, double longitude) {
+        return new MapReduceRequest(
+                latitude,
+                longitude,
+                new ArrayList<>(), // No category filter
+                0,                  // No minimum stars
+                "",                 // No price filter
+                Constants.NEARBY_RADIUS_KM
+        );
     }
 
     /**
@@ -111,26 +401,9 @@ public class SocketClient {
      * @throws Exception if there's an error communicating with the server
      */
     public ArrayList<Store> getFilteredStores(MapReduceRequest request) throws Exception {
-        Log.d(TAG, "Sending filtered stores request");
-
-        // Send request to server
-        out.writeObject("filter");
-        out.flush();
-
-        out.writeObject(request);
-        out.flush();
-
-        // Receive response from server
+        // Send request to server and wait for the response
         @SuppressWarnings("unchecked")
-        ArrayList<Store> stores = (ArrayList<Store>) in.readObject();
-
-        // Logging για αποσφαλμάτωση
-        if (stores == null) {
-            Log.d(TAG, "Received null filtered store list");
-        } else {
-            Log.d(TAG, "Received " + stores.size() + " filtered stores");
-        }
-
+        ArrayList<Store> stores = (ArrayList<Store>) call("filter", request);
         return stores;
     }
 
@@ -141,22 +414,180 @@ public class SocketClient {
      * @throws Exception if there's an error communicating with the server
      */
     public ArrayList<Product> getStoreProducts(String storeName) throws Exception {
-        Log.d(TAG, "Fetching products for store: " + storeName);
+        // Send request to server and wait for the response
+        @SuppressWarnings("unchecked")
+        ArrayList<Product> products = (ArrayList<Product>) call("fetchProducts", storeName);
+        return products;
+    }
 
-        // Send request to server
-        out.writeObject("fetchProducts");
-        out.flush();
+    /**
+     * Fetches the products of several stores in one round trip. A store that cannot be read
+     * is reported in the batch instead of failing the others.
+     * @param storeNames Names of the stores
+     * @return The catalog of every store that could be read and the error of every other one
+     * @throws Exception if there's an error communicating with the server
+     */
+    public ProductBatch fetchProductsBatch(List<String> storeNames) throws Exception {
+        if (!(protocol instanceof BinaryProtocol)) {
+            // Masters that only speak Java serialization answer one store per command
+            ProductBatch batch = new ProductBatch();
+            for (String storeName : storeNames) {
+                try {
+                    ArrayList<Product> products = getStoreProducts(storeName);
+                    if (products != null) {
+                        batch.addCatalog(storeName, products, ConditionalResponse.etagOfProducts(products));
+                    } else {
+                        batch.addFailure(storeName, "No catalog returned");
+                    }
+                } catch (ClassCastException e) {
+                    // An error message instead of a list; the stream itself is still in step
+                    batch.addFailure(storeName, "Unexpected response");
+                }
+            }
+            return batch;
+        }
+        ProductBatch batch = (ProductBatch) call("fetchProductsBatch", new ArrayList<>(storeNames));
+        if (!batch.isComplete()) {
+            NetLog.debug(TAG, "batch incomplete", "requested", storeNames.size(),
+                    "failed", batch.getFailures().size());
+        }
+        return batch;
+    }
 
-        out.writeObject(storeName);
-        out.flush();
+    /**
+     * Fetches the products of a store only if they changed since the client's copy
+     * @param storeName Name of the store
+     * @param etag ETag of the cached catalog, or null if nothing is cached
+     * @return "not modified", or the whole catalog and its new ETag
+     * @throws Exception if there's an error communicating with the server
+     */
+    @SuppressWarnings("unchecked")
+    public ConditionalResponse<Product> getStoreProductsIfModified(String storeName, String etag) throws Exception {
+        if (!(protocol instanceof BinaryProtocol)) {
+            // Masters that only speak Java serialization have no conditional fetch
+            ArrayList<Product> products = getStoreProducts(storeName);
+            return ConditionalResponse.forCatalog(ConditionalResponse.etagOfProducts(products), etag, products);
+        }
+        ConditionalResponse<Product> response =
+                (ConditionalResponse<Product>) call("fetchProductsIfModified", storeName, etag);
+        return response;
+    }
 
-        // Receive response from server
-        @SuppressWarnings("unchecked")
-        ArrayList<Product> products = (ArrayList<Product>) in.readObject();
+    /**
+     * Gets the nearby stores that changed since the client's copy
+     * @see #getFilteredStoresIfModified(MapReduceRequest, String, Map)
+     */
+    public ConditionalResponse<StoreSummary> getNearbyStoresIfModified(double latitude, double longitude,
+                                                                       String etag,
+                                                                       Map<String, Integer> knownVersions)
+            throws Exception {
+        return getFilteredStoresIfModified(createNearbyRequest(latitude, longitude), etag, knownVersions);
+    }
 
-        Log.d(TAG, "Received " + (products != null ? products.size() : "null") + " products");
+    /**
+     * Gets the filtered stores that changed since the client's copy.
+     * The Master compares the ETag first and the individual store versions second,
+     * so unchanged stores are neither sent nor deserialized.
+     * @param request The MapReduceRequest containing filter criteria
+     * @param etag ETag of the client's copy of the result, or null
+     * @param knownVersions Version of every store the client holds for this query, by name
+     * @return "not modified", or the new and changed stores plus the names of removed ones
+     * @throws Exception if there's an error communicating with the server
+     */
+    @SuppressWarnings("unchecked")
+    public ConditionalResponse<StoreSummary> getFilteredStoresIfModified(MapReduceRequest request, String etag,
+                                                                         Map<String, Integer> knownVersions)
+            throws Exception {
+        ArrayList<String> names = new ArrayList<>(knownVersions.keySet());
+        ArrayList<Integer> versions = new ArrayList<>(names.size());
+        for (String name : names) {
+            versions.add(knownVersions.get(name));
+        }
+        if (!(protocol instanceof BinaryProtocol)) {
+            // Fetch everything and work out the difference locally
+            ArrayList<StoreSummary> summaries = new ArrayList<>();
+            ArrayList<Store> stores = getFilteredStores(request);
+            if (stores != null) {
+                for (Store store : stores) {
+                    summaries.add(StoreSummary.from(store));
+                }
+            }
+            return ConditionalResponse.forStores(summaries, etag, names, versions);
+        }
+        ConditionalResponse<StoreSummary> response =
+                (ConditionalResponse<StoreSummary>) call("filterIfModified", request, etag, names, versions);
+        return response;
+    }
 
-        return products;
+    /**
+     * Gets the changes the Master recorded after a sequence number
+     * @param sinceSequence Latest sequence number already applied, or -1 on the first sync
+     * @return The changes, or a reset if the sequence number is unknown to the Master
+     * @throws Exception if there's an error communicating with the server
+     */
+    public ChangeLog syncChanges(int sinceSequence) throws Exception {
+        if (!(protocol instanceof BinaryProtocol)) {
+            // Masters that only speak Java serialization keep no change log; cached data
+            // is then refreshed only when it expires
+            return new ChangeLog(sinceSequence, false, new ArrayList<>());
+        }
+        ChangeLog log = (ChangeLog) call("sync", sinceSequence);
+        NetLog.debug(TAG, "synced", "since", sinceSequence, "changes", log.getChanges().size(),
+                "reset", log.isResetRequired());
+        return log;
+    }
+
+    /**
+     * Subscribes to the changes of a set of stores. From then on the Master pushes a change log
+     * whenever one of them changes, and this connection can no longer be used for commands.
+     * Calling it again replaces the set.
+     * @param storeNames Names of the stores to receive changes for
+     * @return false if the Master only speaks Java serialization, which has no subscriptions
+     * @throws IOException if the subscription could not be sent
+     */
+    public boolean subscribe(Collection<String> storeNames) throws IOException {
+        if (!(protocol instanceof BinaryProtocol)) {
+            return false;
+        }
+        synchronized (commandLock) {
+            if (!isConnected()) {
+                throw new IOException("Not connected to server");
+            }
+            subscribed = true;
+            try {
+                protocol.writeCommand("subscribe", new ArrayList<>(storeNames));
+            } catch (IOException e) {
+                markBroken(e);
+                throw e;
+            }
+        }
+        NetLog.debug(TAG, "subscribed", "stores", storeNames.size());
+        return true;
+    }
+
+    /**
+     * Blocks until the Master pushes the next change log to a subscribed connection
+     * @return The pushed changes
+     * @throws Exception if the connection failed or was closed
+     */
+    public ChangeLog readPush() throws Exception {
+        if (!subscribed) {
+            throw new IllegalStateException("Not subscribed");
+        }
+        // Not under the command lock: subscribe() must be able to replace the set meanwhile.
+        // Only the subscription's own thread reads pushes.
+        try {
+            // Pushes arrive whenever a store changes, so waiting for one never times out
+            socket.setSoTimeout(0);
+            Object pushed = protocol.readResponse();
+            if (!(pushed instanceof ChangeLog)) {
+                throw new IOException("Unexpected push from server: " + pushed);
+            }
+            return (ChangeLog) pushed;
+        } catch (Exception e) {
+            markBroken(e);
+            throw e;
+        }
     }
 
     /**
@@ -167,23 +598,39 @@ public class SocketClient {
      * @throws Exception if there's an error communicating with the server
      */
     public String submitPurchase(Purchase purchase, String storeName) throws Exception {
-        Log.d(TAG, "Submitting purchase for store: " + storeName);
-
-        // Send request to server
-        out.writeObject("purchase");
-        out.flush();
-
-        out.writeObject(purchase);
-        out.flush();
-
-        out.writeObject(storeName);
-        out.flush();
-
-        // Receive response from server
-        String response = (String) in.readObject();
-        Log.d(TAG, "Purchase response: " + response);
+        // Send request to server and wait for the response
+        return (String) call("purchase", purchase, storeName);
+    }
 
-        return response;
+    /**
+     * Submits queued purchase orders in one round trip. The Master answers an order it has
+     * already committed with the recorded outcome, so orders may be resent after a failure.
+     * @param orders The orders, each with its idempotency key
+     * @return The outcome of each order, in order. Against a Master that only speaks Java
+     *         serialization only the first order is sent, so the list may be shorter.
+     * @throws Exception if there's an error communicating with the server
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> submitPurchases(List<PurchaseOrder> orders) throws Exception {
+        if (!(protocol instanceof BinaryProtocol)) {
+            // Masters that only speak Java serialization do not deduplicate, so any failure once
+            // the order may have been sent, e.g. an unreadable response, is reported as the
+            // order's outcome rather than thrown and retried
+            PurchaseOrder order = orders.get(0);
+            String outcome;
+            try {
+                outcome = submitPurchase(order.getPurchase(), order.getStoreName());
+            } catch (Exception e) {
+                outcome = "Purchase outcome unknown, please check with " + order.getStoreName()
+                        + " before ordering again (" + e.getMessage() + ")";
+            }
+            return new ArrayList<>(Collections.singletonList(outcome));
+        }
+        List<String> outcomes = (List<String>) call("purchaseOrders", new ArrayList<>(orders));
+        if (outcomes.size() != orders.size()) {
+            throw new IOException("Expected " + orders.size() + " purchase outcomes, got " + outcomes.size());
+        }
+        return outcomes;
     }
 
     /**
@@ -194,22 +641,40 @@ public class SocketClient {
      * @throws Exception if there's an error communicating with the server
      */
     public String rateStore(String storeName, int rating) throws Exception {
-        Log.d(TAG, "Rating store: " + storeName + " with " + rating + " stars");
-
-        // Send request to server
-        out.writeObject("rate");
-        out.flush();
-
-        out.writeObject(storeName);
-        out.flush();
-
-        out.writeObject(rating);
-        out.flush();
-
-        // Receive response from server
-        String response = (String) in.readObject();
-        Log.d(TAG, "Rating response: " + response);
+        // Send request to server and wait for the response
+        return (String) call("rate", storeName, rating);
+    }
 
-        return response;
+    /**
+     * Submits several store ratings with one command. The Master counts a rating it has
+     * already recorded only once, so ratings may be resent after a failure.
+     * @param ratings The ratings, each with its idempotency key
+     * @return The outcome of each rating, in order. Against a Master that only speaks Java
+     *         serialization the ratings are sent one per command on this connection, and the
+     *         list stops at the first one that failed.
+     * @throws Exception if there's an error communicating with the server
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> rateStores(List<StoreRating> ratings) throws Exception {
+        if (!(protocol instanceof BinaryProtocol)) {
+            List<String> outcomes = new ArrayList<>();
+            for (StoreRating rating : ratings) {
+                try {
+                    outcomes.add(rateStore(rating.getStoreName(), rating.getRating()));
+                } catch (IOException e) {
+                    if (outcomes.isEmpty()) {
+                        throw e;
+                    }
+                    // The rest is resent later; without deduplication the failed one may count twice
+                    break;
+                }
+            }
+            return outcomes;
+        }
+        List<String> outcomes = (List<String>) call("rateBatch", new ArrayList<>(ratings));
+        if (outcomes.size() != ratings.size()) {
+            throw new IOException("Expected " + ratings.size() + " rating outcomes, got " + outcomes.size());
+        }
+        return outcomes;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,259 @@
+package com.fooddelivery.network;
+
+import com.fooddelivery.utils.Constants;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded pool of connections to the Master server.
+ * Callers borrow a connected SocketClient, run their command and hand it back, so the
+ * Master sees a steady number of sockets and repeated interactions skip the connect cost.
+ * Connections left idle past the idle timeout are closed in the background, so the Master
+ * does not keep sockets open for an app that has stopped talking to it.
+ */
+public class SocketClientPool {
+    private static final String TAG = "SocketClientPool";
+
+    private final String serverIp;
+    private final int serverPort;
+    private final int maxSize;
+    private final long borrowTimeoutMs;
+    private final long idleTimeoutMs;
+
+    private final Deque<IdleConnection> idleConnections = new ArrayDeque<>();
+    private int totalConnections;
+    private boolean closed;
+    // Created with the first idle connection; runs evictIdle() once the oldest one expires
+    private ScheduledExecutorService evictor;
+    private ScheduledFuture<?> nextEviction;
+
+    /**
+     * Creates a new SocketClientPool
+     * @param serverIp Master server address
+     * @param serverPort Master server port
+     * @param maxSize Maximum number of open connections
+     * @param borrowTimeoutMs How long borrow() waits for a free connection
+     * @param idleTimeoutMs How long an unused connection is kept open
+     */
+    public SocketClientPool(String serverIp, int serverPort, int maxSize,
+                            long borrowTimeoutMs, long idleTimeoutMs) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        }
+        this.serverIp = serverIp;
+        this.serverPort = serverPort;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    /**
+     * Borrows a connected client, reusing an idle one when it passes the liveness probe.
+     * Waits for a free connection no longer than the borrow timeout or the Deadline of the
+     * calling thread, whichever is sooner.
+     * @return A connected SocketClient that must be passed back to release() or invalidate()
+     * @throws SocketTimeoutException if the caller's Deadline expired before a connection was free
+     * @throws IOException if no connection could be obtained within the borrow timeout
+     */
+    public SocketClient borrow() throws IOException {
+        Deadline callDeadline = Deadline.current();
+        long waitMs = borrowTimeoutMs;
+        boolean deadlineFirst = false;
+        if (callDeadline != null) {
+            if (callDeadline.isExpired()) {
+                throw new SocketTimeoutException("Deadline expired before borrowing a connection");
+            }
+            deadlineFirst = callDeadline.remainingMs() < borrowTimeoutMs;
+            waitMs = Math.min(waitMs, callDeadline.remainingMs());
+        }
+        long giveUpAt = System.currentTimeMillis() + waitMs;
+        while (true) {
+            IdleConnection candidate;
+            synchronized (this) {
+                if (closed) {
+                    throw new IOException("Connection pool is closed");
+                }
+                evictIdle();
+                candidate = idleConnections.pollLast();
+                if (candidate == null) {
+                    if (totalConnections < maxSize) {
+                        totalConnections++;
+                    } else {
+                        long remaining = giveUpAt - System.currentTimeMillis();
+                        if (remaining <= 0) {
+                            if (deadlineFirst) {
+                                throw new SocketTimeoutException("Deadline expired waiting for a connection");
+                            }
+                            throw new IOException("Timed out waiting for a connection to the server");
+                        }
+                        try {
+                            wait(remaining);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new IOException("Interrupted while waiting for a connection", e);
+                        }
+                        continue;
+                    }
+                }
+            }
+
+            if (candidate == null) {
+                return openConnection();
+            }
+            // Probe outside the lock so a slow check does not block other borrowers
+            if (System.currentTimeMillis() - candidate.releasedAt < Constants.POOL_PROBE_AFTER_IDLE_MS
+                    || candidate.client.isAlive()) {
+                return candidate.client;
+            }
+            NetLog.debug(TAG, "discarding stale connection");
+            invalidate(candidate.client);
+        }
+    }
+
+    /**
+     * Returns a client to the pool once its command has completed
+     * @param client The client obtained from borrow()
+     */
+    public void release(SocketClient client) {
+        if (!client.isConnected()) {
+            invalidate(client);
+            return;
+        }
+        synchronized (this) {
+            if (closed) {
+                client.disconnect();
+                totalConnections--;
+            } else {
+                idleConnections.addLast(new IdleConnection(client, System.currentTimeMillis()));
+                scheduleEviction();
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Closes a client that failed and frees its slot in the pool
+     * @param client The client obtained from borrow()
+     */
+    public void invalidate(SocketClient client) {
+        client.disconnect();
+        synchronized (this) {
+            totalConnections--;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Closes connections that have been idle longer than the idle timeout
+     */
+    public synchronized void evictIdle() {
+        long now = System.currentTimeMillis();
+        Iterator<IdleConnection> it = idleConnections.iterator();
+        while (it.hasNext()) {
+            IdleConnection idle = it.next();
+            if (now - idle.releasedAt >= idleTimeoutMs) {
+                it.remove();
+                idle.client.disconnect();
+                totalConnections--;
+            }
+        }
+    }
+
+    /**
+     * Arms the evictor for the moment the oldest idle connection expires, unless it is armed already
+     */
+    private synchronized void scheduleEviction() {
+        if (closed || idleConnections.isEmpty() || (nextEviction != null && !nextEviction.isDone())) {
+            return;
+        }
+        if (evictor == null) {
+            evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, TAG);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        long delayMs = idleConnections.peekFirst().releasedAt + idleTimeoutMs - System.currentTimeMillis();
+        nextEviction = evictor.schedule(this::evictInBackground, Math.max(0, delayMs), TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void evictInBackground() {
+        nextEviction = null;
+        evictIdle();
+        scheduleEviction();
+    }
+
+    /**
+     * Closes every idle connection and rejects further borrows.
+     * Borrowed connections are closed when they are released.
+     */
+    public synchronized void close() {
+        closed = true;
+        for (IdleConnection idle : idleConnections) {
+            idle.client.disconnect();
+            totalConnections--;
+        }
+        idleConnections.clear();
+        if (evictor != null) {
+            evictor.shutdownNow();
+            evictor = null;
+        }
+        notifyAll();
+    }
+
+    /**
+     * @return Number of connections currently open, idle or borrowed
+     */
+    public synchronized int getOpenCount() {
+        return totalConnections;
+    }
+
+    /**
+     * @return Number of open connections waiting to be borrowed
+     */
+    public synchronized int getIdleCount() {
+        return idleConnections.size();
+    }
+
+    /**
+     * @return true if borrow() would not have to wait for another caller to release a connection
+     */
+    public synchronized boolean hasCapacity() {
+        return !closed && (!idleConnections.isEmpty() || totalConnections < maxSize);
+    }
+
+    private SocketClient openConnection() throws IOException {
+        SocketClient client = new SocketClient(serverIp, serverPort);
+        try {
+            client.connect();
+            return client;
+        } catch (IOException e) {
+            synchronized (this) {
+                totalConnections--;
+                notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * A connection sitting in the pool together with the time it was handed back
+     */
+    private static class IdleConnection {
+        final SocketClient client;
+        final long releasedAt;
+
+        IdleConnection(SocketClient client, long releasedAt) {
+            this.client = client;
+            this.releasedAt = releasedAt;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.fooddelivery.network;
+
+import com.fooddelivery.models.ChangeLog;
+import com.fooddelivery.utils.Constants;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Long-lived subscription to the changes of a set of stores.
+ * Owns one connection to the Master that is kept open for as long as there are stores to watch
+ * and reconnects after failures, backing off between attempts. The connection is not taken
+ * from the pool: it blocks on reads indefinitely, which would starve pooled commands.
+ */
+public class StoreSubscription implements Cancellable {
+    private static final String TAG = "StoreSubscription";
+
+    /**
+     * Receives pushes on the subscription thread
+     */
+    public interface PushListener {
+        /**
+         * Called each time the subscription has been (re)established. Changes made while it was
+         * down were not pushed and have to be fetched with a sync.
+         */
+        void onSubscribed();
+
+        /**
+         * Called for every change log pushed by the Master
+         * @param log The pushed changes of watched stores
+         */
+        void onChanges(ChangeLog log);
+    }
+
+    private final String serverIp;
+    private final int serverPort;
+    private final PushListener listener;
+    private Set<String> storeNames = Collections.emptySet();
+    private SocketClient client;
+    private Thread thread;
+    private boolean unsupported;
+    private volatile boolean cancelled;
+
+    /**
+     * Creates a subscription that is idle until it is given store names
+     * @param serverIp Master address
+     * @param serverPort Master port
+     * @param listener Receives the pushed changes
+     */
+    public StoreSubscription(String serverIp, int serverPort, PushListener listener) {
+        this.serverIp = serverIp;
+        this.serverPort = serverPort;
+        this.listener = listener;
+    }
+
+    /**
+     * Replaces the set of watched stores. An empty set closes the connection;
+     * a non-empty one opens it if needed.
+     * @param names Names of the stores to receive changes for
+     */
+    public synchronized void setStoreNames(Set<String> names) {
+        if (cancelled || unsupported || names.equals(storeNames)) {
+            return;
+        }
+        storeNames = Collections.unmodifiableSet(new LinkedHashSet<>(names));
+        if (storeNames.isEmpty()) {
+            stop();
+            return;
+        }
+        if (thread == null) {
+            thread = new Thread(this::run, TAG);
+            thread.setDaemon(true);
+            thread.start();
+        } else if (client != null) {
+            // Callers may be on the main thread, so the update is written from a network thread
+            SocketClient current = client;
+            Set<String> latest = storeNames;
+            try {
+                NetworkExecutor.getShared().submit(() -> resubscribe(current, latest),
+                        NetworkExecutor.Priority.FOREGROUND);
+            } catch (RejectedExecutionException e) {
+                current.abort();
+            }
+        }
+    }
+
+    /**
+     * Sends a new set of stores on an open subscription. On failure the connection is dropped,
+     * and the reading thread reconnects with the latest set.
+     */
+    private void resubscribe(SocketClient current, Set<String> names) {
+        try {
+            // Checked and written under the lock so an older set can never overwrite a newer one
+            synchronized (this) {
+                if (current != client || names != storeNames) {
+                    // Superseded by a newer set or a reconnection, which subscribes with the latest set
+                    return;
+                }
+                current.subscribe(names);
+            }
+        } catch (Exception e) {
+            NetLog.warn(TAG, "subscription update failed", "error", e);
+            current.abort();
+        }
+    }
+
+    /**
+     * @return The stores currently watched
+     */
+    public synchronized Set<String> getStoreNames() {
+        return storeNames;
+    }
+
+    @Override
+    public synchronized void cancel() {
+        cancelled = true;
+        stop();
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Ends the reading thread by closing its connection
+     */
+    private void stop() {
+        if (client != null) {
+            client.abort();
+            client = null;
+        }
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    /**
+     * Body of the subscription thread: connect, subscribe, read pushes until the connection
+     * fails, then back off and start again
+     */
+    private void run() {
+        Thread self = Thread.currentThread();
+        long backoffMs = Constants.SUBSCRIPTION_RETRY_MIN_MS;
+        while (isCurrent(self)) {
+            SocketClient connection = new SocketClient(serverIp, serverPort);
+            try {
+                connection.connect();
+                synchronized (this) {
+                    if (thread != self) {
+                        connection.disconnect();
+                        return;
+                    }
+                    if (!connection.subscribe(storeNames)) {
+                        // Legacy Master: screens keep relying on syncs and cache expiry
+                        NetLog.info(TAG, "subscriptions unsupported", "fallback", "polling");
+                        connection.disconnect();
+                        unsupported = true;
+                        thread = null;
+                        return;
+                    }
+                    client = connection;
+                }
+                backoffMs = Constants.SUBSCRIPTION_RETRY_MIN_MS;
+                listener.onSubscribed();
+                while (true) {
+                    listener.onChanges(connection.readPush());
+                }
+            } catch (Exception e) {
+                connection.abort();
+                synchronized (this) {
+                    if (client == connection) {
+                        client = null;
+                    }
+                }
+                if (!isCurrent(self)) {
+                    return;
+                }
+                NetLog.warn(TAG, "subscription lost", "retryMs", backoffMs, "error", e);
+            }
+            try {
+                Thread.sleep(backoffMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+            backoffMs = Math.min(backoffMs * 2, Constants.SUBSCRIPTION_RETRY_MAX_MS);
+        }
+    }
+
+    private synchronized boolean isCurrent(Thread self) {
+        return thread == self;
+    }
+}
@@ -0,0 +1,36 @@
+package com.fooddelivery.network;
+
+import java.io.IOException;
+
+/**
+ * Encoding used on a connection to the Master server.
+ * Chosen once per connection when SocketClient connects.
+ */
+public interface WireProtocol {
+
+    /**
+     * Writes a command and its arguments as one request and flushes it
+     * @param command Command name understood by the Master
+     * @param args Objects that follow the command
+     * @throws IOException if writing fails
+     */
+    void writeCommand(String command, Object... args) throws IOException;
+
+    /**
+     * Blocks until the next response arrives and decodes it
+     * @return The response object
+     * @throws Exception if reading or decoding fails
+     */
+    Object readResponse() throws Exception;
+
+    /**
+     * @return Short name used in logs
+     */
+    String getName();
+
+    /**
+     * Closes the streams. The socket itself is closed by the owner.
+     * @throws IOException if closing fails
+     */
+    void close() throws IOException;
+}
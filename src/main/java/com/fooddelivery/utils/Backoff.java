@@ -0,0 +1,25 @@
+package com.fooddelivery.utils;
+
+import java.util.Random;
+
+/**
+ * Retry delays for work that is resent after a failure
+ */
+public class Backoff {
+
+    /**
+     * Exponential backoff with jitter: the window doubles with every failure up to the maximum,
+     * and the wait is drawn from its upper half, so clients that failed together do not all
+     * come back at the same moment
+     * @param attempts Number of failed attempts so far, at least 1
+     * @param minMs Window after the first failure
+     * @param maxMs Largest window
+     * @param random Source of the jitter
+     * @return Milliseconds to wait
+     */
+    public static long jittered(int attempts, long minMs, long maxMs, Random random) {
+        int doublings = Math.min(Math.max(attempts - 1, 0), 30);
+        long window = Math.min(maxMs, minMs << doublings);
+        return window / 2 + (long) (random.nextDouble() * (window / 2));
+    }
+}
@@ -1,5 +1,7 @@
 package com.fooddelivery.utils;
 
+import android.util.Log;
+
 /**
  * Constants used throughout the application
  */
@@ -9,6 +11,81 @@ public class Constants {
     public static final String SERVER_IP = "10.0.2.2";  // This points to localhost (127.0.0.1) on the host machine when running in the Android emulator
     public static final int SERVER_PORT = 4321;  // The port where Master is listening
 
+    // Wire protocol configuration
+    public static final boolean USE_BINARY_PROTOCOL = true;  // Offer the binary protocol before falling back to Java serialization
+    public static final int PROTOCOL_NEGOTIATION_TIMEOUT_MS = 2000;  // How long to wait for the Master to accept the offer
+    public static final long PROTOCOL_RENEGOTIATE_AFTER_MS = 60000;  // Offer again after a Master failed to answer one
+
+    // Network logging
+    public static final int NETWORK_LOG_LEVEL = Log.INFO;  // Lowest priority logged by the network layer
+    public static final int NETWORK_LOG_SAMPLE_RATE = 16;  // One in this many debug events and command spans is logged
+
+    // Timeouts, derived from observed latency once enough commands have been timed
+    public static final long REQUEST_DEADLINE_MS = 30000;  // Longest a call to the Master may take, retries included
+    public static final int TIMEOUT_MIN_SAMPLES = 20;  // Timings needed before percentiles replace the defaults
+    public static final int TIMEOUT_P99_MULTIPLIER = 4;  // Timeouts are this many times the observed p99
+    public static final int CONNECT_TIMEOUT_DEFAULT_MS = 5000;  // Connect timeout until enough connects have been timed
+    public static final int CONNECT_TIMEOUT_MIN_MS = 1000;  // Lower bound of the adaptive connect timeout
+    public static final int CONNECT_TIMEOUT_MAX_MS = 10000;  // Upper bound of the adaptive connect timeout
+    public static final int READ_TIMEOUT_DEFAULT_MS = 15000;  // Read timeout until enough commands have been timed
+    public static final int READ_TIMEOUT_MIN_MS = 2000;  // Lower bound of the adaptive read timeout
+    public static final int READ_TIMEOUT_MAX_MS = 30000;  // Upper bound of the adaptive read timeout
+
+    // Hedged reads: an idempotent read still unanswered at the observed p95 is also sent on a second connection
+    public static final boolean HEDGE_IDEMPOTENT_READS = true;  // Whether client, filter and fetchProducts are hedged
+    public static final double HEDGE_PERCENTILE = 95;  // Latency percentile after which the second attempt is sent
+    public static final long HEDGE_MIN_DELAY_MS = 50;  // Never hedge sooner than this, to bound the extra load
+    public static final int HEDGE_THREAD_COUNT = 2;  // Hedges in flight at once; later ones wait for a thread
+
+    // Connection pool configuration
+    public static final int POOL_MAX_SIZE = 4;  // Upper bound on sockets open to the Master
+    public static final long POOL_BORROW_TIMEOUT_MS = 5000;  // How long a caller waits for a free connection
+    public static final long POOL_IDLE_TIMEOUT_MS = 60000;  // Idle connections older than this are closed
+    public static final long POOL_PROBE_AFTER_IDLE_MS = 2000;  // Idle connections used more recently are reused without a liveness probe
+
+    // Network executor configuration
+    public static final int NETWORK_THREAD_COUNT = 4;  // Worker threads shared by all NetworkTasks
+    public static final int NETWORK_QUEUE_CAPACITY = 32;  // Tasks allowed to wait for a worker
+
+    // Store subscription configuration
+    public static final long SUBSCRIPTION_RETRY_MIN_MS = 1000;  // First wait before reconnecting a lost subscription
+    public static final long SUBSCRIPTION_RETRY_MAX_MS = 60000;  // Longest wait between reconnection attempts
+
+    // Store cache configuration
+    public static final double NEARBY_RADIUS_KM = 5.0;  // Radius of the nearby stores search
+    public static final long STORE_COVERAGE_TTL_MS = 5 * 60 * 1000;  // How long a fetched area is served from the cache
+
+    // Request key quantization, used to share cached results between nearly identical searches
+    public static final double REQUEST_KEY_GRID_DEGREES = 0.001;  // Location grid cell, about 110m
+    public static final double REQUEST_KEY_STARS_STEP = 0.5;  // Minimum stars are rounded down to this step
+    public static final double REQUEST_KEY_RADIUS_STEP_KM = 0.5;  // Radius is rounded up to this step
+    public static final int QUERY_RESULT_CACHE_ENTRIES = 32;  // Search results kept per canonical key
+
+    // Product catalog cache configuration
+    public static final int CATALOG_CACHE_MEMORY_ENTRIES = 16;  // Catalogs kept in memory
+    public static final int CATALOG_CACHE_DISK_ENTRIES = 128;  // Catalog files kept on disk, expired ones included
+    public static final long CATALOG_CACHE_TTL_MS = 2 * 60 * 1000;  // How long a catalog is served before it is fetched again
+
+    // Speculative catalog prefetch for the stores on screen
+    public static final int PREFETCH_MAX_STORES = 8;  // Visible stores considered at a time, nearest first
+    public static final int PREFETCH_BATCH_SIZE = 4;  // Catalogs fetched per batched request
+    public static final int PREFETCH_MAX_CONCURRENT = 1;  // Batches in flight at once
+    public static final long PREFETCH_BYTE_BUDGET = 512 * 1024;  // Catalog bytes prefetched per screen
+    public static final int PREFETCH_MIN_BATTERY_PERCENT = 20;  // Below this, prefetch only while charging
+
+    // Purchase submission
+    public static final int PURCHASE_BATCH_SIZE = 10;  // Queued orders sent per round trip
+    public static final long PURCHASE_RETRY_MIN_MS = 2000;  // Backoff window after the first failed attempt
+    public static final long PURCHASE_RETRY_MAX_MS = 5 * 60 * 1000;  // Largest backoff window between attempts
+    public static final int PURCHASE_MAX_AUTO_RETRIES = 10;  // Failures after which an order waits for the next flush
+    public static final int PURCHASE_RECENT_OUTCOMES = 16;  // Answers kept for screens that were stopped when they arrived
+
+    // Rating queue
+    public static final int RATING_BATCH_SIZE = 20;  // Queued ratings sent per command
+    public static final long RATING_FLUSH_DELAY_MS = 1000;  // Wait after a rating so quick successive ones share a command
+    public static final long RATING_RETRY_MIN_MS = 2000;  // Backoff window after the first failed send
+    public static final long RATING_RETRY_MAX_MS = 5 * 60 * 1000;  // Largest backoff window between sends
+
     // Intent extras
     public static final String EXTRA_STORE = "extra_store";
     public static final String EXTRA_STORE_NAME = "extra_store_name";
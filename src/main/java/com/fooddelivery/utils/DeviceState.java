@@ -0,0 +1,44 @@
+package com.fooddelivery.utils;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.PowerManager;
+
+/**
+ * Device conditions that decide whether optional background work is worth its cost
+ */
+public class DeviceState {
+
+    /**
+     * Checks whether speculative network work may run: not in battery saver mode,
+     * and either charging or above the minimum battery level
+     * @param context Any context
+     * @return true if prefetching is allowed
+     */
+    public static boolean isPrefetchAllowed(Context context) {
+        Context app = context.getApplicationContext();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            PowerManager power = (PowerManager) app.getSystemService(Context.POWER_SERVICE);
+            if (power != null && power.isPowerSaveMode()) {
+                return false;
+            }
+        }
+        // Sticky broadcast: returns the last battery status without registering a receiver
+        Intent battery = app.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery == null) {
+            return true;
+        }
+        if (battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0) {
+            return true;
+        }
+        int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        if (level < 0 || scale <= 0) {
+            return true;
+        }
+        return level * 100 / scale >= Constants.PREFETCH_MIN_BATTERY_PERCENT;
+    }
+}
@@ -0,0 +1,46 @@
+package com.fooddelivery.utils;
+
+/**
+ * Geographic helper functions
+ */
+public class GeoUtils {
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+
+    /**
+     * Great-circle distance between two points using the haversine formula
+     * @param lat1 Latitude of the first point in degrees
+     * @param lon1 Longitude of the first point in degrees
+     * @param lat2 Latitude of the second point in degrees
+     * @param lon2 Longitude of the second point in degrees
+     * @return Distance in kilometers
+     */
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    /**
+     * Converts a distance along a meridian to degrees of latitude
+     * @param km Distance in kilometers
+     * @return Degrees of latitude
+     */
+    public static double kmToLatitudeDegrees(double km) {
+        return Math.toDegrees(km / EARTH_RADIUS_KM);
+    }
+
+    /**
+     * Converts a distance along a parallel to degrees of longitude at the given latitude
+     * @param km Distance in kilometers
+     * @param latitude Latitude in degrees
+     * @return Degrees of longitude
+     */
+    public static double kmToLongitudeDegrees(double km, double latitude) {
+        double cos = Math.max(Math.cos(Math.toRadians(latitude)), 1e-6);
+        return Math.toDegrees(km / (EARTH_RADIUS_KM * cos));
+    }
+}
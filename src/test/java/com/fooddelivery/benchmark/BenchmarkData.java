@@ -0,0 +1,63 @@
+package com.fooddelivery.benchmark;
+
+import com.fooddelivery.models.MapReduceRequest;
+import com.fooddelivery.models.Product;
+import com.fooddelivery.models.Purchase;
+import com.fooddelivery.models.Store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Payloads of realistic shape, generated from a fixed seed so every run measures the same data
+ */
+final class BenchmarkData {
+
+    private static final long SEED = 20240601L;
+    private static final String[] CATEGORIES = {"pizzeria", "souvlaki", "coffee", "burgers", "sushi", "bakery"};
+    private static final String[] PRODUCT_TYPES = {"main", "salad", "drink", "dessert", "side"};
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * @param storeCount Stores in the list, as in a search result
+     * @param productsPerStore Catalog size of every store
+     */
+    static ArrayList<Store> stores(int storeCount, int productsPerStore) {
+        Random random = new Random(SEED);
+        ArrayList<Store> stores = new ArrayList<>(storeCount);
+        for (int i = 0; i < storeCount; i++) {
+            String category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+            String name = "Store " + i + " " + category;
+            stores.add(new Store(name, 37.90 + random.nextDouble() * 0.2, 23.65 + random.nextDouble() * 0.2,
+                    category, 1 + random.nextInt(41) / 10.0, random.nextInt(2000),
+                    "/logos/" + category + "/" + i + ".png", products(random, name, productsPerStore)));
+        }
+        return stores;
+    }
+
+    static ArrayList<Product> products(int count) {
+        return products(new Random(SEED), "Store 0", count);
+    }
+
+    static Purchase purchase(int itemCount) {
+        return new Purchase("Maria Papadopoulou", "maria@example.com", products(itemCount));
+    }
+
+    static MapReduceRequest request() {
+        return new MapReduceRequest(37.98, 23.72, new ArrayList<>(Arrays.asList("pizzeria", "coffee", "sushi")),
+                3, "$$", 5.0);
+    }
+
+    private static ArrayList<Product> products(Random random, String storeName, int count) {
+        ArrayList<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String type = PRODUCT_TYPES[random.nextInt(PRODUCT_TYPES.length)];
+            products.add(new Product(storeName + " " + type + " " + i, type, 1 + random.nextInt(50),
+                    1 + random.nextInt(2900) / 100.0));
+        }
+        return products;
+    }
+}
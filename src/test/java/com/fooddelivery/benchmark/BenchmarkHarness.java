@@ -0,0 +1,112 @@
+package com.fooddelivery.benchmark;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Small JMH-style measurement loop: warmup iterations that are thrown away, then timed
+ * iterations of a fixed duration whose median time per operation is reported. Results are
+ * consumed so the JIT cannot drop the measured work.
+ */
+final class BenchmarkHarness {
+
+    /**
+     * One invocation of the code under measurement
+     */
+    interface Operation {
+        Object run() throws Exception;
+    }
+
+    /**
+     * Outcome of one benchmark, written as one tab-separated line of a results file
+     */
+    static final class Result {
+        final String name;
+        final double nsPerOp;
+        // Half the spread between the fastest and slowest iteration, relative to the median
+        final double errorPercent;
+        // Encoded size for serialization benchmarks, -1 for the others
+        final long bytes;
+
+        Result(String name, double nsPerOp, double errorPercent, long bytes) {
+            this.name = name;
+            this.nsPerOp = nsPerOp;
+            this.errorPercent = errorPercent;
+            this.bytes = bytes;
+        }
+
+        String toLine() {
+            return String.format(Locale.ROOT, "%s\t%.1f\t%.1f\t%d", name, nsPerOp, errorPercent, bytes);
+        }
+
+        static Result parse(String line) {
+            String[] fields = line.split("\t");
+            if (fields.length != 4) {
+                throw new IllegalArgumentException("Not a result line: " + line);
+            }
+            return new Result(fields[0], Double.parseDouble(fields[1]), Double.parseDouble(fields[2]),
+                    Long.parseLong(fields[3]));
+        }
+    }
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationNanos;
+    // Never equal to a result; reading it for every result keeps the JIT from hoisting or
+    // dropping the measured work, like JMH's Blackhole
+    private volatile Object sentinel = new Object();
+    private static volatile Object sink;
+
+    /**
+     * @param warmupIterations Iterations run before measuring, for class loading and the JIT
+     * @param measurementIterations Iterations measured
+     * @param iterationMillis Duration of each iteration
+     */
+    BenchmarkHarness(int warmupIterations, int measurementIterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationNanos = iterationMillis * 1_000_000;
+    }
+
+    Result measure(String name, long bytes, Operation operation) throws Exception {
+        for (int i = 0; i < warmupIterations; i++) {
+            runIteration(operation);
+        }
+        double[] samples = new double[measurementIterations];
+        for (int i = 0; i < measurementIterations; i++) {
+            samples[i] = runIteration(operation);
+        }
+        Arrays.sort(samples);
+        double median = samples[samples.length / 2];
+        double spread = (samples[samples.length - 1] - samples[0]) / 2;
+        return new Result(name, median, median == 0 ? 0 : spread * 100 / median, bytes);
+    }
+
+    /**
+     * @return Average time per operation during one iteration, in nanoseconds
+     */
+    private double runIteration(Operation operation) throws Exception {
+        long operations = 0;
+        int batch = 1;
+        long start = System.nanoTime();
+        long now;
+        do {
+            // Calls are timed in batches so reading the clock does not dominate short operations
+            for (int i = 0; i < batch; i++) {
+                consume(operation.run());
+            }
+            operations += batch;
+            now = System.nanoTime();
+            if (now - start < iterationNanos / 100) {
+                batch *= 2;
+            }
+        } while (now - start < iterationNanos);
+        return (double) (now - start) / operations;
+    }
+
+    private void consume(Object result) {
+        if (result == sentinel) {
+            sink = result;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.fooddelivery.benchmark;
+
+import com.fooddelivery.models.Product;
+import com.fooddelivery.models.Purchase;
+import com.fooddelivery.models.Store;
+import com.fooddelivery.network.BinaryCodec;
+import com.fooddelivery.utils.UiUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Benchmarks of the JVM-testable parts of the app: Java serialization against the binary
+ * codec for the payloads the Master exchanges, the model computations and the price and
+ * rating formatting.
+ *
+ * Run from the test classpath:
+ *   java -cp &lt;test classpath&gt; com.fooddelivery.benchmark.Benchmarks
+ *       --baseline src/test/resources/benchmark-baseline.tsv
+ * Options:
+ *   --filter TEXT     only benchmarks whose name contains TEXT
+ *   --out FILE        also write the results, e.g. to refresh the baseline
+ *   --baseline FILE   compare with earlier results; exits with status 1 on a regression
+ *   --threshold PCT   slowdown reported as a regression, default 25
+ *   --quick           fewer and shorter iterations, for a smoke run
+ * Times are only comparable between runs on the same machine and JVM; the header of the
+ * baseline records where it was taken.
+ */
+public final class Benchmarks {
+
+    private final Map<String, BenchmarkHarness.Operation> operations = new LinkedHashMap<>();
+    private final Map<String, Long> sizes = new LinkedHashMap<>();
+
+    private Benchmarks() throws IOException {
+        for (int storeCount : new int[]{10, 1000, 10000}) {
+            addSerialization("stores/" + storeCount, BenchmarkData.stores(storeCount, 10));
+        }
+        for (int productCount : new int[]{10, 500}) {
+            addSerialization("products/" + productCount, BenchmarkData.products(productCount));
+            addSerialization("purchase/" + productCount, BenchmarkData.purchase(productCount));
+        }
+        addSerialization("request", BenchmarkData.request());
+
+        Store store = BenchmarkData.stores(1, 500).get(0);
+        operations.put("model.store.calculatePriceCategory", store::calculatePriceCategory);
+        for (int productCount : new int[]{10, 500}) {
+            Store sized = BenchmarkData.stores(1, productCount).get(0);
+            operations.put("model.store.recalculatePriceCategory/" + productCount, () -> {
+                sized.recalculatePriceCategory();
+                return sized.calculatePriceCategory();
+            });
+            ArrayList<Product> items = BenchmarkData.products(productCount);
+            // The constructor computes the total price
+            operations.put("model.purchase.calculateTotalPrice/" + productCount,
+                    () -> new Purchase("Maria Papadopoulou", "maria@example.com", items).getTotalPrice());
+        }
+
+        double[] prices = {0.5, 4.2, 12.75, 129.9};
+        operations.put("format.formatPrice", new BenchmarkHarness.Operation() {
+            private int next;
+
+            @Override
+            public Object run() {
+                return UiUtils.formatPrice(prices[next++ & 3]);
+            }
+        });
+        operations.put("format.formatRating", new BenchmarkHarness.Operation() {
+            private int next;
+
+            @Override
+            public Object run() {
+                int i = next++ & 3;
+                return UiUtils.formatRating(prices[i] / 30, i * 17);
+            }
+        });
+    }
+
+    /**
+     * Adds encode and decode benchmarks of a payload for both encodings
+     */
+    private void addSerialization(String payloadName, Object payload) throws IOException {
+        byte[] javaBytes = javaEncode(payload);
+        byte[] binaryBytes = binaryEncode(payload);
+        add("serialization.java.encode." + payloadName, javaBytes.length, () -> javaEncode(payload));
+        add("serialization.java.decode." + payloadName, javaBytes.length, () -> javaDecode(javaBytes));
+        add("serialization.binary.encode." + payloadName, binaryBytes.length, () -> binaryEncode(payload));
+        add("serialization.binary.decode." + payloadName, binaryBytes.length, () -> binaryDecode(binaryBytes));
+    }
+
+    private void add(String name, long bytes, BenchmarkHarness.Operation operation) {
+        operations.put(name, operation);
+        sizes.put(name, bytes);
+    }
+
+    private static byte[] javaEncode(Object payload) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(buffer)) {
+            out.writeObject(payload);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static Object javaDecode(byte[] bytes) throws Exception {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+
+    private static byte[] binaryEncode(Object payload) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        BinaryCodec.writeValue(new DataOutputStream(buffer), payload);
+        return buffer.toByteArray();
+    }
+
+    private static Object binaryDecode(byte[] bytes) throws IOException {
+        return BinaryCodec.readValue(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    public static void main(String[] args) throws Exception {
+        String filter = "";
+        String out = null;
+        String baseline = null;
+        double threshold = 25;
+        boolean quick = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--filter":
+                    filter = args[++i];
+                    break;
+                case "--out":
+                    out = args[++i];
+                    break;
+                case "--baseline":
+                    baseline = args[++i];
+                    break;
+                case "--threshold":
+                    threshold = Double.parseDouble(args[++i]);
+                    break;
+                case "--quick":
+                    quick = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        // formatRating uses the default locale
+        Locale.setDefault(Locale.US);
+
+        Benchmarks benchmarks = new Benchmarks();
+        BenchmarkHarness harness = quick ? new BenchmarkHarness(1, 3, 50) : new BenchmarkHarness(5, 10, 200);
+        List<BenchmarkHarness.Result> results = new ArrayList<>();
+        for (Map.Entry<String, BenchmarkHarness.Operation> entry : benchmarks.operations.entrySet()) {
+            if (!entry.getKey().contains(filter)) {
+                continue;
+            }
+            Long bytes = benchmarks.sizes.get(entry.getKey());
+            BenchmarkHarness.Result result = harness.measure(entry.getKey(), bytes != null ? bytes : -1,
+                    entry.getValue());
+            System.out.println(result.toLine());
+            results.add(result);
+        }
+
+        if (out != null) {
+            write(out, results);
+        }
+        if (baseline != null && compare(read(baseline), results, threshold) > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void write(String file, List<BenchmarkHarness.Result> results) throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8))) {
+            writer.println("# name\tns/op\terror %\tbytes");
+            writer.println("# java " + System.getProperty("java.version") + " (" + System.getProperty("java.vm.name")
+                    + "), " + System.getProperty("os.name") + " " + System.getProperty("os.arch") + ", "
+                    + Runtime.getRuntime().availableProcessors() + " cpus");
+            for (BenchmarkHarness.Result result : results) {
+                writer.println(result.toLine());
+            }
+        }
+    }
+
+    private static Map<String, BenchmarkHarness.Result> read(String file) throws IOException {
+        Map<String, BenchmarkHarness.Result> results = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8)) {
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                BenchmarkHarness.Result result = BenchmarkHarness.Result.parse(line);
+                results.put(result.name, result);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Prints the benchmarks that are slower than the baseline by more than the threshold and
+     * beyond both measurements' error, and the payloads whose encoded size changed
+     * @return Number of regressions
+     */
+    private static int compare(Map<String, BenchmarkHarness.Result> baseline, List<BenchmarkHarness.Result> results,
+                               double threshold) {
+        int regressions = 0;
+        for (BenchmarkHarness.Result result : results) {
+            BenchmarkHarness.Result before = baseline.get(result.name);
+            if (before == null) {
+                continue;
+            }
+            double change = (result.nsPerOp - before.nsPerOp) * 100 / before.nsPerOp;
+            if (change > Math.max(threshold, result.errorPercent + before.errorPercent)) {
+                System.out.println(String.format(Locale.ROOT, "REGRESSION %s: %.1f -> %.1f ns/op (+%.0f%%)",
+                        result.name, before.nsPerOp, result.nsPerOp, change));
+                regressions++;
+            }
+            if (result.bytes != before.bytes) {
+                System.out.println("SIZE " + result.name + ": " + before.bytes + " -> " + result.bytes + " bytes");
+            }
+        }
+        System.out.println(regressions + " regressions against the baseline");
+        return regressions;
+    }
+}
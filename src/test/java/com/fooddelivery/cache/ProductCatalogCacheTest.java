@@ -0,0 +1,129 @@
+package com.fooddelivery.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import com.fooddelivery.models.Product;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for the memory and disk tiers of ProductCatalogCache
+ */
+public class ProductCatalogCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<Product> catalog() {
+        return Arrays.asList(new Product("Margherita", "pizza", 10, 8.5),
+                new Product("Cola", "drinks", 50, 2.0));
+    }
+
+    @Test
+    public void get_afterPut_returnsCatalog() {
+        ProductCatalogCache cache = new ProductCatalogCache(4, 60000, null);
+        cache.put("Pizza Fun", catalog(), null);
+
+        ArrayList<Product> products = cache.get("Pizza Fun");
+
+        assertNotNull(products);
+        assertEquals("Margherita", products.get(0).getName());
+    }
+
+    @Test
+    public void memoryTier_evictsLeastRecentlyUsed() {
+        ProductCatalogCache cache = new ProductCatalogCache(2, 60000, null);
+        cache.put("A", catalog(), null);
+        cache.put("B", catalog(), null);
+        cache.get("A");
+        cache.put("C", catalog(), null);
+
+        assertNotNull(cache.get("A"));
+        assertNull(cache.get("B"));
+        assertEquals(2, cache.getMemorySize());
+    }
+
+    @Test
+    public void diskTier_survivesNewInstance() throws Exception {
+        File directory = folder.newFolder("catalogs");
+        new ProductCatalogCache(4, 60000, directory).put("Pizza Fun", catalog(), null);
+
+        ProductCatalogCache reopened = new ProductCatalogCache(4, 60000, directory);
+        ArrayList<Product> products = reopened.get("Pizza Fun");
+
+        assertNotNull(products);
+        assertEquals(2, products.size());
+        assertEquals(2.0, products.get(1).getPrice(), 0);
+    }
+
+    @Test
+    public void expiredEntry_isAMiss() throws Exception {
+        ProductCatalogCache cache = new ProductCatalogCache(4, 60000, folder.newFolder("catalogs"));
+        cache.put("Pizza Fun", catalog(), "v1", 1);
+        Thread.sleep(5);
+
+        assertNull(cache.get("Pizza Fun"));
+    }
+
+    @Test
+    public void expiredEntry_keepsEtagAndCanBeRenewed() throws Exception {
+        ProductCatalogCache cache = new ProductCatalogCache(4, 60000, folder.newFolder("catalogs"));
+        cache.put("Pizza Fun", catalog(), "v1", 1);
+        Thread.sleep(5);
+
+        assertEquals("v1", cache.getEtag("Pizza Fun"));
+        assertNotNull(cache.renew("Pizza Fun"));
+        assertNotNull(cache.get("Pizza Fun"));
+    }
+
+    @Test
+    public void diskTier_dropsLeastRecentlyUsedFilesBeyondItsCap() throws Exception {
+        File directory = folder.newFolder("catalogs");
+        ProductCatalogCache cache = new ProductCatalogCache(1, 2, 60000, directory);
+        cache.put("A", catalog(), "a");
+        new File(directory, Integer.toHexString("A".hashCode()) + ".catalog").setLastModified(1000);
+        cache.put("B", catalog(), "b");
+        cache.put("C", catalog(), "c");
+
+        ProductCatalogCache reopened = new ProductCatalogCache(4, 2, 60000, directory);
+        assertNull(reopened.getEtag("A"));
+        assertEquals("b", reopened.getEtag("B"));
+        assertEquals("c", reopened.getEtag("C"));
+        assertEquals(2, directory.listFiles().length);
+    }
+
+    @Test
+    public void readers_receiveCopiesOfTheCachedProducts() {
+        ProductCatalogCache cache = new ProductCatalogCache(4, 60000, null);
+        List<Product> original = catalog();
+        cache.put("Pizza Fun", original, null);
+
+        cache.get("Pizza Fun").get(0).setQuantity(0);
+        original.get(1).setPrice(99);
+
+        ArrayList<Product> products = cache.get("Pizza Fun");
+        assertEquals(10, products.get(0).getQuantity());
+        assertEquals(2.0, products.get(1).getPrice(), 0);
+    }
+
+    @Test
+    public void invalidate_dropsBothTiers() throws Exception {
+        File directory = folder.newFolder("catalogs");
+        ProductCatalogCache cache = new ProductCatalogCache(4, 60000, directory);
+        cache.put("Pizza Fun", catalog(), null);
+
+        cache.invalidate("Pizza Fun");
+
+        assertNull(cache.get("Pizza Fun"));
+        assertNull(new ProductCatalogCache(4, 60000, directory).get("Pizza Fun"));
+    }
+}
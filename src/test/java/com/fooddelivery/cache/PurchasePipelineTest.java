@@ -0,0 +1,194 @@
+package com.fooddelivery.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.fooddelivery.models.Product;
+import com.fooddelivery.models.Purchase;
+import com.fooddelivery.models.PurchaseOrder;
+import com.fooddelivery.utils.Constants;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests for queuing, resending and batching purchase orders
+ */
+public class PurchasePipelineTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private PurchaseOutbox outbox;
+    private PurchasePipeline pipeline;
+    // Stand-in for the Master's side of the contract: one outcome per key, applied once
+    private final Map<String, String> committed = new HashMap<>();
+    private final List<Integer> batchSizes = new ArrayList<>();
+    private final List<String> completed = new ArrayList<>();
+    private int delayed;
+    private int applied;
+    private int failuresAfterCommit;
+
+    @Before
+    public void setUp() throws IOException {
+        outbox = new PurchaseOutbox(folder.newFolder("outbox"));
+        pipeline = new PurchasePipeline(outbox, new ProductCatalogCache(4, 60000, null), orders -> {
+            batchSizes.add(orders.size());
+            List<String> outcomes = new ArrayList<>();
+            for (PurchaseOrder order : orders) {
+                String outcome = committed.get(order.getOrderId());
+                if (outcome == null) {
+                    applied++;
+                    outcome = "Purchase successful for " + order.getPurchase().getCustomerName();
+                    committed.put(order.getOrderId(), outcome);
+                }
+                outcomes.add(outcome);
+            }
+            if (failuresAfterCommit > 0) {
+                failuresAfterCommit--;
+                throw new IOException("Connection reset");
+            }
+            return outcomes;
+        }, new Random(7));
+        pipeline.addListener(new PurchasePipeline.OrderListener() {
+            @Override
+            public void onOrderCompleted(PurchaseOrder order, String outcome) {
+                completed.add(outcome);
+            }
+
+            @Override
+            public void onOrderDelayed(PurchaseOrder order, Exception error) {
+                delayed++;
+            }
+        });
+    }
+
+    private static PurchaseOrder order(String customerName) {
+        return PurchaseOrder.create("Pizza Fun", new Purchase(customerName, customerName + "@example.com",
+                new ArrayList<>(Arrays.asList(new Product("Margherita", "pizza", 1, 8.5)))));
+    }
+
+    private void makeAllDue() {
+        for (PurchaseOrder order : outbox.getOrders()) {
+            order.setNextAttemptAt(0);
+        }
+    }
+
+    @Test
+    public void lostResponse_orderIsResentWithSameKeyAndAppliedOnce() throws IOException {
+        outbox.add(order("Eleni"));
+        failuresAfterCommit = 1;
+
+        assertEquals(0, pipeline.sendDue());
+        assertEquals(1, delayed);
+        assertEquals(1, outbox.size());
+        assertEquals(1, outbox.getOrders().get(0).getAttempts());
+
+        makeAllDue();
+        assertEquals(1, pipeline.sendDue());
+
+        assertEquals(1, applied);
+        assertEquals(Arrays.asList("Purchase successful for Eleni"), completed);
+        assertEquals(0, outbox.size());
+    }
+
+    @Test
+    public void failedOrder_waitsForItsBackoff() throws IOException {
+        outbox.add(order("Eleni"));
+        failuresAfterCommit = 1;
+        pipeline.sendDue();
+
+        assertEquals(0, pipeline.sendDue());
+        assertEquals(1, batchSizes.size());
+        assertTrue(outbox.getOrders().get(0).getNextAttemptAt() > System.currentTimeMillis());
+    }
+
+    @Test
+    public void queuedOrders_areSentInBatchesOnceReachable() throws IOException {
+        for (int i = 0; i < 25; i++) {
+            outbox.add(order("Customer " + i));
+        }
+        failuresAfterCommit = 1;
+        pipeline.sendDue();
+        assertEquals(25, delayed);
+
+        makeAllDue();
+        assertEquals(25, pipeline.sendDue());
+
+        assertEquals(Arrays.asList(10, 10, 10, 5), batchSizes);
+        assertEquals(25, applied);
+        assertEquals(0, outbox.size());
+    }
+
+    @Test
+    public void outcome_canBeLookedUpAfterItWasDelivered() throws IOException {
+        PurchaseOrder order = order("Eleni");
+        outbox.add(order);
+        failuresAfterCommit = 1;
+
+        pipeline.sendDue();
+        assertTrue(pipeline.isDelayed(order.getOrderId()));
+        assertNull(pipeline.getOutcome(order.getOrderId()));
+
+        makeAllDue();
+        pipeline.sendDue();
+
+        assertFalse(pipeline.isDelayed(order.getOrderId()));
+        assertEquals("Purchase successful for Eleni", pipeline.getOutcome(order.getOrderId()));
+    }
+
+    @Test
+    public void outcome_onlyTheLatestAreKept() throws IOException {
+        PurchaseOrder first = order("Eleni");
+        outbox.add(first);
+        pipeline.sendDue();
+        for (int i = 0; i < Constants.PURCHASE_RECENT_OUTCOMES; i++) {
+            outbox.add(order("Nikos" + i));
+        }
+        pipeline.sendDue();
+
+        assertNull(pipeline.getOutcome(first.getOrderId()));
+        assertEquals(Constants.PURCHASE_RECENT_OUTCOMES + 1, completed.size());
+    }
+
+    @Test
+    public void outbox_keepsOrdersAcrossRestarts() throws IOException {
+        PurchaseOrder order = order("Eleni");
+        outbox.add(order);
+        order.setAttempts(3);
+        outbox.update(order);
+
+        List<PurchaseOrder> reloaded = new PurchaseOutbox(new File(folder.getRoot(), "outbox"))
+                .getOrders();
+
+        assertEquals(1, reloaded.size());
+        assertEquals(order.getOrderId(), reloaded.get(0).getOrderId());
+        assertEquals("Eleni", reloaded.get(0).getPurchase().getCustomerName());
+        assertEquals(3, reloaded.get(0).getAttempts());
+    }
+
+    @Test
+    public void backoff_growsWithJitterUpToTheMaximum() {
+        Random random = new Random(1);
+        for (int attempts = 1; attempts < 40; attempts++) {
+            long window = Math.min(Constants.PURCHASE_RETRY_MAX_MS,
+                    Constants.PURCHASE_RETRY_MIN_MS << Math.min(attempts - 1, 30));
+            long backoff = PurchasePipeline.backoffMs(attempts, random);
+            assertTrue(backoff >= window / 2);
+            assertTrue(backoff <= window);
+        }
+    }
+}
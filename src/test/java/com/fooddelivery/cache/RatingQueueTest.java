@@ -0,0 +1,142 @@
+package com.fooddelivery.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import com.fooddelivery.models.StoreRating;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for coalescing, persisting and batching queued ratings
+ */
+public class RatingQueueTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private final List<List<StoreRating>> batches = new ArrayList<>();
+    private boolean offline;
+    private Runnable duringSend;
+
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "ratings.queue");
+    }
+
+    private RatingQueue newQueue() {
+        return new RatingQueue(file, ratings -> {
+            if (offline) {
+                throw new IOException("Network unreachable");
+            }
+            batches.add(new ArrayList<>(ratings));
+            if (duringSend != null) {
+                duringSend.run();
+                duringSend = null;
+            }
+            List<String> outcomes = new ArrayList<>();
+            for (StoreRating rating : ratings) {
+                outcomes.add("Rating submitted: " + rating.getRating());
+            }
+            return outcomes;
+        }, new Random(3));
+    }
+
+    @Test
+    public void ratingSameStoreTwice_keepsOnlyTheLatest() {
+        RatingQueue queue = newQueue();
+        StoreRating first = queue.rate("Pizza Fun", 2);
+        queue.rate("Coffee Corner", 4);
+        StoreRating latest = queue.rate("Pizza Fun", 5);
+
+        // The first rating was never sent, so the latest one takes over its key
+        assertEquals(first.getRatingId(), latest.getRatingId());
+        assertEquals(2, queue.getPendingCount());
+        assertEquals(2, queue.sendPending());
+
+        assertEquals(1, batches.size());
+        assertEquals("Coffee Corner", batches.get(0).get(0).getStoreName());
+        assertEquals(5, batches.get(0).get(1).getRating());
+        assertEquals(0, queue.getPendingCount());
+    }
+
+    @Test
+    public void offline_ratingsSurviveRestartAndAreSentLater() {
+        offline = true;
+        RatingQueue queue = newQueue();
+        queue.rate("Pizza Fun", 3);
+
+        assertEquals(0, queue.sendPending());
+        assertEquals(1, queue.getFailures());
+        assertEquals(1, queue.getPendingCount());
+
+        offline = false;
+        RatingQueue restarted = newQueue();
+        assertEquals(1, restarted.getPendingCount());
+        assertEquals(1, restarted.sendPending());
+        assertEquals(3, batches.get(0).get(0).getRating());
+        assertEquals(0, newQueue().getPendingCount());
+    }
+
+    @Test
+    public void manyRatings_areSentInBatches() {
+        RatingQueue queue = newQueue();
+        for (int i = 0; i < 45; i++) {
+            queue.rate("Store " + i, 1 + i % 5);
+        }
+
+        assertEquals(45, queue.sendPending());
+
+        List<Integer> sizes = new ArrayList<>();
+        for (List<StoreRating> batch : batches) {
+            sizes.add(batch.size());
+        }
+        assertEquals(Arrays.asList(20, 20, 5), sizes);
+    }
+
+    @Test
+    public void ratingMadeWhileSending_isSentAfterTheFirst() {
+        RatingQueue queue = newQueue();
+        StoreRating first = queue.rate("Pizza Fun", 3);
+        List<StoreRating> madeDuringSend = new ArrayList<>();
+        duringSend = () -> madeDuringSend.add(queue.rate("Pizza Fun", 5));
+
+        assertEquals(2, queue.sendPending());
+
+        // The Master answers the first key with its recorded outcome, so the newer value needs its own
+        assertNotEquals(first.getRatingId(), madeDuringSend.get(0).getRatingId());
+        assertEquals(2, batches.size());
+        assertEquals(3, batches.get(0).get(0).getRating());
+        assertEquals(5, batches.get(1).get(0).getRating());
+        assertEquals(madeDuringSend.get(0).getRatingId(), batches.get(1).get(0).getRatingId());
+        assertEquals(0, queue.getPendingCount());
+    }
+
+    @Test
+    public void ratingReplacingAFailedSend_getsItsOwnKey() {
+        offline = true;
+        RatingQueue queue = newQueue();
+        StoreRating first = queue.rate("Pizza Fun", 2);
+        queue.sendPending();
+        offline = false;
+
+        StoreRating second = queue.rate("Pizza Fun", 4);
+
+        // The failed send may have been counted, and its key would be answered with the old value
+        assertNotEquals(first.getRatingId(), second.getRatingId());
+        assertEquals(1, queue.getPendingCount());
+        assertEquals(1, queue.sendPending());
+        assertEquals(4, batches.get(0).get(0).getRating());
+    }
+}
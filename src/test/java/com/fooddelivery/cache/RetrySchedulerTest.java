@@ -0,0 +1,83 @@
+package com.fooddelivery.cache;
+
+import static org.junit.Assert.assertTrue;
+
+import com.fooddelivery.network.NetworkExecutor;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests that scheduled work is not lost when the network executor cannot take it
+ */
+public class RetrySchedulerTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        release.countDown();
+    }
+
+    /**
+     * Occupies the only worker of the executor until the test releases it
+     */
+    private void occupy(NetworkExecutor executor) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        executor.submit(() -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, NetworkExecutor.Priority.FOREGROUND);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+
+    private static void awaitQueueDepth(NetworkExecutor executor, int depth) throws InterruptedException {
+        long giveUp = System.currentTimeMillis() + 5000;
+        while (executor.getStats().getQueueDepth() != depth && System.currentTimeMillis() < giveUp) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void rejectedWork_runsOnceTheExecutorHasRoom() throws Exception {
+        NetworkExecutor executor = new NetworkExecutor(1, 1);
+        occupy(executor);
+        executor.submit(() -> { }, NetworkExecutor.Priority.FOREGROUND);
+        CountDownLatch ran = new CountDownLatch(1);
+        RetryScheduler scheduler = new RetryScheduler(ran::countDown, NetworkExecutor.Priority.PREFETCH, 20,
+                executor);
+
+        scheduler.schedule(0);
+        // Rejected at least once while the queue is full
+        while (executor.getStats().getRejectedTasks() == 0) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void displacedWork_isScheduledAgain() throws Exception {
+        NetworkExecutor executor = new NetworkExecutor(1, 1);
+        occupy(executor);
+        CountDownLatch ran = new CountDownLatch(1);
+        RetryScheduler scheduler = new RetryScheduler(ran::countDown, NetworkExecutor.Priority.PREFETCH, 20,
+                executor);
+
+        scheduler.schedule(0);
+        awaitQueueDepth(executor, 1);
+        // Takes the queued work's place
+        executor.submit(() -> { }, NetworkExecutor.Priority.FOREGROUND);
+        release.countDown();
+
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,51 @@
+package com.fooddelivery.cache;
+
+import static org.junit.Assert.assertEquals;
+
+import com.fooddelivery.models.MapReduceRequest;
+import com.fooddelivery.models.StoreSummary;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for the local answers of StoreRepository
+ */
+public class StoreRepositoryTest {
+
+    private static MapReduceRequest request(double latitude, double longitude, double minStars, double radius) {
+        return new MapReduceRequest(latitude, longitude, new ArrayList<>(Arrays.asList("pizzeria")),
+                minStars, "", radius);
+    }
+
+    @Test
+    public void filterLocally_appliesTheExactRequestToASharedResult() {
+        StoreRepository repository = new StoreRepository(60000);
+        repository.update(new StoreSummary("Near", "pizzeria", 4.6, 10, "$", 37.9801, 23.7301));
+        repository.update(new StoreSummary("Rim", "pizzeria", 4.6, 10, "$", 38.0249, 23.7301));
+        repository.update(new StoreSummary("Average", "pizzeria", 3.2, 10, "$", 37.9802, 23.7302));
+
+        // Same canonical key: the second search filters the first one's widened result
+        List<StoreSummary> first = repository.filterLocally(request(37.98, 23.73, 3.0, 5.0));
+        List<StoreSummary> second = repository.filterLocally(request(37.9802, 23.7302, 3.4, 4.6));
+
+        assertEquals(3, first.size());
+        assertEquals(1, second.size());
+        assertEquals("Near", second.get(0).getStoreName());
+    }
+
+    @Test
+    public void filterLocally_seesIndexChanges() {
+        StoreRepository repository = new StoreRepository(60000);
+        MapReduceRequest request = request(37.98, 23.73, 0, 5);
+        repository.update(new StoreSummary("First", "pizzeria", 4, 10, "$", 37.9801, 23.7301));
+        assertEquals(1, repository.filterLocally(request).size());
+
+        repository.update(new StoreSummary("Second", "pizzeria", 4, 10, "$", 37.9802, 23.7302));
+
+        assertEquals(2, repository.filterLocally(request).size());
+    }
+}
@@ -0,0 +1,117 @@
+package com.fooddelivery.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.fooddelivery.models.MapReduceRequest;
+import com.fooddelivery.models.StoreSummary;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for radius queries and fetch coverage of StoreSpatialIndex
+ */
+public class StoreSpatialIndexTest {
+
+    private static StoreSummary store(String name, double latitude, double longitude) {
+        return new StoreSummary(name, "pizzeria", 4, 10, "$", latitude, longitude);
+    }
+
+    @Test
+    public void query_returnsStoresInsideRadiusNearestFirst() {
+        StoreSpatialIndex index = new StoreSpatialIndex(60000);
+        index.put(store("Far", 37.99, 23.73));
+        index.put(store("Near", 37.9801, 23.7301));
+        index.put(store("Outside", 38.2, 23.73));
+
+        List<StoreSummary> result = index.query(37.98, 23.73, 5);
+
+        assertEquals(2, result.size());
+        assertEquals("Near", result.get(0).getStoreName());
+        assertEquals("Far", result.get(1).getStoreName());
+    }
+
+    @Test
+    public void filter_appliesCategoryStarsPriceAndRadius() {
+        StoreSpatialIndex index = new StoreSpatialIndex(60000);
+        index.put(new StoreSummary("Match", "pizzeria", 4.5, 10, "$$", 37.981, 23.731));
+        index.put(new StoreSummary("Burger", "burger", 4.5, 10, "$$", 37.981, 23.731));
+        index.put(new StoreSummary("LowStars", "pizzeria", 2, 10, "$$", 37.981, 23.731));
+        index.put(new StoreSummary("Cheap", "pizzeria", 4.5, 10, "$", 37.981, 23.731));
+        index.put(new StoreSummary("FarAway", "pizzeria", 4.5, 10, "$$", 38.5, 23.731));
+
+        MapReduceRequest request = new MapReduceRequest(37.98, 23.73,
+                new ArrayList<>(Arrays.asList("pizzeria")), 4, "$$", 5);
+        List<StoreSummary> result = index.filter(request);
+
+        assertEquals(1, result.size());
+        assertEquals("Match", result.get(0).getStoreName());
+    }
+
+    @Test
+    public void filter_followsUpdatedPriceTier() {
+        StoreSpatialIndex index = new StoreSpatialIndex(60000);
+        index.put(new StoreSummary("Grill", "grill", 4, 10, "$", 37.98, 23.73));
+        index.put(new StoreSummary("Grill", "grill", 4, 10, "$$$", 37.98, 23.73));
+
+        MapReduceRequest cheap = new MapReduceRequest(37.98, 23.73, new ArrayList<String>(), 0, "$", 5);
+        MapReduceRequest expensive = new MapReduceRequest(37.98, 23.73, new ArrayList<String>(), 0, "$$$", 5);
+
+        assertTrue(index.filter(cheap).isEmpty());
+        assertEquals(1, index.filter(expensive).size());
+    }
+
+    @Test
+    public void findUncovered_afterSameFetch_isNull() {
+        StoreSpatialIndex index = new StoreSpatialIndex(60000);
+        StoreSpatialIndex.Region region = index.findUncovered(37.98, 23.73, 5);
+        assertNotNull(region);
+
+        index.markFetched(region, Collections.singletonList(store("Near", 37.98, 23.73)));
+
+        assertNull(index.findUncovered(37.98, 23.73, 5));
+        assertNull(index.findUncovered(37.985, 23.735, 2));
+    }
+
+    @Test
+    public void findUncovered_nearEdgeOfLargerFetch_isSmallerThanQuery() {
+        StoreSpatialIndex index = new StoreSpatialIndex(60000);
+        index.markFetched(index.findUncovered(37.98, 23.73, 10), Collections.<StoreSummary>emptyList());
+
+        // 2.5km circle whose northern edge pokes just outside the fetched 10km circle
+        StoreSpatialIndex.Region region = index.findUncovered(38.05, 23.73, 2.5);
+
+        assertNotNull(region);
+        assertTrue(region.radiusKm < 2.5);
+        assertTrue(region.latitude > 38.05);
+    }
+
+    @Test
+    public void findUncovered_afterTtl_refetches() throws InterruptedException {
+        StoreSpatialIndex index = new StoreSpatialIndex(1);
+        index.markFetched(index.findUncovered(37.98, 23.73, 5), Collections.<StoreSummary>emptyList());
+        Thread.sleep(5);
+
+        assertNotNull(index.findUncovered(37.98, 23.73, 5));
+    }
+
+    @Test
+    public void markFetched_dropsStoresMissingFromTheResponse() {
+        StoreSpatialIndex index = new StoreSpatialIndex(60000);
+        index.put(store("Closed", 37.98, 23.73));
+        index.put(store("Open", 37.981, 23.731));
+
+        index.markFetched(index.findUncovered(37.98, 23.73, 5),
+                Arrays.asList(store("Open", 37.981, 23.731)));
+
+        assertNull(index.get("Closed"));
+        assertEquals(1, index.size());
+    }
+}
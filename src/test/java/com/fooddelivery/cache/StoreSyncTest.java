@@ -0,0 +1,164 @@
+package com.fooddelivery.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.fooddelivery.models.ChangeLog;
+import com.fooddelivery.models.Product;
+import com.fooddelivery.models.StoreChange;
+import com.fooddelivery.models.StoreSummary;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Tests for applying change logs to the store index and catalog cache
+ */
+public class StoreSyncTest {
+
+    private StoreSpatialIndex index;
+    private ProductCatalogCache catalogs;
+    private StoreSync sync;
+    private final ArrayList<Set<String>> notified = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        index = new StoreSpatialIndex(60000);
+        catalogs = new ProductCatalogCache(4, 60000, null);
+        sync = new StoreSync(index, catalogs);
+        sync.addListener(new StoreSync.ChangeListener() {
+            @Override
+            public void onStoresChanged(Set<String> storeNames) {
+                notified.add(storeNames);
+            }
+
+            @Override
+            public void onReset() {
+                notified.add(null);
+            }
+        });
+        index.put(new StoreSummary("Pizza Fun", "pizzeria", 4, 10, "$$", 37.98, 23.73, 1));
+        catalogs.put("Pizza Fun", Arrays.asList(new Product("Margherita", "pizza", 10, 8.5)), "v1");
+        // Baseline taken on the first sync
+        sync.apply(ChangeLog.reset(5));
+    }
+
+    private static ChangeLog log(int latest, StoreChange... changes) {
+        return new ChangeLog(latest, false, new ArrayList<>(Arrays.asList(changes)));
+    }
+
+    @Test
+    public void firstReset_keepsCachesAndTakesSequence() {
+        assertEquals(5, sync.getLastSequence());
+        assertEquals(1, index.size());
+        assertTrue(notified.isEmpty());
+    }
+
+    @Test
+    public void apply_patchesRatingInPlaceAndCachedStock() {
+        StoreSummary shown = index.get("Pizza Fun");
+        Product product = catalogs.get("Pizza Fun").get(0);
+
+        int applied = sync.apply(log(7,
+                StoreChange.rating(6, "Pizza Fun", 2, 4.6, 11),
+                StoreChange.quantity(7, "Pizza Fun", 3, "Margherita", 4)));
+
+        assertEquals(2, applied);
+        assertSame(shown, index.get("Pizza Fun"));
+        assertEquals(4.6, shown.getStars(), 0);
+        assertEquals(11, shown.getNoOfReviews());
+        // Readers hold copies of the catalog; the cached one is patched
+        assertEquals(10, product.getQuantity());
+        assertEquals(4, catalogs.get("Pizza Fun").get(0).getQuantity());
+        assertEquals(1, notified.size());
+        assertEquals(1, notified.get(0).size());
+        assertEquals(7, sync.getLastSequence());
+    }
+
+    @Test
+    public void apply_skipsChangesAlreadyApplied() {
+        sync.apply(log(6, StoreChange.quantity(6, "Pizza Fun", 2, "Margherita", 4)));
+        int applied = sync.apply(log(7,
+                StoreChange.quantity(6, "Pizza Fun", 2, "Margherita", 4),
+                StoreChange.status(7, "Pizza Fun", 3, "Margherita", "hidden")));
+
+        assertEquals(1, applied);
+        assertEquals("hidden", catalogs.get("Pizza Fun").get(0).getStatus());
+    }
+
+    @Test
+    public void apply_addsAndRemovesStores() {
+        sync.apply(log(7,
+                StoreChange.storeAdded(6, new StoreSummary("Sushi Bar", "sushi", 4.4, 3, "$$$", 37.981, 23.731, 1)),
+                StoreChange.storeRemoved(7, "Pizza Fun")));
+
+        assertNull(index.get("Pizza Fun"));
+        assertNull(catalogs.get("Pizza Fun"));
+        assertEquals("Sushi Bar", index.get("Sushi Bar").getStoreName());
+    }
+
+    @Test
+    public void pushedChange_isNotReappliedBySync() {
+        int pushed = sync.applyPushed(log(7, StoreChange.productAdded(7, "Pizza Fun", 3,
+                new Product("Calzone", "pizza", 5, 9))));
+        // The sync also returns an earlier change of a store that was not watched
+        int synced = sync.apply(log(7,
+                StoreChange.rating(6, "Pizza Fun", 2, 4.6, 11),
+                StoreChange.productAdded(7, "Pizza Fun", 3, new Product("Calzone", "pizza", 5, 9))));
+
+        assertEquals(1, pushed);
+        assertEquals(1, synced);
+        assertEquals(2, catalogs.get("Pizza Fun").size());
+        assertEquals(4.6, index.get("Pizza Fun").getStars(), 0);
+        assertEquals(7, sync.getLastSequence());
+    }
+
+    @Test
+    public void listeners_areNotifiedWithoutTheLockHeld() {
+        final boolean[] locked = new boolean[2];
+        sync.addListener(new StoreSync.ChangeListener() {
+            @Override
+            public void onStoresChanged(Set<String> storeNames) {
+                locked[0] = Thread.holdsLock(sync);
+            }
+
+            @Override
+            public void onReset() {
+                locked[1] = Thread.holdsLock(sync);
+            }
+        });
+
+        sync.apply(log(6, StoreChange.rating(6, "Pizza Fun", 2, 4.6, 11)));
+        sync.apply(ChangeLog.reset(40));
+
+        assertEquals(2, notified.size());
+        assertFalse(locked[0]);
+        assertFalse(locked[1]);
+    }
+
+    @Test
+    public void staleReset_isIgnoredOnceAConcurrentSyncCaughtUp() {
+        sync.apply(log(40));
+        sync.apply(ChangeLog.reset(40));
+
+        assertEquals(1, index.size());
+        assertTrue(notified.isEmpty());
+    }
+
+    @Test
+    public void laterReset_dropsCachesAndNotifies() {
+        sync.apply(ChangeLog.reset(40));
+
+        assertEquals(0, index.size());
+        assertNull(catalogs.get("Pizza Fun"));
+        assertEquals(1, notified.size());
+        assertNull(notified.get(0));
+    }
+}
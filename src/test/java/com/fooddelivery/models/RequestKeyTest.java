@@ -0,0 +1,78 @@
+package com.fooddelivery.models;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.fooddelivery.utils.GeoUtils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Tests for canonical request keys and MapReduceRequest equality
+ */
+public class RequestKeyTest {
+
+    private static MapReduceRequest request(double latitude, double longitude, double minStars,
+                                            double radius, String... categories) {
+        return new MapReduceRequest(latitude, longitude, new ArrayList<>(Arrays.asList(categories)),
+                minStars, "$$", radius);
+    }
+
+    @Test
+    public void equals_ignoresCategoryOrderAndDuplicates() {
+        MapReduceRequest a = request(37.98, 23.73, 3, 5, "pizzeria", "souvlaki");
+        MapReduceRequest b = request(37.98, 23.73, 3, 5, "souvlaki", "pizzeria", "pizzeria");
+
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertNotEquals(a, request(37.98, 23.7301, 3, 5, "pizzeria", "souvlaki"));
+    }
+
+    @Test
+    public void request_isNotChangedThroughTheCallersCategoryList() {
+        ArrayList<String> categories = new ArrayList<>(Arrays.asList("pizzeria"));
+        MapReduceRequest request = new MapReduceRequest(37.98, 23.73, categories, 3, "$$", 5);
+        int hash = request.hashCode();
+
+        categories.add("souvlaki");
+
+        assertEquals(Arrays.asList("pizzeria"), request.getFoodCategories());
+        assertEquals(hash, request.hashCode());
+        assertEquals(request, request.withPage(0, 0));
+        assertNotEquals(request, request.withPage(20, 10));
+    }
+
+    @Test
+    public void canonicalKey_isSharedByNearbyRequestsWithSimilarCriteria() {
+        RequestKey a = request(37.98012, 23.73013, 3.2, 4.8, "pizzeria").getCanonicalKey();
+        RequestKey b = request(37.98034, 23.73041, 3.4, 5.0, "pizzeria").getCanonicalKey();
+
+        assertEquals(a, b);
+        assertEquals(a.getHash(), b.getHash());
+        assertNotEquals(a, request(37.98034, 23.73041, 3.6, 5.0, "pizzeria").getCanonicalKey());
+        assertNotEquals(a, request(37.98134, 23.73041, 3.4, 5.0, "pizzeria").getCanonicalKey());
+    }
+
+    @Test
+    public void hash_isStable() {
+        RequestKey key = RequestKey.quantized(request(37.98, 23.73, 4, 5, "pizzeria"), 0.001, 0.5, 0.5);
+
+        assertEquals(0x3da03033ab26e159L, key.getHash());
+    }
+
+    @Test
+    public void toRequest_coversEveryRequestWithTheKey() {
+        MapReduceRequest original = request(37.98049, 23.73001, 3.4, 4.6, "pizzeria");
+        MapReduceRequest widened = original.getCanonicalKey().toRequest();
+
+        double shift = GeoUtils.distanceKm(original.getClientLatitude(), original.getClientLongitude(),
+                widened.getClientLatitude(), widened.getClientLongitude());
+        assertTrue(widened.getRadius() >= original.getRadius() + shift);
+        assertTrue(widened.getMinStars() <= original.getMinStars());
+        assertEquals(original.getFoodCategories(), widened.getFoodCategories());
+    }
+}
@@ -0,0 +1,158 @@
+package com.fooddelivery.models;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Tests that models sent over Java serialization still match the form a legacy Master knows.
+ * The streams below were written by the original classes.
+ */
+public class SerializationCompatibilityTest {
+
+    // new MapReduceRequest(37.98, 23.72, [pizzeria, souvlaki], 3.5, "$$", 5.0)
+    private static final String ORIGINAL_REQUEST =
+            "rO0ABXNyAChjb20uZm9vZGRlbGl2ZXJ5Lm1vZGVscy5NYXBSZWR1Y2VSZXF1ZXN0wtR4RuhdEHsCAAZEAA5jbGllbnRMYXRp"
+            + "dHVkZUQAD2NsaWVudExvbmdpdHVkZUQACG1pblN0YXJzRAAGcmFkaXVzTAAOZm9vZENhdGVnb3JpZXN0ABVMamF2YS91dGls"
+            + "L0FycmF5TGlzdDtMAA1wcmljZUNhdGVnb3J5dAASTGphdmEvbGFuZy9TdHJpbmc7eHBAQv1wo9cKPUA3uFHrhR64QAwAAAAA"
+            + "AABAFAAAAAAAAHNyABNqYXZhLnV0aWwuQXJyYXlMaXN0eIHSHZnHYZ0DAAFJAARzaXpleHAAAAACdwQAAAACdAAIcGl6emVy"
+            + "aWF0AAhzb3V2bGFraXh0AAIkJA==";
+
+    // new Product("Margherita", "pizza", 10, 8.5)
+    private static final String ORIGINAL_PRODUCT =
+            "rO0ABXNyAB9jb20uZm9vZGRlbGl2ZXJ5Lm1vZGVscy5Qcm9kdWN098ndiBZVtSACAAVEAAVwcmljZUkACHF1YW50aXR5TAAI"
+            + "Y2F0ZWdvcnl0ABJMamF2YS9sYW5nL1N0cmluZztMAARuYW1lcQB+AAFMAAZzdGF0dXNxAH4AAXhwQCEAAAAAAAAAAAAKdAAF"
+            + "cGl6emF0AApNYXJnaGVyaXRhdAAHdmlzaWJsZQ==";
+
+    // new Store("Pizza Fun", 37.98, 23.73, "pizzeria", 4.5, 10, "logo.png", new ArrayList<>())
+    private static final String ORIGINAL_STORE =
+            "rO0ABXNyAB1jb20uZm9vZGRlbGl2ZXJ5Lm1vZGVscy5TdG9yZUKY8x8WmRw7AgAJRAAIbGF0aXR1ZGVEAAlsb25naXR1ZGVJ"
+            + "AAtub09mUmV2aWV3c0QABXN0YXJzTAAIY2F0ZWdvcnl0ABJMamF2YS9sYW5nL1N0cmluZztMAAhwcm9kdWN0c3QAFUxqYXZh"
+            + "L3V0aWwvQXJyYXlMaXN0O0wACXB1cmNoYXNlc3EAfgACTAANc3RvcmVMb2dvUGF0aHEAfgABTAAJc3RvcmVOYW1lcQB+AAF4"
+            + "cEBC/XCj1wo9QDe64UeuFHsAAAAKQBIAAAAAAAB0AAhwaXp6ZXJpYXNyABNqYXZhLnV0aWwuQXJyYXlMaXN0eIHSHZnHYZ0D"
+            + "AAFJAARzaXpleHAAAAAAdwQAAAAAeHNxAH4ABQAAAAB3BAAAAAB4dAAIbG9nby5wbmd0AAlQaXp6YSBGdW4=";
+
+    // The same store with Margherita (10, 8.5) and Calzone (5, 9.0)
+    private static final String ORIGINAL_STORE_WITH_PRODUCTS =
+            "rO0ABXNyAB1jb20uZm9vZGRlbGl2ZXJ5Lm1vZGVscy5TdG9yZUKY8x8WmRw7AgAJRAAIbGF0aXR1ZGVEAAlsb25naXR1ZGVJ"
+            + "AAtub09mUmV2aWV3c0QABXN0YXJzTAAIY2F0ZWdvcnl0ABJMamF2YS9sYW5nL1N0cmluZztMAAhwcm9kdWN0c3QAFUxqYXZh"
+            + "L3V0aWwvQXJyYXlMaXN0O0wACXB1cmNoYXNlc3EAfgACTAANc3RvcmVMb2dvUGF0aHEAfgABTAAJc3RvcmVOYW1lcQB+AAF4"
+            + "cEBC/XCj1wo9QDe64UeuFHsAAAAKQBIAAAAAAAB0AAhwaXp6ZXJpYXNyABNqYXZhLnV0aWwuQXJyYXlMaXN0eIHSHZnHYZ0D"
+            + "AAFJAARzaXpleHAAAAACdwQAAAACc3IAH2NvbS5mb29kZGVsaXZlcnkubW9kZWxzLlByb2R1Y3T3yd2IFlW1IAIABUQABXBy"
+            + "aWNlSQAIcXVhbnRpdHlMAAhjYXRlZ29yeXEAfgABTAAEbmFtZXEAfgABTAAGc3RhdHVzcQB+AAF4cEAhAAAAAAAAAAAACnQA"
+            + "BXBpenphdAAKTWFyZ2hlcml0YXQAB3Zpc2libGVzcQB+AAdAIgAAAAAAAAAAAAVxAH4ACXQAB0NhbHpvbmVxAH4AC3hzcQB+"
+            + "AAUAAAAAdwQAAAAAeHQACGxvZ28ucG5ndAAJUGl6emEgRnVu";
+
+    private static Object read(String base64) throws Exception {
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(Base64.getDecoder().decode(base64)))) {
+            return in.readObject();
+        }
+    }
+
+    private static Object roundTrip(Object value) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return in.readObject();
+        }
+    }
+
+    @Test
+    public void mapReduceRequest_keepsTheOriginalSerialVersionUID() {
+        assertEquals(-4407765889347415941L,
+                ObjectStreamClass.lookup(MapReduceRequest.class).getSerialVersionUID());
+    }
+
+    @Test
+    public void mapReduceRequest_readsTheOriginalForm() throws Exception {
+        MapReduceRequest request = (MapReduceRequest) read(ORIGINAL_REQUEST);
+
+        assertEquals(37.98, request.getClientLatitude(), 0);
+        assertEquals(Arrays.asList("pizzeria", "souvlaki"), request.getFoodCategories());
+        assertEquals("$$", request.getPriceCategory());
+        assertEquals(5.0, request.getRadius(), 0);
+        assertEquals(0, request.getCursor());
+        assertEquals(0, request.getPageSize());
+        assertFalse(request.isSummaryOnly());
+        assertEquals(new MapReduceRequest(37.98, 23.72, new ArrayList<>(Arrays.asList("pizzeria", "souvlaki")),
+                3.5, "$$", 5.0), request);
+    }
+
+    @Test
+    public void mapReduceRequest_roundTripsItsPagingFields() throws Exception {
+        MapReduceRequest request = new MapReduceRequest(37.98, 23.72, Arrays.asList("pizzeria"), 3.5, "$$", 5.0,
+                20, 10, true);
+
+        assertEquals(request, roundTrip(request));
+    }
+
+    @Test
+    public void product_keepsTheOriginalSerialVersionUID() {
+        assertEquals(-591698299462503136L, ObjectStreamClass.lookup(Product.class).getSerialVersionUID());
+    }
+
+    @Test
+    public void product_readsTheOriginalForm() throws Exception {
+        Product product = (Product) read(ORIGINAL_PRODUCT);
+
+        assertEquals("Margherita", product.getName());
+        assertEquals("pizza", product.getCategory());
+        assertEquals(10, product.getQuantity());
+        assertEquals(8.5, product.getPrice(), 0);
+        assertEquals("visible", product.getStatus());
+    }
+
+    @Test
+    public void store_keepsTheOriginalSerialVersionUID() {
+        assertEquals(4798852717811932219L, ObjectStreamClass.lookup(Store.class).getSerialVersionUID());
+    }
+
+    @Test
+    public void store_readsTheOriginalForm() throws Exception {
+        Store store = (Store) read(ORIGINAL_STORE);
+
+        assertEquals("Pizza Fun", store.getStoreName());
+        assertEquals(23.73, store.getLongitude(), 0);
+        assertEquals(4.5, store.getStars(), 0);
+        assertEquals(10, store.getNoOfReviews());
+        assertEquals("logo.png", store.getStoreLogoPath());
+        assertTrue(store.getProducts().isEmpty());
+        assertEquals(0, store.getVersion());
+        assertEquals("$", store.calculatePriceCategory());
+    }
+
+    @Test
+    public void store_readsTheOriginalFormWithProducts() throws Exception {
+        Store store = (Store) read(ORIGINAL_STORE_WITH_PRODUCTS);
+
+        assertEquals(2, store.getProducts().size());
+        assertEquals("Calzone", store.getProducts().get(1).getName());
+        assertEquals("$$", store.calculatePriceCategory());
+    }
+
+    @Test
+    public void store_recomputesThePriceTierAfterDeserialization() throws Exception {
+        Store store = new Store("Pizza Fun", 37.98, 23.73, "pizzeria", 4.5, 10, "logo.png",
+                new ArrayList<>(Arrays.asList(new Product("Margherita", "pizza", 10, 8.5))));
+        int version = store.getVersion();
+
+        Store copy = (Store) roundTrip(store);
+
+        assertEquals("$$", copy.calculatePriceCategory());
+        assertEquals(version, copy.getVersion());
+    }
+}
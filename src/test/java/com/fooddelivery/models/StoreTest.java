@@ -0,0 +1,74 @@
+package com.fooddelivery.models;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+/**
+ * Tests for the cached price category and the version of Store
+ */
+public class StoreTest {
+
+    @Test
+    public void priceCategory_withoutProducts_isCheapestTier() {
+        Store store = new Store("Empty", 0, 0, "coffee", 0, 0, "", new ArrayList<Product>());
+
+        assertEquals("$", store.calculatePriceCategory());
+    }
+
+    @Test
+    public void priceCategory_followsProductChanges() {
+        Store store = new Store("Grill", 0, 0, "grill", 4, 10, "", new ArrayList<Product>());
+
+        store.addProduct(new Product("Pita", "grill", 5, 4.0));
+        assertEquals("$", store.calculatePriceCategory());
+
+        store.addProduct(new Product("Platter", "grill", 5, 20.0));
+        assertEquals("$$", store.calculatePriceCategory());
+
+        assertTrue(store.updateProductPrice("Pita", 30.0));
+        assertEquals("$$$", store.calculatePriceCategory());
+
+        assertTrue(store.removeProduct("Platter"));
+        assertEquals("$$$", store.calculatePriceCategory());
+        assertEquals(30.0, store.getProducts().get(0).getPrice(), 0.0);
+    }
+
+    @Test
+    public void readingThePriceCategory_leavesTheVersionAlone() {
+        ArrayList<Product> products = new ArrayList<>();
+        products.add(new Product("A", "c", 1, 3.0));
+        Store store = new Store("Fresh", 0, 0, "c", 3, 1, "", products);
+
+        assertEquals(0, store.getVersion());
+        store.calculatePriceCategory();
+        assertEquals(0, store.getVersion());
+    }
+
+    @Test
+    public void rating_bumpsTheVersionOnce() {
+        Store store = new Store("Rated", 0, 0, "c", 3, 1, "", new ArrayList<Product>());
+
+        store.setRating(4.5, 2);
+
+        assertEquals(1, store.getVersion());
+        assertEquals(4.5, store.getStars(), 0.0);
+        assertEquals(2, store.getNoOfReviews());
+    }
+
+    @Test
+    public void priceCategory_matchesFullRecalculation() {
+        ArrayList<Product> products = new ArrayList<>();
+        products.add(new Product("A", "c", 1, 3.0));
+        products.add(new Product("B", "c", 1, 9.0));
+        Store store = new Store("Mixed", 0, 0, "c", 3, 1, "", products);
+
+        store.getProducts().add(new Product("C", "c", 1, 40.0));
+        store.recalculatePriceCategory();
+
+        assertEquals("$$$", store.calculatePriceCategory());
+    }
+}
@@ -0,0 +1,135 @@
+package com.fooddelivery.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.fooddelivery.models.Product;
+import com.fooddelivery.utils.Constants;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for deadlines, latency-derived timeouts and hedged reads
+ */
+public class AdaptiveTimeoutsTest {
+
+    private StandInMaster master;
+    private ConnectionManager manager;
+
+    @After
+    public void tearDown() throws Exception {
+        if (manager != null) manager.shutdown();
+        if (master != null) master.close();
+    }
+
+    @Test
+    public void timeouts_useDefaultsUntilEnoughSamples_thenClampScaledP99() {
+        NetworkMetrics metrics = new NetworkMetrics();
+        AdaptiveTimeouts timeouts = new AdaptiveTimeouts(metrics);
+        assertEquals(Constants.READ_TIMEOUT_DEFAULT_MS, timeouts.readTimeoutMs("filter", null));
+        assertEquals(Constants.CONNECT_TIMEOUT_DEFAULT_MS, timeouts.connectTimeoutMs(null));
+        assertEquals(-1, timeouts.hedgeDelayMs("filter"));
+
+        for (int i = 0; i < Constants.TIMEOUT_MIN_SAMPLES; i++) {
+            metrics.recordCommand("filter", 0, 500_000, 1_000_000, false);
+            metrics.recordCommand("fetchProducts", 0, 60_000_000_000L, 60_000_000_000L, false);
+        }
+        assertEquals(Constants.READ_TIMEOUT_MIN_MS, timeouts.readTimeoutMs("filter", null));
+        assertEquals(Constants.READ_TIMEOUT_MAX_MS, timeouts.readTimeoutMs("fetchProducts", null));
+        assertEquals(Constants.HEDGE_MIN_DELAY_MS, timeouts.hedgeDelayMs("filter"));
+        assertTrue(timeouts.hedgeDelayMs("fetchProducts") >= 60_000);
+    }
+
+    @Test
+    public void deadline_boundsTimeouts_andIsNeverExtendedByNesting() throws Exception {
+        AdaptiveTimeouts timeouts = new AdaptiveTimeouts(new NetworkMetrics());
+        Deadline outer = Deadline.after(200);
+
+        outer.run(() -> {
+            assertTrue(timeouts.readTimeoutMs("filter", Deadline.current()) <= 200);
+            Deadline.within(60_000, () -> {
+                assertSame(outer, Deadline.current());
+                return null;
+            });
+            Deadline.within(10, () -> {
+                assertTrue(Deadline.current().remainingMs() <= 10);
+                return null;
+            });
+            assertSame(outer, Deadline.current());
+            return null;
+        });
+        assertNull(Deadline.current());
+        assertEquals(1, timeouts.readTimeoutMs("filter", Deadline.after(-5)));
+    }
+
+    @Test
+    public void stalledMaster_failsAtTheDeadlineInsteadOfHanging() throws Exception {
+        master = new StandInMaster(TestStores.stores(), false);
+        SocketClient client = new SocketClient("127.0.0.1", master.getPort());
+        client.connect();
+        master.setLatency(3000, 3000);
+
+        long start = System.nanoTime();
+        try {
+            Deadline.after(300).run(() -> client.getStoreProducts("Pizza Fun"));
+            fail("Expected the read to time out");
+        } catch (IOException expected) {
+            // The connection is broken and closed rather than left waiting
+        } finally {
+            client.disconnect();
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        assertTrue("took " + elapsedMs + " ms", elapsedMs < 2000);
+        assertTrue(!client.isConnected());
+    }
+
+    @Test
+    public void slowRead_isHedgedOnASecondConnection() throws Exception {
+        master = new StandInMaster(TestStores.stores(), false);
+        manager = new ConnectionManager(new SocketClientPool("127.0.0.1", master.getPort(), 4, 5000, 60000));
+        NetworkMetrics.getShared().reset();
+        for (int i = 0; i < Constants.TIMEOUT_MIN_SAMPLES; i++) {
+            manager.getStoreProducts("Pizza Fun");
+        }
+        master.setLatency(300, 300);
+
+        ArrayList<Product> products = manager.getStoreProducts("Pizza Fun");
+
+        assertTrue(!products.isEmpty());
+        NetworkMetrics.Snapshot snapshot = NetworkMetrics.getShared().snapshot();
+        assertEquals(1, snapshot.getHedges());
+        assertEquals(Long.valueOf(1), snapshot.export().get("hedges.sent"));
+    }
+
+    @Test
+    public void hedgedRead_runsItsFirstAttemptOnTheCallingThread() throws Exception {
+        master = new StandInMaster(TestStores.stores(), false);
+        manager = new ConnectionManager(new SocketClientPool("127.0.0.1", master.getPort(), 4, 5000, 60000));
+        NetworkMetrics.getShared().reset();
+        for (int i = 0; i < Constants.TIMEOUT_MIN_SAMPLES; i++) {
+            manager.getStoreProducts("Pizza Fun");
+        }
+        List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+
+        ArrayList<Product> products = manager.coalesce(ConnectionManager.key("fetchProducts", "Pizza Fun"),
+                client -> {
+                    threads.add(Thread.currentThread());
+                    Thread.sleep(300);
+                    return client.getStoreProducts("Pizza Fun");
+                });
+
+        assertTrue(!products.isEmpty());
+        assertSame(Thread.currentThread(), threads.get(0));
+        assertEquals(2, threads.size());
+        assertTrue(threads.get(1).getName().startsWith("network-hedge-"));
+    }
+}
@@ -0,0 +1,193 @@
+package com.fooddelivery.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.fooddelivery.models.MapReduceRequest;
+import com.fooddelivery.models.Product;
+import com.fooddelivery.models.ProductBatch;
+import com.fooddelivery.models.Purchase;
+import com.fooddelivery.models.PurchaseOrder;
+import com.fooddelivery.models.Store;
+import com.fooddelivery.models.StoreSummary;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Round-trip tests for the hand-written binary encoders and decoders
+ */
+public class BinaryCodecTest {
+
+    @Test
+    public void product_roundTrip() throws IOException {
+        Product product = new Product("Souvlaki", "Grill", 12, 3.5);
+        product.setStatus("hidden");
+
+        Product decoded = (Product) roundTrip(product);
+
+        assertEquals("Souvlaki", decoded.getName());
+        assertEquals("Grill", decoded.getCategory());
+        assertEquals(12, decoded.getQuantity());
+        assertEquals(3.5, decoded.getPrice(), 0.0);
+        assertEquals("hidden", decoded.getStatus());
+    }
+
+    @Test
+    public void purchase_roundTrip_recomputesTotal() throws IOException {
+        Purchase purchase = new Purchase("Maria", "maria@example.com", new ArrayList<>(Arrays.asList(
+                new Product("Pita", "Bakery", 2, 1.5),
+                new Product("Ayran", "Drinks", 1, 2.0))));
+
+        Purchase decoded = (Purchase) roundTrip(purchase);
+
+        assertEquals("Maria", decoded.getCustomerName());
+        assertEquals("maria@example.com", decoded.getCustomerEmail());
+        assertEquals(2, decoded.getPurchasedProducts().size());
+        assertEquals(5.0, decoded.getTotalPrice(), 1e-9);
+    }
+
+    @Test
+    public void order_roundTrip_keepsIdempotencyKey() throws IOException {
+        PurchaseOrder order = PurchaseOrder.create("Pizza Fun", new Purchase("Maria", "maria@example.com",
+                new ArrayList<>(Arrays.asList(new Product("Margherita", "pizza", 2, 8.5)))));
+
+        PurchaseOrder decoded = (PurchaseOrder) roundTrip(order);
+
+        assertEquals(order.getOrderId(), decoded.getOrderId());
+        assertEquals("Pizza Fun", decoded.getStoreName());
+        assertEquals(order.getCreatedAt(), decoded.getCreatedAt());
+        assertEquals(17.0, decoded.getPurchase().getTotalPrice(), 0.001);
+    }
+
+    @Test
+    public void store_roundTrip() throws IOException {
+        Store store = TestStores.store("Pizza Fun", "pizzeria", 4.2, 3);
+        store.getPurchases().add(new Purchase("Nikos", "nikos@example.com",
+                new ArrayList<>(Arrays.asList(new Product("Margherita", "pizzeria", 1, 8.0)))));
+
+        Store decoded = (Store) roundTrip(store);
+
+        assertEquals(store.getStoreName(), decoded.getStoreName());
+        assertEquals(store.getLatitude(), decoded.getLatitude(), 0.0);
+        assertEquals(store.getLongitude(), decoded.getLongitude(), 0.0);
+        assertEquals(store.getCategory(), decoded.getCategory());
+        assertEquals(store.getStars(), decoded.getStars(), 0.0);
+        assertEquals(store.getNoOfReviews(), decoded.getNoOfReviews());
+        assertEquals(store.getStoreLogoPath(), decoded.getStoreLogoPath());
+        assertEquals(3, decoded.getProducts().size());
+        assertEquals(1, decoded.getPurchases().size());
+        assertEquals("Nikos", decoded.getPurchases().get(0).getCustomerName());
+    }
+
+    @Test
+    public void summary_roundTrip() throws IOException {
+        StoreSummary summary = StoreSummary.from(TestStores.store("Coffee Corner", "coffee", 4.8, 4));
+
+        StoreSummary decoded = (StoreSummary) roundTrip(summary);
+
+        assertEquals("Coffee Corner", decoded.getStoreName());
+        assertEquals("coffee", decoded.getCategory());
+        assertEquals(4.8, decoded.getStars(), 0.0);
+        assertEquals(15, decoded.getNoOfReviews());
+        assertEquals(summary.getPriceCategory(), decoded.getPriceCategory());
+        assertEquals(37.99, decoded.getLatitude(), 0.0);
+        assertEquals(23.73, decoded.getLongitude(), 0.0);
+    }
+
+    @Test
+    public void request_roundTrip() throws IOException {
+        MapReduceRequest request = new MapReduceRequest(37.98, 23.72,
+                Arrays.asList("pizzeria", "souvlaki"), 3.5, "$$", 5.0, 20, 10, true);
+
+        MapReduceRequest decoded = (MapReduceRequest) roundTrip(request);
+
+        assertEquals(37.98, decoded.getClientLatitude(), 0.0);
+        assertEquals(23.72, decoded.getClientLongitude(), 0.0);
+        assertEquals(request.getFoodCategories(), decoded.getFoodCategories());
+        assertEquals(3.5, decoded.getMinStars(), 0.0);
+        assertEquals("$$", decoded.getPriceCategory());
+        assertEquals(5.0, decoded.getRadius(), 0.0);
+        assertEquals(20, decoded.getCursor());
+        assertEquals(10, decoded.getPageSize());
+        assertEquals(true, decoded.isSummaryOnly());
+    }
+
+    @Test
+    public void productBatch_roundTrip_keepsFailures() throws IOException {
+        ProductBatch batch = new ProductBatch();
+        batch.addCatalog("Pizza Fun", new ArrayList<>(Arrays.asList(new Product("Margherita", "pizza", 3, 8.5))), "v4");
+        batch.addFailure("Closed Grill", "Store not found");
+
+        ProductBatch decoded = (ProductBatch) roundTrip(batch);
+
+        assertEquals("Margherita", decoded.getProducts("Pizza Fun").get(0).getName());
+        assertEquals("v4", decoded.getEtag("Pizza Fun"));
+        assertNull(decoded.getProducts("Closed Grill"));
+        assertEquals("Store not found", decoded.getError("Closed Grill"));
+    }
+
+    @Test
+    public void encodedSize_matchesWrittenBytes() throws IOException {
+        ProductBatch batch = new ProductBatch();
+        batch.addCatalog("Pizza Fun", new ArrayList<>(Arrays.asList(new Product("Margherita", "pizza", 3, 8.5))), "v4");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryCodec.writeValue(new DataOutputStream(bytes), batch);
+
+        assertEquals(bytes.size(), BinaryCodec.encodedSize(batch));
+    }
+
+    @Test
+    public void scalarsAndNulls_roundTrip() throws IOException {
+        assertNull(roundTrip(null));
+        assertEquals("Καλησπέρα", roundTrip("Καλησπέρα"));
+        assertEquals(5, roundTrip(5));
+        List<?> list = (List<?>) roundTrip(new ArrayList<>(Arrays.asList("a", null, 3)));
+        assertEquals(Arrays.asList("a", null, 3), list);
+    }
+
+    @Test
+    public void verbs_roundTrip() throws IOException {
+        for (String verb : new String[]{"client", "filter", "fetchProducts", "purchase", "rate"}) {
+            assertEquals(verb, BinaryCodec.decodeVerb(BinaryCodec.encodeVerb(verb)));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void unknownVerb_isRejected() throws IOException {
+        BinaryCodec.encodeVerb("shutdown");
+    }
+
+    @Test(expected = IOException.class)
+    public void oversizedListCount_isRejectedBeforeAllocating() throws IOException {
+        decode(BinaryCodec.TAG_LIST, Integer.MAX_VALUE);
+    }
+
+    @Test(expected = IOException.class)
+    public void oversizedStringLength_isRejectedBeforeAllocating() throws IOException {
+        decode(BinaryCodec.TAG_STRING, Integer.MAX_VALUE - 8);
+    }
+
+    private static Object decode(byte tag, int countOrLength) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(tag);
+        out.writeInt(countOrLength);
+        out.writeInt(0);
+        return BinaryCodec.readValue(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    private static Object roundTrip(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryCodec.writeValue(new DataOutputStream(bytes), value);
+        return BinaryCodec.readValue(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+}
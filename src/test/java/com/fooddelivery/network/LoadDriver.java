@@ -0,0 +1,369 @@
+package com.fooddelivery.network;
+
+import com.fooddelivery.models.MapReduceRequest;
+import com.fooddelivery.models.Product;
+import com.fooddelivery.models.Purchase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load generator: many simulated app users send the app's commands to a Master, by default a
+ * StandInMaster in the same JVM serving synthetic stores, and the latency every user saw is
+ * reported per command together with the NetworkMetrics of the run.
+ *
+ * Usage: LoadDriver [options]
+ *   --clients N          simulated users, default 1000
+ *   --seconds N          duration of the run, default 30
+ *   --think MS           average pause between a user's commands, default 100
+ *   --connections MODE   reuse: every user keeps one connection (default)
+ *                        per-request: a new connection for every command
+ *                        shared: all users share one ConnectionManager and its pool
+ *   --pool N             pool size in shared mode, default 16
+ *   --stores N           synthetic stores, default 2000
+ *   --products N         average products per store, default 40
+ *   --latency MIN-MAX    delay of every answer in ms, default 0-0
+ *   --failure-rate P     share of commands the Master fails, default 0
+ *   --legacy             Master speaks only Java serialization
+ *   --host H --port P    drive an external Master instead of the stand-in
+ *   --serve P            only run the stand-in Master on port P, e.g. for the emulator
+ *   --seed N             seed of the store generator and of the users
+ */
+public final class LoadDriver {
+
+    /**
+     * How simulated users connect to the Master
+     */
+    enum ConnectionMode {
+        REUSE, PER_REQUEST, SHARED
+    }
+
+    // Relative frequency of each command, roughly what a browsing user sends
+    private static final String[] COMMANDS = {"client", "filter", "fetchProducts", "purchase", "rate"};
+    private static final int[] WEIGHTS = {30, 25, 35, 5, 5};
+
+    private final int clients;
+    private final long durationMs;
+    private final long thinkMs;
+    private final ConnectionMode mode;
+    private final int poolSize;
+    private final int storeCount;
+    private final long seed;
+    private final String host;
+    private final int port;
+
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> errors = new ConcurrentHashMap<>();
+    private final AtomicLong completed = new AtomicLong();
+
+    LoadDriver(String host, int port, int clients, long durationMs, long thinkMs, ConnectionMode mode,
+               int poolSize, int storeCount, long seed) {
+        this.host = host;
+        this.port = port;
+        this.clients = clients;
+        this.durationMs = durationMs;
+        this.thinkMs = thinkMs;
+        this.mode = mode;
+        this.poolSize = poolSize;
+        this.storeCount = storeCount;
+        this.seed = seed;
+        for (String command : COMMANDS) {
+            latencies.put(command, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Outcome of a run
+     */
+    static final class Report {
+        final long completed;
+        final long failed;
+        final double seconds;
+        final Map<String, LatencyHistogram.Snapshot> latencies;
+        final Map<String, Long> errors;
+        final NetworkMetrics.Snapshot metrics;
+
+        Report(long completed, long failed, double seconds, Map<String, LatencyHistogram.Snapshot> latencies,
+               Map<String, Long> errors, NetworkMetrics.Snapshot metrics) {
+            this.completed = completed;
+            this.failed = failed;
+            this.seconds = seconds;
+            this.latencies = latencies;
+            this.errors = errors;
+            this.metrics = metrics;
+        }
+
+        double getThroughput() {
+            return completed / seconds;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format(Locale.ROOT, "%d commands in %.1f s: %.0f/s, %d failed%n",
+                    completed, seconds, getThroughput(), failed));
+            text.append(String.format(Locale.ROOT, "%-14s %8s %9s %9s %9s %9s%n",
+                    "command", "count", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+            for (Map.Entry<String, LatencyHistogram.Snapshot> entry : latencies.entrySet()) {
+                LatencyHistogram.Snapshot latency = entry.getValue();
+                text.append(String.format(Locale.ROOT, "%-14s %8d %9.1f %9.1f %9.1f %9.1f%n", entry.getKey(),
+                        latency.getCount(), latency.getPercentileMicros(50) / 1000.0,
+                        latency.getPercentileMicros(90) / 1000.0, latency.getPercentileMicros(99) / 1000.0,
+                        latency.getMaxMicros() / 1000.0));
+            }
+            for (Map.Entry<String, Long> entry : errors.entrySet()) {
+                text.append("error ").append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+            }
+            text.append(String.format(Locale.ROOT, "connects %d (p50 %.1f ms), %d failed; %.1f MB in, %.1f MB out%n",
+                    metrics.getConnectTime().getCount(), metrics.getConnectTime().getPercentileMicros(50) / 1000.0,
+                    metrics.getConnectFailures(), metrics.getBytesIn() / 1e6, metrics.getBytesOut() / 1e6));
+            return text.toString();
+        }
+    }
+
+    /**
+     * Runs all simulated users until the duration has passed
+     * @return What they measured
+     */
+    Report run() throws InterruptedException {
+        NetworkMetrics.getShared().reset();
+        ConnectionManager shared = mode == ConnectionMode.SHARED
+                ? new ConnectionManager(new SocketClientPool(host, port, poolSize, 30000, 60000)) : null;
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(clients);
+        long deadline = System.currentTimeMillis() + durationMs;
+        for (int i = 0; i < clients; i++) {
+            int id = i;
+            // Small stacks so thousands of users fit in one JVM
+            Thread user = new Thread(null, () -> {
+                try {
+                    start.await();
+                    simulateUser(id, deadline, shared);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }, "load-user-" + i, 256 * 1024);
+            user.setDaemon(true);
+            user.start();
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        done.await();
+        double seconds = (System.nanoTime() - started) / 1e9;
+        if (shared != null) {
+            shared.shutdown();
+        }
+
+        Map<String, LatencyHistogram.Snapshot> latencySnapshots = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            latencySnapshots.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        Map<String, Long> errorCounts = new TreeMap<>();
+        long failed = 0;
+        for (Map.Entry<String, AtomicLong> entry : errors.entrySet()) {
+            errorCounts.put(entry.getKey(), entry.getValue().get());
+            failed += entry.getValue().get();
+        }
+        return new Report(completed.get(), failed, seconds, Collections.unmodifiableMap(latencySnapshots),
+                Collections.unmodifiableMap(errorCounts), NetworkMetrics.getShared().snapshot());
+    }
+
+    private void simulateUser(int id, long deadline, ConnectionManager shared) throws InterruptedException {
+        Random random = new Random(seed + id);
+        SocketClient kept = null;
+        // Users start at random times within one think time, so they do not all connect at once
+        Thread.sleep(thinkMs > 0 ? random.nextInt((int) thinkMs + 1) : 0);
+        while (System.currentTimeMillis() < deadline) {
+            String command = pickCommand(random);
+            ConnectionManager.ClientOperation<?> operation = operation(command, id, random);
+            long startNanos = System.nanoTime();
+            try {
+                switch (mode) {
+                    case SHARED:
+                        shared.execute(isIdempotent(command), operation);
+                        break;
+                    case PER_REQUEST:
+                        SocketClient fresh = new SocketClient(host, port);
+                        try {
+                            fresh.connect();
+                            operation.execute(fresh);
+                        } finally {
+                            fresh.disconnect();
+                        }
+                        break;
+                    default:
+                        if (kept == null) {
+                            kept = new SocketClient(host, port);
+                            kept.connect();
+                        }
+                        operation.execute(kept);
+                        break;
+                }
+                latencies.get(command).recordNanos(System.nanoTime() - startNanos);
+                completed.incrementAndGet();
+            } catch (Exception e) {
+                errors.computeIfAbsent(command + " " + e.getClass().getSimpleName(), key -> new AtomicLong())
+                        .incrementAndGet();
+                if (kept != null) {
+                    kept.disconnect();
+                    kept = null;
+                }
+            }
+            if (thinkMs > 0) {
+                // Exponential pauses, so arrivals are close to a Poisson process
+                Thread.sleep((long) (-thinkMs * Math.log(1 - random.nextDouble())));
+            }
+        }
+        if (kept != null) {
+            kept.disconnect();
+        }
+    }
+
+    private static String pickCommand(Random random) {
+        int total = 0;
+        for (int weight : WEIGHTS) {
+            total += weight;
+        }
+        int pick = random.nextInt(total);
+        for (int i = 0; i < WEIGHTS.length; i++) {
+            pick -= WEIGHTS[i];
+            if (pick < 0) {
+                return COMMANDS[i];
+            }
+        }
+        return COMMANDS[0];
+    }
+
+    private static boolean isIdempotent(String command) {
+        return !command.equals("purchase") && !command.equals("rate");
+    }
+
+    private ConnectionManager.ClientOperation<?> operation(String command, int id, Random random) {
+        double latitude = SyntheticStores.CENTER_LATITUDE + (random.nextDouble() - 0.5) * 0.2;
+        double longitude = SyntheticStores.CENTER_LONGITUDE + (random.nextDouble() - 0.5) * 0.2;
+        String storeName = "Store " + random.nextInt(storeCount);
+        switch (command) {
+            case "client":
+                return client -> client.getNearbyStores(latitude, longitude);
+            case "filter":
+                ArrayList<String> categories = new ArrayList<>(Collections.singletonList(
+                        SyntheticStores.CATEGORIES[random.nextInt(SyntheticStores.CATEGORIES.length)]));
+                MapReduceRequest request = new MapReduceRequest(latitude, longitude, categories,
+                        random.nextInt(4), "", 5.0);
+                return client -> client.getFilteredStores(request);
+            case "fetchProducts":
+                return client -> client.getStoreProducts(storeName);
+            case "purchase":
+                ArrayList<Product> items = new ArrayList<>(Collections.singletonList(
+                        new Product(storeName + " main 0", "main", 1 + random.nextInt(3), 9.5)));
+                Purchase purchase = new Purchase("Load user " + id, "user" + id + "@example.com", items);
+                return client -> client.submitPurchase(purchase, storeName);
+            default:
+                int rating = 1 + random.nextInt(5);
+                return client -> client.rateStore(storeName, rating);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = 1000;
+        long seconds = 30;
+        long thinkMs = 100;
+        ConnectionMode mode = ConnectionMode.REUSE;
+        int poolSize = 16;
+        int storeCount = 2000;
+        int products = 40;
+        long minLatency = 0;
+        long maxLatency = 0;
+        double failureRate = 0;
+        boolean legacy = false;
+        String host = null;
+        int port = 0;
+        int servePort = -1;
+        long seed = 42;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--clients":
+                    clients = Integer.parseInt(args[++i]);
+                    break;
+                case "--seconds":
+                    seconds = Long.parseLong(args[++i]);
+                    break;
+                case "--think":
+                    thinkMs = Long.parseLong(args[++i]);
+                    break;
+                case "--connections":
+                    mode = ConnectionMode.valueOf(args[++i].toUpperCase(Locale.ROOT).replace('-', '_'));
+                    break;
+                case "--pool":
+                    poolSize = Integer.parseInt(args[++i]);
+                    break;
+                case "--stores":
+                    storeCount = Integer.parseInt(args[++i]);
+                    break;
+                case "--products":
+                    products = Integer.parseInt(args[++i]);
+                    break;
+                case "--latency":
+                    String[] bounds = args[++i].split("-");
+                    minLatency = Long.parseLong(bounds[0]);
+                    maxLatency = Long.parseLong(bounds[bounds.length - 1]);
+                    break;
+                case "--failure-rate":
+                    failureRate = Double.parseDouble(args[++i]);
+                    break;
+                case "--legacy":
+                    legacy = true;
+                    break;
+                case "--host":
+                    host = args[++i];
+                    break;
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--serve":
+                    servePort = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        StandInMaster master = null;
+        if (host == null) {
+            master = new StandInMaster(SyntheticStores.generate(storeCount, products, seed), legacy,
+                    Math.max(servePort, 0));
+            master.setLatency(minLatency, maxLatency);
+            master.setFailureRate(failureRate);
+            host = "127.0.0.1";
+            port = master.getPort();
+            if (servePort >= 0) {
+                System.out.println("Stand-in Master serving " + storeCount + " stores on port " + port);
+                Thread.currentThread().join();
+            }
+        }
+        try {
+            LoadDriver driver = new LoadDriver(host, port, clients, seconds * 1000, thinkMs, mode, poolSize,
+                    storeCount, seed);
+            System.out.print(driver.run());
+            if (master != null && master.getInjectedFailureCount() > 0) {
+                System.out.println("injected failures " + master.getInjectedFailureCount());
+            }
+        } finally {
+            if (master != null) {
+                master.close();
+            }
+        }
+    }
+}
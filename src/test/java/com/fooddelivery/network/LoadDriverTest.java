@@ -0,0 +1,63 @@
+package com.fooddelivery.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Short load runs against the stand-in Master, checking the harness and the injected faults
+ */
+public class LoadDriverTest {
+
+    private StandInMaster master;
+
+    @After
+    public void tearDown() throws Exception {
+        if (master != null) master.close();
+    }
+
+    @Test
+    public void reusedConnections_serveEveryCommand() throws Exception {
+        master = new StandInMaster(SyntheticStores.generate(200, 10, 1), false);
+
+        LoadDriver.Report report = driver(LoadDriver.ConnectionMode.REUSE, 20).run();
+
+        assertEquals(report.toString(), 0, report.failed);
+        assertTrue(report.completed > 0);
+        for (LatencyHistogram.Snapshot latency : report.latencies.values()) {
+            assertTrue(report.toString(), latency.getCount() > 0);
+        }
+        // One connection per user for the whole run
+        assertEquals(20, report.metrics.getConnectTime().getCount());
+    }
+
+    @Test
+    public void injectedLatency_isSeenByEveryCommand() throws Exception {
+        master = new StandInMaster(SyntheticStores.generate(200, 10, 1), true);
+        master.setLatency(20, 30);
+
+        LoadDriver.Report report = driver(LoadDriver.ConnectionMode.PER_REQUEST, 10).run();
+
+        assertEquals(report.toString(), 0, report.failed);
+        assertTrue(report.latencies.get("fetchProducts").getPercentileMicros(50) >= 20000);
+    }
+
+    @Test
+    public void injectedFailures_areRetriedOrReported() throws Exception {
+        master = new StandInMaster(SyntheticStores.generate(200, 10, 1), false);
+        master.setFailureRate(0.2);
+
+        LoadDriver.Report report = driver(LoadDriver.ConnectionMode.SHARED, 20).run();
+
+        assertTrue(master.getInjectedFailureCount() > 0);
+        // Reads are retried on a new connection; failed purchases and ratings are not
+        assertTrue(report.toString(), report.metrics.getRetries() > 0);
+        assertTrue(report.completed > report.failed);
+    }
+
+    private LoadDriver driver(LoadDriver.ConnectionMode mode, int clients) {
+        return new LoadDriver("127.0.0.1", master.getPort(), clients, 1000, 10, mode, 4, 200, 7);
+    }
+}
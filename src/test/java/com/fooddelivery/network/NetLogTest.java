@@ -0,0 +1,103 @@
+package com.fooddelivery.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.util.Log;
+
+import com.fooddelivery.utils.Constants;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for level gating, sampling and payload reduction of network logging
+ */
+public class NetLogTest {
+
+    private final List<String> lines = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        NetLog.setSink((priority, tag, message) -> lines.add(message));
+        NetLog.setSampleRate(1);
+    }
+
+    @After
+    public void tearDown() {
+        NetLog.setSink(null);
+        NetLog.setLevel(Constants.NETWORK_LOG_LEVEL);
+        NetLog.setSampleRate(Constants.NETWORK_LOG_SAMPLE_RATE);
+    }
+
+    @Test
+    public void disabledLevel_writesNothingAndFormatsNothing() {
+        NetLog.setLevel(Log.WARN);
+        Object payload = new Object() {
+            @Override
+            public String toString() {
+                throw new AssertionError("formatted while disabled");
+            }
+        };
+
+        NetLog.debug("Test", "received", "payload", payload);
+        NetLog.info("Test", "received", "payload", payload);
+        NetLog.Span span = NetLog.startSpan("Test", "client", 1);
+        span.end(payload, null);
+
+        assertTrue(lines.isEmpty());
+    }
+
+    @Test
+    public void debugEvents_areSampled() {
+        NetLog.setLevel(Log.DEBUG);
+        NetLog.setSampleRate(4);
+
+        for (int i = 0; i < 40; i++) {
+            NetLog.debug("Test", "event", "i", i);
+        }
+
+        assertEquals(10, lines.size());
+    }
+
+    @Test
+    public void warnings_areNeverSampled() {
+        NetLog.setSampleRate(100);
+
+        for (int i = 0; i < 5; i++) {
+            NetLog.warn("Test", "connection broken", "error", new IOException("reset"));
+        }
+
+        assertEquals(5, lines.size());
+        assertEquals("connection broken error=\"reset\"", lines.get(0));
+    }
+
+    @Test
+    public void payloads_areLoggedBySize() {
+        NetLog.setLevel(Log.DEBUG);
+
+        NetLog.debug("Test", "received", "stores", Arrays.asList("a", "b", "c"),
+                "store", TestStores.store("a", "pizza", 4.5, 3));
+
+        assertEquals("received stores=list[3] store=Store", lines.get(0));
+    }
+
+    @Test
+    public void span_logsCommandAndOutcome() {
+        NetLog.setLevel(Log.DEBUG);
+
+        NetLog.startSpan("Test", "filter", 7).end(Arrays.asList("a", "b"), null);
+        NetLog.startSpan("Test", "rate", 8).end(null, new IOException("timeout"));
+
+        assertTrue(lines.get(0), lines.get(0).matches(
+                "span command=filter id=7 ms=\\d+\\.\\d outcome=ok result=list\\[2\\]"));
+        assertTrue(lines.get(1), lines.get(1).matches(
+                "span command=rate id=8 ms=\\d+\\.\\d outcome=error error=IOException"));
+    }
+}
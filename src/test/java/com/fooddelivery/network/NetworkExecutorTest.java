@@ -0,0 +1,50 @@
+package com.fooddelivery.network;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests for the priority handling of the NetworkExecutor
+ */
+public class NetworkExecutorTest {
+
+    @Test
+    public void displacedPrefetch_isToldItWillNotRun() throws Exception {
+        NetworkExecutor executor = new NetworkExecutor(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        executor.submit(() -> {
+            started.countDown();
+            awaitQuietly(release);
+        }, NetworkExecutor.Priority.FOREGROUND);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        AtomicBoolean prefetchRan = new AtomicBoolean();
+        AtomicReference<CancellationException> displaced = new AtomicReference<>();
+        executor.submit(() -> prefetchRan.set(true), NetworkExecutor.Priority.PREFETCH, displaced::set);
+        CountDownLatch foregroundRan = new CountDownLatch(1);
+        executor.submit(foregroundRan::countDown, NetworkExecutor.Priority.FOREGROUND);
+
+        assertNotNull(displaced.get());
+        release.countDown();
+        assertTrue(foregroundRan.await(5, TimeUnit.SECONDS));
+        assertFalse(prefetchRan.get());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
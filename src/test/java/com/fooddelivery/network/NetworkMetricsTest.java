@@ -0,0 +1,115 @@
+package com.fooddelivery.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.fooddelivery.models.MapReduceRequest;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Tests for the latency histograms and the per-command metrics of the network layer
+ */
+public class NetworkMetricsTest {
+
+    private StandInMaster master;
+
+    @After
+    public void tearDown() throws Exception {
+        if (master != null) master.close();
+    }
+
+    @Test
+    public void bucketBoundaries_coverEveryValueOnce() {
+        for (int index = 0; index + 1 < LatencyHistogram.BUCKET_COUNT; index++) {
+            long lowest = LatencyHistogram.lowestValueAt(index);
+            assertEquals(index, LatencyHistogram.indexOf(lowest));
+            assertEquals(index, LatencyHistogram.indexOf(LatencyHistogram.highestValueAt(index)));
+            assertEquals(LatencyHistogram.highestValueAt(index) + 1, LatencyHistogram.lowestValueAt(index + 1));
+        }
+    }
+
+    @Test
+    public void percentiles_areWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 10000; micros++) {
+            histogram.record(micros);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(10000, snapshot.getCount());
+        assertEquals(5000, snapshot.getMeanMicros());
+        assertEquals(10000, snapshot.getMaxMicros());
+        assertWithin(5000, snapshot.getPercentileMicros(50));
+        assertWithin(9900, snapshot.getPercentileMicros(99));
+        assertEquals(10000, snapshot.getPercentileMicros(100));
+    }
+
+    @Test
+    public void outOfRangeValues_areClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(2, snapshot.getCount());
+        assertEquals(0, snapshot.getPercentileMicros(50));
+        assertEquals(snapshot.getMaxMicros(), snapshot.getPercentileMicros(100));
+    }
+
+    @Test
+    public void commands_areRecordedAndExportedSeparately() {
+        NetworkMetrics metrics = new NetworkMetrics();
+        metrics.recordCommand("filter", 0, 2_000_000, 3_000_000, false);
+        metrics.recordCommand("filter", 0, 4_000_000, 5_000_000, true);
+        metrics.recordCommandFailure("rate");
+
+        NetworkMetrics.Snapshot snapshot = metrics.snapshot();
+        NetworkMetrics.CommandSnapshot filter = snapshot.getCommand("filter");
+        assertEquals(2, filter.getCalls());
+        assertEquals(1, filter.getErrors());
+        assertWithin(4000, filter.getTimeToFirstByte().getPercentileMicros(100));
+        assertEquals(1000, filter.getReadTime().getMaxMicros());
+        assertEquals(1, snapshot.getCommand("rate").getErrors());
+        assertEquals(0, snapshot.getCommand("rate").getTotalTime().getCount());
+
+        Map<String, Long> exported = snapshot.export();
+        assertEquals(Long.valueOf(2), exported.get("command.filter.calls"));
+        assertEquals(Long.valueOf(5000), exported.get("command.filter.total.max_us"));
+        assertTrue(exported.containsKey("command.rate.first_byte.p99_us"));
+
+        metrics.reset();
+        assertTrue(metrics.snapshot().getCommands().isEmpty());
+    }
+
+    @Test
+    public void socketClient_recordsConnectBytesAndCommands() throws Exception {
+        master = new StandInMaster(TestStores.stores(), false);
+        NetworkMetrics.Snapshot before = NetworkMetrics.getShared().snapshot();
+        SocketClient client = new SocketClient("127.0.0.1", master.getPort());
+        client.connect();
+        try {
+            client.getFilteredStores(new MapReduceRequest(37.99, 23.73, new ArrayList<String>(), 0, "", 5.0));
+            client.getStoreProducts("Pizza Fun");
+        } finally {
+            client.disconnect();
+        }
+
+        NetworkMetrics.Snapshot after = NetworkMetrics.getShared().snapshot();
+        assertTrue(after.getConnectTime().getCount() > before.getConnectTime().getCount());
+        assertTrue(after.getBytesIn() > before.getBytesIn());
+        assertTrue(after.getBytesOut() > before.getBytesOut());
+        assertNotNull(after.getCommand("filter"));
+        assertTrue(after.getCommand("fetchProducts").getTotalTime().getCount() >= 1);
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected about " + expected + " but was " + actual,
+                Math.abs(actual - expected) <= expected / 16 + 1);
+    }
+}
@@ -0,0 +1,179 @@
+package com.fooddelivery.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.fooddelivery.models.Product;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests for cancelling network tasks and tying them to a screen's lifecycle
+ */
+public class NetworkTaskTest {
+
+    private StandInMaster master;
+    private ConnectionManager manager;
+
+    @After
+    public void tearDown() throws Exception {
+        if (manager != null) manager.shutdown();
+        if (master != null) master.close();
+    }
+
+    /**
+     * Records what the task delivered
+     */
+    private static class RecordingCallback<T> implements NetworkTask.TaskCallback<T> {
+        final List<Object> delivered = new ArrayList<>();
+
+        @Override
+        public void onSuccess(T result) {
+            delivered.add(result);
+        }
+
+        @Override
+        public void onError(Exception error) {
+            delivered.add(error);
+        }
+    }
+
+    /**
+     * Lifecycle whose events are driven by the test
+     */
+    private static class TestLifecycle extends Lifecycle implements LifecycleOwner {
+        final List<LifecycleObserver> observers = new ArrayList<>();
+
+        @Override
+        public void addObserver(LifecycleObserver observer) {
+            observers.add(observer);
+        }
+
+        @Override
+        public void removeObserver(LifecycleObserver observer) {
+            observers.remove(observer);
+        }
+
+        @Override
+        public State getCurrentState() {
+            return State.RESUMED;
+        }
+
+        @Override
+        public Lifecycle getLifecycle() {
+            return this;
+        }
+
+        void dispatch(Event event) {
+            for (LifecycleObserver observer : new ArrayList<>(observers)) {
+                ((LifecycleEventObserver) observer).onStateChanged(this, event);
+            }
+        }
+    }
+
+    @Test
+    public void cancel_abortsTheAttachedSocket() throws Exception {
+        master = new StandInMaster(TestStores.stores(), false);
+        SocketClientPool pool = new SocketClientPool("127.0.0.1", master.getPort(), 2, 5000, 60000);
+        manager = new ConnectionManager(pool);
+        manager.getStoreProducts("Pizza Fun");
+        master.setLatency(3000, 3000);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        RecordingCallback<ArrayList<Product>> callback = new RecordingCallback<>();
+
+        NetworkTask<ArrayList<Product>> task = new NetworkTask<>(() -> {
+            started.countDown();
+            try {
+                return manager.execute(false, client -> client.getStoreProducts("Pizza Fun"));
+            } catch (Exception e) {
+                failure.set(e);
+                throw e;
+            } finally {
+                finished.countDown();
+            }
+        }, callback);
+        task.execute();
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        Thread.sleep(200);
+
+        long start = System.nanoTime();
+        task.cancel();
+
+        assertTrue(finished.await(2, TimeUnit.SECONDS));
+        assertTrue((System.nanoTime() - start) / 1_000_000 < 2000);
+        assertTrue(failure.get() instanceof IOException);
+        // The aborted socket is not handed out again
+        assertEquals(0, pool.getOpenCount());
+        assertTrue(callback.delivered.isEmpty());
+    }
+
+    @Test
+    public void cancelledTask_deliversNoCallback() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        RecordingCallback<String> callback = new RecordingCallback<>();
+
+        NetworkTask<String> task = new NetworkTask<>(() -> {
+            started.countDown();
+            try {
+                // Ignores the interrupt from cancel() and still returns a result
+                long giveUp = System.currentTimeMillis() + 300;
+                while (System.currentTimeMillis() < giveUp) {
+                    Thread.yield();
+                }
+                return "too late";
+            } finally {
+                finished.countDown();
+            }
+        }, callback);
+        task.execute();
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+
+        task.cancel();
+
+        assertTrue(finished.await(3, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertTrue(task.isCancelled());
+        assertTrue(callback.delivered.isEmpty());
+    }
+
+    @Test
+    public void onDestroy_cancelsTheBoundTask() throws Exception {
+        TestLifecycle lifecycle = new TestLifecycle();
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingCallback<String> callback = new RecordingCallback<>();
+
+        NetworkTask<String> task = new NetworkTask<>(() -> {
+            release.await();
+            return "shown";
+        }, callback).bindTo(lifecycle);
+        task.execute();
+        assertEquals(1, lifecycle.observers.size());
+
+        lifecycle.dispatch(Lifecycle.Event.ON_STOP);
+        assertFalse(task.isCancelled());
+        lifecycle.dispatch(Lifecycle.Event.ON_DESTROY);
+        release.countDown();
+
+        assertTrue(task.isCancelled());
+        // The screen is no longer referenced once the task is cancelled
+        assertTrue(lifecycle.observers.isEmpty());
+        assertTrue(callback.delivered.isEmpty());
+    }
+}
@@ -0,0 +1,110 @@
+package com.fooddelivery.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for coalescing identical concurrent calls
+ */
+public class SingleFlightTest {
+
+    @Test
+    public void concurrentCallsWithSameKey_runOnce() throws Exception {
+        SingleFlight<String> singleFlight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        List<String> response = new ArrayList<>();
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(callers.submit(() -> singleFlight.execute("filter|pizza", () -> {
+                    runs.incrementAndGet();
+                    release.await();
+                    return response;
+                })));
+            }
+            long deadline = System.currentTimeMillis() + 2000;
+            while (singleFlight.getCoalescedCalls() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            for (Future<List<String>> result : results) {
+                assertSame(response, result.get(2, TimeUnit.SECONDS));
+            }
+            assertEquals(1, runs.get());
+            assertEquals(1, singleFlight.getExecutedCalls());
+            assertEquals(3, singleFlight.getCoalescedCalls());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void callAfterCompletion_runsAgain() throws Exception {
+        SingleFlight<String> singleFlight = new SingleFlight<>();
+        AtomicInteger runs = new AtomicInteger();
+
+        singleFlight.execute("sync|4", runs::incrementAndGet);
+        singleFlight.execute("sync|4", runs::incrementAndGet);
+
+        assertEquals(2, runs.get());
+        assertEquals(0, singleFlight.getCoalescedCalls());
+    }
+
+    @Test
+    public void error_isRethrownToWaitersInsteadOfANullResult() throws Exception {
+        SingleFlight<String> singleFlight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                results.add(callers.submit(() -> singleFlight.execute("filter|pizza", () -> {
+                    release.await();
+                    throw new OutOfMemoryError("Java heap space");
+                })));
+            }
+            long deadline = System.currentTimeMillis() + 2000;
+            while (singleFlight.getCoalescedCalls() < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            for (Future<Object> result : results) {
+                try {
+                    result.get(2, TimeUnit.SECONDS);
+                    fail("Expected the Error to reach every caller");
+                } catch (ExecutionException expected) {
+                    assertTrue(expected.getCause() instanceof OutOfMemoryError);
+                }
+            }
+            assertEquals(1, singleFlight.getExecutedCalls());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void failure_isRethrown() throws Exception {
+        new SingleFlight<String>().execute("fetchProducts|Pizza Fun", () -> {
+            throw new IOException("Connection reset");
+        });
+    }
+}
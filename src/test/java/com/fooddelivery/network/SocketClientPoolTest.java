@@ -0,0 +1,71 @@
+package com.fooddelivery.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.SocketTimeoutException;
+
+/**
+ * Tests for connection reuse and expiry in the SocketClientPool
+ */
+public class SocketClientPoolTest {
+
+    private StandInMaster master;
+    private SocketClientPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        master = new StandInMaster(TestStores.stores(), false);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (pool != null) pool.close();
+        master.close();
+    }
+
+    @Test
+    public void idleConnections_areClosedWithoutFurtherBorrows() throws Exception {
+        pool = new SocketClientPool("127.0.0.1", master.getPort(), 2, 1000, 100);
+        SocketClient client = pool.borrow();
+        pool.release(client);
+        assertEquals(1, pool.getIdleCount());
+
+        long giveUp = System.currentTimeMillis() + 2000;
+        while (pool.getOpenCount() > 0 && System.currentTimeMillis() < giveUp) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, pool.getOpenCount());
+        assertFalse(client.isConnected());
+    }
+
+    @Test
+    public void borrow_waitsNoLongerThanTheCallersDeadline() throws Exception {
+        pool = new SocketClientPool("127.0.0.1", master.getPort(), 1, 5000, 60000);
+        SocketClient held = pool.borrow();
+
+        long start = System.nanoTime();
+        try {
+            Deadline.after(200).run(pool::borrow);
+            fail("Expected the borrow to give up at the deadline");
+        } catch (SocketTimeoutException expected) {
+            // The pool stays full, so only the deadline ends the wait
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        assertTrue("took " + elapsedMs + " ms", elapsedMs < 2000);
+
+        try {
+            Deadline.after(-1).run(pool::borrow);
+            fail("Expected an expired deadline to fail at once");
+        } catch (SocketTimeoutException expected) {
+            // Nothing was waited for
+        }
+        pool.release(held);
+    }
+}
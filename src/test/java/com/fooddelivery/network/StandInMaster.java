@@ -0,0 +1,461 @@
+package com.fooddelivery.network;
+
+import com.fooddelivery.models.ChangeLog;
+import com.fooddelivery.models.ConditionalResponse;
+import com.fooddelivery.models.MapReduceRequest;
+import com.fooddelivery.models.Product;
+import com.fooddelivery.models.ProductBatch;
+import com.fooddelivery.models.Purchase;
+import com.fooddelivery.models.PurchaseOrder;
+import com.fooddelivery.models.Store;
+import com.fooddelivery.models.StoreChange;
+import com.fooddelivery.models.StoreRating;
+import com.fooddelivery.models.StoreSummary;
+import com.fooddelivery.utils.GeoUtils;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal in-process stand-in for the Master server used by the JVM tests and by LoadDriver.
+ * Speaks both the binary protocol and the original Java serialization protocol on the same port,
+ * or only the latter when started in legacy mode. Latency and failures can be injected into
+ * the answers to commands.
+ */
+class StandInMaster implements AutoCloseable {
+
+    // Small stacks so thousands of simultaneous connections fit in a test JVM
+    private static final long HANDLER_STACK_BYTES = 256 * 1024;
+
+    private final ServerSocket serverSocket;
+    private final List<Store> stores;
+    private final Map<String, Store> storesByName = new HashMap<>();
+    private final boolean legacyOnly;
+    private final List<StoreChange> changeLog = new ArrayList<>();
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    // Outcome of every committed order by idempotency key
+    private final Map<String, String> committedOrders = new HashMap<>();
+    private final AtomicInteger appliedPurchases = new AtomicInteger();
+    // Outcome of every recorded rating by idempotency key
+    private final Map<String, String> recordedRatings = new HashMap<>();
+    private final AtomicInteger appliedRatings = new AtomicInteger();
+    private final AtomicInteger responsesToDrop = new AtomicInteger();
+    private final AtomicInteger injectedFailures = new AtomicInteger();
+    private volatile long minLatencyMs;
+    private volatile long maxLatencyMs;
+    private volatile double failureRate;
+    private volatile boolean running = true;
+
+    /**
+     * A connection that subscribed to the changes of some stores
+     */
+    private static class Subscriber {
+        final BinaryProtocol protocol;
+        volatile Set<String> storeNames = Collections.emptySet();
+
+        Subscriber(BinaryProtocol protocol) {
+            this.protocol = protocol;
+        }
+    }
+
+    StandInMaster(List<Store> stores, boolean legacyOnly) throws IOException {
+        this(stores, legacyOnly, 0);
+    }
+
+    /**
+     * @param stores Stores to serve
+     * @param legacyOnly Whether to speak only Java serialization, like the original Master
+     * @param port Port to listen on, 0 for any free port
+     */
+    StandInMaster(List<Store> stores, boolean legacyOnly, int port) throws IOException {
+        // A backlog large enough for a load test connecting all its clients at once
+        this.serverSocket = new ServerSocket(port, 4096);
+        this.stores = stores;
+        this.legacyOnly = legacyOnly;
+        for (Store store : stores) {
+            storesByName.put(store.getStoreName(), store);
+        }
+        Thread acceptor = new Thread(this::acceptLoop, "stand-in-master");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Applies a change to the served stores, appends it to the change log
+     * and pushes it to the connections subscribed to the store
+     * @param change The change, with the next sequence number
+     */
+    synchronized void publish(StoreChange change) {
+        Store store = find(change.getStoreName());
+        if (store != null) {
+            change.applyTo(store);
+        }
+        changeLog.add(change);
+        ArrayList<StoreChange> pushed = new ArrayList<>(Collections.singletonList(change));
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.storeNames.contains(change.getStoreName())) {
+                continue;
+            }
+            try {
+                // Subscribed connections take no more commands, so only this thread writes to them
+                subscriber.protocol.writeResponse(new ChangeLog(change.getSequence(), false, pushed));
+            } catch (IOException e) {
+                subscribers.remove(subscriber);
+            }
+        }
+    }
+
+    /**
+     * @return Number of stores watched by all subscribed connections together
+     */
+    int getWatchedStoreCount() {
+        int count = 0;
+        for (Subscriber subscriber : subscribers) {
+            count += subscriber.storeNames.size();
+        }
+        return count;
+    }
+
+    /**
+     * @return Number of purchases actually applied, not counting resent orders
+     */
+    int getAppliedPurchaseCount() {
+        return appliedPurchases.get();
+    }
+
+    /**
+     * @return Number of ratings actually counted, not counting resent ones
+     */
+    int getAppliedRatingCount() {
+        return appliedRatings.get();
+    }
+
+    /**
+     * Delays every answer by a random time between the bounds, like a Master waiting for its
+     * Workers
+     * @param minMs Shortest delay
+     * @param maxMs Longest delay
+     */
+    void setLatency(long minMs, long maxMs) {
+        minLatencyMs = minMs;
+        maxLatencyMs = Math.max(minMs, maxMs);
+    }
+
+    /**
+     * Makes a share of the commands fail: the command has no effect and the connection is
+     * closed instead of answering it, like a Master that lost a Worker mid-request
+     * @param rate Probability between 0 and 1
+     */
+    void setFailureRate(double rate) {
+        failureRate = rate;
+    }
+
+    /**
+     * @return Number of commands failed by setFailureRate()
+     */
+    int getInjectedFailureCount() {
+        return injectedFailures.get();
+    }
+
+    /**
+     * Makes the next binary commands take effect but closes the connection instead of
+     * answering them, like a Master whose response is lost after it committed
+     * @param count Number of responses to drop
+     */
+    void dropNextResponses(int count) {
+        responsesToDrop.set(count);
+    }
+
+    private synchronized ChangeLog changesSince(int sinceSequence) {
+        int latest = changeLog.isEmpty() ? 0 : changeLog.get(changeLog.size() - 1).getSequence();
+        if (sinceSequence < 0) {
+            return ChangeLog.reset(latest);
+        }
+        ArrayList<StoreChange> changes = new ArrayList<>();
+        for (StoreChange change : changeLog) {
+            if (change.getSequence() > sinceSequence) {
+                changes.add(change);
+            }
+        }
+        return new ChangeLog(latest, false, changes);
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread handler = new Thread(null, () -> serve(socket), "stand-in-master-client",
+                        HANDLER_STACK_BYTES);
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try {
+            InputStream input = new BufferedInputStream(socket.getInputStream());
+            OutputStream output = socket.getOutputStream();
+            if (legacyOnly) {
+                // Like the real Master: open the object streams straight away
+                serveJavaSerialization(input, output);
+                return;
+            }
+            // A Java serialization stream starts with 0xACED, a binary offer with the magic bytes
+            input.mark(1);
+            int first = input.read();
+            input.reset();
+            if (first == BinaryProtocol.MAGIC[0]) {
+                int version = BinaryProtocol.accept(input, output);
+                serveBinary(new BinaryProtocol(input, output, version));
+            } else {
+                serveJavaSerialization(input, output);
+            }
+        } catch (Exception e) {
+            // Client went away
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Already closed
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void serveBinary(BinaryProtocol protocol) throws Exception {
+        Subscriber subscriber = null;
+        try {
+            while (running) {
+                Object[] request = protocol.readCommand();
+                String command = (String) request[0];
+                Object[] args = new Object[request.length - 1];
+                System.arraycopy(request, 1, args, 0, args.length);
+                if (command.equals("subscribe")) {
+                    // Not answered; the connection only receives pushes from now on
+                    if (subscriber == null) {
+                        subscriber = new Subscriber(protocol);
+                        subscribers.add(subscriber);
+                    }
+                    subscriber.storeNames = new HashSet<>((List<String>) args[0]);
+                } else {
+                    serveCommand(protocol, command, args);
+                }
+            }
+        } finally {
+            if (subscriber != null) {
+                subscribers.remove(subscriber);
+            }
+        }
+    }
+
+    private void serveCommand(BinaryProtocol protocol, String command, Object[] args) throws Exception {
+        injectFaults(command);
+        if (command.endsWith("Stream")) {
+            // One frame per store, then the cursor of the next page
+            MapReduceRequest query = (MapReduceRequest) args[0];
+            List<Store> page = filter(query);
+            for (Store store : page) {
+                protocol.writeResponse(query.isSummaryOnly() ? StoreSummary.from(store) : store);
+            }
+            int end = query.getCursor() + page.size();
+            protocol.writeResponse(end < countMatches(query) ? end : -1);
+        } else {
+            Object response = handle(command, args);
+            if (responsesToDrop.get() > 0 && responsesToDrop.getAndDecrement() > 0) {
+                throw new IOException("Dropping response to " + command);
+            }
+            protocol.writeResponse(response);
+        }
+    }
+
+    private void serveJavaSerialization(InputStream input, OutputStream output) throws Exception {
+        ObjectOutputStream out = new ObjectOutputStream(output);
+        out.flush();
+        ObjectInputStream in = new ObjectInputStream(input);
+        while (running) {
+            String command = (String) in.readObject();
+            Object[] args = new Object[argumentCount(command)];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = in.readObject();
+            }
+            injectFaults(command);
+            out.writeObject(handle(command, args));
+            out.flush();
+            out.reset();
+        }
+    }
+
+    private void injectFaults(String command) throws IOException, InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long maxMs = maxLatencyMs;
+        if (maxMs > 0) {
+            Thread.sleep(minLatencyMs + random.nextLong(maxMs - minLatencyMs + 1));
+        }
+        if (failureRate > 0 && random.nextDouble() < failureRate) {
+            injectedFailures.incrementAndGet();
+            throw new IOException("Injected failure of " + command);
+        }
+    }
+
+    private static int argumentCount(String command) {
+        return command.equals("purchase") || command.equals("rate") ? 2 : 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object handle(String command, Object[] args) {
+        switch (command) {
+            case "client":
+            case "filter":
+                return filter((MapReduceRequest) args[0]);
+            case "fetchProducts":
+                Store store = find((String) args[0]);
+                return store != null ? store.getProducts() : new ArrayList<Product>();
+            case "purchase":
+                return purchase((Purchase) args[0], (String) args[1]);
+            case "purchaseOrders":
+                ArrayList<String> outcomes = new ArrayList<>();
+                synchronized (committedOrders) {
+                    for (PurchaseOrder order : (List<PurchaseOrder>) args[0]) {
+                        String outcome = committedOrders.get(order.getOrderId());
+                        if (outcome == null) {
+                            outcome = purchase(order.getPurchase(), order.getStoreName());
+                            committedOrders.put(order.getOrderId(), outcome);
+                        }
+                        outcomes.add(outcome);
+                    }
+                }
+                return outcomes;
+            case "fetchProductsIfModified":
+                Store catalogStore = find((String) args[0]);
+                if (catalogStore == null) {
+                    return ConditionalResponse.forCatalog("none", (String) args[1], new ArrayList<Product>());
+                }
+                return ConditionalResponse.forCatalog("v" + catalogStore.getVersion(), (String) args[1],
+                        catalogStore.getProducts());
+            case "filterIfModified":
+                ArrayList<StoreSummary> summaries = new ArrayList<>();
+                for (Store match : filter((MapReduceRequest) args[0])) {
+                    summaries.add(StoreSummary.from(match));
+                }
+                return ConditionalResponse.forStores(summaries, (String) args[1],
+                        (List<String>) args[2], (List<Integer>) args[3]);
+            case "fetchProductsBatch":
+                ProductBatch batch = new ProductBatch();
+                for (String storeName : (List<String>) args[0]) {
+                    Store batchStore = find(storeName);
+                    if (batchStore != null) {
+                        batch.addCatalog(storeName, batchStore.getProducts(), "v" + batchStore.getVersion());
+                    } else {
+                        batch.addFailure(storeName, "Store not found");
+                    }
+                }
+                return batch;
+            case "sync":
+                return changesSince((Integer) args[0]);
+            case "rate":
+                return rate((String) args[0], (Integer) args[1]);
+            case "rateBatch":
+                ArrayList<String> ratingOutcomes = new ArrayList<>();
+                synchronized (recordedRatings) {
+                    for (StoreRating rating : (List<StoreRating>) args[0]) {
+                        String outcome = recordedRatings.get(rating.getRatingId());
+                        if (outcome == null) {
+                            outcome = rate(rating.getStoreName(), rating.getRating());
+                            recordedRatings.put(rating.getRatingId(), outcome);
+                        }
+                        ratingOutcomes.add(outcome);
+                    }
+                }
+                return ratingOutcomes;
+            default:
+                return "Unknown command";
+        }
+    }
+
+    private String purchase(Purchase purchase, String storeName) {
+        if (find(storeName) == null) {
+            return "Store not found";
+        }
+        appliedPurchases.incrementAndGet();
+        return "Purchase successful for " + purchase.getCustomerName();
+    }
+
+    private String rate(String storeName, int rating) {
+        if (find(storeName) == null) {
+            return "Store not found";
+        }
+        appliedRatings.incrementAndGet();
+        return "Rating submitted: " + rating;
+    }
+
+    private ArrayList<Store> filter(MapReduceRequest request) {
+        ArrayList<Store> result = new ArrayList<>();
+        int index = 0;
+        for (Store store : stores) {
+            if (!matches(request, store)) {
+                continue;
+            }
+            if (index++ < request.getCursor()) {
+                continue;
+            }
+            if (request.getPageSize() > 0 && result.size() == request.getPageSize()) {
+                break;
+            }
+            result.add(store);
+        }
+        return result;
+    }
+
+    private int countMatches(MapReduceRequest request) {
+        int count = 0;
+        for (Store store : stores) {
+            if (matches(request, store)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean matches(MapReduceRequest request, Store store) {
+        boolean categoryMatches = request.getFoodCategories() == null
+                || request.getFoodCategories().isEmpty()
+                || request.getFoodCategories().contains(store.getCategory());
+        // Like the Master, only stores within the radius; radius 0 means anywhere
+        boolean inRange = request.getRadius() <= 0 || GeoUtils.distanceKm(request.getClientLatitude(),
+                request.getClientLongitude(), store.getLatitude(), store.getLongitude()) <= request.getRadius();
+        return categoryMatches && inRange && store.getStars() >= request.getMinStars();
+    }
+
+    private Store find(String storeName) {
+        return storesByName.get(storeName);
+    }
+}
@@ -0,0 +1,49 @@
+package com.fooddelivery.network;
+
+import com.fooddelivery.models.Product;
+import com.fooddelivery.models.Store;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Generator of store catalogs of any size for the stand-in Master, from a seed so that runs
+ * can be repeated. Stores are scattered over about 30 by 25 km around central Athens, so a
+ * 5 km search finds roughly a tenth of them.
+ */
+final class SyntheticStores {
+
+    static final String[] CATEGORIES = {"pizzeria", "souvlaki", "coffee", "burgers", "sushi", "bakery", "salads"};
+    private static final String[] PRODUCT_TYPES = {"main", "salad", "drink", "dessert", "side"};
+    static final double CENTER_LATITUDE = 37.98;
+    static final double CENTER_LONGITUDE = 23.73;
+
+    private SyntheticStores() {
+    }
+
+    /**
+     * @param storeCount Number of stores
+     * @param productsPerStore Average catalog size; actual sizes vary between half and one and a half times it
+     * @param seed Seed of the generator
+     * @return The stores, named "Store 0" to "Store n-1"
+     */
+    static ArrayList<Store> generate(int storeCount, int productsPerStore, long seed) {
+        Random random = new Random(seed);
+        ArrayList<Store> stores = new ArrayList<>(storeCount);
+        for (int i = 0; i < storeCount; i++) {
+            String category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+            String name = "Store " + i;
+            int productCount = productsPerStore / 2 + random.nextInt(productsPerStore + 1);
+            ArrayList<Product> products = new ArrayList<>(productCount);
+            for (int p = 0; p < productCount; p++) {
+                String type = PRODUCT_TYPES[random.nextInt(PRODUCT_TYPES.length)];
+                products.add(new Product(name + " " + type + " " + p, type, 5 + random.nextInt(100),
+                        1 + random.nextInt(2900) / 100.0));
+            }
+            stores.add(new Store(name, CENTER_LATITUDE + (random.nextDouble() - 0.5) * 0.3,
+                    CENTER_LONGITUDE + (random.nextDouble() - 0.5) * 0.3, category,
+                    1 + random.nextInt(41) / 10.0, random.nextInt(2000), "/logos/" + category + ".png", products));
+        }
+        return stores;
+    }
+}
@@ -0,0 +1,31 @@
+package com.fooddelivery.network;
+
+import com.fooddelivery.models.Product;
+import com.fooddelivery.models.Store;
+
+import java.util.ArrayList;
+
+/**
+ * Small fixtures shared by the network tests
+ */
+final class TestStores {
+
+    private TestStores() {
+    }
+
+    static Store store(String name, String category, double stars, int productCount) {
+        ArrayList<Product> products = new ArrayList<>();
+        for (int i = 0; i < productCount; i++) {
+            products.add(new Product(name + " item " + i, category, 10 + i, 2.5 + i));
+        }
+        return new Store(name, 37.99, 23.73, category, stars, 15, "/logos/" + name + ".png", products);
+    }
+
+    static ArrayList<Store> stores() {
+        ArrayList<Store> stores = new ArrayList<>();
+        stores.add(store("Pizza Fun", "pizzeria", 4.2, 3));
+        stores.add(store("Souvlaki Spot", "souvlaki", 3.1, 2));
+        stores.add(store("Coffee Corner", "coffee", 4.8, 4));
+        return stores;
+    }
+}
@@ -0,0 +1,352 @@
+package com.fooddelivery.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.fooddelivery.models.ChangeLog;
+import com.fooddelivery.models.ConditionalResponse;
+import com.fooddelivery.models.MapReduceRequest;
+import com.fooddelivery.models.Product;
+import com.fooddelivery.models.ProductBatch;
+import com.fooddelivery.models.Purchase;
+import com.fooddelivery.models.PurchaseOrder;
+import com.fooddelivery.models.RequestKey;
+import com.fooddelivery.models.Store;
+import com.fooddelivery.models.StoreChange;
+import com.fooddelivery.models.StoreRating;
+import com.fooddelivery.models.StoreSummary;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Exercises both wire protocols end to end against a local stand-in Master
+ */
+public class WireProtocolTest {
+
+    private StandInMaster master;
+    private Socket socket;
+
+    @After
+    public void tearDown() throws Exception {
+        if (socket != null) socket.close();
+        if (master != null) master.close();
+    }
+
+    @Test
+    public void binaryProtocol_isNegotiatedAndServesAllCommands() throws Exception {
+        master = new StandInMaster(TestStores.stores(), false);
+        socket = new Socket("127.0.0.1", master.getPort());
+
+        int version = BinaryProtocol.negotiate(socket, 2000);
+        assertEquals(BinaryProtocol.VERSION, version);
+
+        assertAllCommands(new BinaryProtocol(socket.getInputStream(), socket.getOutputStream(), version));
+    }
+
+    @Test
+    public void javaSerialization_servesAllCommands() throws Exception {
+        master = new StandInMaster(TestStores.stores(), false);
+        socket = new Socket("127.0.0.1", master.getPort());
+
+        assertAllCommands(new JavaSerializationProtocol(socket));
+    }
+
+    @Test
+    public void legacyMaster_declinesBinaryOffer() throws Exception {
+        master = new StandInMaster(TestStores.stores(), true);
+        socket = new Socket("127.0.0.1", master.getPort());
+
+        assertEquals(BinaryProtocol.DECLINED, BinaryProtocol.negotiate(socket, 2000));
+    }
+
+    @Test
+    public void silentMaster_isNotTakenForALegacyOne() throws Exception {
+        try (ServerSocket silent = new ServerSocket(0)) {
+            socket = new Socket("127.0.0.1", silent.getLocalPort());
+            Socket accepted = silent.accept();
+            try {
+                assertEquals(BinaryProtocol.NO_ANSWER, BinaryProtocol.negotiate(socket, 100));
+                // The Master read the offer but never answered it
+                assertTrue(accepted.getInputStream().available() > 0);
+            } finally {
+                accepted.close();
+            }
+        }
+    }
+
+    @Test
+    public void binaryProtocol_pipelinesCommandsInOrder() throws Exception {
+        master = new StandInMaster(TestStores.stores(), false);
+        socket = new Socket("127.0.0.1", master.getPort());
+        WireProtocol protocol = new BinaryProtocol(socket.getInputStream(), socket.getOutputStream(),
+                BinaryProtocol.negotiate(socket, 2000));
+
+        List<String> names = Arrays.asList("Pizza Fun", "Souvlaki Spot", "Coffee Corner");
+        for (String name : names) {
+            protocol.writeCommand("fetchProducts", name);
+        }
+        for (String name : names) {
+            @SuppressWarnings("unchecked")
+            List<Product> products = (List<Product>) protocol.readResponse();
+            assertTrue(products.get(0).getName().startsWith(name));
+        }
+    }
+
+    @Test
+    public void binaryProtocol_streamsStoresPageByPage() throws Exception {
+        master = new StandInMaster(TestStores.stores(), false);
+        socket = new Socket("127.0.0.1", master.getPort());
+        WireProtocol protocol = new BinaryProtocol(socket.getInputStream(), socket.getOutputStream(),
+                BinaryProtocol.negotiate(socket, 2000));
+        MapReduceRequest request = new MapReduceRequest(37.99, 23.73, new ArrayList<String>(), 0, "", 5.0)
+                .withSummaryOnly(true);
+
+        List<String> received = new ArrayList<>();
+        int cursor = 0;
+        do {
+            protocol.writeCommand("clientStream", request.withPage(cursor, 2));
+            Object item;
+            while ((item = protocol.readResponse()) instanceof StoreSummary) {
+                received.add(((StoreSummary) item).getStoreName());
+            }
+            cursor = (Integer) item;
+        } while (cursor >= 0);
+
+        assertEquals(Arrays.asList("Pizza Fun", "Souvlaki Spot", "Coffee Corner"), received);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void binaryProtocol_conditionalFetchSendsOnlyChanges() throws Exception {
+        ArrayList<Store> stores = TestStores.stores();
+        master = new StandInMaster(stores, false);
+        socket = new Socket("127.0.0.1", master.getPort());
+        WireProtocol protocol = new BinaryProtocol(socket.getInputStream(), socket.getOutputStream(),
+                BinaryProtocol.negotiate(socket, 2000));
+        MapReduceRequest request = new MapReduceRequest(37.99, 23.73, new ArrayList<String>(), 0, "", 5.0);
+
+        protocol.writeCommand("filterIfModified", request, null, new ArrayList<String>(), new ArrayList<Integer>());
+        ConditionalResponse<StoreSummary> first = (ConditionalResponse<StoreSummary>) protocol.readResponse();
+        assertFalse(first.isNotModified());
+        assertEquals(3, first.getItems().size());
+
+        ArrayList<String> names = new ArrayList<>();
+        ArrayList<Integer> versions = new ArrayList<>();
+        for (StoreSummary store : first.getItems()) {
+            names.add(store.getStoreName());
+            versions.add(store.getVersion());
+        }
+        protocol.writeCommand("filterIfModified", request, first.getEtag(), names, versions);
+        assertTrue(((ConditionalResponse<?>) protocol.readResponse()).isNotModified());
+
+        stores.get(1).setStars(4.9);
+        protocol.writeCommand("filterIfModified", request, first.getEtag(), names, versions);
+        ConditionalResponse<StoreSummary> changed = (ConditionalResponse<StoreSummary>) protocol.readResponse();
+        assertEquals(1, changed.getItems().size());
+        assertEquals("Souvlaki Spot", changed.getItems().get(0).getStoreName());
+        assertTrue(changed.getRemoved().isEmpty());
+
+        protocol.writeCommand("fetchProductsIfModified", "Coffee Corner", null);
+        ConditionalResponse<Product> catalog = (ConditionalResponse<Product>) protocol.readResponse();
+        assertEquals(4, catalog.getItems().size());
+        protocol.writeCommand("fetchProductsIfModified", "Coffee Corner", catalog.getEtag());
+        assertTrue(((ConditionalResponse<?>) protocol.readResponse()).isNotModified());
+    }
+
+    @Test
+    public void binaryProtocol_syncReturnsChangesAfterSequence() throws Exception {
+        ArrayList<Store> stores = TestStores.stores();
+        master = new StandInMaster(stores, false);
+        socket = new Socket("127.0.0.1", master.getPort());
+        WireProtocol protocol = new BinaryProtocol(socket.getInputStream(), socket.getOutputStream(),
+                BinaryProtocol.negotiate(socket, 2000));
+
+        protocol.writeCommand("sync", -1);
+        ChangeLog baseline = (ChangeLog) protocol.readResponse();
+        assertTrue(baseline.isResetRequired());
+
+        master.publish(StoreChange.quantity(1, "Coffee Corner", 7, "Coffee Corner item 0", 3));
+        master.publish(StoreChange.rating(2, "Pizza Fun", 8, 4.5, 16));
+
+        protocol.writeCommand("sync", 1);
+        ChangeLog log = (ChangeLog) protocol.readResponse();
+        assertFalse(log.isResetRequired());
+        assertEquals(2, log.getLatestSequence());
+        assertEquals(1, log.getChanges().size());
+        assertEquals(StoreChange.Type.RATING, log.getChanges().get(0).getType());
+        assertEquals(4.5, log.getChanges().get(0).getNumber(), 0);
+        assertEquals(3, stores.get(2).getProducts().get(0).getQuantity());
+    }
+
+    @Test
+    public void streamedQuery_leavesTheCallersRequestUnchanged() throws Exception {
+        master = new StandInMaster(TestStores.stores(), false);
+        SocketClient client = new SocketClient("127.0.0.1", master.getPort());
+        client.connect();
+        try {
+            MapReduceRequest request = new MapReduceRequest(37.99, 23.73, new ArrayList<String>(), 0, "", 5.0);
+            RequestKey before = RequestKey.exact(request);
+            List<StoreSummary> received = new ArrayList<>();
+
+            client.streamFilteredStores(request, received::add);
+
+            assertFalse(received.isEmpty());
+            assertFalse(request.isSummaryOnly());
+            assertEquals(before, RequestKey.exact(request));
+        } finally {
+            client.disconnect();
+        }
+    }
+
+    @Test
+    public void productBatch_returnsEveryCatalogInOneCommand() throws Exception {
+        master = new StandInMaster(TestStores.stores(), false);
+        SocketClient client = new SocketClient("127.0.0.1", master.getPort());
+        client.connect();
+        try {
+            ProductBatch batch = client.fetchProductsBatch(Arrays.asList("Pizza Fun", "Closed Grill", "Coffee Corner"));
+
+            assertEquals(3, batch.getProducts("Pizza Fun").size());
+            assertEquals(4, batch.getProducts("Coffee Corner").size());
+            assertFalse(batch.isComplete());
+            assertEquals("Store not found", batch.getError("Closed Grill"));
+        } finally {
+            client.disconnect();
+        }
+    }
+
+    @Test
+    public void subscription_pushesChangesOfWatchedStoresOnly() throws Exception {
+        master = new StandInMaster(TestStores.stores(), false);
+        SocketClient client = new SocketClient("127.0.0.1", master.getPort());
+        client.connect();
+        try {
+            assertTrue(client.subscribe(Arrays.asList("Pizza Fun")));
+            long deadline = System.currentTimeMillis() + 2000;
+            while (master.getWatchedStoreCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+
+            master.publish(StoreChange.quantity(1, "Coffee Corner", 7, "Coffee Corner item 0", 3));
+            master.publish(StoreChange.quantity(2, "Pizza Fun", 8, "Pizza Fun item 1", 0));
+
+            ChangeLog pushed = client.readPush();
+            assertEquals(1, pushed.getChanges().size());
+            assertEquals(2, pushed.getChanges().get(0).getSequence());
+            assertEquals(0, pushed.getChanges().get(0).getCount());
+        } finally {
+            client.disconnect();
+        }
+    }
+
+    @Test
+    public void purchaseOrders_resentAfterLostResponseAreCommittedOnce() throws Exception {
+        master = new StandInMaster(TestStores.stores(), false);
+        List<PurchaseOrder> orders = Arrays.asList(order("Pizza Fun", "Eleni"), order("Closed Grill", "Nikos"));
+        master.dropNextResponses(1);
+
+        SocketClient first = new SocketClient("127.0.0.1", master.getPort());
+        first.connect();
+        try {
+            first.submitPurchases(orders);
+            fail("The response should have been lost");
+        } catch (IOException expected) {
+            // The Master committed the orders before the connection dropped
+        } finally {
+            first.disconnect();
+        }
+
+        SocketClient second = new SocketClient("127.0.0.1", master.getPort());
+        second.connect();
+        try {
+            List<String> outcomes = second.submitPurchases(orders);
+
+            assertEquals(Arrays.asList("Purchase successful for Eleni", "Store not found"), outcomes);
+            assertEquals(1, master.getAppliedPurchaseCount());
+        } finally {
+            second.disconnect();
+        }
+    }
+
+    @Test
+    public void purchaseOrders_onLegacyMaster_sendOneOrderPerCommand() throws Exception {
+        master = new StandInMaster(TestStores.stores(), true);
+        SocketClient client = new SocketClient("127.0.0.1", master.getPort());
+        client.connect();
+        try {
+            List<String> outcomes = client.submitPurchases(
+                    Arrays.asList(order("Pizza Fun", "Eleni"), order("Coffee Corner", "Nikos")));
+
+            assertEquals(Arrays.asList("Purchase successful for Eleni"), outcomes);
+            assertEquals(1, master.getAppliedPurchaseCount());
+        } finally {
+            client.disconnect();
+        }
+    }
+
+    @Test
+    public void rateBatch_resentAfterLostResponseIsCountedOnce() throws Exception {
+        master = new StandInMaster(TestStores.stores(), false);
+        List<StoreRating> ratings = Arrays.asList(StoreRating.create("Pizza Fun", 5),
+                StoreRating.create("Coffee Corner", 3));
+        master.dropNextResponses(1);
+
+        SocketClient first = new SocketClient("127.0.0.1", master.getPort());
+        first.connect();
+        try {
+            first.rateStores(ratings);
+            fail("The response should have been lost");
+        } catch (IOException expected) {
+            // The Master recorded the ratings before the connection dropped
+        } finally {
+            first.disconnect();
+        }
+
+        SocketClient second = new SocketClient("127.0.0.1", master.getPort());
+        second.connect();
+        try {
+            assertEquals(Arrays.asList("Rating submitted: 5", "Rating submitted: 3"), second.rateStores(ratings));
+            assertEquals(2, master.getAppliedRatingCount());
+        } finally {
+            second.disconnect();
+        }
+    }
+
+    private static PurchaseOrder order(String storeName, String customerName) {
+        return PurchaseOrder.create(storeName, new Purchase(customerName, customerName + "@example.com",
+                new ArrayList<>(Arrays.asList(new Product(storeName + " item 0", "food", 1, 2.5)))));
+    }
+
+    private static void assertAllCommands(WireProtocol protocol) throws Exception {
+        protocol.writeCommand("client", new MapReduceRequest(37.99, 23.73, new ArrayList<String>(), 0, "", 5.0));
+        assertEquals(3, ((List<?>) protocol.readResponse()).size());
+
+        protocol.writeCommand("filter", new MapReduceRequest(37.99, 23.73,
+                new ArrayList<>(Arrays.asList("coffee")), 4.0, "", 5.0));
+        @SuppressWarnings("unchecked")
+        List<Store> filtered = (List<Store>) protocol.readResponse();
+        assertEquals(1, filtered.size());
+        assertEquals("Coffee Corner", filtered.get(0).getStoreName());
+
+        protocol.writeCommand("fetchProducts", "Souvlaki Spot");
+        assertEquals(2, ((List<?>) protocol.readResponse()).size());
+
+        Purchase purchase = new Purchase("Eleni", "eleni@example.com",
+                new ArrayList<>(Arrays.asList(new Product("Souvlaki Spot item 0", "souvlaki", 1, 2.5))));
+        protocol.writeCommand("purchase", purchase, "Souvlaki Spot");
+        assertEquals("Purchase successful for Eleni", protocol.readResponse());
+
+        protocol.writeCommand("rate", "Pizza Fun", 5);
+        assertEquals("Rating submitted: 5", protocol.readResponse());
+    }
+}